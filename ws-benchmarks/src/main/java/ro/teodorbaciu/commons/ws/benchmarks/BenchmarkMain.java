@@ -0,0 +1,54 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the JMH command line, adding the defaults used to compare releases:
+ * the results are written to jmh-result.json and the allocation rates are reported by the gc profiler.
+ * Both defaults are replaced when -rf, -rff or -prof are specified on the command line.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public final class BenchmarkMain {
+
+	private BenchmarkMain() {
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		List<String> listArgs = new ArrayList<>(Arrays.asList(args));
+		if ( !listArgs.contains("-rf") ) {
+			listArgs.add("-rf");
+			listArgs.add("json");
+		}
+		if ( !listArgs.contains("-rff") ) {
+			listArgs.add("-rff");
+			listArgs.add("jmh-result.json");
+		}
+		if ( !listArgs.contains("-prof") ) {
+			listArgs.add("-prof");
+			listArgs.add("gc");
+		}
+
+		org.openjdk.jmh.Main.main(listArgs.toArray(new String[listArgs.size()]));
+	}
+}
@@ -0,0 +1,98 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+
+/**
+ * Measures a dispatcher shared by several threads, alone and while another thread keeps
+ * removing and adding a module.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class ContentionBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean compiledRoutes;
+
+	private ServiceDispatcher dispatcher;
+	private ServiceModule swappedModule;
+	private Map<String, Object> parameters;
+
+	@Setup
+	public void setUp() {
+
+		dispatcher = new ServiceDispatcher("benchmark");
+		dispatcher.addModule(Fixtures.newModule("module", 10));
+		swappedModule = Fixtures.newModule("module-swapped", 10);
+		dispatcher.addModule(swappedModule);
+		if ( compiledRoutes ) {
+			dispatcher.compileRoutes();
+		}
+		parameters = new HashMap<>();
+	}
+
+	@Benchmark
+	@Group("shared")
+	@GroupThreads(4)
+	public DispatchResult sharedDispatch() {
+		return dispatcher.dispatch("module", "op-5", parameters);
+	}
+
+	@Benchmark
+	@Group("hotSwap")
+	@GroupThreads(3)
+	public DispatchResult hotSwapDispatch() {
+		return dispatcher.dispatch("module", "op-5", parameters);
+	}
+
+	@Benchmark
+	@Group("hotSwap")
+	@GroupThreads(1)
+	public void hotSwapModule() {
+
+		dispatcher.removeModule(swappedModule.getModuleName());
+		dispatcher.addModule(swappedModule);
+	}
+}
@@ -0,0 +1,94 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+
+/**
+ * Measures {@link ServiceDispatcher#dispatch(String, String, Map)} for each outcome,
+ * with and without compiled routes.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+	private static final int MODULE_COUNT = 10;
+	private static final int OPERATIONS_PER_MODULE = 10;
+
+	@Param({ "false", "true" })
+	public boolean compiledRoutes;
+
+	private ServiceDispatcher dispatcher;
+	private Map<String, Object> parameters;
+
+	@Setup
+	public void setUp() {
+
+		dispatcher = new ServiceDispatcher("benchmark");
+		for ( int i = 0; i < MODULE_COUNT; i++ ) {
+			dispatcher.addModule(Fixtures.newModule("module-" + i, OPERATIONS_PER_MODULE));
+		}
+		if ( compiledRoutes ) {
+			dispatcher.compileRoutes();
+		}
+		parameters = new HashMap<>();
+	}
+
+	@Benchmark
+	public DispatchResult hit() {
+		return dispatcher.dispatch("module-5", "op-5", parameters);
+	}
+
+	@Benchmark
+	public DispatchResult moduleMiss() {
+		return dispatcher.dispatch("module-inexistent", "op-5", parameters);
+	}
+
+	@Benchmark
+	public DispatchResult operationMiss() {
+		return dispatcher.dispatch("module-5", "op-inexistent", parameters);
+	}
+
+	@Benchmark
+	public DispatchResult blankModuleName() {
+		return dispatcher.dispatch(" ", "op-5", parameters);
+	}
+}
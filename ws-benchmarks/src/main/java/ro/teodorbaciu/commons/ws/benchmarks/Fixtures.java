@@ -0,0 +1,111 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.benchmarks;
+
+import java.util.Map;
+import java.util.Optional;
+
+import ro.teodorbaciu.commons.ws.OperationParameter;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
+
+/**
+ * Modules and operations shared by the benchmarks.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+final class Fixtures {
+
+	/**
+	 * The result returned by every operation, so that the benchmarks measure the dispatching only.
+	 */
+	static final Optional<BaseResult> RESULT = Optional.of(new ObjectWrapper<>("result"));
+
+	private Fixtures() {
+	}
+
+	/**
+	 * Creates a module with operations named op-0 .. op-(operationCount - 1).
+	 */
+	static ServiceModule newModule(String moduleName, int operationCount) {
+
+		ServiceModule module = new ServiceModule(moduleName);
+		for ( int i = 0; i < operationCount; i++ ) {
+			module.addOperation(new ConstantOperation("op-" + i));
+		}
+		return module;
+	}
+
+	/**
+	 * Operation without parameters that returns {@link Fixtures#RESULT}.
+	 */
+	static final class ConstantOperation extends ServiceOperation {
+
+		ConstantOperation(String operationName) {
+			super(operationName);
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+			return RESULT;
+		}
+	}
+
+	/**
+	 * Operation with declared parameters; its metadata is generated at compile time.
+	 */
+	@OperationParameter(name = "name", mandatory = true)
+	@OperationParameter(name = "quantity", mandatory = true, integer = true)
+	@OperationParameter(name = "price", mandatory = false, floatingPoint = true)
+	static class ProductOperation extends ServiceOperation {
+
+		ProductOperation(String operationName) {
+			super(operationName);
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+			return RESULT;
+		}
+	}
+
+	/**
+	 * Same declarations as {@link ProductOperation}. Being private, no metadata is generated
+	 * for it and its annotations are read through reflection.
+	 */
+	@OperationParameter(name = "name", mandatory = true)
+	@OperationParameter(name = "quantity", mandatory = true, integer = true)
+	@OperationParameter(name = "price", mandatory = false, floatingPoint = true)
+	private static class ReflectiveProductOperation extends ServiceOperation {
+
+		ReflectiveProductOperation(String operationName) {
+			super(operationName);
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+			return RESULT;
+		}
+	}
+
+	static ServiceOperation newReflectiveProductOperation(String operationName) {
+		return new ReflectiveProductOperation(operationName);
+	}
+}
@@ -0,0 +1,258 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.server.ResultWriter;
+import ro.teodorbaciu.commons.ws.server.WsServer;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
+
+/**
+ * Compares the {@link WsServer} with the servlet glue usually written for the dispatcher, 
+ * running in an embedded Jetty. Each benchmark thread posts a call on its own keep-alive 
+ * connection and waits for the response, so the score is the round trip over the loopback.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class HttpFrontEndBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Servers {
+
+		@Param({ "ws-server", "servlet" })
+		public String frontEnd;
+
+		private WsServer wsServer;
+		private Server jetty;
+		private int port;
+
+		@Setup
+		public void setUp() throws Exception {
+
+			ServiceDispatcher dispatcher = new ServiceDispatcher("benchmark");
+			dispatcher.addModule(Fixtures.newModule("module", 10));
+
+			if ( "servlet".equals(frontEnd) ) {
+
+				jetty = new Server();
+				ServerConnector connector = new ServerConnector(jetty);
+				connector.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+				connector.setPort(0);
+				jetty.addConnector(connector);
+
+				ServletContextHandler context = new ServletContextHandler();
+				context.addServlet(new ServletHolder(new DispatchServlet(dispatcher)), "/pws");
+				jetty.setHandler(context);
+				jetty.start();
+				port = connector.getLocalPort();
+
+			} else {
+
+				wsServer = new WsServer(dispatcher, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new TextResultWriter());
+				wsServer.addPublicModule("module");
+				wsServer.start();
+				port = wsServer.getPort();
+			}
+		}
+
+		@TearDown
+		public void tearDown() throws Exception {
+
+			if ( jetty != null ) {
+				jetty.stop();
+			}
+			if ( wsServer != null ) {
+				wsServer.close();
+			}
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Connection {
+
+		private Socket socket;
+		private byte[] request;
+		private byte[] buffer;
+
+		@Setup(Level.Trial)
+		public void setUp(Servers servers) throws IOException {
+
+			socket = new Socket(InetAddress.getLoopbackAddress(), servers.port);
+			socket.setTcpNoDelay(true);
+
+			String body = "module=module&op=op-5&name=value";
+			request = ("POST /pws HTTP/1.1\r\n"
+					+ "Host: localhost\r\n"
+					+ "Content-Type: application/x-www-form-urlencoded\r\n"
+					+ "Content-Length: " + body.length() + "\r\n"
+					+ "\r\n" + body).getBytes(StandardCharsets.US_ASCII);
+			buffer = new byte[8192];
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			socket.close();
+		}
+
+		/**
+		 * Posts the call and reads the response.
+		 * 
+		 * @return the status code of the response
+		 */
+		int call() throws IOException {
+
+			OutputStream out = socket.getOutputStream();
+			out.write(request);
+			out.flush();
+
+			InputStream in = socket.getInputStream();
+			ByteArrayOutputStream headers = new ByteArrayOutputStream();
+			// the headers end with an empty line
+			int lastBytes = 0;
+			while ( lastBytes != 0x0D0A0D0A ) {
+
+				int value = in.read();
+				if ( value < 0 ) {
+					throw new IOException("Connection closed");
+				}
+				headers.write(value);
+				lastBytes = (lastBytes << 8) | value;
+			}
+
+			String head = new String(headers.toByteArray(), StandardCharsets.US_ASCII);
+			int remaining = 0;
+			for ( String line : head.split("\r\n") ) {
+				if ( line.regionMatches(true, 0, "Content-Length:", 0, 15) ) {
+					remaining = Integer.parseInt(line.substring(15).trim());
+				}
+			}
+
+			while ( remaining > 0 ) {
+				int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+				if ( read < 0 ) {
+					throw new IOException("Connection closed");
+				}
+				remaining -= read;
+			}
+			return Integer.parseInt(head.substring(9, 12));
+		}
+	}
+
+	@Benchmark
+	public int call(Connection connection) throws IOException {
+		return connection.call();
+	}
+
+	/**
+	 * The servlet glue: reads the form parameters, dispatches the call and writes the result.
+	 */
+	static final class DispatchServlet extends HttpServlet {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient ServiceDispatcher dispatcher;
+		private final transient ResultWriter resultWriter;
+
+		DispatchServlet(ServiceDispatcher dispatcher) {
+			this.dispatcher = dispatcher;
+			this.resultWriter = new TextResultWriter();
+		}
+
+		@Override
+		protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+			Map<String, Object> parameters = new HashMap<>();
+			for ( Map.Entry<String, String[]> entry : request.getParameterMap().entrySet() ) {
+				parameters.put(entry.getKey(), entry.getValue()[0]);
+			}
+
+			DispatchResult result = dispatcher.dispatch(request.getParameter("module"), request.getParameter("op"), parameters);
+			int statusCode = WsServer.statusCodeOf(result);
+			if ( statusCode != 200 || result.getValue() == null ) {
+				response.setStatus(statusCode);
+				response.setContentLength(0);
+				return;
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			resultWriter.write(result.getValue(), out);
+			response.setContentType(resultWriter.getContentType());
+			response.setContentLength(out.size());
+			out.writeTo(response.getOutputStream());
+		}
+	}
+
+	/**
+	 * Writes the wrapped object as text.
+	 */
+	static final class TextResultWriter implements ResultWriter {
+
+		@Override
+		public String getContentType() {
+			return "text/plain; charset=UTF-8";
+		}
+
+		@Override
+		public void write(BaseResult value, OutputStream out) throws IOException {
+			out.write(String.valueOf(((ObjectWrapper<?>) value).getObject()).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ro.teodorbaciu.commons.ws.ExecutionResult;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+
+/**
+ * Measures {@link ServiceModule#executeOperation(String, Map)} for modules of different sizes.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModuleBenchmark {
+
+	@Param({ "1", "10", "100", "1000" })
+	public int operationCount;
+
+	private ServiceModule module;
+	private String lastOperationName;
+	private Map<String, Object> parameters;
+
+	@Setup
+	public void setUp() {
+
+		module = Fixtures.newModule("module", operationCount);
+		lastOperationName = "op-" + (operationCount - 1);
+		parameters = new HashMap<>();
+	}
+
+	@Benchmark
+	public ExecutionResult hit() {
+		return module.executeOperation(lastOperationName, parameters);
+	}
+
+	@Benchmark
+	public ExecutionResult operationMiss() {
+		return module.executeOperation("op-inexistent", parameters);
+	}
+}
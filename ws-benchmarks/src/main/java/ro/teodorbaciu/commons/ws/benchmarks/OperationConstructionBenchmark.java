@@ -0,0 +1,101 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+
+/**
+ * Compares the construction of operations whose parameter declarations come from the generated
+ * metadata with the construction of operations whose declarations are read through reflection,
+ * one at a time and as the startup of a module with 1,000 operations.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OperationConstructionBenchmark {
+
+	private static final int REGISTRY_SIZE = 1000;
+
+	private String[] operationNames;
+
+	@Setup
+	public void setUp() {
+
+		operationNames = new String[REGISTRY_SIZE];
+		for ( int i = 0; i < REGISTRY_SIZE; i++ ) {
+			operationNames[i] = "op-" + i;
+		}
+	}
+
+	@Benchmark
+	public ServiceOperation generatedMetadata() {
+		return new Fixtures.ProductOperation("op");
+	}
+
+	@Benchmark
+	public ServiceOperation reflection() {
+		return Fixtures.newReflectiveProductOperation("op");
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 20)
+	@Measurement(iterations = 50)
+	public ServiceModule registryWithGeneratedMetadata() {
+
+		ServiceModule module = new ServiceModule("module");
+		for ( String operationName:operationNames ) {
+			module.addOperation(new Fixtures.ProductOperation(operationName));
+		}
+		return module;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 20)
+	@Measurement(iterations = 50)
+	public ServiceModule registryWithReflection() {
+
+		ServiceModule module = new ServiceModule("module");
+		for ( String operationName:operationNames ) {
+			module.addOperation(Fixtures.newReflectiveProductOperation(operationName));
+		}
+		return module;
+	}
+}
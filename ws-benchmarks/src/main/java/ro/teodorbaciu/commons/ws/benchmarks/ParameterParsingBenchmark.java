@@ -0,0 +1,93 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.benchmarks;
+
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ro.teodorbaciu.commons.ws.server.UrlEncodedParameterMap;
+
+/**
+ * Reads the module, the operation and one parameter from a form body, decoding the body into 
+ * a {@link HashMap} first, as the servlet glue does, or through the {@link UrlEncodedParameterMap}.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParameterParsingBenchmark {
+
+	@Param({ "4", "32" })
+	public int parameterCount;
+
+	private byte[] body;
+
+	@Setup
+	public void setUp() {
+
+		StringBuilder form = new StringBuilder("module=catalog&op=op-search&query=caf%C3%A9+au+lait");
+		for ( int i = 3; i < parameterCount; i++ ) {
+			form.append("&filter-").append(i).append("=value+").append(i).append("%2C+encoded");
+		}
+		body = form.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	@Benchmark
+	public void hashMap(Blackhole blackhole) throws Exception {
+
+		Map<String, Object> parameters = new HashMap<>();
+		for ( String pair : new String(body, StandardCharsets.US_ASCII).split("&") ) {
+			int separator = pair.indexOf('=');
+			parameters.putIfAbsent(URLDecoder.decode(pair.substring(0, separator), "UTF-8"), 
+					URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+		}
+		consume(parameters, blackhole);
+	}
+
+	@Benchmark
+	public void lazyMap(Blackhole blackhole) {
+		consume(new UrlEncodedParameterMap(ByteBuffer.wrap(body)), blackhole);
+	}
+
+	private static void consume(Map<String, Object> parameters, Blackhole blackhole) {
+		blackhole.consume(parameters.get("module"));
+		blackhole.consume(parameters.get("op"));
+		blackhole.consume(parameters.get("query"));
+	}
+}
@@ -0,0 +1,116 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.benchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ro.teodorbaciu.commons.client.ws.transport.HttpClient4Transport;
+import ro.teodorbaciu.commons.client.ws.transport.HttpClient5Transport;
+import ro.teodorbaciu.commons.client.ws.transport.WsRequest;
+import ro.teodorbaciu.commons.client.ws.transport.WsRequestBody;
+import ro.teodorbaciu.commons.client.ws.transport.WsTransport;
+import ro.teodorbaciu.commons.client.ws.transport.jdk.JdkHttpTransport;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.server.WsServer;
+
+/**
+ * Compares the client transports calling a local {@link WsServer}. The benchmark threads share 
+ * the transport, which keeps a pool of connections alive, so the score is the round trip over 
+ * the loopback plus the overhead of the client.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class WsTransportBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Client {
+
+		@Param({ "httpclient4", "httpclient5", "jdk" })
+		public String transportName;
+
+		private WsServer wsServer;
+		private WsTransport transport;
+		private String url;
+		private WsRequestBody body;
+
+		@Setup
+		public void setUp() {
+
+			ServiceDispatcher dispatcher = new ServiceDispatcher("benchmark");
+			dispatcher.addModule(Fixtures.newModule("module", 10));
+
+			wsServer = new WsServer(dispatcher, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 
+					new HttpFrontEndBenchmark.TextResultWriter());
+			wsServer.addPublicModule("module");
+			wsServer.start();
+
+			if ( "httpclient4".equals(transportName) ) {
+				PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
+				connectionManager.setDefaultMaxPerRoute(100);
+				transport = new HttpClient4Transport(new DefaultHttpClient(connectionManager));
+			} else if ( "httpclient5".equals(transportName) ) {
+				transport = new HttpClient5Transport();
+			} else {
+				transport = new JdkHttpTransport();
+			}
+
+			url = "http://localhost:" + wsServer.getPort() + "/pws";
+			body = WsRequestBody.ofForm(Arrays.<NameValuePair> asList(new BasicNameValuePair("module", "module"), 
+					new BasicNameValuePair("op", "op-5"), new BasicNameValuePair("name", "value")));
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			transport.close();
+			wsServer.close();
+		}
+	}
+
+	@Benchmark
+	public int call(Client client) throws IOException {
+		return client.transport.execute(WsRequest.post(client.url, client.body)).getStatusCode();
+	}
+}
@@ -0,0 +1,266 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws.transport.jdk;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.CookieManager;
+import java.net.CookiePolicy;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ro.teodorbaciu.commons.client.ws.transport.WsRequest;
+import ro.teodorbaciu.commons.client.ws.transport.WsRequestBody;
+import ro.teodorbaciu.commons.client.ws.transport.WsResponse;
+import ro.teodorbaciu.commons.client.ws.transport.WsTransport;
+import ro.teodorbaciu.commons.client.ws.transport.WsTransportConfig;
+import ro.teodorbaciu.commons.client.ws.util.WebClientDevWrapper;
+
+/**
+ * {@link WsTransport} on the {@link HttpClient} of the JDK. The client keeps the connections 
+ * alive in its own pool; the number of requests sent at the same time, and so the number of 
+ * connections, is limited to the settings of the {@link WsTransportConfig}.
+ * <p>
+ * {@link WsTransportConfig#getKeepAliveMillis()} is not applied: the JDK reads how long the idle 
+ * connections are kept from the {@code jdk.httpclient.keepalive.timeout} system property, in 
+ * seconds, once for all the clients of the JVM. The applications that need another value than the 
+ * JDK default of 20 minutes set the property at startup, for example 
+ * {@code -Djdk.httpclient.keepalive.timeout=30}.
+ * 
+ * @author Teodor Baciu
+ */
+public class JdkHttpTransport implements WsTransport {
+
+	/**
+	 * The bodies up to this size are sent from memory, the bigger ones are streamed.
+	 */
+	private static final int MAX_BUFFERED_BODY = 8192;
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private final HttpClient httpClient;
+
+	private final CookieManager cookieManager;
+
+	/**
+	 * Runs the client and writes the streamed bodies.
+	 */
+	private final ExecutorService executor;
+
+	private final Semaphore totalPermits;
+
+	private final int maxRequestsPerRoute;
+
+	private final Map<String, Semaphore> mapRoutePermits = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor. Uses the default {@link WsTransportConfig} and HTTP/1.1.
+	 */
+	public JdkHttpTransport() {
+		this(new WsTransportConfig());
+	}
+
+	/**
+	 * Constructor. Uses HTTP/1.1.
+	 * 
+	 * @param config the connection settings
+	 */
+	public JdkHttpTransport(WsTransportConfig config) {
+		this(config, HttpClient.Version.HTTP_1_1);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param config the connection settings
+	 * @param version the preferred http version
+	 */
+	public JdkHttpTransport(WsTransportConfig config, HttpClient.Version version) {
+
+		totalPermits = new Semaphore(config.getMaxConnectionsTotal());
+		maxRequestsPerRoute = config.getMaxConnectionsPerRoute();
+
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "ws-jdk-transport-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		cookieManager = new CookieManager(null, CookiePolicy.ACCEPT_ALL);
+		HttpClient.Builder builder = HttpClient.newBuilder()
+				.version(version)
+				.connectTimeout(Duration.ofMillis(config.getConnectTimeoutMillis()))
+				.cookieHandler(cookieManager)
+				.executor(executor);
+		if (config.isTrustAllCertificates()) {
+			builder.sslContext(WebClientDevWrapper.trustAllSslContext());
+		}
+		httpClient = builder.build();
+	}
+
+	@Override
+	public WsResponse execute(WsRequest request) throws IOException {
+
+		URI uri = URI.create(request.getUri());
+		Semaphore routePermits = mapRoutePermits.computeIfAbsent(uri.getScheme() + "://" + uri.getAuthority(), 
+				route -> new Semaphore(maxRequestsPerRoute));
+
+		acquire(totalPermits);
+		try {
+			acquire(routePermits);
+			try {
+				return send(uri, request);
+			} finally {
+				routePermits.release();
+			}
+		} finally {
+			totalPermits.release();
+		}
+	}
+
+	@Override
+	public List<HttpCookie> getCookies() {
+		return cookieManager.getCookieStore().getCookies();
+	}
+
+	/**
+	 * Stops the threads of the transport. The connections are closed when the client is garbage collected.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private WsResponse send(URI uri, WsRequest request) throws IOException {
+
+		HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+		InputStream streamedBody = null;
+
+		WsRequestBody body = request.getBody();
+		if (body == null) {
+			builder.GET();
+		} else {
+			builder.header("Content-Type", body.getContentType());
+			long contentLength = body.getContentLength();
+			if (contentLength >= 0 && contentLength <= MAX_BUFFERED_BODY) {
+				builder.POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()));
+			} else {
+				InputStream in = stream(body);
+				streamedBody = in;
+				HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.ofInputStream(() -> in);
+				builder.POST(contentLength >= 0 ? HttpRequest.BodyPublishers.fromPublisher(publisher, contentLength) : publisher);
+			}
+		}
+
+		CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+		request.setAbortAction(() -> exchange.cancel(true));
+		try {
+
+			HttpResponse<byte[]> response = exchange.get();
+			return new WsResponse(response.statusCode(), null, response.body(), 
+					WsResponse.charsetOf(response.headers().firstValue("Content-Type").orElse(null)));
+
+		} catch (CancellationException exc) {
+			throw new IOException("Request aborted");
+		} catch (InterruptedException exc) {
+			exchange.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Request interrupted");
+		} catch (ExecutionException exc) {
+			if (exc.getCause() instanceof IOException) {
+				throw (IOException) exc.getCause();
+			}
+			throw new IOException(exc.getCause());
+		} finally {
+			request.setAbortAction(null);
+			if (streamedBody != null) {
+				// stops the writer if the body was not sent
+				streamedBody.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns a stream of the body, written by another thread. The stream fails if writing the body fails.
+	 */
+	private InputStream stream(WsRequestBody body) throws IOException {
+
+		PipedInputStream in = new PipedInputStream(MAX_BUFFERED_BODY * 8);
+		PipedOutputStream out = new PipedOutputStream(in);
+		AtomicReference<IOException> failure = new AtomicReference<>();
+
+		executor.execute(() -> {
+			try (OutputStream target = out) {
+				body.writeTo(target);
+			} catch (IOException exc) {
+				failure.set(exc);
+			}
+		});
+
+		return new FilterInputStream(in) {
+
+			@Override
+			public int read() throws IOException {
+				int value = super.read();
+				return value < 0 ? checkEnd(value) : value;
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) throws IOException {
+				int count = super.read(buffer, offset, length);
+				return count < 0 ? checkEnd(count) : count;
+			}
+
+			private int checkEnd(int value) throws IOException {
+				if (failure.get() != null) {
+					throw failure.get();
+				}
+				return value;
+			}
+		};
+	}
+
+	private static void acquire(Semaphore permits) throws InterruptedIOException {
+
+		try {
+			permits.acquire();
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a connection");
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package ro.teodorbaciu.commons.client.ws.transport.jdk.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpCookie;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.client.ws.transport.WsRequest;
+import ro.teodorbaciu.commons.client.ws.transport.WsRequestBody;
+import ro.teodorbaciu.commons.client.ws.transport.WsResponse;
+import ro.teodorbaciu.commons.client.ws.transport.jdk.JdkHttpTransport;
+import ro.teodorbaciu.commons.ws.OperationParameter;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+import ro.teodorbaciu.commons.ws.server.ResultWriter;
+import ro.teodorbaciu.commons.ws.server.WsServer;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
+
+/**
+ * Tests the {@link JdkHttpTransport} against a local {@link WsServer}.
+ */
+public class JdkHttpTransportTestCase {
+
+	private WsServer server;
+	private JdkHttpTransport transport;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+
+		ServiceModule catalog = new ServiceModule("catalog");
+		catalog.addOperation(new OpEcho());
+		ServiceModule account = new ServiceModule("account");
+		account.addOperation(new OpWhoAmI());
+
+		ServiceDispatcher dispatcher = new ServiceDispatcher("jdk-transport-test");
+		dispatcher.addModule(catalog);
+		dispatcher.addModule(account);
+
+		server = new WsServer(dispatcher, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new TextResultWriter());
+		server.addPublicModule("catalog");
+		server.setLoginHandler(parameters -> "secret".equals(parameters.get("password")) 
+				? Optional.of(parameters.get("username")) : Optional.empty());
+		server.start();
+
+		transport = new JdkHttpTransport();
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		transport.close();
+		server.close();
+	}
+
+	@Test
+	public void testCalls() throws Exception {
+
+		WsResponse response = post("/pws", "module", "catalog", "op", "op-echo", "text", "café au lait");
+		Assert.assertEquals(200, response.getStatusCode());
+		Assert.assertEquals("café au lait", response.getBodyAsString());
+
+		Assert.assertEquals(412, post("/pws", "module", "catalog", "op", "op-echo").getStatusCode());
+		Assert.assertEquals(401, post("/aws", "module", "account", "op", "op-whoami").getStatusCode());
+
+		// the session cookie is kept by the transport
+		Assert.assertEquals(200, post("/login", "username", "ana", "password", "secret").getStatusCode());
+		List<HttpCookie> cookies = transport.getCookies();
+		Assert.assertEquals(1, cookies.size());
+		Assert.assertEquals(WsServer.SESSION_COOKIE, cookies.get(0).getName());
+		Assert.assertEquals("ana", post("/aws", "module", "account", "op", "op-whoami").getBodyAsString());
+	}
+
+	@Test
+	public void testStreamedBody() throws Exception {
+
+		String text = String.join("", Collections.nCopies(10000, "ţ"));
+		Assert.assertEquals(text, post("/pws", "module", "catalog", "op", "op-echo", "text", text).getBodyAsString());
+	}
+
+	@Test
+	public void testAbort() throws Exception {
+
+		WsRequest aborted = WsRequest.post(host() + "/pws", form("module", "catalog", "op", "op-echo", "text", "aborted", "sleep", "2000"));
+		Future<WsResponse> abortedResponse = executor.submit(() -> transport.execute(aborted));
+		Thread.sleep(200);
+		aborted.abort();
+		try {
+			abortedResponse.get(1, TimeUnit.SECONDS);
+			Assert.fail("The request was not aborted");
+		} catch (ExecutionException exc) {
+			Assert.assertTrue(String.valueOf(exc.getCause()), exc.getCause() instanceof IOException);
+		}
+
+		Assert.assertEquals("after", post("/pws", "module", "catalog", "op", "op-echo", "text", "after").getBodyAsString());
+	}
+
+	private String host() {
+		return "http://localhost:" + server.getPort();
+	}
+
+	private WsResponse post(String uri, String... params) throws IOException {
+		return transport.execute(WsRequest.post(host() + uri, form(params)));
+	}
+
+	private static WsRequestBody form(String... params) {
+
+		List<NameValuePair> pairs = new ArrayList<>();
+		for (int i = 0; i < params.length; i += 2) {
+			pairs.add(new BasicNameValuePair(params[i], params[i + 1]));
+		}
+		return WsRequestBody.ofForm(pairs);
+	}
+
+	private static class TextResultWriter implements ResultWriter {
+
+		@Override
+		public String getContentType() {
+			return "text/plain; charset=UTF-8";
+		}
+
+		@Override
+		public void write(BaseResult value, OutputStream out) throws IOException {
+			out.write(String.valueOf(((ObjectWrapper<?>) value).getObject()).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@OperationParameter(name = "text", mandatory = true)
+	@OperationParameter(name = "sleep", mandatory = false, integer = true)
+	private static class OpEcho extends ServiceOperation {
+
+		OpEcho() {
+			super("op-echo");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+
+			Object sleep = parameters.get("sleep");
+			if (sleep != null) {
+				try {
+					Thread.sleep(Long.parseLong(sleep.toString()));
+				} catch (InterruptedException exc) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return Optional.of(new ObjectWrapper<>(parameters.get("text")));
+		}
+	}
+
+	private static class OpWhoAmI extends ServiceOperation {
+
+		OpWhoAmI() {
+			super("op-whoami");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+			return Optional.of(new ObjectWrapper<>(parameters.get(WsServer.PARAM_PRINCIPAL)));
+		}
+	}
+}
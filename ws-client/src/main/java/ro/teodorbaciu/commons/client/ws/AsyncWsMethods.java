@@ -0,0 +1,519 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.cookie.BasicCookieStore;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ro.teodorbaciu.commons.client.ws.exceptions.AuthorizationRequiredException;
+import ro.teodorbaciu.commons.client.ws.exceptions.InvalidLoginCredentialsException;
+import ro.teodorbaciu.commons.client.ws.exceptions.InvalidWsParamsException;
+import ro.teodorbaciu.commons.client.ws.exceptions.OperationForbiddenException;
+import ro.teodorbaciu.commons.client.ws.exceptions.ReAuthenticationException;
+import ro.teodorbaciu.commons.client.ws.transport.WsRequestBody;
+import ro.teodorbaciu.commons.client.ws.transport.WsTransport;
+import ro.teodorbaciu.commons.client.ws.transport.WsTransportConfig;
+import ro.teodorbaciu.commons.client.ws.util.WebClientDevWrapper;
+
+/**
+ * Non-blocking variant of {@link BaseWsMethods}, built on the asynchronous Apache HttpClient 5.
+ * The requests are written and the responses read by a few I/O reactor threads, so a single 
+ * instance can keep thousands of calls in flight. The calls above the connection limits wait 
+ * in the connection pool, without holding a thread.
+ * <p>
+ * The methods return a {@link CompletableFuture} completed with the response, or completed 
+ * exceptionally with the exceptions thrown by {@link BaseWsMethods}: 
+ * {@link AuthorizationRequiredException} for 401, {@link OperationForbiddenException} for 403 and 
+ * {@link InvalidWsParamsException} for 412. The calls to the authenticated endpoint authenticate 
+ * again with {@link #getAuthenticationParams()} when the session expired and are retried once; 
+ * if that fails they complete with {@link ReAuthenticationException}. The calls refused at the same 
+ * time share a single login. Cancelling a future aborts 
+ * its request. The futures are completed on the I/O reactor threads, the dependent stages that 
+ * block should be run on another executor.
+ * 
+ * @author Teodor Baciu
+ */
+public abstract class AsyncWsMethods implements Closeable {
+
+	/**
+	 * The logger to be used.
+	 */
+	private static final Logger log = LoggerFactory.getLogger(AsyncWsMethods.class);
+
+	/**
+	 * Stores the name of the host that provides the webservices.
+	 */
+	protected String webserviceHost;
+
+	protected String publicWebserviceUri;
+
+	protected String authenticatedWebserviceUri;
+
+	protected String batchWebserviceUri;
+
+	protected String loginUri;
+
+	/**
+	 * The non-blocking http client used for webservice calls.
+	 */
+	private final CloseableHttpAsyncClient httpClient;
+
+	/**
+	 * Keeps the session cookie set by the login.
+	 */
+	private final BasicCookieStore cookieStore;
+
+	/**
+	 * Makes the concurrent calls refused by the server share a single login.
+	 */
+	private final SessionCoordinator sessionCoordinator = new SessionCoordinator();
+
+	/**
+	 * Constructor. Uses the default {@link WsTransportConfig}, which allows 200 connections, 100 of them 
+	 * to the same host, served by one I/O thread per processor.
+	 */
+	public AsyncWsMethods() {
+		this(new WsTransportConfig(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxConnectionsTotal the maximum number of connections open at the same time
+	 * @param maxConnectionsPerRoute the maximum number of connections open at the same time to a host
+	 * @param ioThreads the number of threads that read and write the connections
+	 */
+	public AsyncWsMethods(int maxConnectionsTotal, int maxConnectionsPerRoute, int ioThreads) {
+		this(connectionLimits(maxConnectionsTotal, maxConnectionsPerRoute), ioThreads);
+	}
+
+	/**
+	 * Constructor. Applies the same connection settings as the {@link WsTransport}s of {@link BaseWsMethods}, 
+	 * including {@link WsTransportConfig#setTrustAllCertificates(boolean)} for the development servers 
+	 * with self signed certificates.
+	 * 
+	 * @param config the connection settings
+	 * @param ioThreads the number of threads that read and write the connections
+	 */
+	public AsyncWsMethods(WsTransportConfig config, int ioThreads) {
+
+		if (config == null) {
+			throw new NullPointerException("The config parameter cannot be null");
+		}
+		if (ioThreads < 1) {
+			throw new IllegalArgumentException("ioThreads must be at least 1");
+		}
+
+		publicWebserviceUri = "/pws";
+		authenticatedWebserviceUri = "/aws";
+		batchWebserviceUri = "/bws";
+		loginUri = "/login";
+
+		PoolingAsyncClientConnectionManagerBuilder connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+				.setMaxConnTotal(config.getMaxConnectionsTotal())
+				.setMaxConnPerRoute(config.getMaxConnectionsPerRoute())
+				.setDefaultConnectionConfig(ConnectionConfig.custom()
+						.setConnectTimeout(Timeout.ofMilliseconds(config.getConnectTimeoutMillis()))
+						.build());
+		if (config.isTrustAllCertificates()) {
+			connectionManager.setTlsStrategy(ClientTlsStrategyBuilder.create()
+					.setSslContext(WebClientDevWrapper.trustAllSslContext())
+					.setHostnameVerifier(NoopHostnameVerifier.INSTANCE)
+					.build());
+		}
+
+		cookieStore = new BasicCookieStore();
+		httpClient = HttpAsyncClients.custom()
+				.setConnectionManager(connectionManager.build())
+				.setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(ioThreads).build())
+				.setDefaultCookieStore(cookieStore)
+				.evictIdleConnections(TimeValue.ofMilliseconds(config.getKeepAliveMillis()))
+				.build();
+		httpClient.start();
+	}
+
+	private static WsTransportConfig connectionLimits(int maxConnectionsTotal, int maxConnectionsPerRoute) {
+
+		if (maxConnectionsTotal < 1 || maxConnectionsPerRoute < 1) {
+			throw new IllegalArgumentException("The connection limits must be at least 1");
+		}
+
+		WsTransportConfig config = new WsTransportConfig();
+		config.setMaxConnectionsTotal(maxConnectionsTotal);
+		config.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+		return config;
+	}
+
+	/**
+	 * Calls the specified webservice that is available at the address specified with the publicWebserviceUri, 
+	 * without trying to re-authenticate if an authorization required is returned by the server.
+	 * 
+	 * @param moduleName the name of the module
+	 * @param op the operation within that module
+	 * @param wsParamsList a list containing the parameters
+	 * @return a future completed with the response
+	 */
+	protected CompletableFuture<String> callPublicWsOperation(String moduleName, String op, List<NameValuePair> wsParamsList) {
+		return post(webserviceHost + publicWebserviceUri, operationParams(moduleName, op, wsParamsList));
+	}
+
+	/**
+	 * Calls a webservice that might have required authentication first.
+	 * 
+	 * @param moduleName the name of the module
+	 * @param op the operation to call
+	 * @param wsParamsList a list containing the parameters
+	 * @return a future completed with the json result of the call
+	 */
+	protected CompletableFuture<String> callWsOperation(String moduleName, String op, List<NameValuePair> wsParamsList) {
+
+		String targetUrl = webserviceHost + authenticatedWebserviceUri;
+		List<NameValuePair> paramsList = operationParams(moduleName, op, wsParamsList);
+		return withReAuthentication(() -> post(targetUrl, paramsList), "Could not authenticate again for calling ws operation !");
+	}
+
+	/**
+	 * Sends several webservice calls, that might have required authentication first, in a single request.
+	 * 
+	 * @param calls the calls to send
+	 * @return a future completed with the results of the calls, in the order of the calls
+	 */
+	protected CompletableFuture<List<WsBatchResult>> callWsOperationBatch(List<WsBatchCall> calls) {
+
+		String targetUrl = webserviceHost + batchWebserviceUri;
+		List<NameValuePair> paramsList = WsBatchCall.toRequestParams(calls);
+		CompletableFuture<String> response = withReAuthentication(() -> post(targetUrl, paramsList), 
+				"Could not authenticate again for calling ws operation batch !");
+		return cancelling(response.thenApply(content -> WsBatchResult.fromResponse(content, calls.size())), response);
+	}
+
+	/**
+	 * Returns a list of name/value pairs that will be sent as authentication parameters.
+	 * 
+	 * @return a {@link List} containing {@link NameValuePair} objects.
+	 */
+	protected abstract List<NameValuePair> getAuthenticationParams();
+
+	/**
+	 * Tries to authenticate again this client session. The returned future is not completed exceptionally.
+	 * 
+	 * @return a future completed with true if successfully authenticated, false otherwise
+	 */
+	protected CompletableFuture<Boolean> reAuthenticate() {
+
+		CompletableFuture<Boolean> authenticated;
+		try {
+			authenticated = authenticate(getAuthenticationParams());
+		} catch (RuntimeException exc) {
+			log.error("Exception thrown during re-authentication", exc);
+			return CompletableFuture.completedFuture(false);
+		}
+
+		return authenticated.exceptionally(exc -> {
+			log.error("Exception thrown during re-authentication", exc);
+			return false;
+		});
+	}
+
+	/**
+	 * Sets after how long without calls the session is refreshed by authenticating again before 
+	 * the next call, instead of waiting for the server to refuse the calls. Should be a bit less 
+	 * than the idle time after which the server closes the sessions.
+	 * 
+	 * @param idle the idle time, 0 for refreshing the session only after the server refuses a call
+	 */
+	public void setSessionRefresh(long idle, TimeUnit unit) {
+		sessionCoordinator.setRefreshAfter(idle, unit);
+	}
+
+	/**
+	 * Tries to authenticate application on the server.
+	 * 
+	 * @return a future completed with true if authenticated, false if the server refused the login 
+	 * 		for another reason than the credentials, or completed exceptionally with 
+	 * 		{@link InvalidLoginCredentialsException} if the credentials are not valid
+	 */
+	public CompletableFuture<Boolean> authenticate(List<NameValuePair> authenticationParams) {
+
+		List<NameValuePair> paramsList = new ArrayList<NameValuePair>(authenticationParams);
+		paramsList.add(new BasicNameValuePair("only-send-http-response", "true"));
+
+		CompletableFuture<SimpleHttpResponse> exchange = execute(webserviceHost + loginUri, paramsList);
+		return cancelling(exchange.thenApply(response -> {
+
+			if (response.getCode() == 401) {
+				throw new CompletionException(new InvalidLoginCredentialsException("The username/password combination was not valid "));
+			}
+			if (response.getCode() != 200) {
+				return false;
+			}
+
+			sessionCoordinator.authenticated();
+			return true;
+
+		}), exchange);
+	}
+
+	/**
+	 * Stops the I/O threads and closes the connections.
+	 */
+	@Override
+	public void close() throws IOException {
+		httpClient.close(CloseMode.GRACEFUL);
+	}
+
+	public void setWebserviceHost(String webserviceHost) {
+		this.webserviceHost = webserviceHost;
+	}
+
+	public String getWebserviceHost() {
+		return webserviceHost;
+	}
+
+	public String getAuthenticatedWebserviceUri() {
+		return authenticatedWebserviceUri;
+	}
+
+	public void setAuthenticatedWebserviceUri(String authenticatedWebserviceUri) {
+		this.authenticatedWebserviceUri = authenticatedWebserviceUri;
+	}
+
+	public String getBatchWebserviceUri() {
+		return batchWebserviceUri;
+	}
+
+	public void setBatchWebserviceUri(String batchWebserviceUri) {
+		this.batchWebserviceUri = batchWebserviceUri;
+	}
+
+	/**
+	 * Executes the call and, if the server session expired, authenticates again and executes the call once more. 
+	 * The calls refused at the same time share a single login.
+	 */
+	private CompletableFuture<String> withReAuthentication(Supplier<CompletableFuture<String>> call, String failureMessage) {
+
+		CompletableFuture<String> result = new CompletableFuture<>();
+		// the exchange to cancel with the result; the shared logins are not cancelled
+		AtomicReference<CompletableFuture<?>> current = new AtomicReference<>();
+
+		Runnable send = () -> {
+
+			if (result.isDone()) {
+				return;
+			}
+
+			long sessionGeneration = sessionCoordinator.getGeneration();
+			CompletableFuture<String> first = send(call, result);
+			if (first == null) {
+				return;
+			}
+			current.set(first);
+			first.whenComplete((response, failure) -> {
+
+				if (failure == null) {
+					sessionCoordinator.used();
+					result.complete(response);
+					return;
+				}
+
+				Throwable cause = unwrap(failure);
+				if (!(cause instanceof AuthorizationRequiredException) || result.isDone()) {
+					result.completeExceptionally(cause);
+					return;
+				}
+
+				// the authorized session has expired on the server
+				sessionCoordinator.reAuthenticate(sessionGeneration, this::reAuthenticate).thenAccept(authenticated -> {
+
+					if (!authenticated) {
+						// could not authenticate again - are the credentials still good ?
+						result.completeExceptionally(new ReAuthenticationException(failureMessage));
+						return;
+					}
+					if (result.isDone()) {
+						return;
+					}
+
+					CompletableFuture<String> retry = send(call, result);
+					if (retry == null) {
+						return;
+					}
+					current.set(retry);
+					retry.whenComplete((retryResponse, retryFailure) -> {
+						if (retryFailure == null) {
+							sessionCoordinator.used();
+							result.complete(retryResponse);
+						} else {
+							result.completeExceptionally(unwrap(retryFailure));
+						}
+					});
+				});
+			});
+		};
+
+		if (sessionCoordinator.isRefreshDue()) {
+			sessionCoordinator.reAuthenticate(sessionCoordinator.getGeneration(), this::reAuthenticate).thenRun(send);
+		} else {
+			send.run();
+		}
+
+		result.whenComplete((response, failure) -> {
+			CompletableFuture<?> exchange = current.get();
+			if (result.isCancelled() && exchange != null) {
+				exchange.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Starts the call, completing the result exceptionally if the call throws instead of returning a future.
+	 * 
+	 * @return the future of the call or null if the call could not be started
+	 */
+	private static CompletableFuture<String> send(Supplier<CompletableFuture<String>> call, CompletableFuture<String> result) {
+
+		try {
+			return call.get();
+		} catch (RuntimeException exc) {
+			result.completeExceptionally(exc);
+			return null;
+		}
+	}
+
+	private static Throwable unwrap(Throwable failure) {
+		return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+	}
+
+	/**
+	 * Posts the parameters and checks the status of the response.
+	 * 
+	 * @return a future completed with the body of the response
+	 */
+	private CompletableFuture<String> post(String targetUrl, List<NameValuePair> paramsList) {
+
+		CompletableFuture<SimpleHttpResponse> exchange = execute(targetUrl, paramsList);
+		return cancelling(exchange.thenApply(response -> {
+
+			Exception error = WsResponseStatus.toException(response.getCode(), response.getReasonPhrase());
+			if (error != null) {
+				throw new CompletionException(error);
+			}
+
+			byte[] body = response.getBodyBytes();
+			if (body == null) {
+				return "";
+			}
+			ContentType contentType = response.getContentType();
+			Charset charset = contentType != null && contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+			return new String(body, charset);
+
+		}), exchange);
+	}
+
+	/**
+	 * Posts the parameters as an application/x-www-form-urlencoded body.
+	 */
+	private CompletableFuture<SimpleHttpResponse> execute(String targetUrl, List<NameValuePair> paramsList) {
+
+		byte[] form;
+		try {
+			form = WsRequestBody.ofForm(paramsList).toByteArray();
+		} catch (IOException exc) {
+			// the form is encoded in memory
+			throw new IllegalStateException(exc);
+		}
+
+		SimpleHttpRequest request = SimpleRequestBuilder.post(targetUrl)
+				.setBody(form, ContentType.APPLICATION_FORM_URLENCODED.withCharset(StandardCharsets.UTF_8))
+				.build();
+
+		CompletableFuture<SimpleHttpResponse> result = new CompletableFuture<>();
+		Future<SimpleHttpResponse> exchange = httpClient.execute(request, new FutureCallback<SimpleHttpResponse>() {
+
+			@Override
+			public void completed(SimpleHttpResponse response) {
+				result.complete(response);
+			}
+
+			@Override
+			public void failed(Exception exc) {
+				result.completeExceptionally(exc);
+			}
+
+			@Override
+			public void cancelled() {
+				result.cancel(false);
+			}
+		});
+
+		return cancelling(result, exchange);
+	}
+
+	/**
+	 * Cancels the source when the dependent future is cancelled.
+	 */
+	private static <T> CompletableFuture<T> cancelling(CompletableFuture<T> dependent, Future<?> source) {
+
+		dependent.whenComplete((value, failure) -> {
+			if (dependent.isCancelled()) {
+				source.cancel(true);
+			}
+		});
+		return dependent;
+	}
+
+	private static List<NameValuePair> operationParams(String moduleName, String op, List<NameValuePair> wsParamsList) {
+
+		List<NameValuePair> paramsList = new ArrayList<NameValuePair>(wsParamsList.size() + 2);
+		paramsList.add(new BasicNameValuePair("module", moduleName));
+		paramsList.add(new BasicNameValuePair("op", op));
+		paramsList.addAll(wsParamsList);
+		return paramsList;
+	}
+}
@@ -16,30 +16,28 @@ limitations under the License.
 
 package ro.teodorbaciu.commons.client.ws;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.HttpCookie;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.CookieStore;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.cookie.Cookie;
 import org.apache.http.entity.mime.MultipartEntity;
 import org.apache.http.entity.mime.content.FileBody;
 import org.apache.http.entity.mime.content.StringBody;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.cookie.BasicClientCookie;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.protocol.BasicHttpContext;
-import org.apache.http.protocol.HttpContext;
-import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,14 +49,31 @@ import ro.teodorbaciu.commons.client.ws.exceptions.OperationForbiddenException;
 import ro.teodorbaciu.commons.client.ws.exceptions.ReAuthenticationException;
 import ro.teodorbaciu.commons.client.ws.progress.MultipartEntityWithProgressMonitoring;
 import ro.teodorbaciu.commons.client.ws.progress.WriteListener;
+import ro.teodorbaciu.commons.client.ws.transport.Http2Transport;
+import ro.teodorbaciu.commons.client.ws.transport.HttpClient4Transport;
+import ro.teodorbaciu.commons.client.ws.transport.HttpClient5Transport;
+import ro.teodorbaciu.commons.client.ws.transport.WsRequest;
+import ro.teodorbaciu.commons.client.ws.transport.WsRequestBody;
+import ro.teodorbaciu.commons.client.ws.transport.WsResponse;
+import ro.teodorbaciu.commons.client.ws.transport.WsTransport;
+import ro.teodorbaciu.commons.client.ws.transport.WsTransportConfig;
 import ro.teodorbaciu.commons.client.ws.util.WebClientDevWrapper;
 
 /**
  * Base class for webservice methods.
+ * <p>
+ * The requests are sent through a {@link WsTransport}. Unless another one is set with 
+ * {@link #setTransport(WsTransport)}, the calls use a {@link HttpClient5Transport}, which keeps 
+ * the connections to the webservice host alive in a pool and can be used concurrently. 
+ * With a server that supports HTTP/2, a {@link Http2Transport} multiplexes the concurrent calls 
+ * on a single connection. A call can be cancelled through the {@link WsRequestHandle} passed to it.
+ * <p>
+ * When the server session expires, the concurrent calls refused by the server wait for a single 
+ * login and are sent again after it.
  * 
  * @author Teodor Baciu
  */
-public abstract class BaseWsMethods {
+public abstract class BaseWsMethods implements Closeable {
 
 	/**
 	 * The logger to be used.
@@ -71,14 +86,9 @@ public abstract class BaseWsMethods {
 	protected String webserviceHost;
 
 	/**
-	 * The http client used for webservice calls.
+	 * The transport used for webservice calls, created on the first call if not set.
 	 */
-	protected DefaultHttpClient wsHttpClient;
-
-	/**
-	 * The http context for which the calls are made.
-	 */
-	protected HttpContext httpContext;
+	private volatile WsTransport transport;
 
 	/**
 	 * Ignores https warnings and allows the communication with a server that provides untrusted certificates.
@@ -89,6 +99,18 @@ public abstract class BaseWsMethods {
 
 	protected String publicWebserviceUri;
 
+	protected String batchWebserviceUri;
+
+	/**
+	 * The requests being executed, aborted by {@link #cancelCurrentRequest()}.
+	 */
+	private final Set<WsRequest> setRunningRequests = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Makes the concurrent calls refused by the server share a single login.
+	 */
+	private final SessionCoordinator sessionCoordinator = new SessionCoordinator();
+
 	/**
 	 * Constructor.
 	 */
@@ -96,6 +118,7 @@ public abstract class BaseWsMethods {
 
 		publicWebserviceUri = "/pws";
 		authenticatedWebserviceUri = "/aws";
+		batchWebserviceUri = "/bws";
 
 	}
 
@@ -111,17 +134,25 @@ public abstract class BaseWsMethods {
 	protected String callPublicWsOperation(String moduleName, String op, List<NameValuePair> wsParamsList)
 			throws AuthorizationRequiredException, OperationForbiddenException, 
 				UnsupportedEncodingException, ClientProtocolException, IOException {
+		return callPublicWsOperation(moduleName, op, wsParamsList, null);
+	}
+
+	/**
+	 * Calls the specified public webservice, allowing the call to be cancelled through the handle.
+	 * 
+	 * @param moduleName the name of the module
+	 * @param op the operation within that module
+	 * @param wsParamsList a list containing the parameters
+	 * @param handle the handle that cancels the call, can be null
+	 * @return a String representing the response
+	 */
+	protected String callPublicWsOperation(String moduleName, String op, List<NameValuePair> wsParamsList, WsRequestHandle handle)
+			throws AuthorizationRequiredException, OperationForbiddenException, 
+				UnsupportedEncodingException, ClientProtocolException, IOException {
 
 		// form the request target
 		String targetUrl = webserviceHost + publicWebserviceUri;
-
-		try {
-
-			return callServer(moduleName, op, targetUrl, wsParamsList);
-
-		} finally {
-			currentRequest = null;
-		}
+		return callServer(moduleName, op, targetUrl, wsParamsList, handle);
 	}
 
 	/**
@@ -130,42 +161,10 @@ public abstract class BaseWsMethods {
 	public byte[] executeHttpGet(String uri) throws Exception {
 
 		String targetUrl = webserviceHost + uri;
-		HttpGet get = new HttpGet(targetUrl);
-
-		HttpResponse response = wsHttpClient.execute(get);
-		int statusCode = response.getStatusLine().getStatusCode();
-		String reasonPhrase = response.getStatusLine().getReasonPhrase();
-
-		if (statusCode == 401) {
-
-			get.abort();// release resources
-			throw new AuthorizationRequiredException("You need to authenticate first !");
-
-		} else if (statusCode == 412) {
-
-			get.abort();
-			throw new InvalidWsParamsException("Error calling http get because of invalid parameters ! Server returned: " + reasonPhrase);
-
-		} else if (statusCode == 403) {
-
-			get.abort();
-			throw new OperationForbiddenException("The server refused to execute the specified operation ! " 
-					+ "Server returned: " + reasonPhrase);
-
-		} else if (statusCode != 200) {
-
-			get.abort();// release resources
-			throw new RuntimeException("Could not get http response ! Status:" + statusCode + " Server returned: " + reasonPhrase);
-
-		}
+		WsResponse response = getTransport().execute(WsRequest.get(targetUrl));
+		WsResponseStatus.check(response.getStatusCode(), response.getReasonPhrase());
 
-		// get the response content
-		HttpEntity entity = response.getEntity();
-		if (entity == null) {
-			throw new RuntimeException("Could not get http response ! Server returned: " + reasonPhrase);
-		}
-
-		return EntityUtils.toByteArray(entity);
+		return response.getBody();
 
 	}
 
@@ -177,22 +176,40 @@ public abstract class BaseWsMethods {
 	public String callWsOperationMultipartPost(String moduleName, String op, List<NameValuePair> wsParamsList, File fileToUpload,
 			WriteListener writeListener) throws AuthorizationRequiredException, OperationForbiddenException, ReAuthenticationException,
 			UnsupportedEncodingException, ClientProtocolException, IOException {
+		return callWsOperationMultipartPost(moduleName, op, wsParamsList, fileToUpload, writeListener, null);
+	}
+
+	/**
+	 * Does a multipart server request that can be cancelled through the handle, for example 
+	 * for cancelling the upload.
+	 * 
+	 * @param handle the handle that cancels the call, can be null
+	 * @return the id of the uploaded file
+	 */
+	public String callWsOperationMultipartPost(String moduleName, String op, List<NameValuePair> wsParamsList, File fileToUpload,
+			WriteListener writeListener, WsRequestHandle handle) throws AuthorizationRequiredException, OperationForbiddenException, 
+			ReAuthenticationException, UnsupportedEncodingException, ClientProtocolException, IOException {
 
 		String targetUrl = webserviceHost + authenticatedWebserviceUri;
+		long sessionGeneration = beginSessionCall();
 
 		try {
 
-			return callServerMultipartPost(moduleName, op, targetUrl, wsParamsList, fileToUpload, writeListener);
+			String response = callServerMultipartPost(moduleName, op, targetUrl, wsParamsList, fileToUpload, writeListener, handle);
+			sessionCoordinator.used();
+			return response;
 
 		} catch (AuthorizationRequiredException uae) {
 
 			// if this thrown, it means that the authorized
 			// session has expired on the server and we need to authenticate
 			// again
-			if (reAuthenticate()) {
+			if (reAuthenticate(sessionGeneration)) {
 
 				// re-authentication successful, call the operation again
-				return callServerMultipartPost(moduleName, op, targetUrl, wsParamsList, fileToUpload, writeListener);
+				String response = callServerMultipartPost(moduleName, op, targetUrl, wsParamsList, fileToUpload, writeListener, handle);
+				sessionCoordinator.used();
+				return response;
 
 			} else {
 
@@ -200,17 +217,22 @@ public abstract class BaseWsMethods {
 				throw new ReAuthenticationException("Could not authenticate again for calling multipart ws operation !");
 
 			}
-		} finally {
-			currentRequest = null;
 		}
 
 	}
 
 	/**
-	 * Cancels the current execution. Useful for cancelling uploads.
+	 * Cancels all the requests being executed.
+	 * 
+	 * @deprecated the calls can be executed concurrently, cancel a single call through 
+	 * 		the {@link WsRequestHandle} passed to it
 	 */
+	@Deprecated
 	public void cancelCurrentRequest() {
-		currentRequest.abort();
+
+		for (WsRequest request : setRunningRequests) {
+			request.abort();
+		}
 	}
 
 	/**
@@ -222,23 +244,44 @@ public abstract class BaseWsMethods {
 	 */
 	protected String callWsOperation(String moduleName, String op, List<NameValuePair> wsParamsList) throws AuthorizationRequiredException,
 			OperationForbiddenException, ReAuthenticationException, UnsupportedEncodingException, ClientProtocolException, IOException {
+		return callWsOperation(moduleName, op, wsParamsList, null);
+	}
+
+	/**
+	 * Calls a webservice that might have required authentication first, allowing the call
+	 * to be cancelled through the handle.
+	 * 
+	 * @param moduleName the name of the module
+	 * @param op the operation to call
+	 * @param wsParamsList a list containing the parameters
+	 * @param handle the handle that cancels the call, can be null
+	 * @return the json result of the call
+	 */
+	protected String callWsOperation(String moduleName, String op, List<NameValuePair> wsParamsList, WsRequestHandle handle) 
+			throws AuthorizationRequiredException, OperationForbiddenException, ReAuthenticationException, 
+				UnsupportedEncodingException, ClientProtocolException, IOException {
 
 		// form the request target
 		String targetUrl = webserviceHost + authenticatedWebserviceUri;
+		long sessionGeneration = beginSessionCall();
 
 		try {
 
-			return callServer(moduleName, op, targetUrl, wsParamsList);
+			String response = callServer(moduleName, op, targetUrl, wsParamsList, handle);
+			sessionCoordinator.used();
+			return response;
 
 		} catch (AuthorizationRequiredException uae) {
 
 			// if this thrown, it means that the authorized
 			// session has expired on the server and we need to authenticate
 			// again
-			if (reAuthenticate()) {
+			if (reAuthenticate(sessionGeneration)) {
 
 				// re-authentication successful, call the operation again
-				return callServer(moduleName, op, targetUrl, wsParamsList);
+				String response = callServer(moduleName, op, targetUrl, wsParamsList, handle);
+				sessionCoordinator.used();
+				return response;
 
 			} else {
 
@@ -246,11 +289,62 @@ public abstract class BaseWsMethods {
 				throw new ReAuthenticationException("Could not authenticate again for calling ws operation !");
 
 			}
-		} finally {
-			currentRequest = null;
 		}
 	}
 
+	/**
+	 * Sends several webservice calls, that might have required authentication first, 
+	 * in a single request. The server executes the calls marked as independent in parallel.
+	 * 
+	 * @param calls the calls to send
+	 * @return the results of the calls, in the order of the calls
+	 */
+	protected List<WsBatchResult> callWsOperationBatch(List<WsBatchCall> calls) throws AuthorizationRequiredException,
+			OperationForbiddenException, ReAuthenticationException, UnsupportedEncodingException, ClientProtocolException, IOException {
+		return callWsOperationBatch(calls, null);
+	}
+
+	/**
+	 * Sends several webservice calls in a single request that can be cancelled through the handle.
+	 * 
+	 * @param calls the calls to send
+	 * @param handle the handle that cancels the request, can be null
+	 * @return the results of the calls, in the order of the calls
+	 */
+	protected List<WsBatchResult> callWsOperationBatch(List<WsBatchCall> calls, WsRequestHandle handle) throws AuthorizationRequiredException,
+			OperationForbiddenException, ReAuthenticationException, UnsupportedEncodingException, ClientProtocolException, IOException {
+
+		// form the request target
+		String targetUrl = webserviceHost + batchWebserviceUri;
+
+		List<NameValuePair> paramsList = WsBatchCall.toRequestParams(calls);
+		long sessionGeneration = beginSessionCall();
+
+		String response;
+		try {
+
+			response = callServerBatch(targetUrl, paramsList, handle);
+
+		} catch (AuthorizationRequiredException uae) {
+
+			// the authorized session has expired on the server
+			if (reAuthenticate(sessionGeneration)) {
+
+				// re-authentication successful, send the batch again
+				response = callServerBatch(targetUrl, paramsList, handle);
+
+			} else {
+
+				// could not authenticate again - are the credentials still good ?
+				throw new ReAuthenticationException("Could not authenticate again for calling ws operation batch !");
+
+			}
+		}
+
+		sessionCoordinator.used();
+		return WsBatchResult.fromResponse(response, calls.size());
+	}
+
 	/**
 	 * Returns a list of name/value pairs that will be sent as authentication parameters.
 	 * 
@@ -277,6 +371,43 @@ public abstract class BaseWsMethods {
 		}
 	}
 
+	/**
+	 * Sets after how long without calls the session is refreshed by authenticating again before 
+	 * the next call, instead of waiting for the server to refuse the calls. Should be a bit less 
+	 * than the idle time after which the server closes the sessions.
+	 * 
+	 * @param idle the idle time, 0 for refreshing the session only after the server refuses a call
+	 */
+	public void setSessionRefresh(long idle, TimeUnit unit) {
+		sessionCoordinator.setRefreshAfter(idle, unit);
+	}
+
+	/**
+	 * Refreshes the session if it is due.
+	 * 
+	 * @return the session generation to pass to {@link #reAuthenticate(long)} if the call is refused
+	 */
+	private long beginSessionCall() {
+
+		long sessionGeneration = sessionCoordinator.getGeneration();
+		if (sessionCoordinator.isRefreshDue()) {
+			reAuthenticate(sessionGeneration);
+			sessionGeneration = sessionCoordinator.getGeneration();
+		}
+		return sessionGeneration;
+	}
+
+	/**
+	 * Authenticates again after a call was refused, joining the concurrent calls that do the same: 
+	 * a single login is made, or none if the session was renewed since the call was sent.
+	 * 
+	 * @param sessionGeneration the session generation read before sending the call
+	 * @return true if the session was renewed
+	 */
+	private boolean reAuthenticate(long sessionGeneration) {
+		return sessionCoordinator.reAuthenticate(sessionGeneration, () -> CompletableFuture.completedFuture(reAuthenticate())).join();
+	}
+
 	/**
 	 * Tries to authenticate application on the server.
 	 * 
@@ -285,26 +416,18 @@ public abstract class BaseWsMethods {
 	public boolean authenticate(List<NameValuePair> authenticationParams) throws InvalidLoginCredentialsException,
 			MaxFailedLoginsExceededException, UnsupportedEncodingException, ClientProtocolException, IOException {
 
-		httpContext = new BasicHttpContext();
-
 		// form the request
 		String targetUrl = webserviceHost + "/login";
-		HttpPost post = new HttpPost(targetUrl);
 		List<NameValuePair> paramsList = new ArrayList<NameValuePair>();
 		paramsList.addAll(authenticationParams);
 
 		paramsList.add(new BasicNameValuePair("only-send-http-response", "true"));
 
-		UrlEncodedFormEntity formEntity = new UrlEncodedFormEntity(paramsList, "UTF-8");
-		post.setEntity(formEntity);
-
 		// get the response
-		HttpResponse response = wsHttpClient.execute(post, httpContext);
-		int statusCode = response.getStatusLine().getStatusCode();
+		WsResponse response = getTransport().execute(WsRequest.post(targetUrl, WsRequestBody.ofForm(paramsList)));
+		int statusCode = response.getStatusCode();
 		if (statusCode != 200) {
 
-			post.abort();
-
 			if (statusCode == 401) {
 				throw new InvalidLoginCredentialsException("The username/password combination was not valid ");
 			}
@@ -312,9 +435,7 @@ public abstract class BaseWsMethods {
 			return false;
 		}
 
-		post.abort();// close the connection
-
-		// getCookie();
+		sessionCoordinator.authenticated();
 		return true;
 
 	}
@@ -326,25 +447,20 @@ public abstract class BaseWsMethods {
 	 */
 	public Cookie getCookie() {
 
-		CookieStore cookieStore = wsHttpClient.getCookieStore();
-		if (cookieStore == null) {
-			return null;
-		}
-
-		List<Cookie> listCookies = cookieStore.getCookies();
+		List<HttpCookie> listCookies = getTransport().getCookies();
 		if (listCookies.size() == 0) {
 			return null;
 		}
 
-		return listCookies.get(listCookies.size() - 1);
+		HttpCookie last = listCookies.get(listCookies.size() - 1);
+		BasicClientCookie cookie = new BasicClientCookie(last.getName(), last.getValue());
+		cookie.setDomain(last.getDomain());
+		cookie.setPath(last.getPath());
+		cookie.setSecure(last.getSecure());
+		return cookie;
 
 	}
 
-	/**
-	 * The current request being executed.
-	 */
-	private HttpUriRequest currentRequest;
-
 	/**
 	 * Handles the communication details with the server.
 	 * 
@@ -356,13 +472,9 @@ public abstract class BaseWsMethods {
 	 * @throws Exception if an error occurs
 	 */
 	private String callServerMultipartPost(String moduleName, String op, String targetUrl, List<NameValuePair> wsParamsList, File fileToUpload, 
-			WriteListener writeListener) throws AuthorizationRequiredException, OperationForbiddenException, 
+			WriteListener writeListener, WsRequestHandle handle) throws AuthorizationRequiredException, OperationForbiddenException, 
 				UnsupportedEncodingException, ClientProtocolException, IOException {
 
-		if (currentRequest != null) {
-			throw new RuntimeException("Another webservice request is still executing !");
-		}
-
 		MultipartEntity reqEntity = null;
 		if (writeListener != null) {
 			reqEntity = new MultipartEntityWithProgressMonitoring(writeListener);
@@ -376,59 +488,47 @@ public abstract class BaseWsMethods {
 		reqEntity.addPart("data", new FileBody(fileToUpload));
 
 		String postUrl = targetUrl + "?module=" + moduleName + "&op=" + op;
-		HttpPost post = new HttpPost(postUrl);
-		post.setEntity(reqEntity);
-
-		return processServerPost(post);
+		return processServerPost(WsRequest.post(postUrl, new MultipartBody(reqEntity)), handle);
 	}
 
 	/**
 	 * Executes the http post action and interprets the results.
 	 * 
 	 * @param post the http post to execute
+	 * @param handle the handle that cancels the post, can be null
 	 * @return the String received from the server.
 	 */
-	private String processServerPost(HttpPost post)
+	private String processServerPost(WsRequest post, WsRequestHandle handle)
 			throws IOException, ClientProtocolException, AuthorizationRequiredException, 
 				InvalidWsParamsException, OperationForbiddenException {
 
-		// get the response
-		currentRequest = post;
-		HttpResponse response = wsHttpClient.execute(post);
-		int statusCode = response.getStatusLine().getStatusCode();
-		String reasonPhrase = response.getStatusLine().getReasonPhrase();
-
-		if (statusCode == 401) {
-
-			post.abort();// release resources
-			throw new AuthorizationRequiredException("You need to authenticate first !");
-
-		} else if (statusCode == 412) {
-
-			post.abort();
-			throw new InvalidWsParamsException("Error calling webservice because of invalid parameters ! " 
-					+ "Server returned: " + reasonPhrase);
-
-		} else if (statusCode == 403) {
-
-			post.abort();
-			throw new OperationForbiddenException("The server refused to execute the specified operation !  " 
-					+ "Server returned: " + reasonPhrase);
-
-		} else if (statusCode != 200) {
-
-			post.abort();// release resources
-			throw new RuntimeException("Could not get webservice response ! Status:" + statusCode + " Server returned: " + reasonPhrase);
-
+		setRunningRequests.add(post);
+		if (handle != null) {
+			handle.attach(post);
 		}
 
-		// get the response content
-		HttpEntity entity = response.getEntity();
-		if (entity == null) {
-			throw new RuntimeException("Could not get webservice response !  Server returned: " + reasonPhrase);
+		try {
+			return executeServerPost(post);
+		} finally {
+			setRunningRequests.remove(post);
+			if (handle != null) {
+				handle.detach(post);
+			}
 		}
+	}
+
+	/**
+	 * Executes the http post and reads the response.
+	 */
+	private String executeServerPost(WsRequest post)
+			throws IOException, ClientProtocolException, AuthorizationRequiredException, 
+				InvalidWsParamsException, OperationForbiddenException {
 
-		return EntityUtils.toString(entity, "UTF-8");
+		// get the response
+		WsResponse response = getTransport().execute(post);
+		WsResponseStatus.check(response.getStatusCode(), response.getReasonPhrase());
+
+		return response.getBodyAsString();
 	}
 
 	/**
@@ -438,9 +538,10 @@ public abstract class BaseWsMethods {
 	 * @param op the operation to call
 	 * @param targetUrl the url to post the call
 	 * @param wsParamsList contains the parameters to submit for the webservice call
+	 * @param handle the handle that cancels the call, can be null
 	 * @return the result of the call
 	 */
-	private String callServer(String moduleName, String op, String targetUrl, List<NameValuePair> wsParamsList)
+	private String callServer(String moduleName, String op, String targetUrl, List<NameValuePair> wsParamsList, WsRequestHandle handle)
 			throws AuthorizationRequiredException, OperationForbiddenException, 
 				UnsupportedEncodingException, ClientProtocolException, IOException {
 
@@ -448,23 +549,104 @@ public abstract class BaseWsMethods {
 		paramsList.add(new BasicNameValuePair("module", moduleName));
 		paramsList.add(new BasicNameValuePair("op", op));
 		paramsList.addAll(wsParamsList);
-		UrlEncodedFormEntity formEntity = new UrlEncodedFormEntity(paramsList, "UTF-8");
 
-		HttpPost post = new HttpPost(targetUrl);
-		post.setEntity(formEntity);
-		return processServerPost(post);
+		return processServerPost(WsRequest.post(targetUrl, WsRequestBody.ofForm(paramsList)), handle);
+
+	}
+
+	/**
+	 * Posts the parameters of a batch of calls.
+	 * 
+	 * @param targetUrl the url to post the batch
+	 * @param paramsList contains the encoded calls
+	 * @param handle the handle that cancels the batch, can be null
+	 * @return the encoded results of the calls
+	 */
+	private String callServerBatch(String targetUrl, List<NameValuePair> paramsList, WsRequestHandle handle)
+			throws AuthorizationRequiredException, OperationForbiddenException, 
+				UnsupportedEncodingException, ClientProtocolException, IOException {
+
+		return processServerPost(WsRequest.post(targetUrl, WsRequestBody.ofForm(paramsList)), handle);
+
+	}
+
+	/**
+	 * Creates a {@link HttpClient5Transport} that keeps at most the specified number of connections 
+	 * alive and uses it for making the webservice calls.
+	 * 
+	 * @param maxConnectionsTotal the maximum number of connections open at the same time
+	 * @param maxConnectionsPerRoute the maximum number of connections open at the same time to a host
+	 * @return the created transport
+	 */
+	public HttpClient5Transport usePooledHttpClient(int maxConnectionsTotal, int maxConnectionsPerRoute) {
+
+		WsTransportConfig config = new WsTransportConfig();
+		config.setMaxConnectionsTotal(maxConnectionsTotal);
+		config.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+		config.setTrustAllCertificates(allowUntruestedHttpsServer);
 
+		HttpClient5Transport pooledTransport = new HttpClient5Transport(config);
+		setTransport(pooledTransport);
+		return pooledTransport;
 	}
 
 	/**
-	 * Sets the http client to use for making the webservice calls.
+	 * Sets the http client to use for making the webservice calls. The calls can only be
+	 * made concurrently if the connection manager of the client is thread-safe.
+	 * 
+	 * @deprecated set a {@link WsTransport} with {@link #setTransport(WsTransport)}, 
+	 * 		for example a {@link HttpClient4Transport} wrapping the client
 	 */
+	@Deprecated
 	public void setWsHttpClient(DefaultHttpClient wsHttpClient) {
 
 		if (allowUntruestedHttpsServer) {
-			this.wsHttpClient = (DefaultHttpClient) WebClientDevWrapper.wrapClient(wsHttpClient);
+			setTransport(new HttpClient4Transport(WebClientDevWrapper.wrapClient(wsHttpClient)));
 		} else {
-			this.wsHttpClient = wsHttpClient;
+			setTransport(new HttpClient4Transport(wsHttpClient));
+		}
+	}
+
+	/**
+	 * Sets the transport used for making the webservice calls. The previous transport is not closed.
+	 */
+	public void setTransport(WsTransport transport) {
+
+		if (transport == null) {
+			throw new NullPointerException("transport");
+		}
+		this.transport = transport;
+	}
+
+	/**
+	 * Returns the transport used for making the webservice calls, creating a 
+	 * {@link HttpClient5Transport} with the default settings if none was set.
+	 */
+	public WsTransport getTransport() {
+
+		WsTransport current = transport;
+		if (current == null) {
+			synchronized (this) {
+				if (transport == null) {
+					WsTransportConfig config = new WsTransportConfig();
+					config.setTrustAllCertificates(allowUntruestedHttpsServer);
+					transport = new HttpClient5Transport(config);
+				}
+				current = transport;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Closes the transport and its connections.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		WsTransport current = transport;
+		if (current != null) {
+			current.close();
 		}
 	}
 
@@ -488,8 +670,43 @@ public abstract class BaseWsMethods {
 		this.authenticatedWebserviceUri = authenticatedWebserviceUri;
 	}
 
+	public String getBatchWebserviceUri() {
+		return batchWebserviceUri;
+	}
+
+	public void setBatchWebserviceUri(String batchWebserviceUri) {
+		this.batchWebserviceUri = batchWebserviceUri;
+	}
+
 	public boolean isAllowUntruestedHttpsServer() {
 		return allowUntruestedHttpsServer;
 	}
 
+	/**
+	 * Streams a multipart entity as the body of a request.
+	 */
+	private static final class MultipartBody extends WsRequestBody {
+
+		private final MultipartEntity entity;
+
+		MultipartBody(MultipartEntity entity) {
+			this.entity = entity;
+		}
+
+		@Override
+		public String getContentType() {
+			return entity.getContentType().getValue();
+		}
+
+		@Override
+		public long getContentLength() {
+			return entity.getContentLength();
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			entity.writeTo(out);
+		}
+	}
+
 }
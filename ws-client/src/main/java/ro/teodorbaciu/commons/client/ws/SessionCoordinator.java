@@ -0,0 +1,140 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Coordinates the logins of the concurrent calls sharing a server session. When the session 
+ * expires, the calls that were refused join a single login and are retried after it; a call 
+ * refused before a login that completed since it was sent is retried without logging in again.
+ * <p>
+ * The session can also be refreshed before the calls when it has not been used for a while, 
+ * so that a burst of calls after a pause does not start by being refused by the server.
+ * 
+ * @author Teodor Baciu
+ */
+final class SessionCoordinator {
+
+	private final Object lock = new Object();
+
+	/**
+	 * Incremented by every successful login.
+	 */
+	private volatile long generation;
+
+	/**
+	 * The login in progress, null if there is none.
+	 */
+	private CompletableFuture<Boolean> pendingLogin;
+
+	private volatile long lastUseNanos;
+
+	private volatile long refreshAfterNanos;
+
+	/**
+	 * Returns the number of successful logins, read before sending a call so that 
+	 * a refused call can tell whether the session was renewed since.
+	 */
+	long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Records a successful login.
+	 */
+	void authenticated() {
+
+		synchronized (lock) {
+			generation++;
+		}
+		used();
+	}
+
+	/**
+	 * Records a call accepted by the server in the current session.
+	 */
+	void used() {
+		lastUseNanos = System.nanoTime();
+	}
+
+	/**
+	 * Sets after how long without being used the session is refreshed before a call.
+	 * 
+	 * @param idle the idle time, 0 for never refreshing the session before it expires
+	 */
+	void setRefreshAfter(long idle, TimeUnit unit) {
+
+		if (idle < 0) {
+			throw new IllegalArgumentException("The idle time cannot be negative");
+		}
+		refreshAfterNanos = unit.toNanos(idle);
+	}
+
+	/**
+	 * Returns true if a session was opened and it should be refreshed before the next call.
+	 */
+	boolean isRefreshDue() {
+
+		long refreshAfter = refreshAfterNanos;
+		return refreshAfter > 0 && generation > 0 && System.nanoTime() - lastUseNanos > refreshAfter;
+	}
+
+	/**
+	 * Logs in again, unless a login is in progress, which is joined, or a login succeeded 
+	 * since the observed generation. The login is started by the calling thread and may 
+	 * complete on it.
+	 * 
+	 * @param observedGeneration the generation read before sending the refused call
+	 * @param login starts the login and returns its outcome
+	 * @return a future completed with true if the session was renewed, never completed exceptionally
+	 */
+	CompletableFuture<Boolean> reAuthenticate(long observedGeneration, Supplier<? extends CompletionStage<Boolean>> login) {
+
+		CompletableFuture<Boolean> result;
+		synchronized (lock) {
+
+			if (generation != observedGeneration) {
+				return CompletableFuture.completedFuture(true);
+			}
+			if (pendingLogin != null) {
+				return pendingLogin;
+			}
+
+			result = new CompletableFuture<>();
+			pendingLogin = result;
+		}
+
+		CompletionStage<Boolean> outcome;
+		try {
+			outcome = login.get();
+		} catch (RuntimeException exc) {
+			outcome = CompletableFuture.completedFuture(false);
+		}
+
+		outcome.whenComplete((authenticated, failure) -> {
+			synchronized (lock) {
+				pendingLogin = null;
+			}
+			result.complete(failure == null && Boolean.TRUE.equals(authenticated));
+		});
+		return result;
+	}
+}
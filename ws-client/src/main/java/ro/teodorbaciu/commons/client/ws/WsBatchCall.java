@@ -0,0 +1,100 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+
+import ro.teodorbaciu.commons.ws.transfer.batch.BatchProtocol;
+
+/**
+ * A webservice call to be sent together with other calls in a single request.
+ * 
+ * @author Teodor Baciu
+ */
+public class WsBatchCall {
+
+	private final String moduleName;
+
+	private final String op;
+
+	private final List<NameValuePair> wsParamsList;
+
+	/**
+	 * Flag that indicates if the server can execute the call in parallel with the other calls.
+	 */
+	private final boolean independent;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param moduleName the name of the module
+	 * @param op the operation within that module
+	 * @param wsParamsList a list containing the parameters
+	 * @param independent true if the call does not depend on the other calls in the batch
+	 */
+	public WsBatchCall(String moduleName, String op, List<NameValuePair> wsParamsList, boolean independent) {
+		this.moduleName = moduleName;
+		this.op = op;
+		this.wsParamsList = wsParamsList;
+		this.independent = independent;
+	}
+
+	/**
+	 * Encodes the calls as the parameters of a batch request, as described by {@link BatchProtocol}.
+	 * 
+	 * @param calls the calls to send
+	 * @return the parameters of the request
+	 */
+	static List<NameValuePair> toRequestParams(List<WsBatchCall> calls) {
+
+		List<NameValuePair> paramsList = new ArrayList<NameValuePair>();
+		paramsList.add(new BasicNameValuePair(BatchProtocol.PARAM_BATCH_SIZE, String.valueOf(calls.size())));
+		for (int i = 0; i < calls.size(); i++) {
+
+			WsBatchCall call = calls.get(i);
+			paramsList.add(new BasicNameValuePair(BatchProtocol.callParameterName(i, BatchProtocol.CALL_PARAM_MODULE), call.getModuleName()));
+			paramsList.add(new BasicNameValuePair(BatchProtocol.callParameterName(i, BatchProtocol.CALL_PARAM_OPERATION), call.getOp()));
+			paramsList.add(new BasicNameValuePair(BatchProtocol.callParameterName(i, BatchProtocol.CALL_PARAM_INDEPENDENT), 
+					String.valueOf(call.isIndependent())));
+
+			for (NameValuePair pair : call.getWsParamsList()) {
+				paramsList.add(new BasicNameValuePair(BatchProtocol.operationParameterName(i, pair.getName()), pair.getValue()));
+			}
+		}
+		return paramsList;
+	}
+
+	public String getModuleName() {
+		return moduleName;
+	}
+
+	public String getOp() {
+		return op;
+	}
+
+	public List<NameValuePair> getWsParamsList() {
+		return wsParamsList;
+	}
+
+	public boolean isIndependent() {
+		return independent;
+	}
+}
@@ -0,0 +1,114 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ro.teodorbaciu.commons.client.ws.exceptions.AuthorizationRequiredException;
+import ro.teodorbaciu.commons.client.ws.exceptions.InvalidWsParamsException;
+import ro.teodorbaciu.commons.client.ws.exceptions.OperationForbiddenException;
+import ro.teodorbaciu.commons.ws.transfer.batch.BatchProtocol;
+
+/**
+ * The result of a call sent as part of a batch.
+ * 
+ * @author Teodor Baciu
+ */
+public class WsBatchResult {
+
+	/**
+	 * The http status code the server associated with the result of the call.
+	 */
+	private final int statusCode;
+
+	/**
+	 * The content returned by the call.
+	 */
+	private final String content;
+
+	/**
+	 * Constructor.
+	 */
+	public WsBatchResult(int statusCode, String content) {
+		this.statusCode = statusCode;
+		this.content = content;
+	}
+
+	/**
+	 * Decodes the response of a batch request.
+	 * 
+	 * @param response the response sent by the server
+	 * @param callCount the number of calls in the batch
+	 * @return the results of the calls, in the order of the calls
+	 */
+	static List<WsBatchResult> fromResponse(String response, int callCount) {
+
+		List<WsBatchResult> results = new ArrayList<WsBatchResult>(callCount);
+		for (BatchProtocol.Part part : BatchProtocol.decodeResponse(response)) {
+			results.add(new WsBatchResult(part.getStatusCode(), part.getContent()));
+		}
+
+		if (results.size() != callCount) {
+			throw new RuntimeException("The server returned " + results.size() + " results for a batch of " + callCount + " calls !");
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the content of the call, after checking its status the same way
+	 * the status of a single webservice call is checked.
+	 * 
+	 * @return the json result of the call
+	 */
+	public String getResponse() throws AuthorizationRequiredException, OperationForbiddenException {
+
+		if (statusCode == 401) {
+
+			throw new AuthorizationRequiredException("You need to authenticate first !");
+
+		} else if (statusCode == 412) {
+
+			throw new InvalidWsParamsException("Error calling webservice because of invalid parameters ! " 
+					+ "Server returned: " + content);
+
+		} else if (statusCode == 403) {
+
+			throw new OperationForbiddenException("The server refused to execute the specified operation !  " 
+					+ "Server returned: " + content);
+
+		} else if (statusCode != 200) {
+
+			throw new RuntimeException("Could not get webservice response ! Status:" + statusCode + " Server returned: " + content);
+
+		}
+
+		return content;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public String getContent() {
+		return content;
+	}
+
+	public boolean isSuccess() {
+		return statusCode == 200;
+	}
+}
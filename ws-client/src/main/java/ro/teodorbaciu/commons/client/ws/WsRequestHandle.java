@@ -0,0 +1,78 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws;
+
+import ro.teodorbaciu.commons.client.ws.transport.WsRequest;
+
+/**
+ * Handle of a webservice call, used for cancelling that call only. A handle is 
+ * created before the call and passed to the method that makes it; cancelling the
+ * handle aborts the request in progress, or the request sent later, with an IOException.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public class WsRequestHandle {
+
+	/**
+	 * The request being executed for the call, null before it is sent and after it completes.
+	 */
+	private volatile WsRequest request;
+
+	/**
+	 * Set when the call is cancelled.
+	 */
+	private volatile boolean cancelled;
+
+	/**
+	 * Cancels the call. Does nothing if the call already completed.
+	 */
+	public void cancel() {
+
+		cancelled = true;
+		WsRequest current = request;
+		if (current != null) {
+			current.abort();
+		}
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Associates the request about to be executed with this handle, aborting it 
+	 * if the handle was already cancelled.
+	 */
+	void attach(WsRequest request) {
+
+		this.request = request;
+		if (cancelled) {
+			request.abort();
+		}
+	}
+
+	/**
+	 * Dissociates the completed request from this handle.
+	 */
+	void detach(WsRequest request) {
+
+		if (this.request == request) {
+			this.request = null;
+		}
+	}
+}
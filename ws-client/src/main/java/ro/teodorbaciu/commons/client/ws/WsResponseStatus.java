@@ -0,0 +1,85 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws;
+
+import ro.teodorbaciu.commons.client.ws.exceptions.AuthorizationRequiredException;
+import ro.teodorbaciu.commons.client.ws.exceptions.InvalidWsParamsException;
+import ro.teodorbaciu.commons.client.ws.exceptions.OperationForbiddenException;
+
+/**
+ * Maps the http status of a webservice response to the exception thrown to the caller.
+ * 
+ * @author Teodor Baciu
+ */
+final class WsResponseStatus {
+
+	private WsResponseStatus() {
+	}
+
+	/**
+	 * Returns the exception corresponding to the status of the response.
+	 * 
+	 * @param statusCode the http status code
+	 * @param reasonPhrase the reason phrase sent by the server
+	 * @return null if the status code is 200
+	 */
+	static Exception toException(int statusCode, String reasonPhrase) {
+
+		if (statusCode == 401) {
+
+			return new AuthorizationRequiredException("You need to authenticate first !");
+
+		} else if (statusCode == 412) {
+
+			return new InvalidWsParamsException("Error calling webservice because of invalid parameters ! " 
+					+ "Server returned: " + reasonPhrase);
+
+		} else if (statusCode == 403) {
+
+			return new OperationForbiddenException("The server refused to execute the specified operation !  " 
+					+ "Server returned: " + reasonPhrase);
+
+		} else if (statusCode != 200) {
+
+			return new RuntimeException("Could not get webservice response ! Status:" + statusCode + " Server returned: " + reasonPhrase);
+
+		}
+
+		return null;
+	}
+
+	/**
+	 * Throws the exception corresponding to the status of the response, if the status code is not 200.
+	 * 
+	 * @param statusCode the http status code
+	 * @param reasonPhrase the reason phrase sent by the server
+	 */
+	static void check(int statusCode, String reasonPhrase) throws AuthorizationRequiredException, OperationForbiddenException {
+
+		Exception error = toException(statusCode, reasonPhrase);
+		if (error == null) {
+			return;
+		}
+
+		if (error instanceof AuthorizationRequiredException) {
+			throw (AuthorizationRequiredException) error;
+		} else if (error instanceof OperationForbiddenException) {
+			throw (OperationForbiddenException) error;
+		}
+		throw (RuntimeException) error;
+	}
+}
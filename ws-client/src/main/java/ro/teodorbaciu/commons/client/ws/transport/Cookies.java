@@ -0,0 +1,65 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws.transport;
+
+import java.net.HttpCookie;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts the cookies kept by the http clients to {@link HttpCookie}s, as returned by {@link WsTransport#getCookies()}.
+ * 
+ * @author Teodor Baciu
+ */
+final class Cookies {
+
+	private Cookies() {
+	}
+
+	/**
+	 * Converts the cookies of Apache HttpClient 5.
+	 */
+	static List<HttpCookie> fromHttpClient5(List<org.apache.hc.client5.http.cookie.Cookie> cookies) {
+
+		List<HttpCookie> httpCookies = new ArrayList<HttpCookie>(cookies.size());
+		for (org.apache.hc.client5.http.cookie.Cookie cookie : cookies) {
+			httpCookies.add(create(cookie.getName(), cookie.getValue(), cookie.getDomain(), cookie.getPath(), cookie.isSecure()));
+		}
+		return httpCookies;
+	}
+
+	/**
+	 * Converts the cookies of Apache HttpClient 4.
+	 */
+	static List<HttpCookie> fromHttpClient4(List<org.apache.http.cookie.Cookie> cookies) {
+
+		List<HttpCookie> httpCookies = new ArrayList<HttpCookie>(cookies.size());
+		for (org.apache.http.cookie.Cookie cookie : cookies) {
+			httpCookies.add(create(cookie.getName(), cookie.getValue(), cookie.getDomain(), cookie.getPath(), cookie.isSecure()));
+		}
+		return httpCookies;
+	}
+
+	private static HttpCookie create(String name, String value, String domain, String path, boolean secure) {
+
+		HttpCookie httpCookie = new HttpCookie(name, value);
+		httpCookie.setDomain(domain);
+		httpCookie.setPath(path);
+		httpCookie.setSecure(secure);
+		return httpCookie;
+	}
+}
@@ -0,0 +1,180 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws.transport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.cookie.BasicCookieStore;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import ro.teodorbaciu.commons.client.ws.util.WebClientDevWrapper;
+
+/**
+ * {@link WsTransport} that sends the requests over HTTP/2, on the asynchronous client of Apache 
+ * HttpClient 5. All the requests to a host share a single connection: the concurrent calls are 
+ * multiplexed as streams and their headers are compressed with HPACK. The http scheme uses HTTP/2 
+ * with prior knowledge, the https scheme negotiates it with ALPN; the server must support HTTP/2.
+ * <p>
+ * The connection limits of the {@link WsTransportConfig} are not used, the number of streams open 
+ * at the same time to a host being limited separately. The connection is closed after being idle for 
+ * {@link WsTransportConfig#getKeepAliveMillis()}. The request bodies are sent from memory, the large 
+ * uploads should use a {@link HttpClient5Transport}.
+ * 
+ * @author Teodor Baciu
+ */
+public class Http2Transport implements WsTransport {
+
+	private static final int DEFAULT_MAX_CONCURRENT_STREAMS = 100;
+
+	private final CloseableHttpAsyncClient httpClient;
+
+	private final BasicCookieStore cookieStore;
+
+	private final int maxConcurrentStreams;
+
+	private final Map<String, Semaphore> mapRouteStreams = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor. Uses the default {@link WsTransportConfig} and allows 100 streams per host.
+	 */
+	public Http2Transport() {
+		this(new WsTransportConfig(), DEFAULT_MAX_CONCURRENT_STREAMS);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param config the connection settings
+	 * @param maxConcurrentStreams the maximum number of requests sent at the same time to a host; 
+	 * 		should not be more than the server allows
+	 */
+	public Http2Transport(WsTransportConfig config, int maxConcurrentStreams) {
+
+		if (maxConcurrentStreams < 1) {
+			throw new IllegalArgumentException("maxConcurrentStreams must be at least 1");
+		}
+		this.maxConcurrentStreams = maxConcurrentStreams;
+
+		cookieStore = new BasicCookieStore();
+		H2AsyncClientBuilder builder = HttpAsyncClients.customHttp2()
+				.setDefaultConnectionConfig(ConnectionConfig.custom()
+						.setConnectTimeout(Timeout.ofMilliseconds(config.getConnectTimeoutMillis()))
+						.build())
+				.setDefaultCookieStore(cookieStore)
+				.evictIdleConnections(TimeValue.ofMilliseconds(config.getKeepAliveMillis()));
+
+		if (config.isTrustAllCertificates()) {
+			builder.setTlsStrategy(ClientTlsStrategyBuilder.create()
+					.setSslContext(WebClientDevWrapper.trustAllSslContext())
+					.setHostnameVerifier(NoopHostnameVerifier.INSTANCE)
+					.build());
+		}
+
+		httpClient = builder.build();
+		httpClient.start();
+	}
+
+	@Override
+	public WsResponse execute(WsRequest request) throws IOException {
+
+		URI uri = URI.create(request.getUri());
+		Semaphore routeStreams = mapRouteStreams.computeIfAbsent(uri.getScheme() + "://" + uri.getAuthority(), 
+				route -> new Semaphore(maxConcurrentStreams));
+
+		try {
+			routeStreams.acquire();
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a stream");
+		}
+
+		try {
+			return send(uri, request);
+		} finally {
+			routeStreams.release();
+		}
+	}
+
+	@Override
+	public List<HttpCookie> getCookies() {
+		return Cookies.fromHttpClient5(cookieStore.getCookies());
+	}
+
+	@Override
+	public void close() throws IOException {
+		httpClient.close(CloseMode.GRACEFUL);
+	}
+
+	private WsResponse send(URI uri, WsRequest request) throws IOException {
+
+		SimpleHttpRequest httpRequest;
+		WsRequestBody body = request.getBody();
+		if (body == null) {
+			httpRequest = SimpleRequestBuilder.get(uri).build();
+		} else {
+			httpRequest = SimpleRequestBuilder.post(uri)
+					.setBody(body.toByteArray(), ContentType.parse(body.getContentType()))
+					.build();
+		}
+
+		Future<SimpleHttpResponse> exchange = httpClient.execute(httpRequest, null);
+		request.setAbortAction(() -> exchange.cancel(true));
+		try {
+
+			SimpleHttpResponse response = exchange.get();
+			ContentType contentType = response.getContentType();
+			return new WsResponse(response.getCode(), response.getReasonPhrase(), response.getBodyBytes(), 
+					contentType != null ? contentType.getCharset() : null);
+
+		} catch (CancellationException exc) {
+			throw new IOException("Request aborted");
+		} catch (InterruptedException exc) {
+			exchange.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Request interrupted");
+		} catch (ExecutionException exc) {
+			if (exc.getCause() instanceof IOException) {
+				throw (IOException) exc.getCause();
+			}
+			throw new IOException(exc.getCause());
+		} finally {
+			request.setAbortAction(null);
+		}
+	}
+}
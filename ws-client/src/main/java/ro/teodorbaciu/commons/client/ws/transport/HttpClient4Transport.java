@@ -0,0 +1,146 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpCookie;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * {@link WsTransport} on a {@link DefaultHttpClient} of Apache HttpClient 4, for the clients 
+ * configured with their own http client. The calls can only be made concurrently if the connection 
+ * manager of the client is thread-safe. Closing the transport shuts down the connection manager.
+ * 
+ * @author Teodor Baciu
+ */
+public class HttpClient4Transport implements WsTransport {
+
+	private final DefaultHttpClient httpClient;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param httpClient the http client that sends the requests
+	 */
+	public HttpClient4Transport(DefaultHttpClient httpClient) {
+
+		if (httpClient == null) {
+			throw new NullPointerException("httpClient");
+		}
+		this.httpClient = httpClient;
+	}
+
+	@Override
+	public WsResponse execute(WsRequest request) throws IOException {
+
+		HttpRequestBase httpRequest;
+		if (request.getBody() == null) {
+			httpRequest = new HttpGet(request.getUri());
+		} else {
+			HttpPost post = new HttpPost(request.getUri());
+			post.setEntity(new BodyEntity(request.getBody()));
+			httpRequest = post;
+		}
+
+		request.setAbortAction(httpRequest::abort);
+		try {
+
+			HttpResponse response = httpClient.execute(httpRequest);
+			int statusCode = response.getStatusLine().getStatusCode();
+			String reasonPhrase = response.getStatusLine().getReasonPhrase();
+
+			HttpEntity entity = response.getEntity();
+			if (entity == null) {
+				return new WsResponse(statusCode, reasonPhrase, null, null);
+			}
+
+			Header contentType = entity.getContentType();
+			return new WsResponse(statusCode, reasonPhrase, EntityUtils.toByteArray(entity), 
+					WsResponse.charsetOf(contentType != null ? contentType.getValue() : null));
+
+		} finally {
+			request.setAbortAction(null);
+		}
+	}
+
+	@Override
+	public List<HttpCookie> getCookies() {
+		return Cookies.fromHttpClient4(httpClient.getCookieStore().getCookies());
+	}
+
+	/**
+	 * Returns the wrapped http client.
+	 */
+	public DefaultHttpClient getHttpClient() {
+		return httpClient;
+	}
+
+	@Override
+	public void close() {
+		httpClient.getConnectionManager().shutdown();
+	}
+
+	/**
+	 * Writes a {@link WsRequestBody} as the entity of the request.
+	 */
+	private static final class BodyEntity extends AbstractHttpEntity {
+
+		private final WsRequestBody body;
+
+		BodyEntity(WsRequestBody body) {
+			this.body = body;
+			setContentType(body.getContentType());
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+
+		@Override
+		public long getContentLength() {
+			return body.getContentLength();
+		}
+
+		@Override
+		public InputStream getContent() {
+			throw new UnsupportedOperationException("The body can only be written");
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			body.writeTo(out);
+		}
+
+		@Override
+		public boolean isStreaming() {
+			return false;
+		}
+	}
+}
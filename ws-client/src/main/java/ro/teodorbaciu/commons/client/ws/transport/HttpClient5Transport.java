@@ -0,0 +1,155 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws.transport;
+
+import java.io.IOException;
+import java.net.HttpCookie;
+import java.util.List;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.cookie.BasicCookieStore;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityTemplate;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import ro.teodorbaciu.commons.client.ws.util.WebClientDevWrapper;
+
+/**
+ * {@link WsTransport} on the blocking client of Apache HttpClient 5. The connections are pooled 
+ * and kept alive for {@link WsTransportConfig#getKeepAliveMillis()}, unless the server asks for 
+ * less. A background thread closes the connections idle for longer, and the connections idle for 
+ * more than two seconds are checked before being reused.
+ * 
+ * @author Teodor Baciu
+ */
+public class HttpClient5Transport implements WsTransport {
+
+	/**
+	 * How long a pooled connection can stay idle before being checked when leased.
+	 */
+	private static final TimeValue VALIDATE_AFTER_INACTIVITY = TimeValue.ofSeconds(2);
+
+	private final CloseableHttpClient httpClient;
+
+	private final BasicCookieStore cookieStore;
+
+	/**
+	 * Constructor. Uses the default {@link WsTransportConfig}.
+	 */
+	public HttpClient5Transport() {
+		this(new WsTransportConfig());
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param config the connection settings
+	 */
+	public HttpClient5Transport(WsTransportConfig config) {
+
+		PoolingHttpClientConnectionManagerBuilder connectionManagerBuilder = PoolingHttpClientConnectionManagerBuilder.create()
+				.setMaxConnTotal(config.getMaxConnectionsTotal())
+				.setMaxConnPerRoute(config.getMaxConnectionsPerRoute())
+				.setDefaultConnectionConfig(ConnectionConfig.custom()
+						.setConnectTimeout(Timeout.ofMilliseconds(config.getConnectTimeoutMillis()))
+						.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY)
+						.build());
+
+		if (config.isTrustAllCertificates()) {
+			SSLContext sslContext = WebClientDevWrapper.trustAllSslContext();
+			connectionManagerBuilder.setSSLSocketFactory(SSLConnectionSocketFactoryBuilder.create()
+					.setSslContext(sslContext)
+					.setHostnameVerifier(NoopHostnameVerifier.INSTANCE)
+					.build());
+		}
+		PoolingHttpClientConnectionManager connectionManager = connectionManagerBuilder.build();
+
+		TimeValue keepAlive = TimeValue.ofMilliseconds(config.getKeepAliveMillis());
+		cookieStore = new BasicCookieStore();
+		httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultCookieStore(cookieStore)
+				// used when the server does not send a Keep-Alive header
+				.setDefaultRequestConfig(RequestConfig.custom().setConnectionKeepAlive(keepAlive).build())
+				.evictIdleConnections(keepAlive)
+				.evictExpiredConnections()
+				.build();
+	}
+
+	@Override
+	public WsResponse execute(WsRequest request) throws IOException {
+
+		HttpUriRequestBase httpRequest;
+		if (request.getBody() == null) {
+			httpRequest = new HttpGet(request.getUri());
+		} else {
+			httpRequest = new HttpPost(request.getUri());
+			httpRequest.setEntity(toEntity(request.getBody()));
+		}
+
+		request.setAbortAction(httpRequest::cancel);
+		try {
+			return httpClient.execute(httpRequest, response -> {
+
+				HttpEntity entity = response.getEntity();
+				if (entity == null) {
+					return new WsResponse(response.getCode(), response.getReasonPhrase(), null, null);
+				}
+				return new WsResponse(response.getCode(), response.getReasonPhrase(), 
+						EntityUtils.toByteArray(entity), WsResponse.charsetOf(entity.getContentType()));
+			});
+		} finally {
+			request.setAbortAction(null);
+		}
+	}
+
+	@Override
+	public List<HttpCookie> getCookies() {
+		return Cookies.fromHttpClient5(cookieStore.getCookies());
+	}
+
+	@Override
+	public void close() throws IOException {
+		httpClient.close(CloseMode.GRACEFUL);
+	}
+
+	private static HttpEntity toEntity(WsRequestBody body) throws IOException {
+
+		ContentType contentType = ContentType.parse(body.getContentType());
+		if (body.getContentLength() >= 0 && body.getContentLength() <= 8192) {
+			return new ByteArrayEntity(body.toByteArray(), contentType);
+		}
+		return new EntityTemplate(body.getContentLength(), contentType, null, body::writeTo);
+	}
+}
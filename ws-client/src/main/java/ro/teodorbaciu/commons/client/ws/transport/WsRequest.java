@@ -0,0 +1,116 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws.transport;
+
+/**
+ * An http request sent through a {@link WsTransport}. The request can be aborted while it is 
+ * executed, the transport registering with {@link #setAbortAction(Runnable)} how to stop it.
+ * 
+ * @author Teodor Baciu
+ */
+public final class WsRequest {
+
+	private final String method;
+
+	private final String uri;
+
+	private final WsRequestBody body;
+
+	private volatile boolean aborted;
+
+	private volatile Runnable abortAction;
+
+	/**
+	 * Constructor.
+	 */
+	private WsRequest(String method, String uri, WsRequestBody body) {
+
+		if (uri == null) {
+			throw new NullPointerException("uri");
+		}
+
+		this.method = method;
+		this.uri = uri;
+		this.body = body;
+	}
+
+	/**
+	 * Creates a GET request.
+	 * 
+	 * @param uri the absolute uri of the request
+	 */
+	public static WsRequest get(String uri) {
+		return new WsRequest("GET", uri, null);
+	}
+
+	/**
+	 * Creates a POST request.
+	 * 
+	 * @param uri the absolute uri of the request
+	 * @param body the body of the request
+	 */
+	public static WsRequest post(String uri, WsRequestBody body) {
+
+		if (body == null) {
+			throw new NullPointerException("body");
+		}
+		return new WsRequest("POST", uri, body);
+	}
+
+	/**
+	 * Aborts the request. Does nothing if the request already completed.
+	 */
+	public void abort() {
+
+		aborted = true;
+		Runnable action = abortAction;
+		if (action != null) {
+			action.run();
+		}
+	}
+
+	public boolean isAborted() {
+		return aborted;
+	}
+
+	/**
+	 * Sets how the transport stops the request, running the action right away if the 
+	 * request was already aborted. The action can be run more than once.
+	 */
+	public void setAbortAction(Runnable abortAction) {
+
+		this.abortAction = abortAction;
+		if (aborted && abortAction != null) {
+			abortAction.run();
+		}
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	/**
+	 * Returns the body of the request, null for a GET.
+	 */
+	public WsRequestBody getBody() {
+		return body;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.http.NameValuePair;
+
+/**
+ * The body of a {@link WsRequest}, written by the transport to the connection.
+ * 
+ * @author Teodor Baciu
+ */
+public abstract class WsRequestBody {
+
+	/**
+	 * The content type of the url-encoded forms.
+	 */
+	public static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded; charset=UTF-8";
+
+	/**
+	 * Returns the value of the Content-Type header.
+	 */
+	public abstract String getContentType();
+
+	/**
+	 * Returns the length of the body, or -1 if it is not known before writing it.
+	 */
+	public abstract long getContentLength();
+
+	/**
+	 * Writes the body. The transports write the body once, except when retrying a request 
+	 * that failed before being sent.
+	 */
+	public abstract void writeTo(OutputStream out) throws IOException;
+
+	/**
+	 * Returns the bytes of the body. Only meant for the small bodies, the others being streamed 
+	 * with {@link #writeTo(OutputStream)}.
+	 */
+	public byte[] toByteArray() throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(getContentLength() > 0 ? (int) getContentLength() : 256);
+		writeTo(out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Creates an application/x-www-form-urlencoded body, encoded with UTF-8.
+	 * 
+	 * @param paramsList the parameters of the form
+	 */
+	public static WsRequestBody ofForm(List<NameValuePair> paramsList) {
+
+		StringBuilder form = new StringBuilder();
+		try {
+			for (NameValuePair pair : paramsList) {
+				if (form.length() > 0) {
+					form.append('&');
+				}
+				form.append(URLEncoder.encode(pair.getName(), "UTF-8"));
+				if (pair.getValue() != null) {
+					form.append('=').append(URLEncoder.encode(pair.getValue(), "UTF-8"));
+				}
+			}
+		} catch (UnsupportedEncodingException exc) {
+			throw new IllegalStateException(exc);
+		}
+
+		return new BytesBody(FORM_CONTENT_TYPE, form.toString().getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * A body held in memory.
+	 */
+	private static final class BytesBody extends WsRequestBody {
+
+		private final String contentType;
+
+		private final byte[] content;
+
+		BytesBody(String contentType, byte[] content) {
+			this.contentType = contentType;
+			this.content = content;
+		}
+
+		@Override
+		public String getContentType() {
+			return contentType;
+		}
+
+		@Override
+		public long getContentLength() {
+			return content.length;
+		}
+
+		@Override
+		public void writeTo(OutputStream out) throws IOException {
+			out.write(content);
+		}
+
+		@Override
+		public byte[] toByteArray() {
+			return content.clone();
+		}
+	}
+}
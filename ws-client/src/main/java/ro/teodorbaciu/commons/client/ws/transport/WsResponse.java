@@ -0,0 +1,106 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws.transport;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The response to a {@link WsRequest}, read whole by the transport.
+ * 
+ * @author Teodor Baciu
+ */
+public final class WsResponse {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private final int statusCode;
+
+	private final String reasonPhrase;
+
+	private final byte[] body;
+
+	private final Charset charset;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param statusCode the http status code
+	 * @param reasonPhrase the reason phrase, can be null
+	 * @param body the body of the response, can be null
+	 * @param charset the charset declared by the Content-Type of the response, can be null
+	 */
+	public WsResponse(int statusCode, String reasonPhrase, byte[] body, Charset charset) {
+		this.statusCode = statusCode;
+		this.reasonPhrase = reasonPhrase == null ? "" : reasonPhrase;
+		this.body = body == null ? EMPTY : body;
+		this.charset = charset;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public String getReasonPhrase() {
+		return reasonPhrase;
+	}
+
+	public byte[] getBody() {
+		return body;
+	}
+
+	/**
+	 * Returns the body decoded with the charset of the response, or UTF-8 if the response did not declare one.
+	 */
+	public String getBodyAsString() {
+		return new String(body, charset != null ? charset : StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the charset declared by the response.
+	 * 
+	 * @return null if the response did not declare one
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * Returns the charset parameter of a Content-Type header value.
+	 * 
+	 * @return null if the value has no valid charset parameter
+	 */
+	public static Charset charsetOf(String contentType) {
+
+		if (contentType == null) {
+			return null;
+		}
+
+		for (String parameter : contentType.split(";")) {
+			int separator = parameter.indexOf('=');
+			if (separator > 0 && parameter.substring(0, separator).trim().equalsIgnoreCase("charset")) {
+				String name = parameter.substring(separator + 1).trim().replace("\"", "");
+				try {
+					return Charset.forName(name);
+				} catch (IllegalArgumentException exc) {
+					return null;
+				}
+			}
+		}
+		return null;
+	}
+}
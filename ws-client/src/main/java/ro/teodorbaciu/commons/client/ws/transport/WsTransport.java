@@ -0,0 +1,47 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.HttpCookie;
+import java.util.List;
+
+/**
+ * Sends the http requests of the webservice clients. The implementations keep the connections 
+ * to the webservice host alive in a pool, keep the session cookies, and can be used concurrently.
+ * 
+ * @author Teodor Baciu
+ */
+public interface WsTransport extends Closeable {
+
+	/**
+	 * Sends the request and reads the whole response. The request can be aborted from another 
+	 * thread with {@link WsRequest#abort()}, in which case an {@link IOException} is thrown.
+	 * 
+	 * @param request the request to send
+	 * @return the response, whatever its status code
+	 * @throws IOException if the request could not be sent or the response could not be read
+	 */
+	WsResponse execute(WsRequest request) throws IOException;
+
+	/**
+	 * Returns the cookies received from the webservice host, in the order they were received.
+	 */
+	List<HttpCookie> getCookies();
+
+}
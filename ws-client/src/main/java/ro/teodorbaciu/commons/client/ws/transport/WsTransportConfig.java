@@ -0,0 +1,111 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.client.ws.transport;
+
+/**
+ * The connection settings of a {@link WsTransport}, read when the transport is created. 
+ * The defaults keep up to 100 connections to the webservice host alive and close the 
+ * connections left idle for 30 seconds, before the servers and the proxies drop them.
+ * 
+ * @author Teodor Baciu
+ */
+public class WsTransportConfig {
+
+	private int maxConnectionsTotal = 200;
+
+	private int maxConnectionsPerRoute = 100;
+
+	private long connectTimeoutMillis = 10000;
+
+	private long keepAliveMillis = 30000;
+
+	private boolean trustAllCertificates;
+
+	public int getMaxConnectionsTotal() {
+		return maxConnectionsTotal;
+	}
+
+	/**
+	 * Sets the maximum number of connections open at the same time.
+	 */
+	public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+
+		if (maxConnectionsTotal < 1) {
+			throw new IllegalArgumentException("maxConnectionsTotal must be at least 1");
+		}
+		this.maxConnectionsTotal = maxConnectionsTotal;
+	}
+
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	/**
+	 * Sets the maximum number of connections open at the same time to a host.
+	 */
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+
+		if (maxConnectionsPerRoute < 1) {
+			throw new IllegalArgumentException("maxConnectionsPerRoute must be at least 1");
+		}
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	public long getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	/**
+	 * Sets how long to wait for a connection to be established.
+	 */
+	public void setConnectTimeoutMillis(long connectTimeoutMillis) {
+
+		if (connectTimeoutMillis < 1) {
+			throw new IllegalArgumentException("connectTimeoutMillis must be at least 1");
+		}
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	public long getKeepAliveMillis() {
+		return keepAliveMillis;
+	}
+
+	/**
+	 * Sets how long an idle connection is kept open for reuse, unless the server asks 
+	 * for a shorter time with the Keep-Alive header. Not applied by the transports on the JDK 
+	 * http client, which use the {@code jdk.httpclient.keepalive.timeout} system property.
+	 */
+	public void setKeepAliveMillis(long keepAliveMillis) {
+
+		if (keepAliveMillis < 1) {
+			throw new IllegalArgumentException("keepAliveMillis must be at least 1");
+		}
+		this.keepAliveMillis = keepAliveMillis;
+	}
+
+	public boolean isTrustAllCertificates() {
+		return trustAllCertificates;
+	}
+
+	/**
+	 * Allows the communication with a server that provides untrusted certificates. 
+	 * Only meant for development.
+	 */
+	public void setTrustAllCertificates(boolean trustAllCertificates) {
+		this.trustAllCertificates = trustAllCertificates;
+	}
+}
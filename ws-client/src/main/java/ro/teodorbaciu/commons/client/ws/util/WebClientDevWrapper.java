@@ -17,6 +17,7 @@ limitations under the License.
 package ro.teodorbaciu.commons.client.ws.util;
 
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 
@@ -45,11 +46,9 @@ import org.apache.http.impl.client.DefaultHttpClient;
 public class WebClientDevWrapper {
 
 	/**
-	 * Provides a new instance of http client that wraps the 
-	 * instance specified as parameter.
+	 * Creates a TLS context that accepts any server certificate.
 	 */
-	@SuppressWarnings("deprecation")
-	public static DefaultHttpClient wrapClient(HttpClient base) {
+	public static SSLContext trustAllSslContext() {
 		try {
 			SSLContext ctx = SSLContext.getInstance("TLS");
 			X509TrustManager tm = new X509TrustManager() {
@@ -70,6 +69,21 @@ public class WebClientDevWrapper {
 				}
 
 			};
+			ctx.init(null, new TrustManager[] { tm }, null);
+			return ctx;
+		} catch (GeneralSecurityException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Provides a new instance of http client that wraps the 
+	 * instance specified as parameter.
+	 */
+	@SuppressWarnings("deprecation")
+	public static DefaultHttpClient wrapClient(HttpClient base) {
+		try {
+			SSLContext ctx = trustAllSslContext();
 			X509HostnameVerifier verifier = new X509HostnameVerifier() {
 
 				@Override
@@ -89,7 +103,6 @@ public class WebClientDevWrapper {
 					return true;
 				}
 			};
-			ctx.init(null, new TrustManager[] { tm }, null);
 			SSLSocketFactory ssf = new SSLSocketFactory(ctx);
 			ssf.setHostnameVerifier(verifier);
 			ClientConnectionManager ccm = base.getConnectionManager();
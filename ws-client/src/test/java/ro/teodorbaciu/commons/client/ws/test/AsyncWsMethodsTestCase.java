@@ -0,0 +1,176 @@
+package ro.teodorbaciu.commons.client.ws.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.client.ws.AsyncWsMethods;
+import ro.teodorbaciu.commons.client.ws.exceptions.InvalidWsParamsException;
+import ro.teodorbaciu.commons.client.ws.exceptions.OperationForbiddenException;
+import ro.teodorbaciu.commons.client.ws.exceptions.ReAuthenticationException;
+
+/**
+ * Tests the non-blocking calls made through {@link AsyncWsMethods}.
+ */
+public class AsyncWsMethodsTestCase {
+
+	private TestServer server;
+	private TestAsyncWsMethods wsMethods;
+
+	@Before
+	public void setUp() {
+
+		server = new TestServer();
+		wsMethods = new TestAsyncWsMethods("secret");
+		wsMethods.setWebserviceHost(server.getHost());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		wsMethods.close();
+		server.close();
+	}
+
+	@Test
+	public void testManyCallsInFlight() throws Exception {
+
+		List<CompletableFuture<String>> results = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			results.add(wsMethods.delayedEcho("call-" + i, 500));
+		}
+
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals("call-" + i, results.get(i).get(30, TimeUnit.SECONDS));
+		}
+		// two I/O threads kept at least a connection pool worth of calls in flight
+		Assert.assertTrue("Calls did not overlap: " + server.maxRunning.get(), server.maxRunning.get() > 100);
+	}
+
+	@Test
+	public void testStatusCodes() throws Exception {
+
+		assertFailure(InvalidWsParamsException.class, wsMethods.call("catalog", "op-echo"));
+		assertFailure(OperationForbiddenException.class, wsMethods.call("catalog", "op-missing"));
+		assertFailure(OperationForbiddenException.class, wsMethods.call("account", "op-whoami"));
+	}
+
+	@Test
+	public void testReAuthentication() throws Exception {
+
+		Assert.assertEquals("ana", wsMethods.whoAmI().get(10, TimeUnit.SECONDS));
+		Assert.assertEquals(1, server.logins.get());
+
+		// the session cookie is reused
+		Assert.assertEquals("ana", wsMethods.whoAmI().get(10, TimeUnit.SECONDS));
+		Assert.assertEquals(1, server.logins.get());
+
+		try (TestAsyncWsMethods badCredentials = new TestAsyncWsMethods("wrong")) {
+			badCredentials.setWebserviceHost(server.getHost());
+			assertFailure(ReAuthenticationException.class, badCredentials.whoAmI());
+		}
+	}
+
+	@Test
+	public void testSingleReAuthentication() throws Exception {
+
+		List<CompletableFuture<String>> results = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			results.add(wsMethods.whoAmI());
+		}
+
+		for (CompletableFuture<String> result : results) {
+			Assert.assertEquals("ana", result.get(10, TimeUnit.SECONDS));
+		}
+		// all the calls refused without a session waited for the same login
+		Assert.assertEquals(1, server.logins.get());
+	}
+
+	@Test
+	public void testSessionRefresh() throws Exception {
+
+		wsMethods.setSessionRefresh(100, TimeUnit.MILLISECONDS);
+		Assert.assertEquals("ana", wsMethods.whoAmI().get(10, TimeUnit.SECONDS));
+		Assert.assertEquals(1, server.logins.get());
+
+		// the session is refreshed before the call after the idle time
+		Thread.sleep(200);
+		Assert.assertEquals("ana", wsMethods.whoAmI().get(10, TimeUnit.SECONDS));
+		Assert.assertEquals(2, server.logins.get());
+	}
+
+	@Test
+	public void testCallThatCannotBeSent() throws Exception {
+
+		wsMethods.setWebserviceHost("http://invalid host");
+		assertFailure(IllegalArgumentException.class, wsMethods.whoAmI());
+
+		// the call sent after refreshing the session
+		wsMethods.setWebserviceHost(server.getHost());
+		Assert.assertEquals("ana", wsMethods.whoAmI().get(10, TimeUnit.SECONDS));
+		wsMethods.setSessionRefresh(1, TimeUnit.MILLISECONDS);
+		Thread.sleep(10);
+		wsMethods.setWebserviceHost("http://invalid host");
+		assertFailure(IllegalArgumentException.class, wsMethods.whoAmI());
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+
+		CompletableFuture<String> cancelled = wsMethods.delayedEcho("cancelled", 5000);
+		Thread.sleep(200);
+		Assert.assertTrue(cancelled.cancel(true));
+
+		// the client is still usable
+		Assert.assertEquals("other", wsMethods.delayedEcho("other", 10).get(10, TimeUnit.SECONDS));
+	}
+
+	private static void assertFailure(Class<? extends Exception> expected, CompletableFuture<?> result) throws Exception {
+
+		try {
+			result.get(10, TimeUnit.SECONDS);
+			Assert.fail("Expected " + expected.getSimpleName());
+		} catch (ExecutionException exc) {
+			Assert.assertTrue(String.valueOf(exc.getCause()), expected.isInstance(exc.getCause()));
+		}
+	}
+
+	private static class TestAsyncWsMethods extends AsyncWsMethods {
+
+		private final String password;
+
+		TestAsyncWsMethods(String password) {
+			super(500, 250, 2);
+			this.password = password;
+		}
+
+		CompletableFuture<String> delayedEcho(String text, int delay) {
+			return callPublicWsOperation("catalog", "op-delayed-echo", 
+					Arrays.<NameValuePair> asList(new BasicNameValuePair("text", text), new BasicNameValuePair("delay", String.valueOf(delay))));
+		}
+
+		CompletableFuture<String> whoAmI() {
+			return callWsOperation("account", "op-whoami", Collections.<NameValuePair> emptyList());
+		}
+
+		CompletableFuture<String> call(String module, String op) {
+			return callPublicWsOperation(module, op, Collections.<NameValuePair> emptyList());
+		}
+
+		@Override
+		protected List<NameValuePair> getAuthenticationParams() {
+			return Arrays.<NameValuePair> asList(new BasicNameValuePair("username", "ana"), new BasicNameValuePair("password", password));
+		}
+	}
+}
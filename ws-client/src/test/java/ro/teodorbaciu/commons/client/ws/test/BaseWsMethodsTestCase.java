@@ -0,0 +1,159 @@
+package ro.teodorbaciu.commons.client.ws.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.client.ws.BaseWsMethods;
+import ro.teodorbaciu.commons.client.ws.WsRequestHandle;
+import ro.teodorbaciu.commons.client.ws.exceptions.InvalidWsParamsException;
+import ro.teodorbaciu.commons.client.ws.exceptions.OperationForbiddenException;
+
+/**
+ * Tests concurrent calls made through a single {@link BaseWsMethods} instance.
+ */
+public class BaseWsMethodsTestCase {
+
+	private TestServer server;
+	private TestWsMethods wsMethods;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+
+		server = new TestServer();
+		wsMethods = new TestWsMethods();
+		wsMethods.setWebserviceHost(server.getHost());
+		wsMethods.usePooledHttpClient(64, 32);
+		executor = Executors.newFixedThreadPool(32);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		server.close();
+	}
+
+	@Test
+	public void testConcurrentCalls() throws Exception {
+
+		List<Future<String>> results = new ArrayList<>();
+		for (int i = 0; i < 64; i++) {
+			String text = "call-" + i;
+			results.add(executor.submit(() -> wsMethods.echo(text, 100, null)));
+		}
+
+		for (int i = 0; i < 64; i++) {
+			Assert.assertEquals("call-" + i, results.get(i).get(10, TimeUnit.SECONDS));
+		}
+		Assert.assertTrue("Calls did not overlap: " + server.maxRunning.get(), server.maxRunning.get() > 1);
+	}
+
+	@Test
+	public void testCancelSingleCall() throws Exception {
+
+		WsRequestHandle handle = new WsRequestHandle();
+		Future<String> cancelled = executor.submit(() -> wsMethods.echo("cancelled", 2000, handle));
+		Future<String> other = executor.submit(() -> wsMethods.echo("other", 500, new WsRequestHandle()));
+
+		Thread.sleep(200);
+		long start = System.nanoTime();
+		handle.cancel();
+
+		try {
+			cancelled.get(1, TimeUnit.SECONDS);
+			Assert.fail("The call was not cancelled");
+		} catch (ExecutionException exc) {
+			Assert.assertTrue(exc.getCause() instanceof IOException);
+		}
+		Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+		Assert.assertTrue(handle.isCancelled());
+
+		// the other call is not affected
+		Assert.assertEquals("other", other.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testStatusCodes() throws Exception {
+
+		try {
+			wsMethods.call("catalog", "op-echo");
+			Assert.fail();
+		} catch (InvalidWsParamsException exc) {
+			// expected
+		}
+
+		try {
+			wsMethods.call("catalog", "op-missing");
+			Assert.fail();
+		} catch (OperationForbiddenException exc) {
+			// expected
+		}
+
+		// the connections were released after the errors
+		Assert.assertEquals("after", wsMethods.echo("after", 0, null));
+	}
+
+	@Test
+	public void testSingleReAuthentication() throws Exception {
+
+		List<Future<String>> results = new ArrayList<>();
+		for (int i = 0; i < 16; i++) {
+			results.add(executor.submit(() -> wsMethods.whoAmI()));
+		}
+
+		for (Future<String> result : results) {
+			Assert.assertEquals("ana", result.get(10, TimeUnit.SECONDS));
+		}
+		// all the calls refused without a session waited for the same login
+		Assert.assertEquals(1, server.logins.get());
+	}
+
+	@Test
+	public void testSessionRefresh() throws Exception {
+
+		wsMethods.setSessionRefresh(100, TimeUnit.MILLISECONDS);
+		Assert.assertEquals("ana", wsMethods.whoAmI());
+		Assert.assertEquals("ana", wsMethods.whoAmI());
+		Assert.assertEquals(1, server.logins.get());
+
+		// the session is refreshed before the call after the idle time
+		Thread.sleep(200);
+		Assert.assertEquals("ana", wsMethods.whoAmI());
+		Assert.assertEquals(2, server.logins.get());
+	}
+
+	private static class TestWsMethods extends BaseWsMethods {
+
+		String echo(String text, int sleep, WsRequestHandle handle) throws Exception {
+			return callPublicWsOperation("catalog", "op-echo", Arrays.<NameValuePair> asList(
+					new BasicNameValuePair("text", text), new BasicNameValuePair("sleep", String.valueOf(sleep))), handle);
+		}
+
+		String whoAmI() throws Exception {
+			return callWsOperation("account", "op-whoami", new ArrayList<NameValuePair>());
+		}
+
+		String call(String moduleName, String op) throws Exception {
+			return callPublicWsOperation(moduleName, op, new ArrayList<NameValuePair>());
+		}
+
+		@Override
+		protected List<NameValuePair> getAuthenticationParams() {
+			return Arrays.<NameValuePair> asList(new BasicNameValuePair("username", "ana"), new BasicNameValuePair("password", "secret"));
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package ro.teodorbaciu.commons.client.ws.test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.StringAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOSession;
+import org.apache.hc.core5.reactor.IOSessionListener;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.client.ws.transport.Http2Transport;
+import ro.teodorbaciu.commons.client.ws.transport.HttpClient5Transport;
+import ro.teodorbaciu.commons.client.ws.transport.WsRequest;
+import ro.teodorbaciu.commons.client.ws.transport.WsRequestBody;
+import ro.teodorbaciu.commons.client.ws.transport.WsResponse;
+import ro.teodorbaciu.commons.client.ws.transport.WsTransport;
+import ro.teodorbaciu.commons.client.ws.transport.WsTransportConfig;
+
+/**
+ * Compares the {@link Http2Transport} with the HTTP/1.1 {@link HttpClient5Transport} against 
+ * local servers that answer every request after {@value #DELAY_MILLIS} ms.
+ */
+public class Http2TransportTestCase {
+
+	private static final int DELAY_MILLIS = 20;
+
+	private static final int CALLS = 256;
+
+	private static final int CONCURRENT_CALLS = 64;
+
+	private final AtomicInteger connections = new AtomicInteger();
+
+	private HttpAsyncServer http1Server;
+	private HttpAsyncServer http2Server;
+	private ScheduledExecutorService timer;
+	private ExecutorService executor;
+	private String http1Url;
+	private String http2Url;
+
+	@Before
+	public void setUp() throws Exception {
+
+		timer = Executors.newSingleThreadScheduledExecutor();
+		executor = Executors.newFixedThreadPool(CONCURRENT_CALLS);
+
+		http1Server = startServer(HttpVersionPolicy.FORCE_HTTP_1);
+		http1Url = urlOf(http1Server);
+		http2Server = startServer(HttpVersionPolicy.FORCE_HTTP_2);
+		http2Url = urlOf(http2Server);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		timer.shutdownNow();
+		http1Server.close(CloseMode.IMMEDIATE);
+		http2Server.close(CloseMode.IMMEDIATE);
+	}
+
+	@Test
+	public void testMultiplexing() throws Exception {
+
+		// the same per-host limit as browsers
+		WsTransportConfig config = new WsTransportConfig();
+		config.setMaxConnectionsPerRoute(6);
+
+		long http1Percentile;
+		try (WsTransport transport = new HttpClient5Transport(config)) {
+			http1Percentile = callConcurrently(transport, http1Url);
+		}
+		int http1Connections = connections.getAndSet(0);
+
+		long http2Percentile;
+		try (WsTransport transport = new Http2Transport(config, 100)) {
+			http2Percentile = callConcurrently(transport, http2Url);
+		}
+		int http2Connections = connections.get();
+
+		Assert.assertEquals(6, http1Connections);
+		Assert.assertEquals(1, http2Connections);
+		Assert.assertTrue("p99 " + http2Percentile + " ms over HTTP/2, " + http1Percentile + " ms over HTTP/1.1", 
+				http2Percentile < http1Percentile);
+	}
+
+	@Test
+	public void testAbort() throws Exception {
+
+		try (WsTransport transport = new Http2Transport()) {
+
+			Assert.assertEquals(200, transport.execute(WsRequest.post(http2Url, form("text", "first"))).getStatusCode());
+			WsRequest aborted = WsRequest.post(http2Url, form("text", "aborted", "delay", "2000"));
+			Future<WsResponse> abortedResponse = executor.submit(() -> transport.execute(aborted));
+			Thread.sleep(200);
+			aborted.abort();
+			try {
+				abortedResponse.get(1, TimeUnit.SECONDS);
+				Assert.fail("The request was not aborted");
+			} catch (java.util.concurrent.ExecutionException exc) {
+				Assert.assertTrue(String.valueOf(exc.getCause()), exc.getCause() instanceof IOException);
+			}
+
+			// the connection is still used by the other streams
+			Assert.assertEquals("text=after", transport.execute(WsRequest.post(http2Url, form("text", "after"))).getBodyAsString());
+			Assert.assertEquals(1, connections.get());
+		}
+	}
+
+	/**
+	 * Makes {@link #CALLS} calls, {@link #CONCURRENT_CALLS} at a time, after a first call 
+	 * that opens the connection.
+	 * 
+	 * @return the 99th percentile of the latencies, in milliseconds
+	 */
+	private long callConcurrently(WsTransport transport, String url) throws Exception {
+
+		Assert.assertEquals(200, transport.execute(WsRequest.post(url, form("text", "warmup"))).getStatusCode());
+
+		List<Future<Long>> results = new ArrayList<>();
+		for (int i = 0; i < CALLS; i++) {
+			String text = "call-" + i;
+			results.add(executor.submit(() -> {
+
+				long start = System.nanoTime();
+				WsResponse response = transport.execute(WsRequest.post(url, form("text", text)));
+				long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+				Assert.assertEquals(200, response.getStatusCode());
+				Assert.assertEquals("text=" + text, response.getBodyAsString());
+				return latency;
+			}));
+		}
+
+		List<Long> latencies = new ArrayList<>();
+		for (Future<Long> result : results) {
+			latencies.add(result.get(30, TimeUnit.SECONDS));
+		}
+		Collections.sort(latencies);
+		return latencies.get(latencies.size() * 99 / 100);
+	}
+
+	private HttpAsyncServer startServer(HttpVersionPolicy versionPolicy) {
+
+		HttpAsyncServer server = H2ServerBootstrap.bootstrap()
+				.setVersionPolicy(versionPolicy)
+				.setIOSessionListener(new ConnectionCounter())
+				.register("*", new DelayedEchoHandler())
+				.create();
+		server.start();
+		return server;
+	}
+
+	private static String urlOf(HttpAsyncServer server) throws Exception {
+
+		ListenerEndpoint endpoint = server.listen(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), URIScheme.HTTP).get();
+		return "http://localhost:" + ((InetSocketAddress) endpoint.getAddress()).getPort() + "/pws";
+	}
+
+	private static WsRequestBody form(String... params) {
+
+		NameValuePair[] pairs = new NameValuePair[params.length / 2];
+		for (int i = 0; i < pairs.length; i++) {
+			pairs[i] = new BasicNameValuePair(params[2 * i], params[2 * i + 1]);
+		}
+		return WsRequestBody.ofForm(Arrays.asList(pairs));
+	}
+
+	/**
+	 * Counts the connections accepted by the server.
+	 */
+	private class ConnectionCounter implements IOSessionListener {
+
+		@Override
+		public void connected(IOSession session) {
+			connections.incrementAndGet();
+		}
+
+		@Override
+		public void startTls(IOSession session) {
+		}
+
+		@Override
+		public void inputReady(IOSession session) {
+		}
+
+		@Override
+		public void outputReady(IOSession session) {
+		}
+
+		@Override
+		public void timeout(IOSession session) {
+		}
+
+		@Override
+		public void exception(IOSession session, Exception ex) {
+		}
+
+		@Override
+		public void disconnected(IOSession session) {
+		}
+	}
+
+	/**
+	 * Answers with the body of the request after the delay, or after the "delay" parameter when 
+	 * the body starts with it.
+	 */
+	private class DelayedEchoHandler implements AsyncServerRequestHandler<Message<HttpRequest, String>> {
+
+		@Override
+		public AsyncRequestConsumer<Message<HttpRequest, String>> prepare(HttpRequest request, EntityDetails entityDetails, 
+				HttpContext context) {
+			return new BasicRequestConsumer<>(entityDetails != null ? new StringAsyncEntityConsumer() : null);
+		}
+
+		@Override
+		public void handle(Message<HttpRequest, String> message, ResponseTrigger responseTrigger, HttpContext context) {
+
+			String body = message.getBody() != null ? message.getBody() : "";
+			long delay = body.contains("delay=2000") ? 2000 : DELAY_MILLIS;
+
+			timer.schedule(() -> {
+				try {
+					responseTrigger.submitResponse(AsyncResponseBuilder.create(200)
+							.setEntity(body, ContentType.TEXT_PLAIN.withCharset("UTF-8"))
+							.build(), context);
+				} catch (HttpException | IOException exc) {
+					throw new IllegalStateException(exc);
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+}
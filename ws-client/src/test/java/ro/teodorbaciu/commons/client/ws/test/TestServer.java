@@ -0,0 +1,156 @@
+package ro.teodorbaciu.commons.client.ws.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ro.teodorbaciu.commons.ws.AsyncServiceOperation;
+import ro.teodorbaciu.commons.ws.OperationParameter;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+import ro.teodorbaciu.commons.ws.server.ResultWriter;
+import ro.teodorbaciu.commons.ws.server.WsServer;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
+
+/**
+ * Local {@link WsServer} used by the client tests. The "catalog" module is public and contains 
+ * "op-echo", which returns its "text" parameter after sleeping "sleep" milliseconds, and 
+ * "op-delayed-echo", which returns it after "delay" milliseconds without holding a thread. 
+ * The "account" module requires a session and contains "op-whoami", which returns the user name. 
+ * The login accepts the password "secret".
+ */
+class TestServer implements AutoCloseable {
+
+	final AtomicInteger running = new AtomicInteger();
+	final AtomicInteger maxRunning = new AtomicInteger();
+	final AtomicInteger logins = new AtomicInteger();
+
+	private final WsServer server;
+
+	private final ScheduledExecutorService timer;
+
+	TestServer() {
+
+		ServiceModule catalog = new ServiceModule("catalog");
+		catalog.addOperation(new OpEcho());
+		catalog.addOperation(new OpDelayedEcho());
+		ServiceModule account = new ServiceModule("account");
+		account.addOperation(new OpWhoAmI());
+
+		ServiceDispatcher dispatcher = new ServiceDispatcher("client-test");
+		dispatcher.addModule(catalog);
+		dispatcher.addModule(account);
+
+		server = new WsServer(dispatcher, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new TextResultWriter());
+		server.addPublicModule("catalog");
+		server.setLoginHandler(parameters -> {
+			logins.incrementAndGet();
+			return "secret".equals(parameters.get("password")) ? Optional.of(parameters.get("username")) : Optional.empty();
+		});
+		server.start();
+
+		timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "test-server-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	String getHost() {
+		return "http://localhost:" + server.getPort();
+	}
+
+	WsServer getServer() {
+		return server;
+	}
+
+	@Override
+	public void close() {
+		server.close();
+		timer.shutdownNow();
+	}
+
+	private static class TextResultWriter implements ResultWriter {
+
+		@Override
+		public String getContentType() {
+			return "text/plain; charset=UTF-8";
+		}
+
+		@Override
+		public void write(BaseResult value, OutputStream out) throws IOException {
+			out.write(String.valueOf(((ObjectWrapper<?>) value).getObject()).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@OperationParameter(name = "text", mandatory = true)
+	@OperationParameter(name = "sleep", mandatory = false, integer = true)
+	private class OpEcho extends ServiceOperation {
+
+		OpEcho() {
+			super("op-echo");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Object sleep = parameters.get("sleep");
+				if (sleep != null) {
+					Thread.sleep(Long.parseLong(sleep.toString()));
+				}
+			} catch (InterruptedException exc) {
+				Thread.currentThread().interrupt();
+			} finally {
+				running.decrementAndGet();
+			}
+			return Optional.of(new ObjectWrapper<>(parameters.get("text")));
+		}
+	}
+
+	@OperationParameter(name = "text", mandatory = true)
+	@OperationParameter(name = "delay", mandatory = true, integer = true)
+	private class OpDelayedEcho extends AsyncServiceOperation {
+
+		OpDelayedEcho() {
+			super("op-delayed-echo");
+		}
+
+		@Override
+		public CompletionStage<Optional<BaseResult>> executeAsync(Map<String, Object> parameters) {
+
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			CompletableFuture<Optional<BaseResult>> result = new CompletableFuture<>();
+			timer.schedule(() -> {
+				running.decrementAndGet();
+				result.complete(Optional.of(new ObjectWrapper<>(parameters.get("text"))));
+			}, Long.parseLong(parameters.get("delay").toString()), TimeUnit.MILLISECONDS);
+			return result;
+		}
+	}
+
+	private static class OpWhoAmI extends ServiceOperation {
+
+		OpWhoAmI() {
+			super("op-whoami");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+			return Optional.of(new ObjectWrapper<>(parameters.get(WsServer.PARAM_PRINCIPAL)));
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package ro.teodorbaciu.commons.client.ws.test;
+
+import java.io.IOException;
+import java.net.HttpCookie;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.client.ws.transport.HttpClient4Transport;
+import ro.teodorbaciu.commons.client.ws.transport.HttpClient5Transport;
+import ro.teodorbaciu.commons.client.ws.transport.WsRequest;
+import ro.teodorbaciu.commons.client.ws.transport.WsRequestBody;
+import ro.teodorbaciu.commons.client.ws.transport.WsResponse;
+import ro.teodorbaciu.commons.client.ws.transport.WsTransport;
+import ro.teodorbaciu.commons.ws.server.WsServer;
+
+/**
+ * Tests the {@link WsTransport} implementations against the local server.
+ */
+public class WsTransportTestCase {
+
+	private TestServer server;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		server = new TestServer();
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		server.close();
+	}
+
+	@Test
+	public void testHttpClient5Transport() throws Exception {
+		try (WsTransport transport = new HttpClient5Transport()) {
+			checkTransport(transport);
+		}
+	}
+
+	@Test
+	public void testHttpClient4Transport() throws Exception {
+		try (WsTransport transport = new HttpClient4Transport(new DefaultHttpClient(new PoolingClientConnectionManager()))) {
+			checkTransport(transport);
+		}
+	}
+
+	private void checkTransport(WsTransport transport) throws Exception {
+
+		WsResponse response = post(transport, "/pws", "module", "catalog", "op", "op-echo", "text", "café au lait");
+		Assert.assertEquals(200, response.getStatusCode());
+		Assert.assertEquals("café au lait", response.getBodyAsString());
+
+		Assert.assertEquals(412, post(transport, "/pws", "module", "catalog", "op", "op-echo").getStatusCode());
+		Assert.assertEquals(401, post(transport, "/aws", "module", "account", "op", "op-whoami").getStatusCode());
+
+		// the session cookie is kept by the transport
+		Assert.assertEquals(200, post(transport, "/login", "username", "ana", "password", "secret").getStatusCode());
+		List<HttpCookie> cookies = transport.getCookies();
+		Assert.assertEquals(1, cookies.size());
+		Assert.assertEquals(WsServer.SESSION_COOKIE, cookies.get(0).getName());
+		Assert.assertEquals("ana", post(transport, "/aws", "module", "account", "op", "op-whoami").getBodyAsString());
+
+		// aborting a request stops only that request
+		WsRequest aborted = WsRequest.post(server.getHost() + "/pws", form("module", "catalog", "op", "op-echo", "text", "aborted", "sleep", "2000"));
+		Future<WsResponse> abortedResponse = executor.submit(() -> transport.execute(aborted));
+		Thread.sleep(200);
+		aborted.abort();
+		try {
+			abortedResponse.get(1, TimeUnit.SECONDS);
+			Assert.fail("The request was not aborted");
+		} catch (ExecutionException exc) {
+			Assert.assertTrue(String.valueOf(exc.getCause()), exc.getCause() instanceof IOException);
+		}
+		Assert.assertEquals("after", post(transport, "/pws", "module", "catalog", "op", "op-echo", "text", "after").getBodyAsString());
+	}
+
+	private WsResponse post(WsTransport transport, String uri, String... params) throws IOException {
+		return transport.execute(WsRequest.post(server.getHost() + uri, form(params)));
+	}
+
+	private static WsRequestBody form(String... params) {
+
+		NameValuePair[] pairs = new NameValuePair[params.length / 2];
+		for (int i = 0; i < pairs.length; i++) {
+			pairs[i] = new BasicNameValuePair(params[2 * i], params[2 * i + 1]);
+		}
+		return WsRequestBody.ofForm(Arrays.asList(pairs));
+	}
+}
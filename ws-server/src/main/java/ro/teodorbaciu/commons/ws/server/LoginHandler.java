@@ -0,0 +1,38 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.server;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Checks the credentials posted to the login endpoint of a {@link WsServer}.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public interface LoginHandler {
+
+	/**
+	 * Authenticates the client that sent the specified parameters.
+	 * 
+	 * @param parameters the parameters posted to the login endpoint
+	 * @return the principal of the authenticated client, which is passed to the operations called 
+	 * 		during its session, or an empty {@link Optional} if the credentials are not valid
+	 */
+	Optional<Object> login(Map<String, Object> parameters);
+}
@@ -0,0 +1,48 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+
+/**
+ * Serializes the values returned by the operations into the body of the responses
+ * sent by a {@link WsServer}, for example as json.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public interface ResultWriter {
+
+	/**
+	 * Returns the value of the Content-Type header of the responses.
+	 * 
+	 * @return the content type, for example "application/json; charset=UTF-8"
+	 */
+	String getContentType();
+
+	/**
+	 * Writes the specified value. The writer must not close the stream.
+	 * 
+	 * @param value the value returned by the operation
+	 * @param out the stream that receives the body of the response
+	 * @throws IOException if the value cannot be written
+	 */
+	void write(BaseResult value, OutputStream out) throws IOException;
+}
@@ -0,0 +1,164 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.server;
+
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the sessions of the clients authenticated by a {@link WsServer}. A session
+ * expires when it is not used for longer than the maximum idle time.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+final class SessionStore {
+
+	/**
+	 * The number of sessions created between two removals of the expired sessions.
+	 */
+	private static final int EXPIRE_INTERVAL = 256;
+
+	/**
+	 * The sessions, mapped by their id.
+	 */
+	private final ConcurrentHashMap<String, Session> mapSessions;
+
+	/**
+	 * Generates the session ids.
+	 */
+	private final SecureRandom random;
+
+	/**
+	 * Counts the created sessions, for removing the expired ones from time to time.
+	 */
+	private final AtomicInteger createdCount;
+
+	/**
+	 * The time after which an unused session expires.
+	 */
+	private volatile long maxIdleNanos;
+
+	/**
+	 * Constructor.
+	 */
+	SessionStore(long maxIdle, TimeUnit unit) {
+		this.mapSessions = new ConcurrentHashMap<>();
+		this.random = new SecureRandom();
+		this.createdCount = new AtomicInteger();
+		setMaxIdle(maxIdle, unit);
+	}
+
+	/**
+	 * Creates a new session for the specified principal.
+	 * 
+	 * @return the id of the session
+	 */
+	String create(Object principal) {
+
+		if (createdCount.incrementAndGet() % EXPIRE_INTERVAL == 0) {
+			removeExpired();
+		}
+
+		byte[] bytes = new byte[20];
+		random.nextBytes(bytes);
+		StringBuilder id = new StringBuilder(bytes.length * 2);
+		for (byte value : bytes) {
+			id.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+		}
+
+		String sessionId = id.toString();
+		mapSessions.put(sessionId, new Session(principal, System.nanoTime()));
+		return sessionId;
+	}
+
+	/**
+	 * Returns the principal of the specified session and marks the session as used.
+	 * 
+	 * @return the principal or an empty {@link Optional} if the session does not exist or expired
+	 */
+	Optional<Object> find(String sessionId) {
+
+		Session session = mapSessions.get(sessionId);
+		if (session == null) {
+			return Optional.empty();
+		}
+
+		long now = System.nanoTime();
+		if (now - session.lastAccessNanos > maxIdleNanos) {
+			mapSessions.remove(sessionId, session);
+			return Optional.empty();
+		}
+
+		session.lastAccessNanos = now;
+		return Optional.of(session.principal);
+	}
+
+	/**
+	 * Removes the specified session.
+	 */
+	void remove(String sessionId) {
+		mapSessions.remove(sessionId);
+	}
+
+	/**
+	 * Returns the number of sessions, including the expired ones that were not removed yet.
+	 */
+	int size() {
+		return mapSessions.size();
+	}
+
+	void setMaxIdle(long maxIdle, TimeUnit unit) {
+
+		if (maxIdle <= 0) {
+			throw new IllegalArgumentException("maxIdle must be positive");
+		}
+		this.maxIdleNanos = unit.toNanos(maxIdle);
+	}
+
+	/**
+	 * Removes the sessions that were not used for longer than the maximum idle time.
+	 */
+	private void removeExpired() {
+
+		long now = System.nanoTime();
+		for (Iterator<Session> iterator = mapSessions.values().iterator(); iterator.hasNext();) {
+			if (now - iterator.next().lastAccessNanos > maxIdleNanos) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * The principal of an authenticated client and the time its session was last used.
+	 */
+	private static final class Session {
+
+		private final Object principal;
+
+		private volatile long lastAccessNanos;
+
+		Session(Object principal, long lastAccessNanos) {
+			this.principal = principal;
+			this.lastAccessNanos = lastAccessNanos;
+		}
+	}
+}
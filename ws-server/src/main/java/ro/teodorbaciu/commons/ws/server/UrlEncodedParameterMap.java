@@ -0,0 +1,372 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parameter map over the raw bytes of an application/x-www-form-urlencoded body or query string.
+ * The constructor only indexes the positions of the name value pairs; a name is compared with
+ * the requested key without being decoded, unless it contains escaped characters, and a value 
+ * is decoded the first time it is read. Reading the module, the operation and the few parameters
+ * declared by an operation therefore does not decode the other parameters.
+ * <p>
+ * When a name appears several times, the first value is returned. The map can be modified with
+ * {@link #put(String, Object)} and {@link #remove(Object)}, the changes are kept apart from the 
+ * indexed pairs. Iterating the map decodes all the pairs. Like {@link HashMap}, the map is not 
+ * thread-safe, it is meant to be confined to the request it was created for.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public final class UrlEncodedParameterMap extends AbstractMap<String, Object> {
+
+	/**
+	 * Marks a parameter removed with {@link #remove(Object)}.
+	 */
+	private static final Object REMOVED = new Object();
+
+	/**
+	 * The number of ints that describe a pair in the index.
+	 */
+	private static final int PAIR_SIZE = 4;
+
+	private static final int NAME_ENCODED = 1;
+	private static final int VALUE_ENCODED = 2;
+
+	/**
+	 * The encoded pairs, read with absolute positions.
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * For each pair: the start of the name, the end of the name, the end of the value and 
+	 * the flags telling whether the name and the value need decoding. The value starts after 
+	 * the '=' following the name, or is empty if the pair has no '='.
+	 */
+	private int[] pairs;
+
+	/**
+	 * The number of indexed pairs.
+	 */
+	private int pairCount;
+
+	/**
+	 * The decoded names of the pairs that contain escaped characters, created on demand.
+	 */
+	private String[] decodedNames;
+
+	/**
+	 * The decoded values, created on demand.
+	 */
+	private String[] decodedValues;
+
+	/**
+	 * The parameters put or removed after the map was created, null if the map was not modified.
+	 */
+	private Map<String, Object> changes;
+
+	/**
+	 * All the parameters, decoded when the map is iterated for the first time.
+	 */
+	private Map<String, Object> materialized;
+
+	/**
+	 * Constructor. The remaining bytes of the buffer are indexed and must not change while the map is used.
+	 * 
+	 * @param encoded the encoded pairs, separated by '&amp;'
+	 * @throws IllegalArgumentException if an escape sequence is not valid
+	 */
+	public UrlEncodedParameterMap(ByteBuffer encoded) {
+
+		if (encoded == null) {
+			throw new NullPointerException("The encoded parameter cannot be null");
+		}
+
+		this.buffer = encoded;
+		this.pairs = new int[8 * PAIR_SIZE];
+		index(encoded.position(), encoded.limit());
+	}
+
+	@Override
+	public Object get(Object key) {
+
+		if (changes != null && changes.containsKey(key)) {
+			Object value = changes.get(key);
+			return value != REMOVED ? value : null;
+		}
+
+		int pair = indexOf(key);
+		return pair >= 0 ? valueAt(pair) : null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+
+		if (changes != null && changes.containsKey(key)) {
+			return changes.get(key) != REMOVED;
+		}
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+
+		Object previous = get(key);
+		if (changes == null) {
+			changes = new HashMap<>();
+		}
+		changes.put(key, value);
+		materialized = null;
+		return previous;
+	}
+
+	@Override
+	public Object remove(Object key) {
+
+		if (!(key instanceof String) || !containsKey(key)) {
+			return null;
+		}
+
+		Object previous = get(key);
+		if (changes == null) {
+			changes = new HashMap<>();
+		}
+		changes.put((String) key, REMOVED);
+		materialized = null;
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return materialize().size();
+	}
+
+	/**
+	 * Returns the parameters, all decoded. The returned set cannot be modified.
+	 */
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		return Collections.unmodifiableMap(materialize()).entrySet();
+	}
+
+	/**
+	 * Decodes all the parameters and applies the changes.
+	 */
+	private Map<String, Object> materialize() {
+
+		if (materialized != null) {
+			return materialized;
+		}
+
+		Map<String, Object> map = new LinkedHashMap<>();
+		for (int pair = 0; pair < pairCount; pair++) {
+			map.putIfAbsent(nameAt(pair), valueAt(pair));
+		}
+
+		if (changes != null) {
+			for (Map.Entry<String, Object> change : changes.entrySet()) {
+				if (change.getValue() == REMOVED) {
+					map.remove(change.getKey());
+				} else {
+					map.put(change.getKey(), change.getValue());
+				}
+			}
+		}
+
+		materialized = map;
+		return map;
+	}
+
+	/**
+	 * Records the positions of the pairs and checks the escape sequences.
+	 */
+	private void index(int start, int end) {
+
+		int pairStart = start;
+		int nameEnd = -1;
+		int flags = 0;
+		for (int position = start; position <= end; position++) {
+
+			byte value = position < end ? buffer.get(position) : (byte) '&';
+			if (value == '&') {
+
+				if (position > pairStart) {
+					addPair(pairStart, nameEnd >= 0 ? nameEnd : position, position, flags);
+				}
+				pairStart = position + 1;
+				nameEnd = -1;
+				flags = 0;
+
+			} else if (value == '=' && nameEnd < 0) {
+
+				nameEnd = position;
+
+			} else if (value == '%' || value == '+' || value < 0) {
+
+				if (value == '%' && (position + 2 >= end || hexValue(buffer.get(position + 1)) < 0 
+						|| hexValue(buffer.get(position + 2)) < 0)) {
+					throw new IllegalArgumentException("Invalid escape sequence at position " + (position - start));
+				}
+				flags |= nameEnd < 0 ? NAME_ENCODED : VALUE_ENCODED;
+			}
+		}
+	}
+
+	private void addPair(int nameStart, int nameEnd, int valueEnd, int flags) {
+
+		if ((pairCount + 1) * PAIR_SIZE > pairs.length) {
+			pairs = Arrays.copyOf(pairs, pairs.length * 2);
+		}
+
+		int offset = pairCount * PAIR_SIZE;
+		pairs[offset] = nameStart;
+		pairs[offset + 1] = nameEnd;
+		pairs[offset + 2] = valueEnd;
+		pairs[offset + 3] = flags;
+		pairCount++;
+	}
+
+	/**
+	 * Returns the index of the first pair with the specified name, or -1 if there is none.
+	 */
+	private int indexOf(Object key) {
+
+		if (!(key instanceof String)) {
+			return -1;
+		}
+
+		String name = (String) key;
+		for (int pair = 0; pair < pairCount; pair++) {
+
+			int offset = pair * PAIR_SIZE;
+			if ((pairs[offset + 3] & NAME_ENCODED) != 0) {
+				if (name.equals(nameAt(pair))) {
+					return pair;
+				}
+				continue;
+			}
+
+			// the name is plain ascii, compare it without decoding
+			int nameStart = pairs[offset];
+			int length = pairs[offset + 1] - nameStart;
+			if (length != name.length()) {
+				continue;
+			}
+
+			int i = 0;
+			while (i < length && buffer.get(nameStart + i) == name.charAt(i)) {
+				i++;
+			}
+			if (i == length) {
+				return pair;
+			}
+		}
+		return -1;
+	}
+
+	private String nameAt(int pair) {
+
+		int offset = pair * PAIR_SIZE;
+		if ((pairs[offset + 3] & NAME_ENCODED) == 0) {
+			return decode(pairs[offset], pairs[offset + 1], false);
+		}
+
+		if (decodedNames == null) {
+			decodedNames = new String[pairCount];
+		}
+		if (decodedNames[pair] == null) {
+			decodedNames[pair] = decode(pairs[offset], pairs[offset + 1], true);
+		}
+		return decodedNames[pair];
+	}
+
+	private String valueAt(int pair) {
+
+		if (decodedValues == null) {
+			decodedValues = new String[pairCount];
+		}
+
+		String value = decodedValues[pair];
+		if (value == null) {
+
+			int offset = pair * PAIR_SIZE;
+			int valueStart = Math.min(pairs[offset + 1] + 1, pairs[offset + 2]);
+			value = decode(valueStart, pairs[offset + 2], (pairs[offset + 3] & VALUE_ENCODED) != 0);
+			decodedValues[pair] = value;
+		}
+		return value;
+	}
+
+	/**
+	 * Decodes the specified range of the buffer.
+	 * 
+	 * @param encoded false if the range contains only ascii characters that are not escaped
+	 */
+	private String decode(int start, int end, boolean encoded) {
+
+		if (!encoded) {
+
+			if (buffer.hasArray()) {
+				return new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.ISO_8859_1);
+			}
+
+			byte[] bytes = new byte[end - start];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = buffer.get(start + i);
+			}
+			return new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+
+		byte[] bytes = new byte[end - start];
+		int length = 0;
+		for (int position = start; position < end; position++) {
+
+			byte value = buffer.get(position);
+			if (value == '+') {
+				value = ' ';
+			} else if (value == '%') {
+				value = (byte) ((hexValue(buffer.get(position + 1)) << 4) | hexValue(buffer.get(position + 2)));
+				position += 2;
+			}
+			bytes[length++] = value;
+		}
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private static int hexValue(byte value) {
+
+		if (value >= '0' && value <= '9') {
+			return value - '0';
+		}
+		if (value >= 'a' && value <= 'f') {
+			return value - 'a' + 10;
+		}
+		if (value >= 'A' && value <= 'F') {
+			return value - 'A' + 10;
+		}
+		return -1;
+	}
+}
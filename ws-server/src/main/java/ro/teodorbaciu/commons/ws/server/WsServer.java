@@ -0,0 +1,776 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import ro.teodorbaciu.commons.ws.BatchCall;
+import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.ExecutionContext;
+import ro.teodorbaciu.commons.ws.ExecutionResult;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.transfer.batch.BatchProtocol;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+
+/**
+ * Embedded HTTP/1.1 front-end for a {@link ServiceDispatcher}, built on the http server of the JDK.
+ * It provides the endpoints expected by the webservice client:
+ * <ul>
+ * <li>/pws executes the operations of the public modules, see {@link #addPublicModule(String)}</li>
+ * <li>/login authenticates a client through the {@link LoginHandler} and starts its session</li>
+ * <li>/aws executes the operations of any module for an authenticated client</li>
+ * <li>/bws executes a batch of calls for an authenticated client, as described by {@link BatchProtocol}</li>
+ * </ul>
+ * The module and operation are read from the "module" and "op" parameters, which can be sent in 
+ * the query string or in an application/x-www-form-urlencoded body together with the parameters 
+ * of the operation. The principal returned by the {@link LoginHandler} is passed to the operations 
+ * in the {@link #PARAM_PRINCIPAL} parameter.
+ * <p>
+ * The connections are accepted and read by the selector thread of the http server, which hands 
+ * the requests to the worker executor. The calls are dispatched with 
+ * {@link ServiceDispatcher#dispatchAsync(String, String, Map)} and the response is sent when the 
+ * returned stage completes, so asynchronous operations do not hold a worker thread. The responses 
+ * have a fixed length and the connections are kept alive between requests.
+ * <p>
+ * TCP_NODELAY is not enabled by the server: the http server of the JDK reads it from the 
+ * {@code sun.net.httpserver.nodelay} system property, once for all the servers of the JVM. The http 
+ * server writes the headers and the body of a response separately, so without TCP_NODELAY the body
+ * of small responses can wait for the delayed acknowledgement of the headers; the applications that 
+ * need low latency set the property at startup, {@code -Dsun.net.httpserver.nodelay=true}.
+ * <p>
+ * The results are mapped to the status codes understood by the client: 200 for a valid call, 
+ * 401 when the client is not authenticated, 403 when the module or the operation cannot be called, 
+ * 412 when the parameters are not valid, 429 and 503 for the calls that were not admitted by a 
+ * limiter and 504 for the calls whose deadline passed. The requests with a negative or malformed
+ * Content-Length receive 400 and those larger than the maximum request size receive 413.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public class WsServer implements AutoCloseable {
+
+	/**
+	 * The parameter that contains the name of the module.
+	 */
+	public static final String PARAM_MODULE = "module";
+
+	/**
+	 * The parameter that contains the name of the operation.
+	 */
+	public static final String PARAM_OPERATION = "op";
+
+	/**
+	 * The parameter in which the principal of the session is passed to the operations.
+	 * A value sent by the client for this parameter is discarded.
+	 */
+	public static final String PARAM_PRINCIPAL = "ws-principal";
+
+	/**
+	 * The name of the cookie that contains the session id.
+	 */
+	public static final String SESSION_COOKIE = "WSSESSIONID";
+
+	/**
+	 * The maximum number of calls accepted in a batch.
+	 */
+	public static final int MAX_BATCH_SIZE = 256;
+
+	/**
+	 * The number of worker threads used when no executor is set.
+	 */
+	private static final int DEFAULT_WORKER_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+	private static final String TEXT_CONTENT_TYPE = "text/plain; charset=UTF-8";
+
+	/**
+	 * The dispatcher that executes the calls.
+	 */
+	private final ServiceDispatcher dispatcher;
+
+	/**
+	 * The address on which the server listens.
+	 */
+	private final InetSocketAddress address;
+
+	/**
+	 * Writes the values returned by the operations.
+	 */
+	private final ResultWriter resultWriter;
+
+	/**
+	 * The modules whose operations can be called without authentication.
+	 */
+	private final Set<String> publicModules;
+
+	/**
+	 * The sessions of the authenticated clients.
+	 */
+	private final SessionStore sessions;
+
+	/**
+	 * Authenticates the clients, null if the login endpoint is disabled.
+	 */
+	private volatile LoginHandler loginHandler;
+
+	/**
+	 * The time allowed for executing a call, 0 if the calls have no deadline.
+	 */
+	private volatile long requestTimeoutNanos;
+
+	/**
+	 * The maximum size of a request body.
+	 */
+	private volatile int maxRequestSize = 1024 * 1024;
+
+	/**
+	 * The executor that handles the requests, null for using a fixed pool owned by the server.
+	 */
+	private Executor executor;
+
+	private String publicWebserviceUri = "/pws";
+	private String authenticatedWebserviceUri = "/aws";
+	private String batchWebserviceUri = "/bws";
+	private String loginUri = "/login";
+
+	/**
+	 * The running http server, null if the server is not started.
+	 */
+	private HttpServer server;
+
+	/**
+	 * The executor created by the server when started without an executor.
+	 */
+	private ExecutorService ownedExecutor;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param dispatcher the dispatcher that executes the calls
+	 * @param address the address on which the server listens, a port of 0 selects a free port
+	 * @param resultWriter writes the values returned by the operations
+	 */
+	public WsServer(ServiceDispatcher dispatcher, InetSocketAddress address, ResultWriter resultWriter) {
+
+		if (dispatcher == null) {
+			throw new NullPointerException("The dispatcher parameter cannot be null");
+		}
+		if (address == null) {
+			throw new NullPointerException("The address parameter cannot be null");
+		}
+		if (resultWriter == null) {
+			throw new NullPointerException("The resultWriter parameter cannot be null");
+		}
+
+		this.dispatcher = dispatcher;
+		this.address = address;
+		this.resultWriter = resultWriter;
+		this.publicModules = ConcurrentHashMap.newKeySet();
+		this.sessions = new SessionStore(30, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Starts listening for requests.
+	 * 
+	 * @throws IllegalStateException if the server is already started or cannot bind to its address
+	 */
+	public synchronized void start() {
+
+		if (server != null) {
+			throw new IllegalStateException("The server is already started");
+		}
+
+		HttpServer httpServer;
+		try {
+			httpServer = HttpServer.create(address, 0);
+		} catch (IOException exc) {
+			throw new IllegalStateException("Could not bind to " + address, exc);
+		}
+
+		httpServer.createContext(publicWebserviceUri, new DispatchHandler(false));
+		httpServer.createContext(authenticatedWebserviceUri, new DispatchHandler(true));
+		httpServer.createContext(batchWebserviceUri, this::handleBatch);
+		httpServer.createContext(loginUri, this::handleLogin);
+
+		if (executor != null) {
+			httpServer.setExecutor(executor);
+		} else {
+			ownedExecutor = Executors.newFixedThreadPool(DEFAULT_WORKER_THREADS, new WorkerThreadFactory());
+			httpServer.setExecutor(ownedExecutor);
+		}
+
+		httpServer.start();
+		server = httpServer;
+	}
+
+	/**
+	 * Stops the server, waiting at most the specified delay for the requests being handled to complete.
+	 * 
+	 * @param delaySeconds the maximum time to wait, in seconds
+	 */
+	public synchronized void stop(int delaySeconds) {
+
+		if (server == null) {
+			return;
+		}
+
+		server.stop(delaySeconds);
+		server = null;
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdown();
+			ownedExecutor = null;
+		}
+	}
+
+	/**
+	 * Stops the server without waiting for the requests being handled.
+	 */
+	@Override
+	public void close() {
+		stop(0);
+	}
+
+	/**
+	 * Returns the port on which the server listens.
+	 * 
+	 * @throws IllegalStateException if the server is not started
+	 */
+	public synchronized int getPort() {
+
+		if (server == null) {
+			throw new IllegalStateException("The server is not started");
+		}
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Allows calling the operations of the specified module through the public endpoint.
+	 * 
+	 * @param moduleName the name of the module
+	 */
+	public void addPublicModule(String moduleName) {
+
+		if (moduleName == null) {
+			throw new NullPointerException("The moduleName parameter cannot be null");
+		}
+		publicModules.add(moduleName);
+	}
+
+	/**
+	 * Stops allowing the calls to the specified module through the public endpoint.
+	 * 
+	 * @param moduleName the name of the module
+	 * @return true if the module was public
+	 */
+	public boolean removePublicModule(String moduleName) {
+		return publicModules.remove(moduleName);
+	}
+
+	/**
+	 * Sets the handler that authenticates the clients. Without a handler, the login 
+	 * endpoint answers 404 and the authenticated endpoints answer 401.
+	 */
+	public void setLoginHandler(LoginHandler loginHandler) {
+		this.loginHandler = loginHandler;
+	}
+
+	/**
+	 * Sets the time after which a session that is not used expires. The default is 30 minutes.
+	 */
+	public void setSessionMaxIdle(long maxIdle, TimeUnit unit) {
+		sessions.setMaxIdle(maxIdle, unit);
+	}
+
+	/**
+	 * Sets the time allowed for executing a call, after which the client receives 504. 
+	 * The deadline is propagated through an {@link ExecutionContext}.
+	 * 
+	 * @param timeout the time allowed, 0 for calls without deadline
+	 * @param unit the unit of the timeout
+	 */
+	public void setRequestTimeout(long timeout, TimeUnit unit) {
+
+		if (timeout < 0) {
+			throw new IllegalArgumentException("timeout cannot be negative");
+		}
+		this.requestTimeoutNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * Sets the maximum size of a request body, the larger requests receive 413. The default is 1 MB.
+	 */
+	public void setMaxRequestSize(int maxRequestSize) {
+
+		if (maxRequestSize < 1) {
+			throw new IllegalArgumentException("maxRequestSize must be at least 1");
+		}
+		this.maxRequestSize = maxRequestSize;
+	}
+
+	/**
+	 * Sets the executor that handles the requests. Without an executor, the server uses a fixed 
+	 * pool of threads that is shut down when the server stops. Takes effect when the server starts.
+	 */
+	public synchronized void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	public synchronized void setPublicWebserviceUri(String publicWebserviceUri) {
+		this.publicWebserviceUri = publicWebserviceUri;
+	}
+
+	public synchronized void setAuthenticatedWebserviceUri(String authenticatedWebserviceUri) {
+		this.authenticatedWebserviceUri = authenticatedWebserviceUri;
+	}
+
+	public synchronized void setBatchWebserviceUri(String batchWebserviceUri) {
+		this.batchWebserviceUri = batchWebserviceUri;
+	}
+
+	public synchronized void setLoginUri(String loginUri) {
+		this.loginUri = loginUri;
+	}
+
+	/**
+	 * Returns the http status code that corresponds to the specified result.
+	 * 
+	 * @param result the result of a dispatch
+	 * @return 200 if the operation was executed with valid parameters, an error code otherwise
+	 */
+	public static int statusCodeOf(DispatchResult result) {
+
+		switch (result.getStatus()) {
+		case DISPATCH_SUCCESS:
+			return statusCodeOf(result.getResult());
+		case MODULE_NAME_BLANK:
+			return 412;
+		case MODULE_NOT_FOUND:
+		case OPERATION_NOT_FOUND:
+			return 403;
+		case RATE_LIMITED:
+			return 429;
+		case REJECTED:
+			return 503;
+		case TIMEOUT:
+			return 504;
+		default:
+			return 500;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("dispatcher", dispatcher).append("address", address).toString();
+	}
+
+	/**
+	 * Returns the http status code of a dispatch that reached a module.
+	 */
+	private static int statusCodeOf(ExecutionResult result) {
+
+		switch (result.getStatus()) {
+		case VALID:
+			return 200;
+		case OPERATION_NOT_FOUND:
+			return 403;
+		default:
+			return 412;
+		}
+	}
+
+	/**
+	 * Executes a call posted to the public or to the authenticated endpoint.
+	 */
+	private final class DispatchHandler implements HttpHandler {
+
+		private final boolean authenticated;
+
+		DispatchHandler(boolean authenticated) {
+			this.authenticated = authenticated;
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+
+			Map<String, Object> parameters = readParameters(exchange);
+			if (parameters == null) {
+				return;
+			}
+
+			Object principal = null;
+			if (authenticated) {
+
+				Optional<Object> sessionPrincipal = findPrincipal(exchange);
+				if (!sessionPrincipal.isPresent()) {
+					sendText(exchange, 401, "Authentication required");
+					return;
+				}
+				principal = sessionPrincipal.get();
+			}
+
+			String moduleName = stringValue(parameters.get(PARAM_MODULE));
+			if (!authenticated && moduleName != null && !publicModules.contains(moduleName)) {
+				sendText(exchange, 403, "The module is not public");
+				return;
+			}
+
+			if (principal != null) {
+				parameters.put(PARAM_PRINCIPAL, principal);
+			}
+
+			String operationName = stringValue(parameters.get(PARAM_OPERATION));
+			long timeoutNanos = requestTimeoutNanos;
+			CompletionStage<DispatchResult> stage = timeoutNanos > 0
+					? dispatcher.dispatchAsync(moduleName, operationName, parameters, 
+							ExecutionContext.withTimeout(timeoutNanos, TimeUnit.NANOSECONDS))
+					: dispatcher.dispatchAsync(moduleName, operationName, parameters);
+
+			stage.whenComplete((result, failure) -> {
+				try {
+					if (failure != null) {
+						sendText(exchange, 500, "The operation failed");
+					} else {
+						sendResult(exchange, result);
+					}
+				} catch (IOException | RuntimeException exc) {
+					exchange.close();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Executes a batch of calls posted to the batch endpoint.
+	 */
+	private void handleBatch(HttpExchange exchange) throws IOException {
+
+		Map<String, Object> parameters = readParameters(exchange);
+		if (parameters == null) {
+			return;
+		}
+
+		Optional<Object> principal = findPrincipal(exchange);
+		if (!principal.isPresent()) {
+			sendText(exchange, 401, "Authentication required");
+			return;
+		}
+
+		List<BatchCall> calls;
+		try {
+			calls = BatchCall.fromRequestParameters(parameters, MAX_BATCH_SIZE);
+		} catch (IllegalArgumentException exc) {
+			sendText(exchange, 412, "Invalid batch");
+			return;
+		}
+
+		for (BatchCall call : calls) {
+			call.getParameters().put(PARAM_PRINCIPAL, principal.get());
+		}
+
+		List<DispatchResult> results;
+		try {
+			results = dispatcher.dispatchBatch(calls);
+		} catch (RuntimeException exc) {
+			sendText(exchange, 500, "The batch failed");
+			return;
+		}
+
+		List<BatchProtocol.Part> parts = new ArrayList<>(results.size());
+		for (DispatchResult result : results) {
+
+			int statusCode = statusCodeOf(result);
+			String content = null;
+			if (statusCode == 200 && result.getValue() != null) {
+
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				resultWriter.write(result.getValue(), out);
+				content = new String(out.toByteArray(), StandardCharsets.UTF_8);
+			}
+			parts.add(new BatchProtocol.Part(statusCode, content));
+		}
+
+		sendBytes(exchange, 200, TEXT_CONTENT_TYPE, BatchProtocol.encodeResponse(parts).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Authenticates a client and starts its session.
+	 */
+	private void handleLogin(HttpExchange exchange) throws IOException {
+
+		Map<String, Object> parameters = readParameters(exchange);
+		if (parameters == null) {
+			return;
+		}
+
+		LoginHandler handler = loginHandler;
+		if (handler == null) {
+			sendText(exchange, 404, "Login is not enabled");
+			return;
+		}
+
+		Optional<Object> principal;
+		try {
+			principal = handler.login(parameters);
+		} catch (RuntimeException exc) {
+			sendText(exchange, 500, "The login failed");
+			return;
+		}
+
+		if (!principal.isPresent()) {
+			sendText(exchange, 401, "Invalid credentials");
+			return;
+		}
+
+		String sessionId = sessions.create(principal.get());
+		exchange.getResponseHeaders().add("Set-Cookie", SESSION_COOKIE + "=" + sessionId + "; Path=/; HttpOnly");
+		sendBytes(exchange, 200, null, null);
+	}
+
+	/**
+	 * Reads the parameters from the query string and from the body of the request. 
+	 * 
+	 * @return the parameters or null if the request was rejected and the response sent
+	 */
+	private Map<String, Object> readParameters(HttpExchange exchange) throws IOException {
+
+		String method = exchange.getRequestMethod();
+		if (!"POST".equals(method) && !"GET".equals(method)) {
+			exchange.getResponseHeaders().add("Allow", "GET, POST");
+			sendText(exchange, 405, "Method not allowed");
+			return null;
+		}
+
+		String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+		if (contentType != null && !contentType.startsWith("application/x-www-form-urlencoded")) {
+			sendText(exchange, 415, "Unsupported content type");
+			return null;
+		}
+
+		int contentLength = -1;
+		String contentLengthHeader = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (contentLengthHeader != null) {
+
+			long length;
+			try {
+				length = Long.parseLong(contentLengthHeader.trim());
+			} catch (NumberFormatException exc) {
+				length = -1;
+			}
+			if (length < 0 || length > Integer.MAX_VALUE) {
+				sendText(exchange, 400, "Invalid content length");
+				return null;
+			}
+			contentLength = (int) length;
+		}
+
+		byte[] body = readBody(exchange, contentLength);
+		if (body == null) {
+			sendText(exchange, 413, "Request too large");
+			return null;
+		}
+
+		// the parameters of the query string come first, the body is indexed without being copied otherwise
+		String query = exchange.getRequestURI().getRawQuery();
+		byte[] encoded = body;
+		if (query != null && !query.isEmpty()) {
+			byte[] queryBytes = query.getBytes(StandardCharsets.US_ASCII);
+			encoded = Arrays.copyOf(queryBytes, queryBytes.length + 1 + body.length);
+			encoded[queryBytes.length] = '&';
+			System.arraycopy(body, 0, encoded, queryBytes.length + 1, body.length);
+		}
+
+		Map<String, Object> parameters;
+		try {
+			parameters = new UrlEncodedParameterMap(ByteBuffer.wrap(encoded));
+		} catch (IllegalArgumentException exc) {
+			sendText(exchange, 412, "Malformed parameters");
+			return null;
+		}
+
+		parameters.remove(PARAM_PRINCIPAL);
+		return parameters;
+	}
+
+	/**
+	 * Reads the body of the request, directly into an array of the declared length when
+	 * the request has a Content-Length header.
+	 * 
+	 * @param contentLength the validated Content-Length of the request or -1 if the header is missing
+	 * @return the body or null if it exceeds the maximum size
+	 */
+	private byte[] readBody(HttpExchange exchange, int contentLength) throws IOException {
+
+		int limit = maxRequestSize;
+		InputStream in = exchange.getRequestBody();
+		if (contentLength >= 0) {
+
+			if (contentLength > limit) {
+				return null;
+			}
+
+			byte[] body = new byte[contentLength];
+			int position = 0;
+			while (position < body.length) {
+
+				int read = in.read(body, position, body.length - position);
+				if (read < 0) {
+					throw new IOException("Unexpected end of the request body");
+				}
+				position += read;
+			}
+
+			// reaching the end of the stream allows the http server to keep the connection alive
+			in.read();
+			return body;
+		}
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+
+			if (body.size() + read > limit) {
+				return null;
+			}
+			body.write(buffer, 0, read);
+		}
+		return body.toByteArray();
+	}
+
+	/**
+	 * Returns the principal of the session identified by the cookie of the request.
+	 */
+	private Optional<Object> findPrincipal(HttpExchange exchange) {
+
+		List<String> cookieHeaders = exchange.getRequestHeaders().get("Cookie");
+		if (cookieHeaders == null) {
+			return Optional.empty();
+		}
+
+		for (String header : cookieHeaders) {
+			for (String cookie : header.split(";")) {
+
+				int separator = cookie.indexOf('=');
+				if (separator > 0 && SESSION_COOKIE.equals(cookie.substring(0, separator).trim())) {
+
+					Optional<Object> principal = sessions.find(cookie.substring(separator + 1).trim());
+					if (principal.isPresent()) {
+						return principal;
+					}
+				}
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Sends the response for the result of a call.
+	 */
+	private void sendResult(HttpExchange exchange, DispatchResult result) throws IOException {
+
+		int statusCode = statusCodeOf(result);
+		if (statusCode != 200) {
+			sendText(exchange, statusCode, result.getStatus() == DispatchResult.Status.DISPATCH_SUCCESS 
+					? result.getResult().getStatus().name() : result.getStatus().name());
+			return;
+		}
+
+		BaseResult value = result.getValue();
+		if (value == null) {
+			sendBytes(exchange, 200, null, null);
+			return;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		resultWriter.write(value, out);
+		sendBytes(exchange, 200, resultWriter.getContentType(), out.toByteArray());
+	}
+
+	private static void sendText(HttpExchange exchange, int statusCode, String text) throws IOException {
+		sendBytes(exchange, statusCode, TEXT_CONTENT_TYPE, text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Sends a response with a fixed length, which keeps the connection alive.
+	 */
+	private static void sendBytes(HttpExchange exchange, int statusCode, String contentType, byte[] body) throws IOException {
+
+		try {
+
+			if (contentType != null) {
+				exchange.getResponseHeaders().set("Content-Type", contentType);
+			}
+
+			if (body == null || body.length == 0) {
+				exchange.sendResponseHeaders(statusCode, -1);
+			} else {
+				exchange.sendResponseHeaders(statusCode, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static String stringValue(Object value) {
+		return value != null ? value.toString() : null;
+	}
+
+	/**
+	 * Creates the daemon threads of the executor owned by the server.
+	 */
+	private static final class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable task) {
+
+			Thread thread = new Thread(task, "ws-server-worker-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
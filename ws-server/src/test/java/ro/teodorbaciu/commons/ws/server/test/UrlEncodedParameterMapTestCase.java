@@ -0,0 +1,100 @@
+package ro.teodorbaciu.commons.ws.server.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.ws.server.UrlEncodedParameterMap;
+
+/**
+ * Tests the lazy decoding of the {@link UrlEncodedParameterMap}.
+ */
+public class UrlEncodedParameterMapTestCase {
+
+	@Test
+	public void testGet() {
+
+		Map<String, Object> parameters = mapOf("module=catalog&op=op-search&text=caf%C3%A9+au+lait&flag&empty=&text=second&&");
+
+		Assert.assertEquals("catalog", parameters.get("module"));
+		Assert.assertEquals("op-search", parameters.get("op"));
+		Assert.assertEquals("café au lait", parameters.get("text"));
+		Assert.assertEquals("", parameters.get("flag"));
+		Assert.assertEquals("", parameters.get("empty"));
+		Assert.assertNull(parameters.get("missing"));
+		Assert.assertNull(parameters.get(1));
+		Assert.assertTrue(parameters.containsKey("flag"));
+		Assert.assertFalse(parameters.containsKey("mod"));
+		Assert.assertEquals(5, parameters.size());
+	}
+
+	@Test
+	public void testEncodedNames() {
+
+		Map<String, Object> parameters = mapOf("a%3Db=1&na%C3%AFve=2&c.p.x+y=3");
+
+		Assert.assertEquals("1", parameters.get("a=b"));
+		Assert.assertEquals("2", parameters.get("naïve"));
+		Assert.assertEquals("3", parameters.get("c.p.x y"));
+		Assert.assertNull(parameters.get("a"));
+	}
+
+	@Test
+	public void testChanges() {
+
+		Map<String, Object> parameters = mapOf("module=catalog&principal=forged");
+
+		Assert.assertEquals("forged", parameters.remove("principal"));
+		Assert.assertNull(parameters.get("principal"));
+		Assert.assertFalse(parameters.containsKey("principal"));
+		Assert.assertNull(parameters.remove("principal"));
+
+		Assert.assertNull(parameters.put("principal", 42));
+		Assert.assertEquals(42, parameters.get("principal"));
+		Assert.assertEquals("catalog", parameters.put("module", "orders"));
+
+		Map<String, Object> expected = new HashMap<>();
+		expected.put("module", "orders");
+		expected.put("principal", 42);
+		Assert.assertEquals(expected, parameters);
+		Assert.assertEquals(expected, new HashMap<>(parameters));
+	}
+
+	@Test
+	public void testBufferRange() {
+
+		byte[] bytes = "ignored&module=catalog&op=op-1".getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 8, bytes.length - 13);
+
+		Map<String, Object> parameters = new UrlEncodedParameterMap(buffer.slice());
+		Assert.assertEquals("catalog", parameters.get("module"));
+		Assert.assertEquals("", parameters.get("op"));
+		Assert.assertNull(parameters.get("ignored"));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes);
+		direct.position(8);
+		Assert.assertEquals("op-1", new UrlEncodedParameterMap(direct).get("op"));
+	}
+
+	@Test
+	public void testInvalidEscape() {
+
+		for (String encoded : new String[] { "a=%", "a=%4", "a=%zz&b=1", "%G1=1" }) {
+			try {
+				mapOf(encoded);
+				Assert.fail("Accepted " + encoded);
+			} catch (IllegalArgumentException exc) {
+				// expected
+			}
+		}
+	}
+
+	private static Map<String, Object> mapOf(String encoded) {
+		return new UrlEncodedParameterMap(ByteBuffer.wrap(encoded.getBytes(StandardCharsets.US_ASCII)));
+	}
+}
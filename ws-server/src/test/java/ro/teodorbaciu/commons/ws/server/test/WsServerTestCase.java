@@ -0,0 +1,259 @@
+package ro.teodorbaciu.commons.ws.server.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.ws.OperationParameter;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+import ro.teodorbaciu.commons.ws.server.ResultWriter;
+import ro.teodorbaciu.commons.ws.server.WsServer;
+import ro.teodorbaciu.commons.ws.transfer.batch.BatchProtocol;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
+
+/**
+ * Tests the endpoints of the {@link WsServer} over keep-alive connections.
+ */
+public class WsServerTestCase {
+
+	private WsServer server;
+	private Socket socket;
+
+	@Before
+	public void setUp() throws IOException {
+
+		ServiceModule catalog = new ServiceModule("catalog");
+		catalog.addOperation(new OpEcho());
+		ServiceModule account = new ServiceModule("account");
+		account.addOperation(new OpWhoAmI());
+
+		ServiceDispatcher dispatcher = new ServiceDispatcher("server");
+		dispatcher.addModule(catalog);
+		dispatcher.addModule(account);
+
+		server = new WsServer(dispatcher, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new TextResultWriter());
+		server.addPublicModule("catalog");
+		server.setLoginHandler(parameters -> "secret".equals(parameters.get("password"))
+				? Optional.of(parameters.get("username")) : Optional.empty());
+		server.start();
+
+		socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		socket.close();
+		server.close();
+	}
+
+	@Test
+	public void testPublicCalls() throws IOException {
+
+		Response response = post("/pws", "module=catalog&op=op-echo&text=hello%20world", null);
+		Assert.assertEquals(200, response.statusCode);
+		Assert.assertEquals("hello world", response.body);
+
+		// module and operation in the query string, as sent with multipart posts
+		response = post("/pws?module=catalog&op=op-echo", "text=query", null);
+		Assert.assertEquals(200, response.statusCode);
+		Assert.assertEquals("query", response.body);
+
+		// all the calls used the same connection
+		Assert.assertEquals(412, post("/pws", "module=catalog&op=op-echo", null).statusCode);
+		Assert.assertEquals(412, post("/pws", "op=op-echo", null).statusCode);
+		Assert.assertEquals(403, post("/pws", "module=catalog&op=op-missing", null).statusCode);
+		Assert.assertEquals(403, post("/pws", "module=account&op=op-whoami", null).statusCode);
+		Assert.assertEquals(200, post("/pws", "module=catalog&op=op-echo&text=again", null).statusCode);
+	}
+
+	@Test
+	public void testAuthenticatedCalls() throws IOException {
+
+		Assert.assertEquals(401, post("/aws", "module=account&op=op-whoami", null).statusCode);
+		Assert.assertEquals(401, post("/aws", "module=account&op=op-whoami", WsServer.SESSION_COOKIE + "=forged").statusCode);
+		Assert.assertEquals(401, post("/login", "username=ana&password=wrong", null).statusCode);
+
+		Response login = post("/login", "username=ana&password=secret&only-send-http-response=true", null);
+		Assert.assertEquals(200, login.statusCode);
+		Assert.assertNotNull(login.sessionCookie);
+
+		// the principal cannot be sent by the client
+		Response response = post("/aws", "module=account&op=op-whoami&" + WsServer.PARAM_PRINCIPAL + "=admin", login.sessionCookie);
+		Assert.assertEquals(200, response.statusCode);
+		Assert.assertEquals("ana", response.body);
+	}
+
+	@Test
+	public void testBatch() throws IOException {
+
+		String batch = BatchProtocol.PARAM_BATCH_SIZE + "=3"
+				+ "&c0.module=catalog&c0.op=op-echo&c0.independent=true&c0.p.text=first"
+				+ "&c1.module=account&c1.op=op-whoami"
+				+ "&c2.module=catalog&c2.op=op-echo";
+
+		Assert.assertEquals(401, post("/bws", batch, null).statusCode);
+
+		Response login = post("/login", "username=ana&password=secret", null);
+		Response response = post("/bws", batch, login.sessionCookie);
+		Assert.assertEquals(200, response.statusCode);
+
+		List<BatchProtocol.Part> parts = BatchProtocol.decodeResponse(response.body);
+		Assert.assertEquals(3, parts.size());
+		Assert.assertEquals(200, parts.get(0).getStatusCode());
+		Assert.assertEquals("first", parts.get(0).getContent());
+		Assert.assertEquals(200, parts.get(1).getStatusCode());
+		Assert.assertEquals("ana", parts.get(1).getContent());
+		Assert.assertEquals(412, parts.get(2).getStatusCode());
+
+		Assert.assertEquals(412, post("/bws", BatchProtocol.PARAM_BATCH_SIZE + "=100000", login.sessionCookie).statusCode);
+	}
+
+	@Test
+	public void testInvalidContentLength() throws IOException {
+
+		for (String contentLength : new String[] {"-1", "4294967296", "99999999999999999999", "ten"}) {
+
+			try (Socket connection = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+
+				String request = "POST /pws HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/x-www-form-urlencoded\r\n"
+						+ "Content-Length: " + contentLength + "\r\n\r\nmodule=catalog&op=op-echo&text=hello";
+				connection.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+				connection.getOutputStream().flush();
+
+				String statusLine = readLine(connection.getInputStream());
+				Assert.assertEquals(contentLength, 400, Integer.parseInt(statusLine.split(" ")[1]));
+			}
+		}
+
+		Assert.assertEquals(200, post("/pws", "module=catalog&op=op-echo&text=hello", null).statusCode);
+	}
+
+	/**
+	 * Posts the form on the connection opened by the test.
+	 */
+	private Response post(String uri, String form, String cookie) throws IOException {
+
+		byte[] body = form.getBytes(StandardCharsets.UTF_8);
+		StringBuilder request = new StringBuilder();
+		request.append("POST ").append(uri).append(" HTTP/1.1\r\n");
+		request.append("Host: localhost\r\n");
+		request.append("Content-Type: application/x-www-form-urlencoded\r\n");
+		request.append("Content-Length: ").append(body.length).append("\r\n");
+		if (cookie != null) {
+			request.append("Cookie: ").append(cookie).append("\r\n");
+		}
+		request.append("\r\n");
+
+		OutputStream out = socket.getOutputStream();
+		out.write(request.toString().getBytes(StandardCharsets.US_ASCII));
+		out.write(body);
+		out.flush();
+
+		InputStream in = socket.getInputStream();
+		Response response = new Response();
+		String statusLine = readLine(in);
+		response.statusCode = Integer.parseInt(statusLine.split(" ")[1]);
+
+		int contentLength = 0;
+		String header;
+		while (!(header = readLine(in)).isEmpty()) {
+
+			int separator = header.indexOf(':');
+			String name = header.substring(0, separator).trim();
+			String value = header.substring(separator + 1).trim();
+			if (name.equalsIgnoreCase("Content-Length")) {
+				contentLength = Integer.parseInt(value);
+			} else if (name.equalsIgnoreCase("Set-Cookie")) {
+				response.sessionCookie = value.substring(0, value.indexOf(';'));
+			} else if (name.equalsIgnoreCase("Connection")) {
+				Assert.assertFalse("close".equalsIgnoreCase(value));
+			}
+		}
+
+		byte[] content = new byte[contentLength];
+		int position = 0;
+		while (position < contentLength) {
+			int read = in.read(content, position, contentLength - position);
+			Assert.assertTrue(read > 0);
+			position += read;
+		}
+		response.body = new String(content, StandardCharsets.UTF_8);
+		return response;
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int value;
+		while ((value = in.read()) != '\n') {
+			Assert.assertTrue("Connection closed", value >= 0);
+			if (value != '\r') {
+				line.write(value);
+			}
+		}
+		return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+	}
+
+	private static class Response {
+		int statusCode;
+		String body;
+		String sessionCookie;
+	}
+
+	/**
+	 * Writes the wrapped object as text.
+	 */
+	private static class TextResultWriter implements ResultWriter {
+
+		@Override
+		public String getContentType() {
+			return "text/plain; charset=UTF-8";
+		}
+
+		@Override
+		public void write(BaseResult value, OutputStream out) throws IOException {
+			out.write(String.valueOf(((ObjectWrapper<?>) value).getObject()).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@OperationParameter(name = "text", mandatory = true)
+	private static class OpEcho extends ServiceOperation {
+
+		OpEcho() {
+			super("op-echo");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+			return Optional.of(new ObjectWrapper<>(parameters.get("text")));
+		}
+	}
+
+	private static class OpWhoAmI extends ServiceOperation {
+
+		OpWhoAmI() {
+			super("op-whoami");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+			return Optional.of(new ObjectWrapper<>(parameters.get(WsServer.PARAM_PRINCIPAL)));
+		}
+	}
+}
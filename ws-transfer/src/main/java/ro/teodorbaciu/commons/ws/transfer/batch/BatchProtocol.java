@@ -0,0 +1,171 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package ro.teodorbaciu.commons.ws.transfer.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes how several webservice calls are sent in a single request and how
+ * their results are sent back.
+ * <p>
+ * The request is a form post containing the {@link #PARAM_BATCH_SIZE} parameter and, for
+ * each call, the parameters returned by {@link #callParameterName(int, String)} for the
+ * module, the operation, the independent flag and the parameters of the operation.
+ * <p>
+ * The response contains one part for each call, in the order of the calls. Each part
+ * is formed by the status code, a space, the number of characters of the content, a new
+ * line and the content itself.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public class BatchProtocol {
+
+	/**
+	 * The name of the parameter that contains the number of calls in the batch.
+	 */
+	public final static String PARAM_BATCH_SIZE = "batch-size";
+
+	/**
+	 * The name of the call parameter that contains the module name.
+	 */
+	public final static String CALL_PARAM_MODULE = "module";
+
+	/**
+	 * The name of the call parameter that contains the operation name.
+	 */
+	public final static String CALL_PARAM_OPERATION = "op";
+
+	/**
+	 * The name of the call parameter that marks a call as independent of the other calls.
+	 */
+	public final static String CALL_PARAM_INDEPENDENT = "independent";
+
+	/**
+	 * The prefix of the parameters that are passed to the operation.
+	 */
+	public final static String CALL_PARAM_PREFIX = "p.";
+
+	/**
+	 * The status code of a successful call.
+	 */
+	public final static int STATUS_OK = 200;
+
+	private BatchProtocol() {
+	}
+
+	/**
+	 * Returns the name under which a parameter of a call is sent.
+	 * 
+	 * @param callIndex the position of the call in the batch
+	 * @param name the name of the parameter
+	 * @return the name of the request parameter
+	 */
+	public static String callParameterName(int callIndex, String name) {
+		return "c" + callIndex + "." + name;
+	}
+
+	/**
+	 * Returns the name under which a parameter of the operation executed by a call is sent.
+	 * 
+	 * @param callIndex the position of the call in the batch
+	 * @param name the name of the operation parameter
+	 * @return the name of the request parameter
+	 */
+	public static String operationParameterName(int callIndex, String name) {
+		return callParameterName(callIndex, CALL_PARAM_PREFIX + name);
+	}
+
+	/**
+	 * Encodes the results of the calls into the response content.
+	 * 
+	 * @param parts the results of the calls, in the order of the calls
+	 * @return the content of the response
+	 */
+	public static String encodeResponse(List<Part> parts) {
+
+		StringBuilder builder = new StringBuilder();
+		for (Part part : parts) {
+
+			String content = part.getContent() != null ? part.getContent() : "";
+			builder.append(part.getStatusCode()).append(' ').append(content.length()).append('\n');
+			builder.append(content);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Decodes the results of the calls from the response content.
+	 * 
+	 * @param response the content of the response
+	 * @return the results of the calls, in the order of the calls
+	 * @throws IllegalArgumentException if the response is not correctly formed
+	 */
+	public static List<Part> decodeResponse(String response) {
+
+		List<Part> parts = new ArrayList<>();
+		int position = 0;
+		while (position < response.length()) {
+
+			int separator = response.indexOf(' ', position);
+			int lineEnd = response.indexOf('\n', position);
+			if (separator < 0 || lineEnd < separator) {
+				throw new IllegalArgumentException("Malformed batch response at position " + position);
+			}
+
+			int statusCode = Integer.parseInt(response.substring(position, separator));
+			int length = Integer.parseInt(response.substring(separator + 1, lineEnd));
+			int contentStart = lineEnd + 1;
+			if (length < 0 || contentStart + length > response.length()) {
+				throw new IllegalArgumentException("Malformed batch response at position " + position);
+			}
+
+			parts.add(new Part(statusCode, response.substring(contentStart, contentStart + length)));
+			position = contentStart + length;
+		}
+		return parts;
+	}
+
+	/**
+	 * The result of one call in a batch.
+	 */
+	public static class Part {
+
+		private final int statusCode;
+
+		private final String content;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param statusCode the http status code corresponding to the result of the call
+		 * @param content the content returned by the call
+		 */
+		public Part(int statusCode, String content) {
+			this.statusCode = statusCode;
+			this.content = content;
+		}
+
+		public int getStatusCode() {
+			return statusCode;
+		}
+
+		public String getContent() {
+			return content;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.virtualthreads;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+
+/**
+ * Executes the requests of a {@link ServiceDispatcher} on virtual threads, one thread
+ * per request. Operations that block, for example on a database call, only park their
+ * virtual thread, so a large number of concurrent requests does not exhaust the platform threads.
+ * <p>
+ * The number of requests executed concurrently for a module can be limited with
+ * {@link #setModuleConcurrencyLimit(String, int)}; the requests over the limit wait,
+ * on their own virtual thread, for a running request of the same module to complete.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public class VirtualThreadDispatcher implements AutoCloseable {
+
+	/**
+	 * The dispatcher that executes the requests.
+	 */
+	private final ServiceDispatcher dispatcher;
+
+	/**
+	 * Starts a new virtual thread for each request.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * The concurrency limits defined for modules, mapped by the module name.
+	 */
+	private final ConcurrentHashMap<String, ModuleLimit> mapModuleLimits;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param dispatcher the dispatcher that executes the requests
+	 */
+	public VirtualThreadDispatcher(ServiceDispatcher dispatcher) {
+
+		if (dispatcher == null) {
+			throw new NullPointerException("The dispatcher parameter cannot be null");
+		}
+
+		this.dispatcher = dispatcher;
+		this.executor = Executors.newVirtualThreadPerTaskExecutor();
+		this.mapModuleLimits = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Dispatches the request on a new virtual thread.
+	 * 
+	 * @param moduleName the name of the module which contains the operation to execute
+	 * @param operationName the name of the operation to be executed
+	 * @param parameters a map containining the name value pairs
+	 * @return a {@link CompletableFuture} completed with the result of the dispatch
+	 */
+	public CompletableFuture<DispatchResult> dispatch(String moduleName, String operationName, Map<String, Object> parameters) {
+		return CompletableFuture.supplyAsync(() -> executeDispatch(moduleName, operationName, parameters), executor);
+	}
+
+	/**
+	 * Limits the number of requests executed concurrently for the specified module. The limit
+	 * can be changed at any time; the requests already running count against the new limit, so
+	 * after lowering it no new request starts until enough of them complete.
+	 * 
+	 * @param moduleName the name of the module
+	 * @param maxConcurrentRequests the maximum number of requests executed at the same time
+	 */
+	public void setModuleConcurrencyLimit(String moduleName, int maxConcurrentRequests) {
+
+		if (maxConcurrentRequests < 1) {
+			throw new IllegalArgumentException("maxConcurrentRequests must be at least 1");
+		}
+		mapModuleLimits.compute(moduleName, (name, limit) -> {
+			if (limit == null) {
+				return new ModuleLimit(maxConcurrentRequests);
+			}
+			limit.resize(maxConcurrentRequests);
+			limit.unlimited = false;
+			return limit;
+		});
+	}
+
+	/**
+	 * Removes the concurrency limit of the specified module. The module keeps counting its running requests,
+	 * so a limit set again later also applies to the requests started before or while the module had no limit.
+	 * The requests already waiting for the removed limit still wait for a running request to complete.
+	 * 
+	 * @param moduleName the name of the module
+	 */
+	public void removeModuleConcurrencyLimit(String moduleName) {
+
+		mapModuleLimits.computeIfPresent(moduleName, (name, limit) -> {
+			limit.unlimited = true;
+			return limit;
+		});
+	}
+
+	/**
+	 * Stops accepting requests and waits for the running ones to complete.
+	 */
+	@Override
+	public void close() {
+		executor.close();
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("dispatcher", dispatcher).toString();
+	}
+
+	/**
+	 * Executes the dispatch on the current virtual thread, within the limit of the module.
+	 */
+	private DispatchResult executeDispatch(String moduleName, String operationName, Map<String, Object> parameters) {
+
+		ModuleLimit limit = moduleName != null ? mapModuleLimits.get(moduleName) : null;
+		if (limit == null) {
+			return dispatcher.dispatch(moduleName, operationName, parameters);
+		}
+
+		limit.enter();
+		try {
+			return dispatcher.dispatch(moduleName, operationName, parameters);
+		} finally {
+			limit.release();
+		}
+	}
+
+	/**
+	 * The concurrency limit of a module, whose permits are adjusted in place when the limit changes.
+	 * Every running request of the module holds a permit, including those started while the limit
+	 * was removed, so the permits always reflect the requests in flight.
+	 */
+	private static final class ModuleLimit extends Semaphore {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The current limit, changed under the lock of the map entry.
+		 */
+		private int maxConcurrentRequests;
+
+		/**
+		 * True while the limit is removed, the requests take their permit without waiting.
+		 */
+		volatile boolean unlimited;
+
+		ModuleLimit(int maxConcurrentRequests) {
+
+			super(maxConcurrentRequests);
+			this.maxConcurrentRequests = maxConcurrentRequests;
+		}
+
+		/**
+		 * Changes the number of permits by the difference between the limits; the permits may become
+		 * negative while more requests than the new limit are running.
+		 */
+		void resize(int newMaxConcurrentRequests) {
+
+			int delta = newMaxConcurrentRequests - maxConcurrentRequests;
+			if (delta > 0) {
+				release(delta);
+			} else if (delta < 0) {
+				reducePermits(-delta);
+			}
+			maxConcurrentRequests = newMaxConcurrentRequests;
+		}
+
+		/**
+		 * Takes the permit of a request, waiting for it unless the limit is removed.
+		 */
+		void enter() {
+
+			if (unlimited) {
+				reducePermits(1);
+			} else {
+				acquireUninterruptibly();
+			}
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package ro.teodorbaciu.commons.ws.virtualthreads.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
+import ro.teodorbaciu.commons.ws.virtualthreads.VirtualThreadDispatcher;
+
+public class VirtualThreadDispatcherTestCase {
+
+	private static final String MODULE_NAME = "module";
+
+	private AtomicInteger running;
+	private AtomicInteger maxRunning;
+	private VirtualThreadDispatcher virtualThreadDispatcher;
+
+	@Before
+	public void setUp() {
+
+		running = new AtomicInteger();
+		maxRunning = new AtomicInteger();
+
+		ServiceModule module = new ServiceModule(MODULE_NAME);
+		module.addOperation(new ServiceOperation("op-blocking") {
+
+			@Override
+			public Optional<BaseResult> execute(Map<String, Object> parameters) {
+
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException exc) {
+					Thread.currentThread().interrupt();
+				} finally {
+					running.decrementAndGet();
+				}
+				return Optional.of(new ObjectWrapper<>("done"));
+			}
+		});
+
+		ServiceDispatcher dispatcher = new ServiceDispatcher("dispatcher");
+		dispatcher.addModule(module);
+		virtualThreadDispatcher = new VirtualThreadDispatcher(dispatcher);
+	}
+
+	@After
+	public void tearDown() {
+		virtualThreadDispatcher.close();
+	}
+
+	@Test
+	public void testManyConcurrentBlockingRequests() throws Exception {
+
+		List<CompletableFuture<DispatchResult>> futures = dispatch(10_000);
+
+		for (CompletableFuture<DispatchResult> future : futures) {
+			Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, future.get(30, TimeUnit.SECONDS).getStatus());
+		}
+
+		// the blocking calls overlapped instead of queuing behind a small thread pool
+		Assert.assertTrue(maxRunning.get() > 1_000);
+	}
+
+	@Test
+	public void testModuleConcurrencyLimit() throws Exception {
+
+		virtualThreadDispatcher.setModuleConcurrencyLimit(MODULE_NAME, 5);
+
+		for (CompletableFuture<DispatchResult> future : dispatch(20)) {
+			Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, future.get(30, TimeUnit.SECONDS).getStatus());
+		}
+		Assert.assertEquals(5, maxRunning.get());
+	}
+
+	@Test
+	public void testLowerModuleConcurrencyLimit() throws Exception {
+
+		virtualThreadDispatcher.setModuleConcurrencyLimit(MODULE_NAME, 5);
+		List<CompletableFuture<DispatchResult>> futures = dispatch(20);
+		Thread.sleep(100);
+
+		// the requests still running count against the new limit
+		virtualThreadDispatcher.setModuleConcurrencyLimit(MODULE_NAME, 2);
+		Thread.sleep(200);
+		CompletableFuture<Void> allDone = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+		int maxRunningAfterChange = 0;
+		while (!allDone.isDone()) {
+			maxRunningAfterChange = Math.max(maxRunningAfterChange, running.get());
+			Thread.sleep(10);
+		}
+
+		for (CompletableFuture<DispatchResult> future : futures) {
+			Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, future.get(30, TimeUnit.SECONDS).getStatus());
+		}
+		Assert.assertTrue("Running after the change: " + maxRunningAfterChange, maxRunningAfterChange <= 2);
+	}
+
+	@Test
+	public void testRemoveAndSetModuleConcurrencyLimit() throws Exception {
+
+		virtualThreadDispatcher.setModuleConcurrencyLimit(MODULE_NAME, 2);
+		List<CompletableFuture<DispatchResult>> futures = new ArrayList<>(dispatch(2));
+		Thread.sleep(50);
+
+		// the requests started with or without the limit count against the limit set again
+		virtualThreadDispatcher.removeModuleConcurrencyLimit(MODULE_NAME);
+		futures.addAll(dispatch(2));
+		Thread.sleep(50);
+		virtualThreadDispatcher.setModuleConcurrencyLimit(MODULE_NAME, 2);
+		futures.addAll(dispatch(4));
+
+		CompletableFuture<Void> allDone = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+		Thread.sleep(250);
+		int maxRunningAfterChange = 0;
+		while (!allDone.isDone()) {
+			maxRunningAfterChange = Math.max(maxRunningAfterChange, running.get());
+			Thread.sleep(10);
+		}
+
+		for (CompletableFuture<DispatchResult> future : futures) {
+			Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, future.get(30, TimeUnit.SECONDS).getStatus());
+		}
+		Assert.assertEquals(4, maxRunning.get());
+		Assert.assertTrue("Running after the change: " + maxRunningAfterChange, maxRunningAfterChange <= 2);
+	}
+
+	private List<CompletableFuture<DispatchResult>> dispatch(int count) {
+
+		List<CompletableFuture<DispatchResult>> futures = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			futures.add(virtualThreadDispatcher.dispatch(MODULE_NAME, "op-blocking", Collections.emptyMap()));
+		}
+		return futures;
+	}
+}
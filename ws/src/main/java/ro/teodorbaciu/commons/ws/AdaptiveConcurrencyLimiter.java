@@ -0,0 +1,204 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * {@link ConcurrencyLimiter} that adapts the number of admitted concurrent calls to the observed
+ * latency, with an additive increase / multiplicative decrease policy:
+ * <ul>
+ * <li>a call that completes within the latency threshold, while at least half of the limit is used,
+ * raises the limit by one;</li>
+ * <li>a call that exceeds the threshold, ends with the {@link ExecutionResult.Status#INVALID} status or
+ * with an exception lowers the limit by the backoff ratio.</li>
+ * </ul>
+ * Only the calls started after the last decrease can lower the limit again, so that a burst of
+ * slow calls admitted under the previous limit counts as a single overload signal.
+ * <p>
+ * Calls above the limit are rejected without waiting: under overload the excess calls are shed 
+ * quickly and the latency of the admitted ones stays close to the threshold.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public class AdaptiveConcurrencyLimiter implements ConcurrencyLimiter {
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private final long latencyThresholdNanos;
+
+	private final double backoffRatio;
+
+	private final AtomicInteger limit;
+
+	private final AtomicInteger concurrentCalls = new AtomicInteger();
+
+	/**
+	 * The {@link System#nanoTime()} of the last decrease of the limit.
+	 */
+	private final AtomicLong lastDecreaseNanos = new AtomicLong(System.nanoTime());
+
+	private final LongAdder rejectedCount = new LongAdder();
+
+	/**
+	 * Constructor using a backoff ratio of 0.9.
+	 * 
+	 * @param initialLimit the limit used until the first calls are measured
+	 * @param minLimit the lowest limit
+	 * @param maxLimit the highest limit
+	 * @param latencyThreshold the latency above which the limit is lowered
+	 * @param unit the unit of latencyThreshold
+	 */
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThreshold, TimeUnit unit) {
+		this(initialLimit, minLimit, maxLimit, latencyThreshold, unit, 0.9);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param initialLimit the limit used until the first calls are measured
+	 * @param minLimit the lowest limit
+	 * @param maxLimit the highest limit
+	 * @param latencyThreshold the latency above which the limit is lowered
+	 * @param unit the unit of latencyThreshold
+	 * @param backoffRatio the factor applied to the limit when it is lowered, between 0 and 1
+	 */
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThreshold, TimeUnit unit, double backoffRatio) {
+
+		if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException("The limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+		}
+		if (latencyThreshold <= 0) {
+			throw new IllegalArgumentException("The latency threshold must be positive");
+		}
+		if (backoffRatio <= 0 || backoffRatio >= 1) {
+			throw new IllegalArgumentException("The backoff ratio must be between 0 and 1");
+		}
+
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+		this.backoffRatio = backoffRatio;
+		this.limit = new AtomicInteger(initialLimit);
+	}
+
+	@Override
+	public boolean acquire() {
+		return tryAcquire();
+	}
+
+	@Override
+	public boolean tryAcquire() {
+
+		while (true) {
+			int current = concurrentCalls.get();
+			if (current >= limit.get()) {
+				rejectedCount.increment();
+				return false;
+			}
+			if (concurrentCalls.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public void release(long latencyNanos, boolean valid) {
+
+		int calls = concurrentCalls.getAndDecrement();
+		if (valid && latencyNanos <= latencyThresholdNanos) {
+			increase(calls);
+		} else {
+			decrease(System.nanoTime() - latencyNanos);
+		}
+	}
+
+	@Override
+	public void releaseUnused() {
+		concurrentCalls.decrementAndGet();
+	}
+
+	/**
+	 * Raises the limit if the calls use at least half of it, otherwise the limit is not what restrains them.
+	 */
+	private void increase(int calls) {
+
+		while (true) {
+			int current = limit.get();
+			if (current >= maxLimit || calls * 2 < current) {
+				return;
+			}
+			if (limit.compareAndSet(current, current + 1)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Lowers the limit, unless the call started before the previous decrease.
+	 */
+	private void decrease(long callStartNanos) {
+
+		long lastDecrease = lastDecreaseNanos.get();
+		if (callStartNanos - lastDecrease < 0 || !lastDecreaseNanos.compareAndSet(lastDecrease, System.nanoTime())) {
+			return;
+		}
+
+		while (true) {
+			int current = limit.get();
+			int lowered = Math.max(minLimit, (int) (current * backoffRatio));
+			if (lowered == current || limit.compareAndSet(current, lowered)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the current limit.
+	 */
+	public int getLimit() {
+		return limit.get();
+	}
+
+	/**
+	 * Returns the number of calls executing at the moment.
+	 */
+	public int getConcurrentCalls() {
+		return concurrentCalls.get();
+	}
+
+	/**
+	 * Returns the number of calls rejected since the limiter was created.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("limit", getLimit()).append("concurrentCalls", getConcurrentCalls())
+				.append("latencyThresholdNanos", latencyThresholdNanos).toString();
+	}
+}
@@ -0,0 +1,79 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+
+/**
+ * Base class for the operations that complete asynchronously, for example operations that
+ * wait for a database or for another service. Such an operation does not keep the calling
+ * thread busy when dispatched through {@link ServiceDispatcher#dispatchAsync(String, String, Map)}.
+ * 
+ * @author Teodor Baciu
+ */
+public abstract class AsyncServiceOperation extends ServiceOperation {
+
+	/**
+	 * Constructor.
+	 * @param operationName the name of the operation
+	 */
+	public AsyncServiceOperation(String operationName) {
+		super(operationName);
+	}
+
+	/**
+	 * Executes the operation asynchronously.
+	 * @param parameters key value based map containing the parameters received by this operation
+	 * @return a {@link CompletionStage} completed with an {@link Optional} containg an instance of {@link BaseResult}
+	 */
+	@Override
+	public abstract CompletionStage<Optional<BaseResult>> executeAsync(Map<String, Object> parameters);
+
+	/**
+	 * Executes the operation asynchronously, ignoring the parsed parameters.
+	 * Async operations that use the parsed parameters can override this method.
+	 */
+	@Override
+	public CompletionStage<Optional<BaseResult>> executeAsync(Map<String, Object> parameters, ParsedParameters parsedParameters) {
+		return executeAsync(parameters);
+	}
+
+	/**
+	 * Executes the operation and waits for its completion. Used when the operation is
+	 * dispatched synchronously.
+	 */
+	@Override
+	public Optional<BaseResult> execute(Map<String, Object> parameters) {
+
+		try {
+
+			return executeAsync(parameters).toCompletableFuture().join();
+
+		} catch (CompletionException exc) {
+
+			if (exc.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) exc.getCause();
+			}
+			throw exc;
+		}
+	}
+}
@@ -0,0 +1,179 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import ro.teodorbaciu.commons.ws.transfer.batch.BatchProtocol;
+
+/**
+ * A call to an operation that is part of a batch dispatched with
+ * {@link ServiceDispatcher#dispatchBatch(List)}.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public class BatchCall {
+
+	/**
+	 * The maximum number of calls accepted by {@link #fromRequestParameters(Map)}.
+	 */
+	public static final int DEFAULT_MAX_CALLS = 256;
+
+	/**
+	 * The name of the module which contains the operation to execute.
+	 */
+	private final String moduleName;
+
+	/**
+	 * The name of the operation to execute.
+	 */
+	private final String operationName;
+
+	/**
+	 * The parameters to pass to the operation.
+	 */
+	private final Map<String, Object> parameters;
+
+	/**
+	 * Marks the call as not depending on the other calls of the batch, which allows 
+	 * executing it in parallel with them.
+	 */
+	private final boolean independent;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param moduleName the name of the module which contains the operation to execute
+	 * @param operationName the name of the operation to execute
+	 * @param parameters a map containining the name value pairs
+	 * @param independent true if the call can be executed in parallel with the other calls
+	 */
+	public BatchCall(String moduleName, String operationName, Map<String, Object> parameters, boolean independent) {
+		this.moduleName = moduleName;
+		this.operationName = operationName;
+		this.parameters = parameters;
+		this.independent = independent;
+	}
+
+	/**
+	 * Creates the calls from the parameters of a batch request, as described by {@link BatchProtocol},
+	 * accepting at most {@link #DEFAULT_MAX_CALLS} calls.
+	 * 
+	 * @param requestParameters the parameters of the batch request
+	 * @return the calls, in the order in which they were sent
+	 * @throws IllegalArgumentException if the batch size parameter is missing or invalid
+	 */
+	public static List<BatchCall> fromRequestParameters(Map<String, Object> requestParameters) {
+		return fromRequestParameters(requestParameters, DEFAULT_MAX_CALLS);
+	}
+
+	/**
+	 * Creates the calls from the parameters of a batch request, as described by {@link BatchProtocol}.
+	 * The batch size is sent by the client, so it is checked before allocating anything for the calls.
+	 * 
+	 * @param requestParameters the parameters of the batch request
+	 * @param maxCalls the maximum number of calls accepted in the batch
+	 * @return the calls, in the order in which they were sent
+	 * @throws IllegalArgumentException if the batch size parameter is missing, negative or greater than maxCalls
+	 */
+	public static List<BatchCall> fromRequestParameters(Map<String, Object> requestParameters, int maxCalls) {
+
+		Object batchSize = requestParameters.get(BatchProtocol.PARAM_BATCH_SIZE);
+		int callCount;
+		try {
+			callCount = Integer.parseInt(String.valueOf(batchSize));
+		} catch (NumberFormatException exc) {
+			throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+		}
+		if (callCount < 0) {
+			throw new IllegalArgumentException("The batch size cannot be negative: " + callCount);
+		}
+		if (callCount > maxCalls) {
+			throw new IllegalArgumentException("The batch size " + callCount + " exceeds the maximum of " + maxCalls + " calls");
+		}
+
+		List<BatchCall> calls = new ArrayList<>(callCount);
+		List<Map<String, Object>> callParameters = new ArrayList<>(callCount);
+		for (int i = 0; i < callCount; i++) {
+			callParameters.add(new HashMap<>());
+		}
+
+		// group the operation parameters by call
+		for (Map.Entry<String, Object> entry : requestParameters.entrySet()) {
+
+			String name = entry.getKey();
+			int separator = name.indexOf('.');
+			if (!name.startsWith("c") || separator < 2 || !name.startsWith(BatchProtocol.CALL_PARAM_PREFIX, separator + 1)) {
+				continue;
+			}
+
+			int callIndex;
+			try {
+				callIndex = Integer.parseInt(name.substring(1, separator));
+			} catch (NumberFormatException exc) {
+				continue;
+			}
+
+			if (callIndex >= 0 && callIndex < callCount) {
+				String parameterName = name.substring(separator + 1 + BatchProtocol.CALL_PARAM_PREFIX.length());
+				callParameters.get(callIndex).put(parameterName, entry.getValue());
+			}
+		}
+
+		for (int i = 0; i < callCount; i++) {
+
+			Object moduleName = requestParameters.get(BatchProtocol.callParameterName(i, BatchProtocol.CALL_PARAM_MODULE));
+			Object operationName = requestParameters.get(BatchProtocol.callParameterName(i, BatchProtocol.CALL_PARAM_OPERATION));
+			Object independent = requestParameters.get(BatchProtocol.callParameterName(i, BatchProtocol.CALL_PARAM_INDEPENDENT));
+
+			calls.add(new BatchCall(moduleName != null ? moduleName.toString() : null,
+					operationName != null ? operationName.toString() : null, 
+					callParameters.get(i),
+					Boolean.parseBoolean(String.valueOf(independent))));
+		}
+
+		return calls;
+	}
+
+	public String getModuleName() {
+		return moduleName;
+	}
+
+	public String getOperationName() {
+		return operationName;
+	}
+
+	public Map<String, Object> getParameters() {
+		return parameters;
+	}
+
+	public boolean isIndependent() {
+		return independent;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("moduleName", moduleName).append("operationName", operationName)
+				.append("independent", independent).toString();
+	}
+}
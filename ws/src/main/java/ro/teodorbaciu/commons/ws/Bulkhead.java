@@ -0,0 +1,252 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Fixed {@link ConcurrencyLimiter}: admits up to a maximum number of concurrent calls and keeps 
+ * a bounded number of calls waiting, for a bounded time, for a permit. The other calls are 
+ * rejected at once. The limits can be changed at any time.
+ * <p>
+ * Acquiring and releasing a permit takes no lock while there are no waiting calls. A call does not wait
+ * beyond the deadline of its {@link ExecutionContext}.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public class Bulkhead implements ConcurrencyLimiter {
+
+	private volatile int maxConcurrentCalls;
+
+	private volatile int maxWaitingCalls;
+
+	private volatile long maxWaitNanos;
+
+	private final AtomicInteger concurrentCalls = new AtomicInteger();
+
+	private final AtomicInteger waitingCalls = new AtomicInteger();
+
+	private final LongAdder rejectedCount = new LongAdder();
+
+	/**
+	 * Signals the waiting calls that a permit was released.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition permitReleased = lock.newCondition();
+
+	/**
+	 * Constructor for a bulkhead that rejects the calls exceeding the limit without waiting.
+	 * 
+	 * @param maxConcurrentCalls the maximum number of concurrent calls
+	 */
+	public Bulkhead(int maxConcurrentCalls) {
+		this(maxConcurrentCalls, 0, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxConcurrentCalls the maximum number of concurrent calls
+	 * @param maxWaitingCalls the maximum number of calls waiting for a permit
+	 * @param maxWait the maximum time a call waits for a permit
+	 * @param unit the unit of maxWait
+	 */
+	public Bulkhead(int maxConcurrentCalls, int maxWaitingCalls, long maxWait, TimeUnit unit) {
+
+		setMaxConcurrentCalls(maxConcurrentCalls);
+		setMaxWaitingCalls(maxWaitingCalls);
+		setMaxWait(maxWait, unit);
+	}
+
+	@Override
+	public boolean acquire() {
+
+		if (tryAcquirePermit()) {
+			return true;
+		}
+
+		if (maxWaitNanos == 0 || !enterQueue()) {
+			rejectedCount.increment();
+			return false;
+		}
+
+		try {
+			long remainingNanos = Math.min(maxWaitNanos, ExecutionContext.current().getRemaining(TimeUnit.NANOSECONDS));
+			lock.lock();
+			try {
+				while (!tryAcquirePermit()) {
+					if (remainingNanos <= 0) {
+						rejectedCount.increment();
+						return false;
+					}
+					remainingNanos = permitReleased.awaitNanos(remainingNanos);
+				}
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			rejectedCount.increment();
+			return false;
+		} finally {
+			waitingCalls.decrementAndGet();
+		}
+	}
+
+	@Override
+	public boolean tryAcquire() {
+
+		if (tryAcquirePermit()) {
+			return true;
+		}
+		rejectedCount.increment();
+		return false;
+	}
+
+	@Override
+	public void release(long latencyNanos, boolean valid) {
+		releaseUnused();
+	}
+
+	@Override
+	public void releaseUnused() {
+
+		concurrentCalls.decrementAndGet();
+		if (waitingCalls.get() > 0) {
+			signalWaitingCalls(false);
+		}
+	}
+
+	private boolean tryAcquirePermit() {
+
+		while (true) {
+			int current = concurrentCalls.get();
+			if (current >= maxConcurrentCalls) {
+				return false;
+			}
+			if (concurrentCalls.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private boolean enterQueue() {
+
+		while (true) {
+			int current = waitingCalls.get();
+			if (current >= maxWaitingCalls) {
+				return false;
+			}
+			if (waitingCalls.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private void signalWaitingCalls(boolean all) {
+
+		lock.lock();
+		try {
+			if (all) {
+				permitReleased.signalAll();
+			} else {
+				permitReleased.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Changes the maximum number of concurrent calls. The calls already executing are not affected
+	 * when the limit is lowered.
+	 */
+	public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+
+		if (maxConcurrentCalls < 1) {
+			throw new IllegalArgumentException("The maximum number of concurrent calls must be at least 1");
+		}
+		this.maxConcurrentCalls = maxConcurrentCalls;
+		signalWaitingCalls(true);
+	}
+
+	/**
+	 * Changes the maximum number of calls that wait for a permit.
+	 */
+	public void setMaxWaitingCalls(int maxWaitingCalls) {
+
+		if (maxWaitingCalls < 0) {
+			throw new IllegalArgumentException("The maximum number of waiting calls cannot be negative");
+		}
+		this.maxWaitingCalls = maxWaitingCalls;
+	}
+
+	/**
+	 * Changes the maximum time a call waits for a permit, 0 for rejecting the calls without waiting.
+	 */
+	public void setMaxWait(long maxWait, TimeUnit unit) {
+
+		if (maxWait < 0) {
+			throw new IllegalArgumentException("The maximum wait time cannot be negative");
+		}
+		this.maxWaitNanos = unit.toNanos(maxWait);
+	}
+
+	public int getMaxConcurrentCalls() {
+		return maxConcurrentCalls;
+	}
+
+	public int getMaxWaitingCalls() {
+		return maxWaitingCalls;
+	}
+
+	/**
+	 * Returns the number of calls executing at the moment.
+	 */
+	public int getConcurrentCalls() {
+		return concurrentCalls.get();
+	}
+
+	/**
+	 * Returns the number of calls waiting for a permit at the moment.
+	 */
+	public int getWaitingCalls() {
+		return waitingCalls.get();
+	}
+
+	/**
+	 * Returns the number of calls rejected since the bulkhead was created.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("maxConcurrentCalls", maxConcurrentCalls).append("maxWaitingCalls", maxWaitingCalls)
+				.append("concurrentCalls", getConcurrentCalls()).append("waitingCalls", getWaitingCalls()).toString();
+	}
+}
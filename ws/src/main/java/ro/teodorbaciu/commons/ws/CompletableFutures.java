@@ -0,0 +1,41 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Helper methods for working with {@link CompletableFuture} instances.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+final class CompletableFutures {
+
+	private CompletableFutures() {
+	}
+
+	/**
+	 * Returns a future completed exceptionally with the specified exception.
+	 */
+	static <T> CompletableFuture<T> failedFuture(Throwable exc) {
+
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(exc);
+		return future;
+	}
+}
@@ -0,0 +1,57 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+/**
+ * Limits the number of concurrent executions of the operations of a module or of a single operation,
+ * see {@link ServiceModule#setConcurrencyLimiter(ConcurrencyLimiter)} and
+ * {@link ServiceOperation#setConcurrencyLimiter(ConcurrencyLimiter)}. The calls that are not admitted
+ * end with the {@link ExecutionResult.Status#REJECTED} status.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public interface ConcurrencyLimiter {
+
+	/**
+	 * Acquires a permit for executing a call, waiting for one to become available if the limiter allows it.
+	 * 
+	 * @return true if the call can be executed, false if it is rejected
+	 */
+	boolean acquire();
+
+	/**
+	 * Acquires a permit for executing a call only if one is available immediately. Used for
+	 * the asynchronous executions, which must not block the calling thread.
+	 * 
+	 * @return true if the call can be executed, false if it is rejected
+	 */
+	boolean tryAcquire();
+
+	/**
+	 * Releases the permit of an executed call.
+	 * 
+	 * @param latencyNanos the time spent executing the call, in nanoseconds
+	 * @param valid false if the call ended with the {@link ExecutionResult.Status#INVALID} status or with an exception
+	 */
+	void release(long latencyNanos, boolean valid);
+
+	/**
+	 * Releases a permit whose call was not executed, because another limiter rejected it.
+	 */
+	void releaseUnused();
+}
@@ -1,7 +1,10 @@
 package ro.teodorbaciu.commons.ws;
 
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+
 /**
- * Represents the result of dispatching a request.
+ * Represents the result of dispatching a request. The results that carry no value are
+ * shared and can be obtained with {@link #of(Status)} and {@link #of(ExecutionResult)}.
  * @author Teodor Baciu
  *
  */
@@ -10,7 +13,44 @@ public class DispatchResult {
 	/**
 	 * The possible statuses of this dispatch result.
 	 */
-	public enum Status { DISPATCH_SUCCESS, MODULE_NOT_FOUND, MODULE_NAME_BLANK, OPERATION_NOT_FOUND }
+	public enum Status { DISPATCH_SUCCESS, MODULE_NOT_FOUND, MODULE_NAME_BLANK, OPERATION_NOT_FOUND, 
+		/** The call was not admitted by a {@link ConcurrencyLimiter}, the execution result has the same status. */
+		REJECTED, 
+		/** The call exceeded the rate of a {@link RateLimiter}, the execution result has the same status. */
+		RATE_LIMITED, 
+		/** The deadline of the call passed before or during its execution, the execution result has the same status. */
+		TIMEOUT }
+	
+	/**
+	 * The shared results without execution result, indexed by the dispatch status ordinal.
+	 */
+	private static final DispatchResult[] SHARED_RESULTS;
+	
+	/**
+	 * The shared dispatches of the shared execution results, indexed by the execution status ordinal.
+	 */
+	private static final DispatchResult[] SHARED_DISPATCHED_RESULTS;
+	
+	static {
+		Status[] statuses = Status.values();
+		SHARED_RESULTS = new DispatchResult[statuses.length];
+		for (Status status : statuses) {
+			SHARED_RESULTS[status.ordinal()] = new DispatchResult(status);
+		}
+		
+		ExecutionResult.Status[] executionStatuses = ExecutionResult.Status.values();
+		SHARED_DISPATCHED_RESULTS = new DispatchResult[executionStatuses.length];
+		for (ExecutionResult.Status executionStatus : executionStatuses) {
+			SHARED_DISPATCHED_RESULTS[executionStatus.ordinal()] = 
+					new DispatchResult(ExecutionResult.of(executionStatus), statusOf(executionStatus));
+		}
+	}
+	
+	/**
+	 * The value obtained by executing the operation, kept when the execution result
+	 * is only created on demand.
+	 */
+	private final BaseResult value;
 	
 	/**
 	 * The result obtained by executing the operation.
@@ -20,14 +60,14 @@ public class DispatchResult {
 	/**
 	 * The status of this result.
 	 */
-	private Status status;
+	private final Status status;
 
 	/**
 	 * Creates a new instance.
 	 * @param status the dispatch status of this result.
 	 */
 	public DispatchResult(Status status) {
-		this.status = status;
+		this(null, status);
 	}
 	
 	/**
@@ -37,12 +77,79 @@ public class DispatchResult {
 	 */
 	public DispatchResult(ExecutionResult result, Status status) {
 		this.result = result;
+		this.value = result != null ? result.getValue() : null;
 		this.status = status;
 	}
+	
+	/**
+	 * Creates the result of a successful dispatch whose operation returned the specified value.
+	 * The {@link ExecutionResult} is only created if it is requested.
+	 */
+	DispatchResult(BaseResult value) {
+		this.value = value;
+		this.status = Status.DISPATCH_SUCCESS;
+	}
+	
+	/**
+	 * Returns the shared result for a dispatch that did not reach any operation.
+	 * @param status the dispatch status
+	 * @return an immutable {@link DispatchResult} instance
+	 */
+	public static DispatchResult of(Status status) {
+		return SHARED_RESULTS[status.ordinal()];
+	}
+	
+	/**
+	 * Returns the result of a dispatch with the specified execution result. 
+	 * No instance is created if the execution result is a shared one.
+	 * @param result the result of executing the operation
+	 * @return a {@link DispatchResult} having the {@link Status#DISPATCH_SUCCESS} status, or the
+	 * 		{@link Status#REJECTED}, {@link Status#RATE_LIMITED} or {@link Status#TIMEOUT} status for a call 
+	 * 		that was not admitted or did not complete
+	 */
+	public static DispatchResult of(ExecutionResult result) {
+		
+		DispatchResult shared = SHARED_DISPATCHED_RESULTS[result.getStatus().ordinal()];
+		if (shared.result == result) {
+			return shared;
+		}
+		return new DispatchResult(result, statusOf(result.getStatus()));
+	}
+	
+	/**
+	 * Returns the dispatch status of a dispatch that reached a module.
+	 */
+	private static Status statusOf(ExecutionResult.Status executionStatus) {
+		
+		switch (executionStatus) {
+		case REJECTED:
+			return Status.REJECTED;
+		case RATE_LIMITED:
+			return Status.RATE_LIMITED;
+		case TIMEOUT:
+			return Status.TIMEOUT;
+		default:
+			return Status.DISPATCH_SUCCESS;
+		}
+	}
 
 	public ExecutionResult getResult() {
+		
+		// racy but safe, the execution result is immutable
+		if (result == null && value != null) {
+			result = new ExecutionResult(value, ExecutionResult.Status.VALID);
+		}
 		return result;
 	}
+	
+	/**
+	 * Returns the value obtained by executing the operation, without creating
+	 * the {@link ExecutionResult} if it is not created yet.
+	 * @return the value or null if the operation did not return a value
+	 */
+	public BaseResult getValue() {
+		return value;
+	}
 
 	public Status getStatus() {
 		return status;
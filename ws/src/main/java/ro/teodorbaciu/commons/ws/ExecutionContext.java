@@ -0,0 +1,166 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * The time budget of a dispatched call. A context is passed to 
+ * {@link ServiceDispatcher#dispatch(String, String, java.util.Map, ExecutionContext)}, which does not execute 
+ * the call if the deadline has already passed and makes the context available to the operation through 
+ * {@link #current()} while it executes on the dispatching thread.
+ * <p>
+ * The cancellation is cooperative: long running operations check {@link #isExpired()} or call
+ * {@link #checkDeadline()}, which throws a {@link DeadlineExceededException} that the dispatcher turns
+ * into the {@link ExecutionResult.Status#TIMEOUT} status. Asynchronous operations capture the context
+ * with {@link #current()} before handing the work to another thread.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public final class ExecutionContext {
+
+	/**
+	 * The context of the calls dispatched without a deadline.
+	 */
+	public static final ExecutionContext NONE = new ExecutionContext(0, false);
+
+	private static final ThreadLocal<ExecutionContext> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * The deadline as a {@link System#nanoTime()} value.
+	 */
+	private final long deadlineNanos;
+
+	private final boolean hasDeadline;
+
+	private volatile boolean cancelled;
+
+	private ExecutionContext(long deadlineNanos, boolean hasDeadline) {
+
+		this.deadlineNanos = deadlineNanos;
+		this.hasDeadline = hasDeadline;
+	}
+
+	/**
+	 * Creates a context whose deadline is the specified time from now.
+	 */
+	public static ExecutionContext withTimeout(long timeout, TimeUnit unit) {
+		return new ExecutionContext(System.nanoTime() + unit.toNanos(timeout), true);
+	}
+
+	/**
+	 * Creates a context without deadline, which can only be cancelled.
+	 */
+	public static ExecutionContext cancellable() {
+		return new ExecutionContext(0, false);
+	}
+
+	/**
+	 * Returns the context of the call executing on the current thread.
+	 * 
+	 * @return the context or {@link #NONE} if the call was dispatched without a context
+	 */
+	public static ExecutionContext current() {
+
+		ExecutionContext context = CURRENT.get();
+		return context != null ? context : NONE;
+	}
+
+	/**
+	 * Makes the specified context the current one.
+	 * 
+	 * @return the previous context, to be restored with {@link #restore(ExecutionContext)}
+	 */
+	static ExecutionContext attach(ExecutionContext context) {
+
+		ExecutionContext previous = CURRENT.get();
+		CURRENT.set(context);
+		return previous;
+	}
+
+	/**
+	 * Restores the context returned by {@link #attach(ExecutionContext)}.
+	 */
+	static void restore(ExecutionContext previous) {
+
+		if (previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * Cancels the call, for example because its client disconnected. Has no effect on {@link #NONE}.
+	 */
+	public void cancel() {
+
+		if (this != NONE) {
+			cancelled = true;
+		}
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Returns if the call was cancelled or its deadline has passed.
+	 */
+	public boolean isExpired() {
+		return cancelled || (hasDeadline && System.nanoTime() - deadlineNanos >= 0);
+	}
+
+	/**
+	 * Throws a {@link DeadlineExceededException} if the call was cancelled or its deadline has passed.
+	 */
+	public void checkDeadline() {
+
+		if (isExpired()) {
+			throw new DeadlineExceededException(cancelled ? "The call was cancelled" : "The deadline of the call has passed");
+		}
+	}
+
+	/**
+	 * Returns if the context has a deadline.
+	 */
+	public boolean hasDeadline() {
+		return hasDeadline;
+	}
+
+	/**
+	 * Returns the time left until the deadline.
+	 * 
+	 * @return the remaining time, 0 if the deadline has passed, {@link Long#MAX_VALUE} if there is no deadline
+	 */
+	public long getRemaining(TimeUnit unit) {
+
+		if (!hasDeadline) {
+			return Long.MAX_VALUE;
+		}
+		return unit.convert(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("remainingMillis", hasDeadline ? getRemaining(TimeUnit.MILLISECONDS) : null)
+				.append("cancelled", cancelled).toString();
+	}
+}
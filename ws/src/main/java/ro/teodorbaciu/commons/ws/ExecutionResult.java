@@ -3,23 +3,37 @@ package ro.teodorbaciu.commons.ws;
 import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
 
 /**
- * Represents the result of executing a service operation.
+ * Represents the result of executing a service operation. Instances are immutable, the
+ * results that carry no value are shared and can be obtained with {@link #of(Status)}.
  * @author Teodor Baciu
  *
  */
 public class ExecutionResult {
 
-	public enum Status { VALID, OPERATION_NAME_BLANK, OPERATION_NOT_FOUND, INVALID }
+	public enum Status { VALID, OPERATION_NAME_BLANK, OPERATION_NOT_FOUND, INVALID, REJECTED, RATE_LIMITED, TIMEOUT }
+	
+	/**
+	 * The shared results without value, indexed by the status ordinal.
+	 */
+	private static final ExecutionResult[] SHARED_RESULTS;
+	
+	static {
+		Status[] statuses = Status.values();
+		SHARED_RESULTS = new ExecutionResult[statuses.length];
+		for (Status status : statuses) {
+			SHARED_RESULTS[status.ordinal()] = new ExecutionResult(status);
+		}
+	}
 	
 	/**
 	 * The result of executing the operation.
 	 */
-	private BaseResult value;
+	private final BaseResult value;
 	
 	/**
 	 * The status of the excution.
 	 */
-	private Status status;
+	private final Status status;
 	
 	/**
 	 * Creates a new instance of this class.
@@ -39,6 +53,15 @@ public class ExecutionResult {
 		this(null, status);
 	}
 	
+	/**
+	 * Returns the shared result without value for the specified status.
+	 * @param status the status of the result
+	 * @return an immutable {@link ExecutionResult} instance
+	 */
+	public static ExecutionResult of(Status status) {
+		return SHARED_RESULTS[status.ordinal()];
+	}
+	
 	public BaseResult getValue() {
 		return value;
 	}
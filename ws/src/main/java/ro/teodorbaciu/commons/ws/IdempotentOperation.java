@@ -0,0 +1,22 @@
+package ro.teodorbaciu.commons.ws;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link ServiceOperation} as idempotent. Concurrent calls of such an operation with
+ * identical parameters are coalesced: only one of them executes the operation and all the
+ * others receive the same {@link ro.teodorbaciu.commons.ws.transfer.beans.BaseResult} instance,
+ * which should therefore not be modified by the callers. The operation executes within the 
+ * {@link ExecutionContext} of the call that started it, while each waiting call stops at its own
+ * deadline and executes the operation again if the deadline of the first call passed.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface IdempotentOperation {
+}
@@ -0,0 +1,102 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+
+/**
+ * A position in a chain of {@link OperationInterceptor}s. The chain is compiled once, when the
+ * interceptors change, into linked immutable nodes ending with the execution of the operation, 
+ * so that a call goes through the interceptors without allocating anything or iterating a list.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public final class InterceptorChain {
+
+	/**
+	 * The end of every chain, which executes the operation.
+	 */
+	private static final InterceptorChain END = new InterceptorChain(null, null);
+
+	/**
+	 * The interceptor at this position, null at the end of the chain.
+	 */
+	private final OperationInterceptor interceptor;
+
+	private final InterceptorChain next;
+
+	private InterceptorChain(OperationInterceptor interceptor, InterceptorChain next) {
+
+		this.interceptor = interceptor;
+		this.next = next;
+	}
+
+	/**
+	 * Compiles the specified interceptors into a chain.
+	 * 
+	 * @return the first node of the chain or null if there are no interceptors
+	 */
+	static InterceptorChain compile(OperationInterceptor[] interceptors) {
+
+		if (interceptors.length == 0) {
+			return null;
+		}
+
+		InterceptorChain chain = END;
+		for (int i = interceptors.length - 1; i >= 0; i--) {
+			chain = new InterceptorChain(interceptors[i], chain);
+		}
+		return chain;
+	}
+
+	/**
+	 * Continues the execution with the next interceptor or, at the end of the chain, with the operation.
+	 * 
+	 * @param module the module of the operation
+	 * @param operation the operation being executed
+	 * @param parameters the parameters of the call
+	 * @return the result of the call
+	 */
+	public Optional<BaseResult> proceed(ServiceModule module, ServiceOperation operation, Map<String, Object> parameters) {
+
+		if (interceptor == null) {
+			return operation.invoke(parameters);
+		}
+		return interceptor.intercept(module, operation, parameters, next);
+	}
+
+	/**
+	 * Continues the asynchronous execution with the next interceptor or, at the end of the chain, with the operation.
+	 * 
+	 * @param module the module of the operation
+	 * @param operation the operation being executed
+	 * @param parameters the parameters of the call
+	 * @return a {@link CompletionStage} completed with the result of the call
+	 */
+	public CompletionStage<Optional<BaseResult>> proceedAsync(ServiceModule module, ServiceOperation operation, Map<String, Object> parameters) {
+
+		if (interceptor == null) {
+			return operation.invokeAsync(parameters);
+		}
+		return interceptor.interceptAsync(module, operation, parameters, next);
+	}
+}
@@ -0,0 +1,220 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Lock free histogram of latencies in nanoseconds, with log-linear buckets in the style of HdrHistogram:
+ * each power of two range is split in 16 equal buckets, so that a recorded value is reported with a
+ * precision of 1/16 (6.25%) of its magnitude. Values up to about 68 seconds are tracked exactly,
+ * larger values are counted in the last bucket. The histogram uses fixed arrays of 528 counters, one 
+ * for each stripe of threads (up to 8, depending on the number of processors), so that the threads 
+ * recording at the same time do not update the same cache lines; the stripes are added up when read.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * The number of bits used for the buckets of each power of two.
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The largest value tracked precisely, 2^36 - 1 nanoseconds.
+	 */
+	static final long MAX_TRACKABLE_VALUE = (1L << 36) - 1;
+
+	static final int BUCKET_COUNT = bucketIndex(MAX_TRACKABLE_VALUE) + 1;
+
+	/**
+	 * The number of counter arrays, a power of two.
+	 */
+	private static final int STRIPE_COUNT = stripeCount(Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * The counts of the buckets, one array for each stripe of threads.
+	 */
+	private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPE_COUNT];
+
+	{
+		for (int i = 0; i < STRIPE_COUNT; i++) {
+			stripes[i] = new AtomicLongArray(BUCKET_COUNT);
+		}
+	}
+
+	private final LongAdder sum = new LongAdder();
+
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records a latency.
+	 * 
+	 * @param nanos the latency in nanoseconds, negative values are recorded as 0
+	 */
+	public void record(long nanos) {
+
+		long value = nanos < 0 ? 0 : nanos;
+		stripes[stripeIndex()].incrementAndGet(bucketIndex(Math.min(value, MAX_TRACKABLE_VALUE)));
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * Returns a copy of the recorded values. The copy is not atomic, values recorded while it is
+	 * taken may be partially included.
+	 */
+	public Snapshot snapshot() {
+
+		long[] snapshotCounts = new long[BUCKET_COUNT];
+		long totalCount = 0;
+		for (AtomicLongArray counts : stripes) {
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				snapshotCounts[i] += counts.get(i);
+			}
+		}
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			totalCount += snapshotCounts[i];
+		}
+		return new Snapshot(snapshotCounts, totalCount, sum.sum(), max.get());
+	}
+
+	/**
+	 * Returns the number of processors rounded up to a power of two, at most 8.
+	 */
+	private static int stripeCount(int processors) {
+
+		int count = processors <= 1 ? 1 : Integer.highestOneBit(processors - 1) << 1;
+		return Math.min(8, count);
+	}
+
+	/**
+	 * Returns the stripe of the current thread.
+	 */
+	private static int stripeIndex() {
+
+		if (STRIPE_COUNT == 1) {
+			return 0;
+		}
+		long mixed = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return (int) (mixed >>> 32) & (STRIPE_COUNT - 1);
+	}
+
+	/**
+	 * Returns the bucket of the specified value.
+	 */
+	static int bucketIndex(long value) {
+
+		int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+		return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+	}
+
+	/**
+	 * Returns the largest value counted in the specified bucket.
+	 */
+	static long highestEquivalentValue(int bucketIndex) {
+
+		if (bucketIndex < SUB_BUCKET_COUNT) {
+			return bucketIndex;
+		}
+
+		int shift = (bucketIndex >>> SUB_BUCKET_BITS) - 1;
+		long lowestValue = (long) (bucketIndex - (shift << SUB_BUCKET_BITS)) << shift;
+		return lowestValue + (1L << shift) - 1;
+	}
+
+	/**
+	 * Values recorded by a {@link LatencyHistogram} at a given moment.
+	 */
+	public static final class Snapshot {
+
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+
+		private Snapshot(long[] counts, long count, long sum, long max) {
+
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		/**
+		 * Returns the number of recorded values.
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the mean of the recorded values in nanoseconds, 0 if no value was recorded.
+		 */
+		public double getMean() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		/**
+		 * Returns the largest recorded value in nanoseconds.
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * Returns the value below which the specified percentage of the recorded values fall, 
+		 * with the precision of the histogram buckets.
+		 * 
+		 * @param percentile the percentile, between 0 and 100
+		 * @return the value in nanoseconds, 0 if no value was recorded
+		 */
+		public long getValueAtPercentile(double percentile) {
+
+			if (percentile < 0 || percentile > 100) {
+				throw new IllegalArgumentException("The percentile must be between 0 and 100");
+			}
+			if (count == 0) {
+				return 0;
+			}
+
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+			long cumulatedCount = 0;
+			for (int i = 0; i < counts.length; i++) {
+				cumulatedCount += counts[i];
+				if (cumulatedCount >= rank) {
+					return Math.min(highestEquivalentValue(i), max);
+				}
+			}
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return new ToStringBuilder(this).append("count", count).append("mean", getMean())
+					.append("p50", getValueAtPercentile(50)).append("p99", getValueAtPercentile(99)).append("max", max).toString();
+		}
+	}
+}
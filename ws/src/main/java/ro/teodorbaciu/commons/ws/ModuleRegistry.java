@@ -0,0 +1,83 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the modules registered in a {@link ServiceDispatcher}, together
+ * with the compiled routes if route compilation was requested.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+final class ModuleRegistry {
+
+	/**
+	 * The registry that contains no modules.
+	 */
+	static final ModuleRegistry EMPTY = new ModuleRegistry(Collections.emptyMap(), null);
+
+	/**
+	 * The registered modules, mapped by their name.
+	 */
+	final Map<String, ServiceModule> modules;
+
+	/**
+	 * The compiled routes or null when dispatching in dynamic mode.
+	 */
+	final RouteTable routes;
+
+	private ModuleRegistry(Map<String, ServiceModule> modules, RouteTable routes) {
+		this.modules = modules;
+		this.routes = routes;
+	}
+
+	/**
+	 * Returns a registry that also contains the specified module.
+	 */
+	ModuleRegistry withModule(ServiceModule module) {
+
+		HashMap<String, ServiceModule> newModules = new HashMap<>(modules);
+		newModules.put(module.getModuleName(), module);
+		return create(newModules, routes != null);
+	}
+
+	/**
+	 * Returns a registry without the module with the specified name.
+	 */
+	ModuleRegistry withoutModule(String moduleName) {
+
+		HashMap<String, ServiceModule> newModules = new HashMap<>(modules);
+		newModules.remove(moduleName);
+		return create(newModules, routes != null);
+	}
+
+	/**
+	 * Returns a registry containing the same modules, with freshly compiled routes or
+	 * without routes.
+	 */
+	ModuleRegistry withRoutes(boolean compileRoutes) {
+		return create(modules, compileRoutes);
+	}
+
+	private static ModuleRegistry create(Map<String, ServiceModule> modules, boolean compileRoutes) {
+		return new ModuleRegistry(modules, compileRoutes ? new RouteTable(modules.values()) : null);
+	}
+}
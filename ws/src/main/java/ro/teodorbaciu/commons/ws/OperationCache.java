@@ -0,0 +1,26 @@
+package ro.teodorbaciu.commons.ws;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for enabling the caching of the results returned by a {@link ServiceOperation}.
+ * The results are cached by the values of the parameters declared with {@link OperationParameter},
+ * the other parameters received by the operation are not considered. Only operations that 
+ * return the same result for the same declared parameters should be annotated.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface OperationCache {
+
+	/** The number of seconds a result is kept in the cache */
+	long ttlSeconds();
+	
+	/** The maximum number of results kept in the cache, the least recently used are evicted first */
+	int maxEntries() default 1000;
+}
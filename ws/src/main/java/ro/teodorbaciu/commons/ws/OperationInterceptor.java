@@ -0,0 +1,80 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+
+/**
+ * Intercepts the execution of the operations, for logging, authorization checks, timing and the like.
+ * Interceptors are added to a {@link ServiceDispatcher}, applying to all its modules, or to a single
+ * {@link ServiceModule}. The dispatcher interceptors run first, in the order in which they were added,
+ * followed by the module interceptors.
+ * <p>
+ * An interceptor continues the execution by calling {@link InterceptorChain#proceed(ServiceModule, ServiceOperation, Map)}
+ * on the chain it receives, or stops it by returning its own result or by throwing an exception.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public interface OperationInterceptor {
+
+	/**
+	 * Intercepts the execution of an operation.
+	 * 
+	 * @param module the module of the operation
+	 * @param operation the operation being executed
+	 * @param parameters the parameters of the call
+	 * @param next the rest of the chain, ending with the execution of the operation
+	 * @return the result of the call, an empty {@link Optional} for the {@link ExecutionResult.Status#INVALID} status
+	 */
+	Optional<BaseResult> intercept(ServiceModule module, ServiceOperation operation, Map<String, Object> parameters, InterceptorChain next);
+
+	/**
+	 * Intercepts the asynchronous execution of an operation. By default calls 
+	 * {@link #intercept(ServiceModule, ServiceOperation, Map, InterceptorChain)} for the operations that execute 
+	 * on the calling thread. For an {@link AsyncServiceOperation} that would block the calling thread until the 
+	 * operation completes, so the call fails with an {@link UnsupportedOperationException} instead: the interceptors
+	 * of asynchronous operations override this method and call 
+	 * {@link InterceptorChain#proceedAsync(ServiceModule, ServiceOperation, Map)}, working on the result when the 
+	 * returned stage completes.
+	 * 
+	 * @param module the module of the operation
+	 * @param operation the operation being executed
+	 * @param parameters the parameters of the call
+	 * @param next the rest of the chain, ending with the execution of the operation
+	 * @return a {@link CompletionStage} completed with the result of the call
+	 */
+	default CompletionStage<Optional<BaseResult>> interceptAsync(ServiceModule module, ServiceOperation operation, 
+			Map<String, Object> parameters, InterceptorChain next) {
+
+		if (operation instanceof AsyncServiceOperation) {
+			return CompletableFutures.failedFuture(new UnsupportedOperationException("The interceptor " + getClass().getName() 
+					+ " does not override interceptAsync, needed for the asynchronous operation " + operation.getName()));
+		}
+
+		try {
+			return CompletableFuture.completedFuture(intercept(module, operation, parameters, next));
+		} catch (RuntimeException exc) {
+			return CompletableFutures.failedFuture(exc);
+		}
+	}
+}
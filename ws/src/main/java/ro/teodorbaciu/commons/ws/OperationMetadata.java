@@ -0,0 +1,43 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.List;
+
+/**
+ * Metadata of a {@link ServiceOperation} class, generated at compile time from its
+ * {@link OperationParameter} declarations by {@link ro.teodorbaciu.commons.ws.processor.OperationMetadataProcessor}.
+ * When metadata is available for an operation class, its parameter declarations are not
+ * read through reflection each time an instance is created.
+ * <p>
+ * The implementations are discovered with {@link java.util.ServiceLoader}.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public interface OperationMetadata {
+
+	/**
+	 * Returns the operation class this metadata describes.
+	 */
+	Class<? extends ServiceOperation> getOperationClass();
+
+	/**
+	 * Returns the definitions of the parameters declared by the operation class, in declaration order.
+	 */
+	List<ParameterDefinition> getParameterDefinitions();
+}
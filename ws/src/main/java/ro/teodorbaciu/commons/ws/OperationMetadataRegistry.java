@@ -0,0 +1,78 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the generated {@link OperationMetadata} found on the classpath. The metadata is
+ * loaded once, the first time an operation is created.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+final class OperationMetadataRegistry {
+
+	private static final Logger log = LoggerFactory.getLogger(OperationMetadataRegistry.class);
+
+	private OperationMetadataRegistry() {
+	}
+
+	/**
+	 * Returns the metadata generated for the specified operation class.
+	 * 
+	 * @return the metadata or null if none was generated
+	 */
+	static OperationMetadata find(Class<?> operationClass) {
+		return Holder.MAP_METADATA.get(operationClass);
+	}
+
+	/**
+	 * Loads the metadata when first used.
+	 */
+	private static final class Holder {
+
+		static final Map<Class<?>, OperationMetadata> MAP_METADATA = load();
+
+		private static Map<Class<?>, OperationMetadata> load() {
+
+			Map<Class<?>, OperationMetadata> mapMetadata = new HashMap<>();
+			Iterator<OperationMetadata> iterator = ServiceLoader.load(OperationMetadata.class, 
+					OperationMetadataRegistry.class.getClassLoader()).iterator();
+			while (true) {
+				// a stale or bad entry only skips itself, the operations without metadata read their annotations through reflection
+				try {
+					if (!iterator.hasNext()) {
+						break;
+					}
+					OperationMetadata metadata = iterator.next();
+					mapMetadata.put(metadata.getOperationClass(), metadata);
+				} catch (ServiceConfigurationError err) {
+					log.warn("Skipped operation metadata that could not be loaded", err);
+				}
+			}
+			return mapMetadata;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Counts the calls of an operation added to a module and records their latencies. The counters
+ * are striped, recording a call takes no lock.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public final class OperationMetrics {
+
+	private final LongAdder callCount = new LongAdder();
+
+	private final LongAdder invalidCount = new LongAdder();
+
+	private final LongAdder failureCount = new LongAdder();
+
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	/**
+	 * Records a call that returned a value.
+	 */
+	void recordValid(long nanos) {
+
+		callCount.increment();
+		latencies.record(nanos);
+	}
+
+	/**
+	 * Records a call that returned no value, because of invalid parameters or otherwise.
+	 */
+	void recordInvalid(long nanos) {
+
+		callCount.increment();
+		invalidCount.increment();
+		latencies.record(nanos);
+	}
+
+	/**
+	 * Records a call that ended with an exception.
+	 */
+	void recordFailure(long nanos) {
+
+		callCount.increment();
+		failureCount.increment();
+		latencies.record(nanos);
+	}
+
+	/**
+	 * Returns the number of calls, including the invalid and the failed ones.
+	 */
+	public long getCallCount() {
+		return callCount.sum();
+	}
+
+	/**
+	 * Returns the number of calls that returned no value, i.e. with the {@link ExecutionResult.Status#INVALID} status.
+	 */
+	public long getInvalidCount() {
+		return invalidCount.sum();
+	}
+
+	/**
+	 * Returns the number of calls that ended with an exception.
+	 */
+	public long getFailureCount() {
+		return failureCount.sum();
+	}
+
+	/**
+	 * Returns the latencies of the calls, in nanoseconds.
+	 */
+	public LatencyHistogram.Snapshot getLatencies() {
+		return latencies.snapshot();
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("callCount", getCallCount()).append("invalidCount", getInvalidCount())
+				.append("failureCount", getFailureCount()).append("latencies", getLatencies()).toString();
+	}
+}
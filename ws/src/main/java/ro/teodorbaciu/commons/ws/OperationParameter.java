@@ -26,8 +26,3 @@ public @interface OperationParameter {
 	/** Returns if the parameter should be considered of type floating point or not */
 	boolean floatingPoint() default false; 
 }
-
-@Retention(RetentionPolicy.RUNTIME)
-@interface OperationParameters {
-	public OperationParameter[] value();
-}
@@ -0,0 +1,15 @@
+package ro.teodorbaciu.commons.ws;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Container annotation for repeated {@link OperationParameter} declarations.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OperationParameters {
+	public OperationParameter[] value();
+}
@@ -0,0 +1,291 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+
+/**
+ * Caches the results of an operation annotated with {@link OperationCache}.
+ * <p>
+ * The entries are spread over several segments, each one being a small LRU map guarded by
+ * its own lock, so concurrent calls rarely wait for each other. An entry expires when its 
+ * time to live elapses; expired entries are removed when they are read or evicted.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public class OperationResultCache {
+
+	/**
+	 * The maximum number of segments.
+	 */
+	private static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * The names of the parameters whose values form the cache key.
+	 */
+	private final String[] parameterNames;
+
+	/**
+	 * The time to live of an entry, in nanoseconds.
+	 */
+	private final long ttlNanos;
+
+	private final Segment[] segments;
+
+	private final LongAdder hitCount = new LongAdder();
+
+	private final LongAdder missCount = new LongAdder();
+
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param parameterNames the names of the parameters whose values form the cache key
+	 * @param ttlMillis the number of milliseconds an entry is kept in the cache
+	 * @param maxEntries the maximum number of entries kept in the cache
+	 */
+	public OperationResultCache(List<String> parameterNames, long ttlMillis, int maxEntries) {
+
+		if (ttlMillis <= 0) {
+			throw new IllegalArgumentException("ttlMillis must be positive");
+		}
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be at least 1");
+		}
+
+		this.parameterNames = parameterNames.toArray(new String[parameterNames.size()]);
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+
+		// each segment should hold a few entries, otherwise the LRU order is too coarse
+		int segmentCount = 1;
+		while (segmentCount < MAX_SEGMENTS && segmentCount * 16 <= maxEntries) {
+			segmentCount <<= 1;
+		}
+
+		segments = new Segment[segmentCount];
+		int segmentCapacity = (maxEntries + segmentCount - 1) / segmentCount;
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment(segmentCapacity);
+		}
+	}
+
+	/**
+	 * Creates the cache key for the specified parameters.
+	 * 
+	 * @param parameters the parameters received by the operation
+	 * @return the key used for looking up the cached result
+	 */
+	public Object createKey(Map<String, Object> parameters) {
+
+		Object[] values = new Object[parameterNames.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = parameters.get(parameterNames[i]);
+		}
+		return new Key(values);
+	}
+
+	/**
+	 * Returns the cached result for the specified key.
+	 * 
+	 * @param key a key obtained with {@link #createKey(Map)}
+	 * @return the cached result or null if no valid result is cached
+	 */
+	public BaseResult get(Object key) {
+
+		Segment segment = segmentFor(key);
+		Entry entry;
+		synchronized (segment) {
+
+			entry = segment.get(key);
+			if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+				segment.remove(key);
+				entry = null;
+			}
+		}
+
+		if (entry == null) {
+			missCount.increment();
+			return null;
+		}
+
+		hitCount.increment();
+		return entry.value;
+	}
+
+	/**
+	 * Caches the specified result.
+	 * 
+	 * @param key a key obtained with {@link #createKey(Map)}
+	 * @param value the result to cache
+	 */
+	public void put(Object key, BaseResult value) {
+
+		Entry entry = new Entry(value, System.nanoTime() + ttlNanos);
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
+			segment.put(key, entry);
+		}
+	}
+
+	/**
+	 * Removes all the cached results.
+	 */
+	public void invalidateAll() {
+
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of entries currently cached, including the expired ones
+	 * that were not removed yet.
+	 */
+	public int size() {
+
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of lookups that found a valid result.
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that did not find a valid result.
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * Returns the number of entries evicted because the cache was full.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("hitCount", getHitCount()).append("missCount", getMissCount())
+				.append("evictionCount", getEvictionCount()).toString();
+	}
+
+	private Segment segmentFor(Object key) {
+
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (segments.length - 1)];
+	}
+
+	/**
+	 * LRU map holding a part of the entries.
+	 */
+	@SuppressWarnings("serial")
+	private final class Segment extends LinkedHashMap<Object, Entry> {
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+
+			if (size() > capacity) {
+				evictionCount.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A cached result.
+	 */
+	private static final class Entry {
+
+		final BaseResult value;
+
+		/**
+		 * The value of {@link System#nanoTime()} at which the entry expires.
+		 */
+		final long expiresAt;
+
+		Entry(BaseResult value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * The values of the declared parameters.
+	 */
+	private static final class Key {
+
+		private final Object[] values;
+
+		private final int hash;
+
+		Key(Object[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) obj;
+			return hash == other.hash && Arrays.equals(values, other.values);
+		}
+	}
+}
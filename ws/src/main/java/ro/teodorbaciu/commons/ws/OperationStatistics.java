@@ -0,0 +1,112 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * The metrics of an operation at a given moment, as exported by {@link ServiceDispatcher#getOperationStatistics()}. 
+ * The latencies are in nanoseconds.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public final class OperationStatistics {
+
+	private final String moduleName;
+	private final String operationName;
+	private final long callCount;
+	private final long invalidCount;
+	private final long failureCount;
+	private final double meanLatency;
+	private final long latency50;
+	private final long latency90;
+	private final long latency99;
+	private final long latency999;
+	private final long maxLatency;
+
+	/**
+	 * Constructor.
+	 */
+	OperationStatistics(String moduleName, String operationName, OperationMetrics metrics) {
+
+		this.moduleName = moduleName;
+		this.operationName = operationName;
+		callCount = metrics.getCallCount();
+		invalidCount = metrics.getInvalidCount();
+		failureCount = metrics.getFailureCount();
+
+		LatencyHistogram.Snapshot latencies = metrics.getLatencies();
+		meanLatency = latencies.getMean();
+		latency50 = latencies.getValueAtPercentile(50);
+		latency90 = latencies.getValueAtPercentile(90);
+		latency99 = latencies.getValueAtPercentile(99);
+		latency999 = latencies.getValueAtPercentile(99.9);
+		maxLatency = latencies.getMax();
+	}
+
+	public String getModuleName() {
+		return moduleName;
+	}
+
+	public String getOperationName() {
+		return operationName;
+	}
+
+	public long getCallCount() {
+		return callCount;
+	}
+
+	public long getInvalidCount() {
+		return invalidCount;
+	}
+
+	public long getFailureCount() {
+		return failureCount;
+	}
+
+	public double getMeanLatency() {
+		return meanLatency;
+	}
+
+	public long getLatency50() {
+		return latency50;
+	}
+
+	public long getLatency90() {
+		return latency90;
+	}
+
+	public long getLatency99() {
+		return latency99;
+	}
+
+	public long getLatency999() {
+		return latency999;
+	}
+
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("moduleName", moduleName).append("operationName", operationName)
+				.append("callCount", callCount).append("invalidCount", invalidCount).append("failureCount", failureCount)
+				.append("meanLatency", meanLatency).append("latency99", latency99).append("maxLatency", maxLatency).toString();
+	}
+}
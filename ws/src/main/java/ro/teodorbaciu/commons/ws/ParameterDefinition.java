@@ -0,0 +1,92 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Describes a parameter of a {@link ServiceOperation}, as declared with {@link OperationParameter}.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public final class ParameterDefinition {
+
+	/**
+	 * The name of the parameter.
+	 */
+	private final String name;
+
+	/**
+	 * Flag that indicates if the parameter must be present.
+	 */
+	private final boolean mandatory;
+
+	/**
+	 * Flag that indicates if the parameter must be an integer.
+	 */
+	private final boolean integer;
+
+	/**
+	 * Flag that indicates if the parameter must be a floating point number.
+	 */
+	private final boolean floatingPoint;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name the name of the parameter
+	 * @param mandatory true if the parameter must be present
+	 * @param integer true if the parameter must be an integer
+	 * @param floatingPoint true if the parameter must be a floating point number
+	 */
+	public ParameterDefinition(String name, boolean mandatory, boolean integer, boolean floatingPoint) {
+		this.name = name;
+		this.mandatory = mandatory;
+		this.integer = integer;
+		this.floatingPoint = floatingPoint;
+	}
+
+	/**
+	 * Creates the definition declared by the specified annotation.
+	 */
+	public static ParameterDefinition of(OperationParameter parameter) {
+		return new ParameterDefinition(parameter.name(), parameter.mandatory(), parameter.integer(), parameter.floatingPoint());
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public boolean isMandatory() {
+		return mandatory;
+	}
+
+	public boolean isInteger() {
+		return integer;
+	}
+
+	public boolean isFloatingPoint() {
+		return floatingPoint;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("name", name).append("mandatory", mandatory)
+				.append("integer", integer).append("floatingPoint", floatingPoint).toString();
+	}
+}
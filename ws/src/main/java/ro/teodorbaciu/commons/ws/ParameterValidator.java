@@ -0,0 +1,277 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates the parameters received by an operation against its {@link ParameterDefinition}s.
+ * The definitions are compiled once into flat arrays, and the numbers are checked and parsed
+ * by hand, so the validation uses neither regular expressions nor exceptions.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+final class ParameterValidator {
+
+	private static final byte TYPE_ANY = 0;
+	private static final byte TYPE_INTEGER = 1;
+	private static final byte TYPE_FLOATING_POINT = 2;
+
+	private final String[] names;
+
+	private final boolean[] mandatory;
+
+	private final byte[] types;
+
+	/**
+	 * The declaration index of each parameter, mapped by name.
+	 */
+	private final Map<String, Integer> mapIndexes;
+
+	private final boolean hasIntegers;
+
+	private final boolean hasFloatingPoints;
+
+	/**
+	 * Compiles the validator for the specified definitions.
+	 */
+	ParameterValidator(List<ParameterDefinition> definitions) {
+
+		int count = definitions.size();
+		names = new String[count];
+		mandatory = new boolean[count];
+		types = new byte[count];
+		mapIndexes = new HashMap<>();
+
+		for (int i = 0; i < count; i++) {
+
+			ParameterDefinition definition = definitions.get(i);
+			names[i] = definition.getName();
+			mandatory[i] = definition.isMandatory();
+			types[i] = definition.isInteger() ? TYPE_INTEGER : definition.isFloatingPoint() ? TYPE_FLOATING_POINT : TYPE_ANY;
+			mapIndexes.put(definition.getName(), i);
+		}
+
+		hasIntegers = definitions.stream().anyMatch(ParameterDefinition::isInteger);
+		hasFloatingPoints = definitions.stream().anyMatch(definition -> !definition.isInteger() && definition.isFloatingPoint());
+	}
+
+	/**
+	 * Validates the specified parameters and parses the numeric ones.
+	 * 
+	 * @param parameters the parameters received by the operation
+	 * @return the parsed parameters or null if a mandatory parameter is missing or a number is malformed
+	 */
+	ParsedParameters validate(Map<String, Object> parameters) {
+
+		ParsedParameters parsed = new ParsedParameters(this);
+		for (int i = 0; i < names.length; i++) {
+
+			Object value = parameters.get(names[i]);
+			if (value == null || (value instanceof CharSequence && ((CharSequence) value).length() == 0)) {
+
+				if (mandatory[i]) {
+					return null;
+				}
+				continue;
+			}
+
+			switch (types[i]) {
+			case TYPE_INTEGER:
+				if (!parseInteger(value, parsed.longValues, i)) {
+					return null;
+				}
+				break;
+			case TYPE_FLOATING_POINT:
+				if (!parseFloatingPoint(value, parsed.doubleValues, i)) {
+					return null;
+				}
+				break;
+			default:
+				break;
+			}
+
+			parsed.values[i] = value;
+		}
+
+		return parsed;
+	}
+
+	/**
+	 * Returns the declaration index of the parameter with the specified name.
+	 * 
+	 * @throws IllegalArgumentException if no parameter with this name is declared
+	 */
+	int indexOf(String name) {
+
+		Integer index = mapIndexes.get(name);
+		if (index == null) {
+			throw new IllegalArgumentException("The parameter '" + name + "' is not declared");
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the number of declared parameters.
+	 */
+	int size() {
+		return names.length;
+	}
+
+	boolean hasIntegers() {
+		return hasIntegers;
+	}
+
+	boolean hasFloatingPoints() {
+		return hasFloatingPoints;
+	}
+
+	boolean isInteger(int index) {
+		return types[index] == TYPE_INTEGER;
+	}
+
+	boolean isFloatingPoint(int index) {
+		return types[index] == TYPE_FLOATING_POINT;
+	}
+
+	/**
+	 * Parses an integer value into the specified array position.
+	 * 
+	 * @return false if the value is not an integer
+	 */
+	static boolean parseInteger(Object value, long[] target, int index) {
+
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			target[index] = ((Number) value).longValue();
+			return true;
+		}
+
+		if (!(value instanceof CharSequence)) {
+			return false;
+		}
+
+		CharSequence chars = (CharSequence) value;
+		int length = chars.length();
+		int position = 0;
+		boolean negative = false;
+
+		char first = chars.charAt(0);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			position++;
+		}
+		if (position == length) {
+			return false;
+		}
+
+		// accumulate negatively, as Long.parseLong does, so Long.MIN_VALUE can be parsed
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multiplicationLimit = limit / 10;
+		long result = 0;
+		for (; position < length; position++) {
+
+			int digit = chars.charAt(position) - '0';
+			if (digit < 0 || digit > 9 || result < multiplicationLimit) {
+				return false;
+			}
+
+			result *= 10;
+			if (result < limit + digit) {
+				return false;
+			}
+			result -= digit;
+		}
+
+		target[index] = negative ? result : -result;
+		return true;
+	}
+
+	/**
+	 * Parses a floating point value into the specified array position. Accepts an optional sign,
+	 * digits with an optional decimal point and an optional exponent.
+	 * 
+	 * @return false if the value is not a floating point number
+	 */
+	static boolean parseFloatingPoint(Object value, double[] target, int index) {
+
+		if (value instanceof Number) {
+			target[index] = ((Number) value).doubleValue();
+			return true;
+		}
+
+		if (!(value instanceof CharSequence)) {
+			return false;
+		}
+
+		CharSequence chars = (CharSequence) value;
+		int length = chars.length();
+		int position = 0;
+
+		char first = chars.charAt(0);
+		if (first == '-' || first == '+') {
+			position++;
+		}
+
+		int digits = 0;
+		while (position < length && isDigit(chars.charAt(position))) {
+			position++;
+			digits++;
+		}
+		if (position < length && chars.charAt(position) == '.') {
+			position++;
+			while (position < length && isDigit(chars.charAt(position))) {
+				position++;
+				digits++;
+			}
+		}
+		if (digits == 0) {
+			return false;
+		}
+
+		if (position < length && (chars.charAt(position) == 'e' || chars.charAt(position) == 'E')) {
+
+			position++;
+			if (position < length && (chars.charAt(position) == '-' || chars.charAt(position) == '+')) {
+				position++;
+			}
+
+			int exponentDigits = 0;
+			while (position < length && isDigit(chars.charAt(position))) {
+				position++;
+				exponentDigits++;
+			}
+			if (exponentDigits == 0) {
+				return false;
+			}
+		}
+
+		if (position != length) {
+			return false;
+		}
+
+		// the format was checked, parsing cannot fail
+		target[index] = Double.parseDouble(chars.toString());
+		return true;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+}
@@ -0,0 +1,217 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The parameters of an operation call, after they were validated against the 
+ * {@link OperationParameter} declarations of the operation. The numeric parameters
+ * are already parsed, so the operation does not have to parse them again.
+ * <p>
+ * The values are stored in flat arrays indexed by the position of the declaration, the
+ * first declared parameter having the index 0. The index based accessors involve no map
+ * lookup and no boxing; the index of a name can be obtained once with {@link #indexOf(String)}
+ * or, more simply, kept as a constant in the operation.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public final class ParsedParameters {
+
+	/**
+	 * The parameters of an operation that does not declare any parameter.
+	 */
+	static final ParsedParameters NONE = new ParsedParameters(new ParameterValidator(Collections.emptyList()));
+
+	private static final long[] NO_LONG_VALUES = new long[0];
+
+	private static final double[] NO_DOUBLE_VALUES = new double[0];
+
+	/**
+	 * The validator that produced these parameters, which knows the declared names and types.
+	 */
+	private final ParameterValidator validator;
+
+	/**
+	 * The raw values of the declared parameters, by declaration index.
+	 */
+	final Object[] values;
+
+	/**
+	 * The values of the integer parameters, by declaration index. Empty if no parameter is integer.
+	 */
+	final long[] longValues;
+
+	/**
+	 * The values of the floating point parameters, by declaration index. Empty if no parameter is floating point.
+	 */
+	final double[] doubleValues;
+
+	ParsedParameters(ParameterValidator validator) {
+
+		int parameterCount = validator.size();
+		this.validator = validator;
+		this.values = new Object[parameterCount];
+		this.longValues = validator.hasIntegers() ? new long[parameterCount] : NO_LONG_VALUES;
+		this.doubleValues = validator.hasFloatingPoints() ? new double[parameterCount] : NO_DOUBLE_VALUES;
+	}
+
+	/**
+	 * Returns the declaration index of the parameter with the specified name.
+	 * 
+	 * @throws IllegalArgumentException if no parameter with this name is declared
+	 */
+	public int indexOf(String name) {
+		return validator.indexOf(name);
+	}
+
+	/**
+	 * Returns if the declared parameter with the specified index was received.
+	 */
+	public boolean isPresent(int index) {
+		return values[index] != null;
+	}
+
+	/**
+	 * Returns if the declared parameter with the specified name was received.
+	 */
+	public boolean isPresent(String name) {
+		return isPresent(indexOf(name));
+	}
+
+	/**
+	 * Returns the raw value of the declared parameter with the specified index, as found in the parameters map.
+	 * 
+	 * @return the value or null if the parameter was not received
+	 */
+	public Object get(int index) {
+		return values[index];
+	}
+
+	/**
+	 * Returns the raw value of the declared parameter with the specified name, as found in the parameters map.
+	 * 
+	 * @return the value or null if the parameter was not received
+	 */
+	public Object get(String name) {
+		return get(indexOf(name));
+	}
+
+	/**
+	 * Returns the value of the declared parameter with the specified index as a String.
+	 * 
+	 * @return the value or null if the parameter was not received
+	 */
+	public String getString(int index) {
+
+		Object value = values[index];
+		return value != null ? value.toString() : null;
+	}
+
+	/**
+	 * Returns the value of the declared parameter with the specified name as a String.
+	 * 
+	 * @return the value or null if the parameter was not received
+	 */
+	public String getString(String name) {
+		return getString(indexOf(name));
+	}
+
+	/**
+	 * Returns the value of the declared integer parameter with the specified index.
+	 * 
+	 * @return the parsed value or 0 if the parameter was not received
+	 * @throws IllegalArgumentException if the parameter is not declared as integer
+	 */
+	public long getLong(int index) {
+
+		if (!validator.isInteger(index)) {
+			throw new IllegalArgumentException("The parameter at index " + index + " is not declared as integer");
+		}
+		return longValues[index];
+	}
+
+	/**
+	 * Returns the value of the declared integer parameter with the specified name.
+	 * 
+	 * @return the parsed value or 0 if the parameter was not received
+	 * @throws IllegalArgumentException if the parameter is not declared as integer
+	 */
+	public long getLong(String name) {
+		return getLong(indexOf(name));
+	}
+
+	/**
+	 * Returns the value of the declared integer parameter with the specified index as an int.
+	 * 
+	 * @return the parsed value or 0 if the parameter was not received
+	 * @throws IllegalArgumentException if the parameter is not declared as integer
+	 * @throws ArithmeticException if the value does not fit in an int
+	 */
+	public int getInt(int index) {
+		return Math.toIntExact(getLong(index));
+	}
+
+	/**
+	 * Returns the value of the declared integer parameter with the specified name as an int.
+	 * 
+	 * @return the parsed value or 0 if the parameter was not received
+	 * @throws IllegalArgumentException if the parameter is not declared as integer
+	 * @throws ArithmeticException if the value does not fit in an int
+	 */
+	public int getInt(String name) {
+		return getInt(indexOf(name));
+	}
+
+	/**
+	 * Returns the value of the declared floating point parameter with the specified index.
+	 * 
+	 * @return the parsed value or 0 if the parameter was not received
+	 * @throws IllegalArgumentException if the parameter is not declared as floating point
+	 */
+	public double getDouble(int index) {
+
+		if (!validator.isFloatingPoint(index)) {
+			throw new IllegalArgumentException("The parameter at index " + index + " is not declared as floating point");
+		}
+		return doubleValues[index];
+	}
+
+	/**
+	 * Returns the value of the declared floating point parameter with the specified name.
+	 * 
+	 * @return the parsed value or 0 if the parameter was not received
+	 * @throws IllegalArgumentException if the parameter is not declared as floating point
+	 */
+	public double getDouble(String name) {
+		return getDouble(indexOf(name));
+	}
+
+	/**
+	 * Returns the number of declared parameters.
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public String toString() {
+		return "ParsedParameters" + Arrays.toString(values);
+	}
+}
@@ -0,0 +1,259 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Token bucket rate limiter for the calls of a module or of an operation, see 
+ * {@link ServiceModule#setRateLimiter(RateLimiter)} and {@link ServiceOperation#setRateLimiter(RateLimiter)}.
+ * The calls that exceed the rate end with the {@link ExecutionResult.Status#RATE_LIMITED} status.
+ * <p>
+ * The calls can be limited per caller, the caller being identified by the value of a request parameter, 
+ * for example an API key. The calls without that parameter share a single bucket.
+ * <p>
+ * Each bucket is kept as a single theoretical arrival time (the generic cell rate algorithm, which admits
+ * the same calls as a token bucket) updated with compare-and-set, so no lock is taken. The buckets are 
+ * stored in a fixed size table: a caller takes a free slot or the slot of an idle caller, whose bucket 
+ * is full and can be forgotten, among a few probed slots. When all the probed slots are busy the least 
+ * recently refilled bucket is evicted, so the memory stays the same regardless of the number of callers.
+ * Two callers racing for a slot may briefly share a bucket.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public class RateLimiter {
+
+	/**
+	 * The number of slots inspected for a caller.
+	 */
+	private static final int MAX_PROBES = 8;
+
+	/**
+	 * The key of the bucket shared by the calls without caller.
+	 */
+	private static final String ANONYMOUS_CALLER = "";
+
+	private final String callerParameter;
+
+	private final AtomicReferenceArray<String> keys;
+
+	/**
+	 * The theoretical arrival time of the next call of each bucket, relative to {@link #origin}.
+	 */
+	private final AtomicLongArray arrivalTimes;
+
+	private final int mask;
+
+	private final long origin = System.nanoTime();
+
+	/**
+	 * The rate settings, replaced together.
+	 */
+	private volatile Rate rate;
+
+	private final LongAdder rejectedCount = new LongAdder();
+
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * Constructor for a limiter with a single bucket for all the calls.
+	 * 
+	 * @param permitsPerSecond the number of calls admitted per second
+	 * @param burst the number of calls admitted at once after a period without calls
+	 */
+	public RateLimiter(double permitsPerSecond, int burst) {
+		this(permitsPerSecond, burst, null, 1);
+	}
+
+	/**
+	 * Constructor for a limiter with a bucket for each caller.
+	 * 
+	 * @param permitsPerSecond the number of calls admitted per second, for each caller
+	 * @param burst the number of calls admitted at once after a period without calls, for each caller
+	 * @param callerParameter the request parameter that identifies the caller
+	 * @param maxCallers the number of callers tracked, rounded up to a power of two
+	 */
+	public RateLimiter(double permitsPerSecond, int burst, String callerParameter, int maxCallers) {
+
+		if (maxCallers < 1) {
+			throw new IllegalArgumentException("At least one caller must be tracked");
+		}
+
+		setRate(permitsPerSecond, burst);
+		this.callerParameter = callerParameter;
+
+		int capacity = maxCallers == 1 ? 1 : Integer.highestOneBit(maxCallers - 1) << 1;
+		keys = new AtomicReferenceArray<>(capacity);
+		arrivalTimes = new AtomicLongArray(capacity);
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Changes the rate. The buckets keep their state.
+	 * 
+	 * @param permitsPerSecond the number of calls admitted per second
+	 * @param burst the number of calls admitted at once after a period without calls
+	 */
+	public void setRate(double permitsPerSecond, int burst) {
+
+		if (!(permitsPerSecond > 0)) {
+			throw new IllegalArgumentException("The number of permits per second must be positive");
+		}
+		if (burst < 1) {
+			throw new IllegalArgumentException("The burst must be at least 1");
+		}
+		rate = new Rate(permitsPerSecond, burst);
+	}
+
+	/**
+	 * Takes a token from the bucket of the caller of the specified call.
+	 * 
+	 * @param parameters the parameters of the call
+	 * @return true if the call is admitted, false if it exceeds the rate
+	 */
+	public boolean tryAcquire(Map<String, Object> parameters) {
+
+		Rate currentRate = rate;
+		long now = System.nanoTime() - origin;
+		int slot = findSlot(callerOf(parameters), now);
+
+		while (true) {
+			long arrivalTime = arrivalTimes.get(slot);
+			long start = Math.max(arrivalTime, now);
+			if (start - now > currentRate.burstToleranceNanos) {
+				rejectedCount.increment();
+				return false;
+			}
+			if (arrivalTimes.compareAndSet(slot, arrivalTime, start + currentRate.intervalNanos)) {
+				return true;
+			}
+		}
+	}
+
+	private String callerOf(Map<String, Object> parameters) {
+
+		if (callerParameter == null || parameters == null) {
+			return ANONYMOUS_CALLER;
+		}
+		Object caller = parameters.get(callerParameter);
+		return caller == null ? ANONYMOUS_CALLER : caller.toString();
+	}
+
+	/**
+	 * Returns the slot of the caller, taking a free or idle slot or evicting the least recently refilled one.
+	 */
+	private int findSlot(String caller, long now) {
+
+		int hash = caller.hashCode();
+		int start = (hash ^ (hash >>> 16)) & mask;
+		int probes = Math.min(MAX_PROBES, mask + 1);
+
+		// the caller may hold any of the probed slots, a free slot before it must not give it a new bucket
+		for (int i = 0; i < probes; i++) {
+			int slot = (start + i) & mask;
+			if (caller.equals(keys.get(slot))) {
+				return slot;
+			}
+		}
+
+		int oldestSlot = start;
+		long oldestArrivalTime = Long.MAX_VALUE;
+		for (int i = 0; i < probes; i++) {
+
+			int slot = (start + i) & mask;
+			String key = keys.get(slot);
+			if (caller.equals(key)) {
+				return slot;
+			}
+
+			long arrivalTime = arrivalTimes.get(slot);
+			if (key == null || arrivalTime <= now) {
+				// free or idle: the bucket is full, it is the same as a new one
+				if (keys.compareAndSet(slot, key, caller)) {
+					return slot;
+				}
+				if (caller.equals(keys.get(slot))) {
+					return slot;
+				}
+				continue;
+			}
+
+			if (arrivalTime < oldestArrivalTime) {
+				oldestArrivalTime = arrivalTime;
+				oldestSlot = slot;
+			}
+		}
+
+		keys.set(oldestSlot, caller);
+		arrivalTimes.set(oldestSlot, 0);
+		evictionCount.increment();
+		return oldestSlot;
+	}
+
+	/**
+	 * Returns the number of calls rejected since the limiter was created.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	/**
+	 * Returns the number of active callers whose buckets were evicted for making room to other callers.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("permitsPerSecond", rate.permitsPerSecond).append("burst", rate.burst)
+				.append("callerParameter", callerParameter).append("maxCallers", mask + 1).toString();
+	}
+
+	/**
+	 * Rate settings.
+	 */
+	private static final class Rate {
+
+		final double permitsPerSecond;
+		final int burst;
+
+		/**
+		 * The time needed for refilling a token.
+		 */
+		final long intervalNanos;
+
+		/**
+		 * How far ahead of the current time the arrival time can be for admitting a call.
+		 */
+		final long burstToleranceNanos;
+
+		Rate(double permitsPerSecond, int burst) {
+
+			this.permitsPerSecond = permitsPerSecond;
+			this.burst = burst;
+			intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+			burstToleranceNanos = intervalNanos * (burst - 1);
+		}
+	}
+}
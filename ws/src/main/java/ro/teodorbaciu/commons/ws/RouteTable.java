@@ -0,0 +1,172 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable lookup table that maps a module name and an operation name directly to the
+ * operation to execute. The table uses open addressing over flat arrays and combines the
+ * cached hash codes of the two names, so a lookup needs neither a composite key nor
+ * an intermediate lookup of the module.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+final class RouteTable {
+
+	/**
+	 * A resolved route.
+	 */
+	static final class Route {
+
+		final ServiceModule module;
+
+		final ServiceOperation operation;
+
+		Route(ServiceModule module, ServiceOperation operation) {
+			this.module = module;
+			this.operation = operation;
+		}
+	}
+
+	private final String[] moduleNames;
+
+	private final String[] operationNames;
+
+	private final Route[] routes;
+
+	/**
+	 * Mask used for mapping a hash code to a slot, the table length is a power of two.
+	 */
+	private final int mask;
+
+	/**
+	 * The number of routes stored in the table.
+	 */
+	private final int size;
+
+	/**
+	 * Builds the route table for all the operations in the specified modules. The modules
+	 * whose class overrides {@link ServiceModule#executeOperation(String, Map)} or 
+	 * {@link ServiceModule#executeOperationAsync(String, Map)} are left out, so their calls keep
+	 * going through the overridden methods.
+	 * 
+	 * @param modules the modules to build the table for
+	 */
+	RouteTable(Collection<ServiceModule> modules) {
+
+		List<ServiceModule> routedModules = new ArrayList<>(modules.size());
+		int count = 0;
+		for (ServiceModule module : modules) {
+			if (!overridesExecuteOperation(module.getClass())) {
+				routedModules.add(module);
+				count += module.getOperations().size();
+			}
+		}
+
+		// keep the load factor under 0.5 so probe sequences stay short
+		int capacity = 2;
+		while (capacity < count * 2) {
+			capacity <<= 1;
+		}
+
+		moduleNames = new String[capacity];
+		operationNames = new String[capacity];
+		routes = new Route[capacity];
+		mask = capacity - 1;
+
+		for (ServiceModule module : routedModules) {
+
+			String moduleName = module.getModuleName().intern();
+			for (ServiceOperation operation : module.getOperations()) {
+
+				String operationName = operation.getName().intern();
+				int index = hash(moduleName, operationName) & mask;
+				while (routes[index] != null) {
+					index = (index + 1) & mask;
+				}
+
+				moduleNames[index] = moduleName;
+				operationNames[index] = operationName;
+				routes[index] = new Route(module, operation);
+			}
+		}
+
+		size = count;
+	}
+
+	/**
+	 * Finds the route for the specified module and operation.
+	 * 
+	 * @param moduleName the name of the module
+	 * @param operationName the name of the operation
+	 * @return the route or null if the table does not contain it
+	 */
+	Route find(String moduleName, String operationName) {
+
+		if (moduleName == null || operationName == null) {
+			return null;
+		}
+
+		int index = hash(moduleName, operationName) & mask;
+		Route route;
+		while ((route = routes[index]) != null) {
+
+			if (matches(moduleNames[index], moduleName) && matches(operationNames[index], operationName)) {
+				return route;
+			}
+			index = (index + 1) & mask;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the number of routes in this table.
+	 */
+	int size() {
+		return size;
+	}
+
+	private static boolean overridesExecuteOperation(Class<?> moduleClass) {
+
+		for (Class<?> type = moduleClass; type != ServiceModule.class; type = type.getSuperclass()) {
+			for (String methodName : new String[] {"executeOperation", "executeOperationAsync"}) {
+				try {
+					type.getDeclaredMethod(methodName, String.class, Map.class);
+					return true;
+				} catch (NoSuchMethodException exc) {
+					// not declared by this class
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean matches(String key, String name) {
+		return key == name || key.equals(name);
+	}
+
+	private static int hash(String moduleName, String operationName) {
+		int h = moduleName.hashCode() * 31 + operationName.hashCode();
+		return h ^ (h >>> 16);
+	}
+}
@@ -16,43 +16,127 @@ limitations under the License.
 
 package ro.teodorbaciu.commons.ws;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
 import ro.teodorbaciu.commons.ws.DispatchResult.Status;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
 
 /**
  * Dispatches web requests to the corresponding modules.
+ * <p>
+ * The registered modules are kept in an immutable snapshot that is replaced atomically
+ * whenever a module is added or removed. Dispatching only reads the current snapshot, so
+ * it never blocks and modules can be hot-swapped while requests are being served.
+ * <p>
+ * By default the dispatcher resolves the module and then the operation on every request.
+ * After {@link #compileRoutes()} is called, all the known module/operation pairs are
+ * resolved with a single lookup in a precompiled route table. The table is rebuilt when
+ * modules are added or removed; operations added to an already registered module are
+ * still reachable, through the dynamic lookup, until the routes are compiled again.
+ * <p>
+ * The dispatcher counts the calls for each {@link Status} and every operation added to a module 
+ * records its call counts and latencies, see {@link #getOperationStatistics()}. The metrics can be
+ * exported through JMX with {@link #registerMBean()}.
+ * <p>
+ * The concurrent executions can be limited per module and per operation with a {@link ConcurrencyLimiter};
+ * the calls that are not admitted end at once with the {@link Status#REJECTED} status. The rate of the calls
+ * can be limited in the same way with a {@link RateLimiter}, which ends the excess calls with the
+ * {@link Status#RATE_LIMITED} status.
+ * <p>
+ * A call dispatched with an {@link ExecutionContext} is not executed once its deadline has passed, and ends 
+ * with the {@link Status#TIMEOUT} status if the operation stops with a {@link DeadlineExceededException}.
+ * <p>
+ * The {@link OperationInterceptor}s added to the dispatcher are compiled, together with those of each
+ * module, into the interceptor chain of the module when the module is registered or the interceptors change.
+ * A module should be registered in a single dispatcher.
  * 
  * @author Teodor Baciu
  *
  */
-public class ServiceDispatcher {
+public class ServiceDispatcher implements ServiceDispatcherMXBean {
+
+	/**
+	 * Contains the modules defined in this dispatcher and the compiled routes. The registry
+	 * is never modified once published, changes are made on a copy that replaces it.
+	 */
+	private volatile ModuleRegistry registry;
 
 	/**
-	 * Contains the modules defined in this dispatcher.
+	 * Serializes the changes made to the registered modules.
 	 */
-	private HashMap<String, ServiceModule> mapModules;
+	private final Object registryLock = new Object();
 
 	/**
 	 * A short name associated with this dispatcher, useful for logging.
 	 */
 	private String name;
 
+	/**
+	 * The number of dispatched calls, indexed by the ordinal of their {@link Status}.
+	 */
+	private final LongAdder[] dispatchCounts;
+
+	/**
+	 * The interceptors applied to the operations of all the modules, changed under {@link #registryLock}.
+	 */
+	private OperationInterceptor[] interceptors = new OperationInterceptor[0];
+
+	/**
+	 * True if a subclass overrides {@link #findModule(String)}, in which case every dispatch resolves 
+	 * the module through it and the compiled routes are not used.
+	 */
+	private final boolean customModuleLookup;
+
 	/**
 	 * Constructor.
 	 */
 	public ServiceDispatcher(String name) {
 
 		this.name = name;
-		mapModules = new HashMap<>();
+		registry = ModuleRegistry.EMPTY;
+
+		dispatchCounts = new LongAdder[Status.values().length];
+		for (int i = 0; i < dispatchCounts.length; i++) {
+			dispatchCounts[i] = new LongAdder();
+		}
+		customModuleLookup = overridesFindModule(getClass());
+	}
+
+	private static boolean overridesFindModule(Class<?> dispatcherClass) {
+
+		for (Class<?> type = dispatcherClass; type != ServiceDispatcher.class; type = type.getSuperclass()) {
+			try {
+				type.getDeclaredMethod("findModule", String.class);
+				return true;
+			} catch (NoSuchMethodException exc) {
+				// not declared by this class
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -61,21 +145,239 @@ public class ServiceDispatcher {
 	 * @param moduleName the name of the module which contains the operation to execute
 	 * @param operationName the name of the operation to be executed
 	 * @param parameters a map containining the name value pairs
+	 * @return the result of the dispatch; the results without value are shared instances and 
+	 * 		a routed successful execution creates only the returned {@link DispatchResult}
 	 */
 	public DispatchResult dispatch(String moduleName, String operationName, Map<String, Object> parameters) {
+		return count(route(moduleName, operationName, parameters));
+	}
+
+	/**
+	 * Dispatches request to the appropriate module, within the time budget of the specified context.
+	 * The context is the {@link ExecutionContext#current()} one while the operation executes.
+	 * 
+	 * @param moduleName the name of the module which contains the operation to execute
+	 * @param operationName the name of the operation to be executed
+	 * @param parameters a map containining the name value pairs
+	 * @param context the context carrying the deadline of the call
+	 * @return the result of the dispatch, with the {@link Status#TIMEOUT} status if the deadline passed
+	 * 		before the execution or the operation stopped with a {@link DeadlineExceededException}
+	 */
+	public DispatchResult dispatch(String moduleName, String operationName, Map<String, Object> parameters, ExecutionContext context) {
+
+		if (context == null) {
+			throw new NullPointerException("The execution context cannot be null");
+		}
+
+		if (context.isExpired()) {
+			return count(DispatchResult.of(ExecutionResult.of(ExecutionResult.Status.TIMEOUT)));
+		}
+
+		ExecutionContext previous = ExecutionContext.attach(context);
+		try {
+			return count(route(moduleName, operationName, parameters));
+		} catch (DeadlineExceededException exc) {
+			return count(DispatchResult.of(ExecutionResult.of(ExecutionResult.Status.TIMEOUT)));
+		} finally {
+			ExecutionContext.restore(previous);
+		}
+	}
+
+	/**
+	 * Dispatches the request without counting it.
+	 */
+	private DispatchResult route(String moduleName, String operationName, Map<String, Object> parameters) {
+
+		ModuleRegistry currentRegistry = registry;
+		if (currentRegistry.routes != null && !customModuleLookup) {
+
+			RouteTable.Route route = currentRegistry.routes.find(moduleName, operationName);
+			if (route != null) {
+
+				if (route.module.isLimited(route.operation)) {
+					return DispatchResult.of(route.module.executeWithinLimits(route.operation, parameters));
+				}
+
+				Optional<BaseResult> optExecutionValue = route.module.invokeOperation(route.operation, parameters);
+				if (!optExecutionValue.isPresent()) {
+					return DispatchResult.of(ExecutionResult.of(ExecutionResult.Status.INVALID));
+				}
+				return new DispatchResult(optExecutionValue.get());
+			}
+		}
 
 		if (StringUtils.isBlank(moduleName)) {
-			return new DispatchResult(Status.MODULE_NAME_BLANK);
+			return DispatchResult.of(Status.MODULE_NAME_BLANK);
 		}
 
-		Optional<ServiceModule> optModule = findModule(moduleName);
-		if (!optModule.isPresent()) { // module not found
-			return new DispatchResult(DispatchResult.Status.MODULE_NOT_FOUND);
+		ServiceModule module = customModuleLookup ? findModule(moduleName).orElse(null) : currentRegistry.modules.get(moduleName);
+		if (module == null) { // module not found
+			return DispatchResult.of(Status.MODULE_NOT_FOUND);
 		}
 
-		ExecutionResult executionResult = optModule.get().executeOperation(operationName, parameters);
-		return new DispatchResult(executionResult, Status.DISPATCH_SUCCESS);
+		ExecutionResult executionResult = module.executeOperation(operationName, parameters);
+		return DispatchResult.of(executionResult);
+
+	}
+
+	/**
+	 * Dispatches request to the appropriate module, without waiting for the operation to complete.
+	 * Operations extending {@link AsyncServiceOperation} do not keep the calling thread busy,
+	 * the other operations are executed on the calling thread.
+	 * 
+	 * @param moduleName the name of the module which contains the operation to execute
+	 * @param operationName the name of the operation to be executed
+	 * @param parameters a map containining the name value pairs
+	 * @return a {@link CompletionStage} completed with the result of the dispatch
+	 */
+	public CompletionStage<DispatchResult> dispatchAsync(String moduleName, String operationName, Map<String, Object> parameters) {
+		return routeAsync(moduleName, operationName, parameters).thenApply(this::count);
+	}
+
+	/**
+	 * Dispatches request to the appropriate module, within the time budget of the specified context, without
+	 * waiting for the operation to complete. The context is the {@link ExecutionContext#current()} one while
+	 * the operation executes on the calling thread; asynchronous operations capture it for their own threads.
+	 * 
+	 * @param moduleName the name of the module which contains the operation to execute
+	 * @param operationName the name of the operation to be executed
+	 * @param parameters a map containining the name value pairs
+	 * @param context the context carrying the deadline of the call
+	 * @return a {@link CompletionStage} completed with the result of the dispatch
+	 * @see #dispatch(String, String, Map, ExecutionContext)
+	 */
+	public CompletionStage<DispatchResult> dispatchAsync(String moduleName, String operationName, Map<String, Object> parameters, 
+			ExecutionContext context) {
+
+		if (context == null) {
+			throw new NullPointerException("The execution context cannot be null");
+		}
+
+		if (context.isExpired()) {
+			return CompletableFuture.completedFuture(count(DispatchResult.of(ExecutionResult.of(ExecutionResult.Status.TIMEOUT))));
+		}
+
+		CompletionStage<DispatchResult> stage;
+		ExecutionContext previous = ExecutionContext.attach(context);
+		try {
+			stage = routeAsync(moduleName, operationName, parameters);
+		} catch (DeadlineExceededException exc) {
+			stage = CompletableFuture.completedFuture(DispatchResult.of(ExecutionResult.of(ExecutionResult.Status.TIMEOUT)));
+		} finally {
+			ExecutionContext.restore(previous);
+		}
+
+		return stage.exceptionally(exc -> {
+			Throwable cause = exc instanceof CompletionException && exc.getCause() != null ? exc.getCause() : exc;
+			if (cause instanceof DeadlineExceededException) {
+				return DispatchResult.of(ExecutionResult.of(ExecutionResult.Status.TIMEOUT));
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new CompletionException(cause);
+		}).thenApply(this::count);
+	}
+
+	/**
+	 * Dispatches the request asynchronously without counting it.
+	 */
+	private CompletionStage<DispatchResult> routeAsync(String moduleName, String operationName, Map<String, Object> parameters) {
+
+		ModuleRegistry currentRegistry = registry;
+		if (currentRegistry.routes != null && !customModuleLookup) {
+
+			RouteTable.Route route = currentRegistry.routes.find(moduleName, operationName);
+			if (route != null) {
+
+				if (route.module.isLimited(route.operation)) {
+					return route.module.executeWithinLimitsAsync(route.operation, parameters).thenApply(DispatchResult::of);
+				}
+				return route.module.invokeOperationAsync(route.operation, parameters)
+						.thenApply(optExecutionValue -> optExecutionValue.isPresent() 
+								? new DispatchResult(optExecutionValue.get())
+								: DispatchResult.of(ExecutionResult.of(ExecutionResult.Status.INVALID)));
+			}
+		}
+
+		if (StringUtils.isBlank(moduleName)) {
+			return CompletableFuture.completedFuture(DispatchResult.of(Status.MODULE_NAME_BLANK));
+		}
+
+		ServiceModule module = customModuleLookup ? findModule(moduleName).orElse(null) : currentRegistry.modules.get(moduleName);
+		if (module == null) { // module not found
+			return CompletableFuture.completedFuture(DispatchResult.of(Status.MODULE_NOT_FOUND));
+		}
+
+		return module.executeOperationAsync(operationName, parameters).thenApply(DispatchResult::of);
+	}
+
+	/**
+	 * Dispatches several calls at once, executing the independent calls in parallel on a pool of daemon 
+	 * threads dedicated to the batches, since the operations may block. The common fork join pool is 
+	 * not used, so blocking operations cannot starve the other users of that pool. The pool is bounded 
+	 * to twice the number of processors, at least 4 threads, and to 1024 queued calls; the calls that do
+	 * not fit run on the calling thread.
+	 * 
+	 * @param calls the calls to dispatch
+	 * @return the results of the calls, in the order of the calls
+	 * @see #dispatchBatch(List, Executor)
+	 */
+	public List<DispatchResult> dispatchBatch(List<BatchCall> calls) {
+		return dispatchBatch(calls, BatchExecutorHolder.EXECUTOR);
+	}
+
+	/**
+	 * Dispatches several calls at once. The calls marked as independent are all submitted to
+	 * the executor, while the other calls are dispatched on the calling thread, one after
+	 * another, in the order in which they appear. The method returns when all calls complete.
+	 * 
+	 * @param calls the calls to dispatch
+	 * @param executor the executor used for the independent calls
+	 * @return the results of the calls, in the order of the calls
+	 */
+	public List<DispatchResult> dispatchBatch(List<BatchCall> calls, Executor executor) {
+
+		List<CompletableFuture<DispatchResult>> independentResults = new ArrayList<>(calls.size());
+		for (BatchCall call : calls) {
+
+			if (call.isIndependent()) {
+				independentResults.add(CompletableFuture.supplyAsync(() -> dispatch(call.getModuleName(), 
+						call.getOperationName(), call.getParameters()), executor));
+			} else {
+				independentResults.add(null);
+			}
+		}
+
+		List<DispatchResult> results = new ArrayList<>(calls.size());
+		for (BatchCall call : calls) {
+
+			if (!call.isIndependent()) {
+				results.add(dispatch(call.getModuleName(), call.getOperationName(), call.getParameters()));
+			} else {
+				results.add(null);
+			}
+		}
+
+		for (int i = 0; i < calls.size(); i++) {
+
+			CompletableFuture<DispatchResult> independentResult = independentResults.get(i);
+			if (independentResult == null) {
+				continue;
+			}
+
+			try {
+				results.set(i, independentResult.join());
+			} catch (CompletionException exc) {
+
+				if (exc.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) exc.getCause();
+				}
+				throw exc;
+			}
+		}
 
+		return results;
 	}
 
 	/**
@@ -89,11 +391,16 @@ public class ServiceDispatcher {
 			throw new NullPointerException("Cannot add null module");
 		}
 
-		// check if a module with the specified name is already added
-		if (mapModules.get(module.getModuleName()) != null) {
-			throw new IllegalArgumentException("A module with this name is already added");
+		synchronized (registryLock) {
+
+			// check if a module with the specified name is already added
+			if (registry.modules.get(module.getModuleName()) != null) {
+				throw new IllegalArgumentException("A module with this name is already added");
+			}
+
+			module.setDispatcherInterceptors(interceptors);
+			registry = registry.withModule(module);
 		}
-		mapModules.put(module.getModuleName(), module);
 	}
 
 	/**
@@ -108,23 +415,190 @@ public class ServiceDispatcher {
 			throw new IllegalArgumentException("moduleName parameter cannot be blank");
 		}
 
-		ServiceModule module = mapModules.remove(moduleName);
-		if (module == null) {
-			return Optional.empty();
+		synchronized (registryLock) {
+
+			ServiceModule module = registry.modules.get(moduleName);
+			if (module == null) {
+				return Optional.empty();
+			}
+
+			registry = registry.withoutModule(moduleName);
+			module.setDispatcherInterceptors(new OperationInterceptor[0]);
+
+			return Optional.of(module);
 		}
+	}
 
-		return Optional.of(module);
+	/**
+	 * Adds an interceptor to the operations of all the modules, after the interceptors already added.
+	 * The interceptors of the dispatcher run before those of the modules.
+	 * 
+	 * @param interceptor the interceptor to add
+	 */
+	public void addInterceptor(OperationInterceptor interceptor) {
+
+		if (interceptor == null) {
+			throw new NullPointerException("Cannot add null interceptor");
+		}
+
+		synchronized (registryLock) {
+
+			OperationInterceptor[] newInterceptors = Arrays.copyOf(interceptors, interceptors.length + 1);
+			newInterceptors[interceptors.length] = interceptor;
+			setInterceptors(newInterceptors);
+		}
+	}
+
+	/**
+	 * Removes an interceptor added to the dispatcher.
+	 * 
+	 * @param interceptor the interceptor to remove
+	 * @return true if the interceptor was found
+	 */
+	public boolean removeInterceptor(OperationInterceptor interceptor) {
+
+		synchronized (registryLock) {
+
+			OperationInterceptor[] newInterceptors = ServiceModule.removeInterceptor(interceptors, interceptor);
+			if (newInterceptors == interceptors) {
+				return false;
+			}
+			setInterceptors(newInterceptors);
+			return true;
+		}
+	}
+
+	/**
+	 * Returns the interceptors added to the dispatcher.
+	 * 
+	 * @return an unmodifiable list containing the interceptors, in the order in which they run
+	 */
+	public List<OperationInterceptor> getInterceptors() {
+
+		synchronized (registryLock) {
+			return Collections.unmodifiableList(Arrays.asList(interceptors));
+		}
+	}
+
+	private void setInterceptors(OperationInterceptor[] newInterceptors) {
+
+		interceptors = newInterceptors;
+		for (ServiceModule module : registry.modules.values()) {
+			module.setDispatcherInterceptors(newInterceptors);
+		}
+	}
+
+	/**
+	 * Compiles the operations of all the registered modules into a route table, used for
+	 * resolving each dispatch with a single lookup. Can be called again after operations
+	 * were added to the registered modules. Has no effect on the dispatch when a subclass 
+	 * overrides {@link #findModule(String)}. The modules that override 
+	 * {@link ServiceModule#executeOperation(String, Map)} or {@link ServiceModule#executeOperationAsync(String, Map)}
+	 * are not compiled, their calls still go through the overridden methods.
+	 */
+	public void compileRoutes() {
+
+		synchronized (registryLock) {
+			registry = registry.withRoutes(true);
+		}
+	}
+
+	/**
+	 * Discards the compiled routes and returns to resolving the module and operation
+	 * separately on each dispatch.
+	 */
+	public void discardCompiledRoutes() {
+
+		synchronized (registryLock) {
+			registry = registry.withRoutes(false);
+		}
+	}
+
+	/**
+	 * Returns if the dispatcher currently uses compiled routes.
+	 */
+	public boolean isRoutesCompiled() {
+		return registry.routes != null;
 	}
 
 	/**
 	 * Returns the list modules defined in this dispatcher.
 	 * 
-	 * @return an unmodifiable collection containing the modules from the dispatcher
+	 * @return an unmodifiable collection containing the modules registered at the moment of the call
 	 */
 	public Collection<ServiceModule> getModules() {
-		return Collections.unmodifiableCollection(mapModules.values());
+		return Collections.unmodifiableCollection(registry.modules.values());
 	}
 	
+	/**
+	 * Returns the metrics of the operations of all the registered modules. The operations
+	 * that were never called are included with zero counts.
+	 * 
+	 * @return a list containing a snapshot of the metrics of each operation
+	 */
+	@Override
+	public List<OperationStatistics> getOperationStatistics() {
+
+		List<OperationStatistics> listStatistics = new ArrayList<>();
+		for (ServiceModule module : registry.modules.values()) {
+			for (ServiceOperation operation : module.getOperations()) {
+				operation.getMetrics().ifPresent(metrics -> 
+						listStatistics.add(new OperationStatistics(module.getModuleName(), operation.getName(), metrics)));
+			}
+		}
+		return listStatistics;
+	}
+
+	/**
+	 * Returns the number of calls dispatched with the specified status since the dispatcher was created.
+	 */
+	public long getDispatchCount(Status status) {
+		return dispatchCounts[status.ordinal()].sum();
+	}
+
+	@Override
+	public Map<Status, Long> getDispatchCounts() {
+
+		Map<Status, Long> mapCounts = new EnumMap<>(Status.class);
+		for (Status status : Status.values()) {
+			mapCounts.put(status, getDispatchCount(status));
+		}
+		return mapCounts;
+	}
+
+	/**
+	 * Registers this dispatcher in the platform MBean server, as
+	 * ro.teodorbaciu.commons.ws:type=ServiceDispatcher,name=&lt;the name of the dispatcher&gt;.
+	 * 
+	 * @return the name under which the dispatcher was registered
+	 */
+	public ObjectName registerMBean() {
+
+		try {
+			ObjectName objectName = getObjectName();
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			return objectName;
+		} catch (JMException exc) {
+			throw new IllegalStateException("Could not register the dispatcher in the MBean server", exc);
+		}
+	}
+
+	/**
+	 * Unregisters this dispatcher from the platform MBean server.
+	 */
+	public void unregisterMBean() {
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName());
+		} catch (JMException exc) {
+			throw new IllegalStateException("Could not unregister the dispatcher from the MBean server", exc);
+		}
+	}
+
+	private ObjectName getObjectName() throws JMException {
+		return new ObjectName("ro.teodorbaciu.commons.ws:type=ServiceDispatcher,name=" + ObjectName.quote(String.valueOf(name)));
+	}
+
 	/**
 	 * Returns the names of parameters the specified operation requires.
 	 * @param moduleName the name of the module that contains the operation
@@ -143,18 +617,56 @@ public class ServiceDispatcher {
 	}
 
 	/**
-	 * Finds the module with the specified name.
+	 * Counts the specified result.
+	 */
+	private DispatchResult count(DispatchResult result) {
+
+		dispatchCounts[result.getStatus().ordinal()].increment();
+		return result;
+	}
+
+	/**
+	 * Finds the module with the specified name. The dispatch resolves the modules through this 
+	 * method when a subclass overrides it.
 	 * 
 	 * @param moduleName the name of the module
 	 * @return an {@link Optional} containing the module if one was found
 	 */
 	protected Optional<ServiceModule> findModule(String moduleName) {
 
-		ServiceModule module = mapModules.get(moduleName);
+		ServiceModule module = registry.modules.get(moduleName);
 		if (module == null) {
 			return Optional.empty();
 		}
 		return Optional.of(module);
 	}
 
+	/**
+	 * Creates the executor of the batches when first used. The pool has at most {@link #THREADS} threads 
+	 * and queues at most {@link #QUEUE_SIZE} calls; when the queue is full the call runs on the thread 
+	 * that dispatches the batch, which slows down the clients sending the batches instead of growing the pool.
+	 */
+	private static final class BatchExecutorHolder {
+
+		static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+		static final int QUEUE_SIZE = 1024;
+
+		private static final AtomicInteger threadCount = new AtomicInteger();
+
+		static final ExecutorService EXECUTOR = createExecutor();
+
+		private static ExecutorService createExecutor() {
+
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, 
+					new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+						Thread thread = new Thread(runnable, "ws-batch-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}, new ThreadPoolExecutor.CallerRunsPolicy());
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		}
+	}
+
 }
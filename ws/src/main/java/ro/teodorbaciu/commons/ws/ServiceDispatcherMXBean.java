@@ -0,0 +1,39 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Management interface of a {@link ServiceDispatcher}, exported with {@link ServiceDispatcher#registerMBean()}.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+public interface ServiceDispatcherMXBean {
+
+	/**
+	 * Returns the metrics of the operations of all the registered modules.
+	 */
+	List<OperationStatistics> getOperationStatistics();
+
+	/**
+	 * Returns the number of dispatched calls for each dispatch status.
+	 */
+	Map<DispatchResult.Status, Long> getDispatchCounts();
+}
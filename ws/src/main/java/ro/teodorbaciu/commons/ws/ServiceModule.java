@@ -16,9 +16,15 @@ limitations under the License.
 
 package ro.teodorbaciu.commons.ws;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -33,54 +39,262 @@ import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
  */
 public class ServiceModule {
 
+	private static final OperationInterceptor[] NO_INTERCEPTORS = new OperationInterceptor[0];
+
 	/**
-	 * Stores the webservice operations defined in this module.
+	 * Stores the webservice operations defined in this module. Replaced with a copy when an operation 
+	 * is added, so the dispatching threads read it without locking.
 	 */
-	private HashMap<String, ServiceOperation> mapOperations = null;
+	private volatile Map<String, ServiceOperation> mapOperations;
 
 	/**
 	 * The name of the module.
 	 */
 	private String moduleName;
 
+	/**
+	 * Limits the concurrent executions of the operations of this module, null if there is no limit.
+	 */
+	private volatile ConcurrencyLimiter concurrencyLimiter;
+
+	/**
+	 * Limits the rate of the calls of the operations of this module, null if there is no limit.
+	 */
+	private volatile RateLimiter rateLimiter;
+
+	/**
+	 * The interceptors added to this module.
+	 */
+	private volatile OperationInterceptor[] interceptors = NO_INTERCEPTORS;
+
+	/**
+	 * The interceptors of the dispatcher in which the module is registered.
+	 */
+	private volatile OperationInterceptor[] dispatcherInterceptors = NO_INTERCEPTORS;
+
+	/**
+	 * The dispatcher and the module interceptors compiled into a chain, null if there are no interceptors.
+	 */
+	private volatile InterceptorChain interceptorChain;
+
 	/**
 	 * Constructor.
 	 */
 	public ServiceModule(String moduleName) {
 		this.moduleName = moduleName;
-		mapOperations = new HashMap<String, ServiceOperation>();
+		mapOperations = Collections.emptyMap();
 	}
 	
 	/**
 	 * Executes the operation with the specified name.
 	 * @param operationName the name of the operation to execute.
 	 * @param parameters the parameters to pass to the operation
-	 * @return an instance of type {@link ExecutionResult}
+	 * @return an instance of type {@link ExecutionResult}, shared if the execution did not produce a value
 	 */
 	public ExecutionResult executeOperation(String operationName, Map<String, Object> parameters) {
 		
 		if ( StringUtils.isBlank( operationName ) ) {
-			return new ExecutionResult(Status.OPERATION_NAME_BLANK);
+			return ExecutionResult.of(Status.OPERATION_NAME_BLANK);
 		}
 		
 		ServiceOperation operation = mapOperations.get(operationName);
 		if ( operation == null ) {
-			return new ExecutionResult(Status.OPERATION_NOT_FOUND);
+			return ExecutionResult.of(Status.OPERATION_NOT_FOUND);
 		}
 		
-		Optional<BaseResult> optExecutionValue = operation.execute(parameters);
-		if ( !optExecutionValue.isPresent() ) {
-			return new ExecutionResult(Status.INVALID);
+		return executeWithinLimits(operation, parameters);
+	}
+	
+	/**
+	 * Executes the specified operation within the rate and concurrency limits of this module and of the operation.
+	 * @return the {@link ExecutionResult}, with the {@link Status#RATE_LIMITED} or {@link Status#REJECTED} 
+	 * 		status if a limiter did not admit the call
+	 */
+	final ExecutionResult executeWithinLimits(ServiceOperation operation, Map<String, Object> parameters) {
+		
+		if ( !isRateAdmitted(operation, parameters) ) {
+			return ExecutionResult.of(Status.RATE_LIMITED);
 		}
 		
-		return new ExecutionResult(optExecutionValue.get(), Status.VALID);
+		ConcurrencyLimiter operationLimiter = operation.currentConcurrencyLimiter();
+		ConcurrencyLimiter moduleLimiter = concurrencyLimiter;
+		if ( operationLimiter == null && moduleLimiter == null ) {
+			return toExecutionResult(invokeOperation(operation, parameters));
+		}
+		
+		if ( operationLimiter != null && !operationLimiter.acquire() ) {
+			return ExecutionResult.of(Status.REJECTED);
+		}
+		if ( moduleLimiter != null && !moduleLimiter.acquire() ) {
+			if ( operationLimiter != null ) {
+				operationLimiter.releaseUnused();
+			}
+			return ExecutionResult.of(Status.REJECTED);
+		}
+		
+		// the deadline may have passed while waiting for a permit
+		if ( ExecutionContext.current().isExpired() ) {
+			releaseUnused(operationLimiter, moduleLimiter);
+			return ExecutionResult.of(Status.TIMEOUT);
+		}
+		
+		long start = System.nanoTime();
+		boolean valid = false;
+		try {
+			ExecutionResult result = toExecutionResult(invokeOperation(operation, parameters));
+			valid = result.getStatus() == Status.VALID;
+			return result;
+		} finally {
+			release(operationLimiter, moduleLimiter, System.nanoTime() - start, valid);
+		}
+	}
+	
+	/**
+	 * Returns if the calls of the specified operation are limited by a {@link ConcurrencyLimiter} or a {@link RateLimiter}.
+	 */
+	final boolean isLimited(ServiceOperation operation) {
+		return concurrencyLimiter != null || operation.currentConcurrencyLimiter() != null 
+				|| rateLimiter != null || operation.currentRateLimiter() != null;
+	}
+	
+	/**
+	 * Takes a token from the rate limiters of the operation and of this module.
+	 * @return false if the call exceeds the rate of a limiter
+	 */
+	private boolean isRateAdmitted(ServiceOperation operation, Map<String, Object> parameters) {
+		
+		RateLimiter operationRateLimiter = operation.currentRateLimiter();
+		if ( operationRateLimiter != null && !operationRateLimiter.tryAcquire(parameters) ) {
+			return false;
+		}
+		
+		RateLimiter moduleRateLimiter = rateLimiter;
+		return moduleRateLimiter == null || moduleRateLimiter.tryAcquire(parameters);
+	}
+	
+
+	/**
+	 * Executes the specified operation, which was already resolved from this module.
+	 * This is also the entry point used by a {@link ServiceDispatcher} with compiled routes.
+	 * @param operation the operation to execute
+	 * @param parameters the parameters to pass to the operation
+	 * @return the {@link Optional} returned by the operation or its cached result
+	 */
+	protected Optional<BaseResult> invokeOperation(ServiceOperation operation, Map<String, Object> parameters) {
+		
+		InterceptorChain chain = interceptorChain;
+		if ( chain == null ) {
+			return operation.invoke(parameters);
+		}
+		return chain.proceed(this, operation, parameters);
+	}
+	
+	/**
+	 * Executes the operation with the specified name asynchronously.
+	 * @param operationName the name of the operation to execute.
+	 * @param parameters the parameters to pass to the operation
+	 * @return a {@link CompletionStage} completed with the {@link ExecutionResult}
+	 */
+	public CompletionStage<ExecutionResult> executeOperationAsync(String operationName, Map<String, Object> parameters) {
+		
+		if ( StringUtils.isBlank( operationName ) ) {
+			return CompletableFuture.completedFuture(ExecutionResult.of(Status.OPERATION_NAME_BLANK));
+		}
+		
+		ServiceOperation operation = mapOperations.get(operationName);
+		if ( operation == null ) {
+			return CompletableFuture.completedFuture(ExecutionResult.of(Status.OPERATION_NOT_FOUND));
+		}
+		
+		return executeWithinLimitsAsync(operation, parameters);
+	}
+	
+	/**
+	 * Executes asynchronously the specified operation within the rate and concurrency limits of this module 
+	 * and of the operation. The call is rejected if a permit is not available at once.
+	 */
+	final CompletionStage<ExecutionResult> executeWithinLimitsAsync(ServiceOperation operation, Map<String, Object> parameters) {
+		
+		if ( !isRateAdmitted(operation, parameters) ) {
+			return CompletableFuture.completedFuture(ExecutionResult.of(Status.RATE_LIMITED));
+		}
+		
+		ConcurrencyLimiter operationLimiter = operation.currentConcurrencyLimiter();
+		ConcurrencyLimiter moduleLimiter = concurrencyLimiter;
+		if ( operationLimiter == null && moduleLimiter == null ) {
+			return invokeOperationAsync(operation, parameters).thenApply(ServiceModule::toExecutionResult);
+		}
+		
+		if ( operationLimiter != null && !operationLimiter.tryAcquire() ) {
+			return CompletableFuture.completedFuture(ExecutionResult.of(Status.REJECTED));
+		}
+		if ( moduleLimiter != null && !moduleLimiter.tryAcquire() ) {
+			if ( operationLimiter != null ) {
+				operationLimiter.releaseUnused();
+			}
+			return CompletableFuture.completedFuture(ExecutionResult.of(Status.REJECTED));
+		}
+		
+		// the deadline may have passed while acquiring the permits
+		if ( ExecutionContext.current().isExpired() ) {
+			releaseUnused(operationLimiter, moduleLimiter);
+			return CompletableFuture.completedFuture(ExecutionResult.of(Status.TIMEOUT));
+		}
+		
+		long start = System.nanoTime();
+		CompletionStage<Optional<BaseResult>> stage;
+		try {
+			stage = invokeOperationAsync(operation, parameters);
+		} catch (RuntimeException | Error exc) {
+			release(operationLimiter, moduleLimiter, System.nanoTime() - start, false);
+			throw exc;
+		}
+		
+		return stage.whenComplete((optExecutionValue, exc) -> release(operationLimiter, moduleLimiter, 
+				System.nanoTime() - start, exc == null && optExecutionValue.isPresent()))
+				.thenApply(ServiceModule::toExecutionResult);
+	}
+	
+	private static void releaseUnused(ConcurrencyLimiter operationLimiter, ConcurrencyLimiter moduleLimiter) {
+		
+		if ( moduleLimiter != null ) {
+			moduleLimiter.releaseUnused();
+		}
+		if ( operationLimiter != null ) {
+			operationLimiter.releaseUnused();
+		}
+	}
+	
+	private static void release(ConcurrencyLimiter operationLimiter, ConcurrencyLimiter moduleLimiter, long latencyNanos, boolean valid) {
+		
+		if ( moduleLimiter != null ) {
+			moduleLimiter.release(latencyNanos, valid);
+		}
+		if ( operationLimiter != null ) {
+			operationLimiter.release(latencyNanos, valid);
+		}
+	}
+	
+	/**
+	 * Executes asynchronously the specified operation, which was already resolved from this module.
+	 * @param operation the operation to execute
+	 * @param parameters the parameters to pass to the operation
+	 * @return the {@link CompletionStage} returned by the operation or its cached result
+	 */
+	protected CompletionStage<Optional<BaseResult>> invokeOperationAsync(ServiceOperation operation, Map<String, Object> parameters) {
+		
+		InterceptorChain chain = interceptorChain;
+		if ( chain == null ) {
+			return operation.invokeAsync(parameters);
+		}
+		return chain.proceedAsync(this, operation, parameters);
 	}
 	
 	/**
 	 * Add the specified operation to this module.
 	 * @param operation the operation to add
 	 */
-	public void addOperation(ServiceOperation operation) {
+	public synchronized void addOperation(ServiceOperation operation) {
 		
 		if ( operation == null ) {
 			throw new NullPointerException("The operation parameter cannot be null");
@@ -90,7 +304,136 @@ public class ServiceModule {
 			throw new IllegalArgumentException("The operation with name '" + operation.getName() + "' is already added");
 		}
 		
-		mapOperations.put(operation.getName(), operation);
+		operation.prepareExecution();
+		HashMap<String, ServiceOperation> newOperations = new HashMap<>(mapOperations);
+		newOperations.put(operation.getName(), operation);
+		mapOperations = newOperations;
+	}
+	
+	/**
+	 * Limits the concurrent executions of the operations of this module. The limiter can be replaced 
+	 * or removed at any time.
+	 * @param concurrencyLimiter the limiter, null for removing the limit
+	 */
+	public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+	
+	/**
+	 * Returns the limiter of the concurrent executions of the operations of this module.
+	 * @return an {@link Optional} containing the limiter, empty if there is no limit
+	 */
+	public Optional<ConcurrencyLimiter> getConcurrencyLimiter() {
+		return Optional.ofNullable(concurrencyLimiter);
+	}
+	
+	/**
+	 * Limits the rate of the calls of the operations of this module. The limiter can be replaced 
+	 * or removed at any time.
+	 * @param rateLimiter the limiter, null for removing the limit
+	 */
+	public void setRateLimiter(RateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+	
+	/**
+	 * Returns the limiter of the rate of the calls of the operations of this module.
+	 * @return an {@link Optional} containing the limiter, empty if there is no limit
+	 */
+	public Optional<RateLimiter> getRateLimiter() {
+		return Optional.ofNullable(rateLimiter);
+	}
+	
+	/**
+	 * Adds an interceptor to the operations of this module, after the interceptors already added.
+	 * @param interceptor the interceptor to add
+	 */
+	public synchronized void addInterceptor(OperationInterceptor interceptor) {
+		
+		if ( interceptor == null ) {
+			throw new NullPointerException("The interceptor parameter cannot be null");
+		}
+		
+		OperationInterceptor[] newInterceptors = Arrays.copyOf(interceptors, interceptors.length + 1);
+		newInterceptors[interceptors.length] = interceptor;
+		interceptors = newInterceptors;
+		compileInterceptors();
+	}
+	
+	/**
+	 * Removes an interceptor from this module.
+	 * @param interceptor the interceptor to remove
+	 * @return true if the interceptor was found
+	 */
+	public synchronized boolean removeInterceptor(OperationInterceptor interceptor) {
+		
+		OperationInterceptor[] newInterceptors = removeInterceptor(interceptors, interceptor);
+		if ( newInterceptors == interceptors ) {
+			return false;
+		}
+		interceptors = newInterceptors;
+		compileInterceptors();
+		return true;
+	}
+	
+	/**
+	 * Returns the interceptors added to this module, without those of the dispatcher.
+	 * @return an unmodifiable list containing the interceptors, in the order in which they run
+	 */
+	public List<OperationInterceptor> getInterceptors() {
+		return Collections.unmodifiableList(Arrays.asList(interceptors));
+	}
+	
+	/**
+	 * Sets the interceptors of the dispatcher in which the module is registered, which run before those of the module.
+	 */
+	synchronized void setDispatcherInterceptors(OperationInterceptor[] dispatcherInterceptors) {
+		
+		this.dispatcherInterceptors = dispatcherInterceptors;
+		compileInterceptors();
+	}
+	
+	private void compileInterceptors() {
+		
+		OperationInterceptor[] allInterceptors = Arrays.copyOf(dispatcherInterceptors, dispatcherInterceptors.length + interceptors.length);
+		System.arraycopy(interceptors, 0, allInterceptors, dispatcherInterceptors.length, interceptors.length);
+		interceptorChain = InterceptorChain.compile(allInterceptors);
+	}
+	
+	/**
+	 * Returns a copy of the array without the first occurrence of the interceptor, or the same array if it is not found.
+	 */
+	static OperationInterceptor[] removeInterceptor(OperationInterceptor[] interceptors, OperationInterceptor interceptor) {
+		
+		for ( int i = 0; i < interceptors.length; i++ ) {
+			if ( interceptors[i] == interceptor ) {
+				OperationInterceptor[] newInterceptors = new OperationInterceptor[interceptors.length - 1];
+				System.arraycopy(interceptors, 0, newInterceptors, 0, i);
+				System.arraycopy(interceptors, i + 1, newInterceptors, i, interceptors.length - i - 1);
+				return newInterceptors;
+			}
+		}
+		return interceptors;
+	}
+	
+	/**
+	 * Returns the operations defined in this module.
+	 * @return an unmodifiable collection containing the operations
+	 */
+	public Collection<ServiceOperation> getOperations() {
+		return Collections.unmodifiableCollection(mapOperations.values());
+	}
+	
+	/**
+	 * Converts the value returned by an operation to an {@link ExecutionResult}.
+	 */
+	static ExecutionResult toExecutionResult(Optional<BaseResult> optExecutionValue) {
+		
+		if ( !optExecutionValue.isPresent() ) {
+			return ExecutionResult.of(Status.INVALID);
+		}
+		
+		return new ExecutionResult(optExecutionValue.get(), Status.VALID);
 	}
 	
 	/**
@@ -18,9 +18,13 @@ package ro.teodorbaciu.commons.ws;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
 
@@ -42,6 +46,42 @@ public abstract class ServiceOperation {
 	 */
 	private List<String> listParameterNames;
 	
+	/**
+	 * Contains the definitions of the parameters declared with {@link OperationParameter}.
+	 */
+	private List<ParameterDefinition> listParameterDefinitions;
+	
+	/**
+	 * Validates the declared parameters, null if the operation was not added to a module yet
+	 * or declares no parameters.
+	 */
+	private volatile ParameterValidator parameterValidator;
+	
+	/**
+	 * Caches the results of this operation, null if the operation is not annotated with {@link OperationCache}.
+	 */
+	private volatile OperationResultCache resultCache;
+	
+	/**
+	 * Coalesces the identical concurrent calls, null if the operation is not annotated with {@link IdempotentOperation}.
+	 */
+	private volatile SingleFlight singleFlight;
+	
+	/**
+	 * Counts the calls and records their latencies, null if the operation was not added to a module yet.
+	 */
+	private volatile OperationMetrics metrics;
+	
+	/**
+	 * Limits the concurrent executions of this operation, null if there is no limit.
+	 */
+	private volatile ConcurrencyLimiter concurrencyLimiter;
+	
+	/**
+	 * Limits the rate of the calls of this operation, null if there is no limit.
+	 */
+	private volatile RateLimiter rateLimiter;
+	
 	/**
 	 * Constructor.
 	 * @param operationName the name of the operation
@@ -67,24 +107,352 @@ public abstract class ServiceOperation {
 		return Collections.unmodifiableList(listParameterNames);
 	}
 	
+	/**
+	 * Returns the definitions of the parameters this operation declares.
+	 * @return a {@link List} containing the parameter definitions, in declaration order
+	 */
+	public List<ParameterDefinition> getParameterDefinitions() {
+		return Collections.unmodifiableList(listParameterDefinitions);
+	}
+	
+	/**
+	 * Returns if the operation is annotated with {@link IdempotentOperation}, in which case 
+	 * the identical concurrent calls are coalesced.
+	 */
+	public boolean isIdempotent() {
+		return getClass().isAnnotationPresent(IdempotentOperation.class);
+	}
+	
+	/**
+	 * Returns the call counts and latencies of this operation.
+	 * @return an {@link Optional} containing the metrics, empty if the operation was not added to a module yet
+	 */
+	public Optional<OperationMetrics> getMetrics() {
+		return Optional.ofNullable(metrics);
+	}
+	
+	/**
+	 * Limits the concurrent executions of this operation, in addition to the limit of its module.
+	 * The limiter can be replaced or removed at any time.
+	 * @param concurrencyLimiter the limiter, null for removing the limit
+	 */
+	public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+	
+	/**
+	 * Returns the limiter of the concurrent executions of this operation.
+	 * @return an {@link Optional} containing the limiter, empty if there is no limit
+	 */
+	public Optional<ConcurrencyLimiter> getConcurrencyLimiter() {
+		return Optional.ofNullable(concurrencyLimiter);
+	}
+	
+	/**
+	 * Returns the limiter of the concurrent executions of this operation, null if there is no limit.
+	 */
+	ConcurrencyLimiter currentConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+	
+	/**
+	 * Limits the rate of the calls of this operation, in addition to the limit of its module.
+	 * The limiter can be replaced or removed at any time.
+	 * @param rateLimiter the limiter, null for removing the limit
+	 */
+	public void setRateLimiter(RateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+	
+	/**
+	 * Returns the limiter of the rate of the calls of this operation.
+	 * @return an {@link Optional} containing the limiter, empty if there is no limit
+	 */
+	public Optional<RateLimiter> getRateLimiter() {
+		return Optional.ofNullable(rateLimiter);
+	}
+	
+	/**
+	 * Returns the limiter of the rate of the calls of this operation, null if there is no limit.
+	 */
+	RateLimiter currentRateLimiter() {
+		return rateLimiter;
+	}
+	
+	/**
+	 * Returns the cache holding the results of this operation.
+	 * @return an {@link Optional} containing the cache, empty if the operation is not annotated
+	 * 		with {@link OperationCache} or was not added to a module yet
+	 */
+	public Optional<OperationResultCache> getResultCache() {
+		return Optional.ofNullable(resultCache);
+	}
+	
 	/**
 	 * Executes the operation.
 	 * @param parameters key value based map containing the parameters received by this operation
 	 * @return an {@link Optional} containg an instance of {@link BaseResult}
 	 */
 	public abstract Optional<BaseResult> execute(Map<String, Object> parameters);
+	
+	/**
+	 * Executes the operation with parameters that were validated against the {@link OperationParameter} 
+	 * declarations. Called instead of {@link #execute(Map)} when the operation is executed by a module; 
+	 * the default implementation calls {@link #execute(Map)}. Operations can override it for using
+	 * the numbers that were already parsed during validation.
+	 * @param parameters key value based map containing the parameters received by this operation
+	 * @param parsedParameters the validated declared parameters
+	 * @return an {@link Optional} containg an instance of {@link BaseResult}
+	 */
+	public Optional<BaseResult> execute(Map<String, Object> parameters, ParsedParameters parsedParameters) {
+		return execute(parameters);
+	}
+	
+	/**
+	 * Executes the operation asynchronously. The default implementation executes the 
+	 * operation synchronously on the calling thread and returns a completed stage, 
+	 * see {@link AsyncServiceOperation} for operations that really complete asynchronously.
+	 * @param parameters key value based map containing the parameters received by this operation
+	 * @return a {@link CompletionStage} completed with the result of {@link #execute(Map)}
+	 */
+	public CompletionStage<Optional<BaseResult>> executeAsync(Map<String, Object> parameters) {
+		
+		try {
+			return CompletableFuture.completedFuture(execute(parameters));
+		} catch (RuntimeException exc) {
+			return CompletableFutures.failedFuture(exc);
+		}
+	}
+	
+	/**
+	 * Executes the operation asynchronously with parameters that were validated against the 
+	 * {@link OperationParameter} declarations. The default implementation executes 
+	 * {@link #execute(Map, ParsedParameters)} on the calling thread and returns a completed stage.
+	 * @param parameters key value based map containing the parameters received by this operation
+	 * @param parsedParameters the validated declared parameters
+	 * @return a {@link CompletionStage} completed with the result of the execution
+	 */
+	public CompletionStage<Optional<BaseResult>> executeAsync(Map<String, Object> parameters, ParsedParameters parsedParameters) {
+		
+		try {
+			return CompletableFuture.completedFuture(execute(parameters, parsedParameters));
+		} catch (RuntimeException exc) {
+			return CompletableFutures.failedFuture(exc);
+		}
+	}
 
 	/**
-	 * Obtains the names of the parameters that have been defined using
-	 * {@link OperationParameter} annotations.
+	 * Prepares the operation for being executed by a module. Called when the operation is added to a module.
+	 */
+	void prepareExecution() {
+		
+		if (parameterValidator == null && !listParameterDefinitions.isEmpty()) {
+			parameterValidator = new ParameterValidator(listParameterDefinitions);
+		}
+		
+		if (resultCache == null) {
+			OperationCache operationCache = getClass().getAnnotation(OperationCache.class);
+			if (operationCache != null) {
+				resultCache = new OperationResultCache(listParameterNames, 
+						TimeUnit.SECONDS.toMillis(operationCache.ttlSeconds()), operationCache.maxEntries());
+			}
+		}
+		
+		if (singleFlight == null && isIdempotent()) {
+			singleFlight = new SingleFlight();
+		}
+		
+		if (metrics == null) {
+			metrics = new OperationMetrics();
+		}
+	}
+	
+	/**
+	 * Executes the operation on behalf of a module. Validates the declared parameters, returns the 
+	 * cached result if there is one and, for idempotent operations, coalesces the identical concurrent calls.
+	 * @param parameters key value based map containing the parameters received by this operation
+	 * @return the result of {@link #execute(Map, ParsedParameters)} or an empty {@link Optional} 
+	 * 		if the parameters are not valid
+	 */
+	final Optional<BaseResult> invoke(Map<String, Object> parameters) {
+		
+		OperationMetrics currentMetrics = metrics;
+		if (currentMetrics == null) {
+			return invokeUnmeasured(parameters);
+		}
+		
+		long start = System.nanoTime();
+		Optional<BaseResult> optExecutionValue;
+		try {
+			optExecutionValue = invokeUnmeasured(parameters);
+		} catch (RuntimeException | Error exc) {
+			currentMetrics.recordFailure(System.nanoTime() - start);
+			throw exc;
+		}
+		
+		if (optExecutionValue.isPresent()) {
+			currentMetrics.recordValid(System.nanoTime() - start);
+		} else {
+			currentMetrics.recordInvalid(System.nanoTime() - start);
+		}
+		return optExecutionValue;
+	}
+	
+	/**
+	 * Runs the steps of {@link #invoke(Map)}.
+	 */
+	private Optional<BaseResult> invokeUnmeasured(Map<String, Object> parameters) {
+		
+		ParsedParameters parsedParameters = validate(parameters);
+		if (parsedParameters == null) {
+			return Optional.empty();
+		}
+		
+		OperationResultCache cache = resultCache;
+		SingleFlight flights = singleFlight;
+		if (cache == null && flights == null) {
+			return execute(parameters, parsedParameters);
+		}
+		
+		Object key = null;
+		if (cache != null) {
+			key = cache.createKey(parameters);
+			BaseResult cachedValue = cache.get(key);
+			if (cachedValue != null) {
+				return Optional.of(cachedValue);
+			}
+		}
+		
+		Optional<BaseResult> optExecutionValue = flights != null 
+				? flights.execute(new HashMap<>(parameters), ExecutionContext.current(), () -> execute(parameters, parsedParameters))
+				: execute(parameters, parsedParameters);
+		
+		if (cache != null && optExecutionValue.isPresent()) {
+			cache.put(key, optExecutionValue.get());
+		}
+		return optExecutionValue;
+	}
+	
+	/**
+	 * Executes the operation asynchronously on behalf of a module. Validates the declared parameters, 
+	 * returns the cached result if there is one and, for idempotent operations, coalesces the 
+	 * identical concurrent calls.
+	 * @param parameters key value based map containing the parameters received by this operation
+	 * @return the result of {@link #executeAsync(Map, ParsedParameters)} or an empty {@link Optional} 
+	 * 		if the parameters are not valid
+	 */
+	final CompletionStage<Optional<BaseResult>> invokeAsync(Map<String, Object> parameters) {
+		
+		OperationMetrics currentMetrics = metrics;
+		if (currentMetrics == null) {
+			return invokeAsyncUnmeasured(parameters);
+		}
+		
+		long start = System.nanoTime();
+		CompletionStage<Optional<BaseResult>> stage;
+		try {
+			stage = invokeAsyncUnmeasured(parameters);
+		} catch (RuntimeException | Error exc) {
+			currentMetrics.recordFailure(System.nanoTime() - start);
+			throw exc;
+		}
+		
+		return stage.whenComplete((optExecutionValue, exc) -> {
+			long nanos = System.nanoTime() - start;
+			if (exc != null) {
+				currentMetrics.recordFailure(nanos);
+			} else if (optExecutionValue.isPresent()) {
+				currentMetrics.recordValid(nanos);
+			} else {
+				currentMetrics.recordInvalid(nanos);
+			}
+		});
+	}
+	
+	/**
+	 * Runs the steps of {@link #invokeAsync(Map)}.
+	 */
+	private CompletionStage<Optional<BaseResult>> invokeAsyncUnmeasured(Map<String, Object> parameters) {
+		
+		ParsedParameters parsedParameters = validate(parameters);
+		if (parsedParameters == null) {
+			return CompletableFuture.completedFuture(Optional.empty());
+		}
+		
+		OperationResultCache cache = resultCache;
+		SingleFlight flights = singleFlight;
+		if (cache == null && flights == null) {
+			return executeAsync(parameters, parsedParameters);
+		}
+		
+		Object key = null;
+		if (cache != null) {
+			key = cache.createKey(parameters);
+			BaseResult cachedValue = cache.get(key);
+			if (cachedValue != null) {
+				return CompletableFuture.completedFuture(Optional.of(cachedValue));
+			}
+		}
+		
+		CompletionStage<Optional<BaseResult>> stage = flights != null 
+				? flights.executeAsync(new HashMap<>(parameters), ExecutionContext.current(), () -> executeAsync(parameters, parsedParameters))
+				: executeAsync(parameters, parsedParameters);
+		
+		if (cache == null) {
+			return stage;
+		}
+		
+		Object cacheKey = key;
+		return stage.thenApply(optExecutionValue -> {
+			if (optExecutionValue.isPresent()) {
+				cache.put(cacheKey, optExecutionValue.get());
+			}
+			return optExecutionValue;
+		});
+	}
+	
+	/**
+	 * Validates the parameters received by the operation. The validator is compiled here
+	 * if the operation is executed before being added to a module.
+	 * @return the parsed parameters or null if they are not valid
+	 */
+	ParsedParameters validate(Map<String, Object> parameters) {
+		
+		ParameterValidator validator = parameterValidator;
+		if (validator == null) {
+			
+			if (listParameterDefinitions.isEmpty()) {
+				return ParsedParameters.NONE;
+			}
+			validator = new ParameterValidator(listParameterDefinitions);
+			parameterValidator = validator;
+		}
+		return validator.validate(parameters);
+	}
+	
+	/**
+	 * Obtains the names and the definitions of the parameters that have been defined using
+	 * {@link OperationParameter} annotations. The {@link OperationMetadata} generated at compile time
+	 * is used if available, the annotations are read through reflection otherwise.
 	 */
 	protected void collectDefinedParameterNames() {
 		
 		listParameterNames = new ArrayList<>();
+		listParameterDefinitions = new ArrayList<>();
+		
+		OperationMetadata metadata = OperationMetadataRegistry.find(getClass());
+		if ( metadata != null ) {
+			for ( ParameterDefinition definition:metadata.getParameterDefinitions() ) {
+				listParameterNames.add( definition.getName() );
+				listParameterDefinitions.add( definition );
+			}
+			return;
+		}
 		
 		OperationParameter[] parameters = this.getClass().getAnnotationsByType(OperationParameter.class);
 		for ( OperationParameter parameter:parameters ) {
 			listParameterNames.add( parameter.name() );
+			listParameterDefinitions.add( ParameterDefinition.of(parameter) );
 		}
 	}
 }
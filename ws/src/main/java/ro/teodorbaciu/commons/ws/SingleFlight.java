@@ -0,0 +1,256 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+
+/**
+ * Coalesces the concurrent executions that have the same key, so that only the first one
+ * runs and the others wait for its result. Once an execution completes, the next one
+ * with the same key runs again.
+ * <p>
+ * The execution runs within the {@link ExecutionContext} of the first call. The calls that wait 
+ * for it keep their own context: they end with a {@link DeadlineExceededException} when their own 
+ * deadline passes, and they run again when the execution they waited for ran out of the time of 
+ * the first call.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+final class SingleFlight {
+
+	/**
+	 * The executions in progress, mapped by their key.
+	 */
+	private final ConcurrentHashMap<Object, CompletableFuture<Optional<BaseResult>>> mapInFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * The number of calls that received the result of another call.
+	 */
+	private final LongAdder coalescedCount = new LongAdder();
+
+	/**
+	 * Runs the execution unless one with the same key is in progress, in which case waits for its result.
+	 * 
+	 * @param key the key identifying identical executions
+	 * @param context the context of the call, current on the calling thread
+	 * @param execution the execution to run
+	 * @return the result of the execution
+	 */
+	Optional<BaseResult> execute(Object key, ExecutionContext context, Supplier<Optional<BaseResult>> execution) {
+
+		while (true) {
+
+			CompletableFuture<Optional<BaseResult>> flight = new CompletableFuture<>();
+			CompletableFuture<Optional<BaseResult>> existingFlight = mapInFlight.putIfAbsent(key, flight);
+			if (existingFlight == null) {
+				return run(key, flight, execution);
+			}
+
+			coalescedCount.increment();
+			try {
+				return await(existingFlight, context);
+			} catch (LeaderDeadlineExceededException exc) {
+				// the execution ran out of the time of another call, this call runs again within its own
+				context.checkDeadline();
+			}
+		}
+	}
+
+	/**
+	 * Starts the execution unless one with the same key is in progress, in which case returns its result.
+	 * 
+	 * @param key the key identifying identical executions
+	 * @param context the context of the call, current on the calling thread
+	 * @param execution starts the execution to run
+	 * @return a {@link CompletionStage} completed with the result of the execution
+	 */
+	CompletionStage<Optional<BaseResult>> executeAsync(Object key, ExecutionContext context, 
+			Supplier<CompletionStage<Optional<BaseResult>>> execution) {
+
+		CompletableFuture<Optional<BaseResult>> flight = new CompletableFuture<>();
+		CompletableFuture<Optional<BaseResult>> existingFlight = mapInFlight.putIfAbsent(key, flight);
+		if (existingFlight == null) {
+			return start(key, flight, execution);
+		}
+
+		coalescedCount.increment();
+		CompletableFuture<Optional<BaseResult>> waiter = new CompletableFuture<>();
+		existingFlight.whenComplete((result, exc) -> {
+
+			Throwable cause = unwrap(exc);
+			if (!(cause instanceof DeadlineExceededException) || waiter.isDone()) {
+				complete(waiter, result, cause);
+				return;
+			}
+
+			// the execution ran out of the time of another call, this call runs again within its own
+			ExecutionContext previous = ExecutionContext.attach(context);
+			try {
+				context.checkDeadline();
+				executeAsync(key, context, execution).whenComplete((retryResult, retryExc) -> complete(waiter, retryResult, unwrap(retryExc)));
+			} catch (RuntimeException retryExc) {
+				waiter.completeExceptionally(retryExc);
+			} finally {
+				ExecutionContext.restore(previous);
+			}
+		});
+
+		if (context.hasDeadline() && !waiter.isDone()) {
+			ScheduledFuture<?> timeout = TimeoutHolder.SCHEDULER.schedule(() -> waiter.completeExceptionally(
+					new DeadlineExceededException("The deadline of the call has passed")), context.getRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+			waiter.whenComplete((result, exc) -> timeout.cancel(false));
+		}
+		return waiter;
+	}
+
+	/**
+	 * Returns the number of calls that received the result of another call.
+	 */
+	long getCoalescedCount() {
+		return coalescedCount.sum();
+	}
+
+	private Optional<BaseResult> run(Object key, CompletableFuture<Optional<BaseResult>> flight, Supplier<Optional<BaseResult>> execution) {
+
+		// the flight is removed before completing it, so the waiting calls that run again start a new one
+		Optional<BaseResult> result;
+		try {
+			result = execution.get();
+		} catch (RuntimeException | Error exc) {
+			mapInFlight.remove(key, flight);
+			flight.completeExceptionally(exc);
+			throw exc;
+		}
+
+		mapInFlight.remove(key, flight);
+		flight.complete(result);
+		return result;
+	}
+
+	private CompletionStage<Optional<BaseResult>> start(Object key, CompletableFuture<Optional<BaseResult>> flight, 
+			Supplier<CompletionStage<Optional<BaseResult>>> execution) {
+
+		CompletionStage<Optional<BaseResult>> stage;
+		try {
+			stage = execution.get();
+		} catch (RuntimeException exc) {
+			mapInFlight.remove(key, flight);
+			flight.completeExceptionally(exc);
+			return flight.thenApply(Function.identity());
+		}
+
+		stage.whenComplete((result, exc) -> {
+
+			mapInFlight.remove(key, flight);
+			if (exc != null) {
+				flight.completeExceptionally(exc);
+			} else {
+				flight.complete(result);
+			}
+		});
+		// each caller gets its own stage, completing or cancelling it does not affect the others
+		return flight.thenApply(Function.identity());
+	}
+
+	/**
+	 * Waits for the result of the execution started by another call, at most until the deadline of the context.
+	 */
+	private static Optional<BaseResult> await(CompletableFuture<Optional<BaseResult>> flight, ExecutionContext context) {
+
+		Throwable cause;
+		try {
+			return context.hasDeadline() ? flight.get(context.getRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS) : flight.join();
+		} catch (TimeoutException exc) {
+			throw new DeadlineExceededException("The deadline of the call has passed");
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new DeadlineExceededException("The call was interrupted");
+		} catch (ExecutionException | CompletionException exc) {
+			cause = unwrap(exc);
+		}
+
+		if (cause instanceof DeadlineExceededException) {
+			throw new LeaderDeadlineExceededException();
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		throw new CompletionException(cause);
+	}
+
+	private static void complete(CompletableFuture<Optional<BaseResult>> waiter, Optional<BaseResult> result, Throwable exc) {
+
+		if (exc != null) {
+			waiter.completeExceptionally(exc);
+		} else {
+			waiter.complete(result);
+		}
+	}
+
+	private static Throwable unwrap(Throwable exc) {
+		return (exc instanceof CompletionException || exc instanceof ExecutionException) && exc.getCause() != null ? exc.getCause() : exc;
+	}
+
+	/**
+	 * Signals that the execution waited for stopped at the deadline of the call that started it.
+	 */
+	private static final class LeaderDeadlineExceededException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		LeaderDeadlineExceededException() {
+			super(null, null, false, false);
+		}
+	}
+
+	/**
+	 * Creates the timer of the waiting calls when first used.
+	 */
+	private static final class TimeoutHolder {
+
+		static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+
+		private static ScheduledThreadPoolExecutor createScheduler() {
+
+			ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+				Thread thread = new Thread(runnable, "ws-single-flight-timeout");
+				thread.setDaemon(true);
+				return thread;
+			});
+			scheduler.setRemoveOnCancelPolicy(true);
+			return scheduler;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws;
+
+import java.util.Map;
+import java.util.Optional;
+
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+
+/**
+ * Base class for the operations that read their parameters only through {@link ParsedParameters}.
+ * Such an operation accesses each declared parameter by the index of its {@link OperationParameter}
+ * declaration, without map lookups and without boxing or parsing the numbers.
+ * 
+ * @author Teodor Baciu
+ */
+public abstract class TypedServiceOperation extends ServiceOperation {
+
+	/**
+	 * Constructor.
+	 * @param operationName the name of the operation
+	 */
+	public TypedServiceOperation(String operationName) {
+		super(operationName);
+	}
+
+	/**
+	 * Executes the operation.
+	 * @param parameters the validated declared parameters, indexed by declaration order
+	 * @return an {@link Optional} containg an instance of {@link BaseResult}
+	 */
+	public abstract Optional<BaseResult> execute(ParsedParameters parameters);
+
+	/**
+	 * Executes the operation with the parameters validated by the module.
+	 */
+	@Override
+	public final Optional<BaseResult> execute(Map<String, Object> parameters, ParsedParameters parsedParameters) {
+		return execute(parsedParameters);
+	}
+
+	/**
+	 * Validates the parameters and executes the operation. Used when the operation is
+	 * called directly instead of through a module.
+	 * @return the result of the execution or an empty {@link Optional} if the parameters are not valid
+	 */
+	@Override
+	public final Optional<BaseResult> execute(Map<String, Object> parameters) {
+
+		ParsedParameters parsedParameters = validate(parameters);
+		if (parsedParameters == null) {
+			return Optional.empty();
+		}
+		return execute(parsedParameters);
+	}
+}
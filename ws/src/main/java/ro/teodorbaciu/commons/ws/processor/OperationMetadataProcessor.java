@@ -0,0 +1,253 @@
+/*
+Copyright 2015 Teodor Baciu
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package ro.teodorbaciu.commons.ws.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import ro.teodorbaciu.commons.ws.OperationMetadata;
+import ro.teodorbaciu.commons.ws.OperationParameter;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+
+/**
+ * Generates an {@link OperationMetadata} implementation for every {@link ServiceOperation}
+ * class that declares parameters with {@link OperationParameter} annotations, and registers the
+ * generated classes in META-INF/services so that they are found at runtime without reflection.
+ * <p>
+ * The processor is discovered automatically by javac when the ws jar is on the compile classpath.
+ * Private operation classes, or classes nested in private or local classes, are skipped since the
+ * generated code cannot reference them; their annotations are read through reflection at runtime.
+ * 
+ * @author Teodor Baciu
+ *
+ */
+@SupportedAnnotationTypes({ "ro.teodorbaciu.commons.ws.OperationParameter", "ro.teodorbaciu.commons.ws.OperationParameters" })
+public class OperationMetadataProcessor extends AbstractProcessor {
+
+	/**
+	 * The suffix of the generated class names.
+	 */
+	static final String CLASS_NAME_SUFFIX = "_OperationMetadata";
+
+	/**
+	 * The generated classes, registered as services when the processing is over.
+	 */
+	private final Set<String> setGeneratedClasses = new LinkedHashSet<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+		if ( roundEnv.processingOver() ) {
+			writeServiceFile();
+			return false;
+		}
+
+		Set<Element> setOperations = new LinkedHashSet<>();
+		for ( TypeElement annotation:annotations ) {
+			setOperations.addAll( roundEnv.getElementsAnnotatedWith(annotation) );
+		}
+
+		TypeElement serviceOperation = processingEnv.getElementUtils().getTypeElement( ServiceOperation.class.getCanonicalName() );
+		for ( Element element:setOperations ) {
+			if ( !element.getKind().isClass() ) {
+				continue;
+			}
+
+			TypeElement operation = (TypeElement) element;
+			if ( !processingEnv.getTypeUtils().isSubtype(operation.asType(), serviceOperation.asType()) ) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+						"@OperationParameter is only used on ServiceOperation classes", operation);
+				continue;
+			}
+
+			if ( !isReachable(operation) ) {
+				continue;
+			}
+
+			generateMetadata(operation);
+		}
+
+		return false;
+	}
+
+	/**
+	 * Checks that the generated class, placed in the same package, can reference the operation class.
+	 */
+	private static boolean isReachable(TypeElement operation) {
+
+		Element element = operation;
+		while ( element.getKind() != ElementKind.PACKAGE ) {
+			if ( !element.getKind().isClass() && !element.getKind().isInterface() ) {
+				return false;
+			}
+			if ( element.getModifiers().contains(Modifier.PRIVATE) ) {
+				return false;
+			}
+			element = element.getEnclosingElement();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Generates the metadata source for the specified operation class.
+	 */
+	private void generateMetadata(TypeElement operation) {
+
+		Elements elements = processingEnv.getElementUtils();
+		PackageElement packageElement = elements.getPackageOf(operation);
+		String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+		String className = flatName(operation) + CLASS_NAME_SUFFIX;
+		String qualifiedClassName = packageName.isEmpty() ? className : packageName + "." + className;
+
+		List<String> listDefinitions = new ArrayList<>();
+		for ( OperationParameter parameter:operation.getAnnotationsByType(OperationParameter.class) ) {
+			listDefinitions.add("new ParameterDefinition(" + elements.getConstantExpression(parameter.name()) + ", " + parameter.mandatory() + ", "
+					+ parameter.integer() + ", " + parameter.floatingPoint() + ")");
+		}
+
+		StringBuilder source = new StringBuilder();
+		if ( !packageName.isEmpty() ) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("import java.util.Arrays;\n");
+		source.append("import java.util.Collections;\n");
+		source.append("import java.util.List;\n\n");
+		source.append("import ro.teodorbaciu.commons.ws.OperationMetadata;\n");
+		source.append("import ro.teodorbaciu.commons.ws.ParameterDefinition;\n");
+		source.append("import ro.teodorbaciu.commons.ws.ServiceOperation;\n\n");
+		source.append("/**\n * Metadata of {@link ").append(operation.getQualifiedName()).append("}, generated by ")
+				.append(OperationMetadataProcessor.class.getSimpleName()).append(".\n */\n");
+		source.append("public final class ").append(className).append(" implements OperationMetadata {\n\n");
+		source.append("\tprivate static final List<ParameterDefinition> PARAMETER_DEFINITIONS = Collections.unmodifiableList(Arrays.asList(");
+		for ( int i = 0; i < listDefinitions.size(); i++ ) {
+			source.append(i == 0 ? "\n\t\t\t" : ",\n\t\t\t").append(listDefinitions.get(i));
+		}
+		source.append("));\n\n");
+		source.append("\t@Override\n");
+		source.append("\tpublic Class<? extends ServiceOperation> getOperationClass() {\n");
+		source.append("\t\treturn ").append(operation.getQualifiedName()).append(".class;\n");
+		source.append("\t}\n\n");
+		source.append("\t@Override\n");
+		source.append("\tpublic List<ParameterDefinition> getParameterDefinitions() {\n");
+		source.append("\t\treturn PARAMETER_DEFINITIONS;\n");
+		source.append("\t}\n");
+		source.append("}\n");
+
+		try {
+			FileObject file = processingEnv.getFiler().createSourceFile(qualifiedClassName, operation);
+			try (Writer writer = file.openWriter()) {
+				writer.write(source.toString());
+			}
+			setGeneratedClasses.add(qualifiedClassName);
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not generate " + qualifiedClassName + ": " + e.getMessage(), operation);
+		}
+	}
+
+	/**
+	 * Writes the service file that registers the generated classes, keeping the classes registered
+	 * by the previous compilations, since an incremental build only processes the changed sources.
+	 */
+	private void writeServiceFile() {
+
+		if ( setGeneratedClasses.isEmpty() ) {
+			return;
+		}
+
+		String fileName = "META-INF/services/" + OperationMetadata.class.getName();
+		Set<String> setClassNames = new LinkedHashSet<>(readServiceFile(fileName));
+		setClassNames.addAll(setGeneratedClasses);
+		try {
+			FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", fileName);
+			try (Writer writer = file.openWriter()) {
+				for ( String className:setClassNames ) {
+					writer.write(className);
+					writer.write("\n");
+				}
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + fileName + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the classes registered in the service file written by a previous compilation.
+	 * 
+	 * @return the class names, empty if there is no such file
+	 */
+	private List<String> readServiceFile(String fileName) {
+
+		List<String> listClassNames = new ArrayList<>();
+		try {
+			FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", fileName);
+			try (BufferedReader reader = new BufferedReader(file.openReader(true))) {
+				String line;
+				while ( (line = reader.readLine()) != null ) {
+					int comment = line.indexOf('#');
+					String className = (comment >= 0 ? line.substring(0, comment) : line).trim();
+					if ( !className.isEmpty() ) {
+						listClassNames.add(className);
+					}
+				}
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			// no previous compilation
+		}
+		return listClassNames;
+	}
+
+	/**
+	 * Returns the name of the operation class prefixed with the names of its enclosing classes,
+	 * for example Outer_Inner.
+	 */
+	private static String flatName(TypeElement operation) {
+
+		StringBuilder name = new StringBuilder(operation.getSimpleName());
+		Element element = operation.getEnclosingElement();
+		while ( element.getKind() != ElementKind.PACKAGE ) {
+			name.insert(0, '_').insert(0, element.getSimpleName());
+			element = element.getEnclosingElement();
+		}
+
+		return name.toString();
+	}
+}
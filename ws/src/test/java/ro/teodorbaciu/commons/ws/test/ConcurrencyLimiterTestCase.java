@@ -0,0 +1,254 @@
+package ro.teodorbaciu.commons.ws.test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.ws.AdaptiveConcurrencyLimiter;
+import ro.teodorbaciu.commons.ws.Bulkhead;
+import ro.teodorbaciu.commons.ws.ConcurrencyLimiter;
+import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.ExecutionResult;
+import ro.teodorbaciu.commons.ws.LatencyHistogram;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
+
+/**
+ * Tests the concurrency limits applied to modules and operations.
+ */
+public class ConcurrencyLimiterTestCase {
+
+	private ServiceDispatcher dispatcher;
+	private ServiceModule module;
+	private OpReport opReport;
+	private ExecutorService executor;
+	private Map<String, Object> parameters;
+
+	@Before
+	public void setUp() {
+
+		opReport = new OpReport();
+		module = new ServiceModule("reports");
+		module.addOperation(opReport);
+		module.addOperation(new ServiceOperation("op-ping") {
+			@Override
+			public Optional<BaseResult> execute(Map<String, Object> parameters) {
+				return Optional.of(new ObjectWrapper<>("pong"));
+			}
+		});
+
+		dispatcher = new ServiceDispatcher("limits");
+		dispatcher.addModule(module);
+		executor = Executors.newCachedThreadPool();
+		parameters = new HashMap<>();
+	}
+
+	@After
+	public void tearDown() {
+
+		opReport.release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testOperationBulkhead() throws Exception {
+
+		Bulkhead bulkhead = new Bulkhead(1, 1, 10, TimeUnit.SECONDS);
+		opReport.setConcurrencyLimiter(bulkhead);
+
+		// the first call executes, the second one waits
+		Future<DispatchResult> first = executor.submit(() -> dispatcher.dispatch("reports", "op-report", parameters));
+		Assert.assertTrue(opReport.started.await(5, TimeUnit.SECONDS));
+		Future<DispatchResult> second = executor.submit(() -> dispatcher.dispatch("reports", "op-report", parameters));
+		waitUntil(() -> bulkhead.getWaitingCalls() == 1);
+
+		// the queue is full
+		DispatchResult rejected = dispatcher.dispatch("reports", "op-report", parameters);
+		Assert.assertSame(DispatchResult.Status.REJECTED, rejected.getStatus());
+		Assert.assertSame(ExecutionResult.Status.REJECTED, rejected.getResult().getStatus());
+		Assert.assertEquals(1, bulkhead.getRejectedCount());
+
+		// the other operations of the module are not limited
+		Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, dispatcher.dispatch("reports", "op-ping", parameters).getStatus());
+
+		// raising the limit admits the waiting call
+		bulkhead.setMaxConcurrentCalls(2);
+		waitUntil(() -> bulkhead.getConcurrentCalls() == 2);
+
+		opReport.release.countDown();
+		Assert.assertNotNull(first.get(5, TimeUnit.SECONDS).getValue());
+		Assert.assertNotNull(second.get(5, TimeUnit.SECONDS).getValue());
+		Assert.assertEquals(0, bulkhead.getConcurrentCalls());
+		Assert.assertEquals(1, dispatcher.getDispatchCount(DispatchResult.Status.REJECTED));
+	}
+
+	@Test
+	public void testModuleBulkheadWithCompiledRoutes() throws Exception {
+
+		dispatcher.compileRoutes();
+		module.setConcurrencyLimiter(new Bulkhead(1));
+
+		Future<DispatchResult> first = executor.submit(() -> dispatcher.dispatch("reports", "op-report", parameters));
+		Assert.assertTrue(opReport.started.await(5, TimeUnit.SECONDS));
+
+		// the module limit applies to all its operations
+		Assert.assertSame(DispatchResult.Status.REJECTED, dispatcher.dispatch("reports", "op-ping", parameters).getStatus());
+		Assert.assertSame(DispatchResult.Status.REJECTED, 
+				dispatcher.dispatchAsync("reports", "op-ping", parameters).toCompletableFuture().get().getStatus());
+
+		// removing the limit at runtime
+		module.setConcurrencyLimiter(null);
+		Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, dispatcher.dispatch("reports", "op-ping", parameters).getStatus());
+
+		opReport.release.countDown();
+		Assert.assertNotNull(first.get(5, TimeUnit.SECONDS).getValue());
+	}
+
+	/**
+	 * Simulates an overloaded operation backed by 4 workers, each call taking 2 ms of work, 
+	 * called by 32 clients. Without a limit the calls queue for the workers and the latency grows 
+	 * with the number of clients; the adaptive limiter sheds the excess calls instead.
+	 */
+	@Test
+	public void testAdaptiveLimiterUnderOverload() throws Exception {
+
+		LatencyHistogram.Snapshot unlimited = simulateOverload(null);
+
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(32, 1, 64, 6, TimeUnit.MILLISECONDS);
+		LatencyHistogram.Snapshot limited = simulateOverload(limiter);
+
+		Assert.assertTrue("The limit should drop below the number of clients: " + limiter, limiter.getLimit() < 32);
+		Assert.assertTrue(limiter.getRejectedCount() > 0);
+		Assert.assertTrue("The tail latency should be lower with the limiter, unlimited " + unlimited + ", limited " + limited,
+				limited.getValueAtPercentile(99) < unlimited.getValueAtPercentile(99));
+		Assert.assertTrue(limited.getValueAtPercentile(50) < unlimited.getValueAtPercentile(50));
+	}
+
+	private LatencyHistogram.Snapshot simulateOverload(ConcurrencyLimiter limiter) throws Exception {
+
+		OpSimulated opSimulated = new OpSimulated(4, 2);
+		ServiceModule simulatedModule = new ServiceModule("simulated");
+		simulatedModule.addOperation(opSimulated);
+		simulatedModule.setConcurrencyLimiter(limiter);
+
+		int clients = 32;
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicBoolean measuring = new AtomicBoolean(false);
+		LatencyHistogram admittedLatencies = new LatencyHistogram();
+		CountDownLatch finished = new CountDownLatch(clients);
+		for (int i = 0; i < clients; i++) {
+			executor.submit(() -> {
+				try {
+					while (running.get()) {
+						long start = System.nanoTime();
+						ExecutionResult result = simulatedModule.executeOperation("op-simulated", parameters);
+						if (result.getStatus() == ExecutionResult.Status.REJECTED) {
+							Thread.sleep(1);
+						} else if (measuring.get()) {
+							admittedLatencies.record(System.nanoTime() - start);
+						}
+					}
+				} catch (InterruptedException exc) {
+					Thread.currentThread().interrupt();
+				} finally {
+					finished.countDown();
+				}
+				return null;
+			});
+		}
+
+		// the first half second lets the limiter converge
+		Thread.sleep(500);
+		measuring.set(true);
+		Thread.sleep(1000);
+		running.set(false);
+		Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+
+		LatencyHistogram.Snapshot snapshot = admittedLatencies.snapshot();
+		Assert.assertTrue(snapshot.getCount() > 0);
+		return snapshot;
+	}
+
+	private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			Assert.assertTrue("Timed out waiting for the condition", System.nanoTime() < deadline);
+			Thread.sleep(5);
+		}
+	}
+
+	/**
+	 * Operation served by a fixed number of workers.
+	 */
+	static class OpSimulated extends ServiceOperation {
+
+		private final Semaphore workers;
+		private final long workMillis;
+
+		public OpSimulated(int workerCount, long workMillis) {
+
+			super("op-simulated");
+			this.workers = new Semaphore(workerCount, true);
+			this.workMillis = workMillis;
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+
+			try {
+				workers.acquire();
+				try {
+					Thread.sleep(workMillis);
+				} finally {
+					workers.release();
+				}
+			} catch (InterruptedException exc) {
+				Thread.currentThread().interrupt();
+				return Optional.empty();
+			}
+			return Optional.of(new ObjectWrapper<>("done"));
+		}
+	}
+
+	/**
+	 * Slow operation, blocked until the test releases it.
+	 */
+	static class OpReport extends ServiceOperation {
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		public OpReport() {
+			super("op-report");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException exc) {
+				Thread.currentThread().interrupt();
+			}
+			return Optional.of(new ObjectWrapper<>("report"));
+		}
+	}
+}
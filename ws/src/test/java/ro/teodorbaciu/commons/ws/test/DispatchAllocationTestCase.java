@@ -0,0 +1,127 @@
+package ro.teodorbaciu.commons.ws.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.ExecutionResult;
+import ro.teodorbaciu.commons.ws.OperationInterceptor;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
+
+/**
+ * Measures the bytes allocated by the dispatching thread for each dispatch.
+ */
+public class DispatchAllocationTestCase {
+
+	private static final int WARMUP_ITERATIONS = 50_000;
+	private static final int MEASURED_ITERATIONS = 200_000;
+
+	/**
+	 * Upper bound for a single small object, i.e. the {@link DispatchResult} of a routed success.
+	 */
+	private static final double ONE_OBJECT_BYTES = 32;
+
+	private com.sun.management.ThreadMXBean threadMXBean;
+	private ServiceDispatcher dispatcher;
+	private Map<String, Object> parameters;
+
+	@Before
+	public void setUp() {
+
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+		Optional<BaseResult> value = Optional.of(new ObjectWrapper<>("value"));
+		ServiceModule module = new ServiceModule("module");
+		module.addOperation(new ServiceOperation("op-valid") {
+			@Override
+			public Optional<BaseResult> execute(Map<String, Object> parameters) {
+				return value;
+			}
+		});
+		module.addOperation(new ServiceOperation("op-invalid") {
+			@Override
+			public Optional<BaseResult> execute(Map<String, Object> parameters) {
+				return Optional.empty();
+			}
+		});
+
+		dispatcher = new ServiceDispatcher("dispatcher");
+		dispatcher.addModule(module);
+		parameters = new HashMap<>();
+	}
+
+	@Test
+	public void testErrorOutcomesDoNotAllocate() {
+
+		Assert.assertEquals(0, bytesPerDispatch("  ", "op-valid"), 1);
+		Assert.assertEquals(0, bytesPerDispatch("inexistent-module", "op-valid"), 1);
+		Assert.assertEquals(0, bytesPerDispatch("module", "op-inexistent"), 1);
+		Assert.assertEquals(0, bytesPerDispatch("module", " "), 1);
+		Assert.assertEquals(0, bytesPerDispatch("module", "op-invalid"), 1);
+
+		dispatcher.compileRoutes();
+		Assert.assertEquals(0, bytesPerDispatch("module", "op-invalid"), 1);
+		Assert.assertEquals(0, bytesPerDispatch("module", "op-inexistent"), 1);
+	}
+
+	@Test
+	public void testRoutedSuccessAllocatesOneObject() {
+
+		dispatcher.compileRoutes();
+		DispatchResult result = dispatcher.dispatch("module", "op-valid", parameters);
+		Assert.assertSame(ExecutionResult.Status.VALID, result.getResult().getStatus());
+
+		Assert.assertTrue(bytesPerDispatch("module", "op-valid") <= ONE_OBJECT_BYTES);
+	}
+
+	@Test
+	public void testInterceptorsDoNotAllocate() {
+
+		OperationInterceptor passThrough = (module, operation, parameters, next) -> next.proceed(module, operation, parameters);
+		dispatcher.addInterceptor(passThrough);
+		dispatcher.getModules().iterator().next().addInterceptor(passThrough);
+		dispatcher.compileRoutes();
+
+		Assert.assertTrue(bytesPerDispatch("module", "op-valid") <= ONE_OBJECT_BYTES);
+		Assert.assertEquals(0, bytesPerDispatch("module", "op-invalid"), 1);
+	}
+
+	@Test
+	public void testSharedResults() {
+
+		Assert.assertSame(dispatcher.dispatch("inexistent-module", "op-valid", parameters),
+				DispatchResult.of(DispatchResult.Status.MODULE_NOT_FOUND));
+		Assert.assertSame(dispatcher.dispatch("module", "op-invalid", parameters).getResult(),
+				ExecutionResult.of(ExecutionResult.Status.INVALID));
+	}
+
+	private double bytesPerDispatch(String moduleName, String operationName) {
+
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			dispatcher.dispatch(moduleName, operationName, parameters);
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long start = threadMXBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			dispatcher.dispatch(moduleName, operationName, parameters);
+		}
+		long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - start;
+
+		return (double) allocated / MEASURED_ITERATIONS;
+	}
+}
@@ -0,0 +1,177 @@
+package ro.teodorbaciu.commons.ws.test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.ws.Bulkhead;
+import ro.teodorbaciu.commons.ws.ConcurrencyLimiter;
+import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.ExecutionContext;
+import ro.teodorbaciu.commons.ws.ExecutionResult;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
+
+/**
+ * Tests the deadlines carried by the {@link ExecutionContext}.
+ */
+public class ExecutionContextTestCase {
+
+	private ServiceDispatcher dispatcher;
+	private OpExport opExport;
+	private Map<String, Object> parameters;
+
+	@Before
+	public void setUp() {
+
+		opExport = new OpExport();
+		ServiceModule module = new ServiceModule("exports");
+		module.addOperation(opExport);
+
+		dispatcher = new ServiceDispatcher("deadlines");
+		dispatcher.addModule(module);
+		parameters = new HashMap<>();
+	}
+
+	@Test
+	public void testExpiredCallIsNotExecuted() {
+
+		ExecutionContext context = ExecutionContext.withTimeout(0, TimeUnit.MILLISECONDS);
+		DispatchResult result = dispatcher.dispatch("exports", "op-export", parameters, context);
+
+		Assert.assertSame(DispatchResult.Status.TIMEOUT, result.getStatus());
+		Assert.assertSame(ExecutionResult.Status.TIMEOUT, result.getResult().getStatus());
+		Assert.assertEquals(0, opExport.executions.get());
+
+		ExecutionContext cancelled = ExecutionContext.cancellable();
+		cancelled.cancel();
+		Assert.assertSame(DispatchResult.Status.TIMEOUT, dispatcher.dispatch("exports", "op-export", parameters, cancelled).getStatus());
+		Assert.assertEquals(0, opExport.executions.get());
+		Assert.assertEquals(2, dispatcher.getDispatchCount(DispatchResult.Status.TIMEOUT));
+	}
+
+	@Test
+	public void testOperationStopsAtDeadline() throws Exception {
+
+		parameters.put("steps", "1000");
+		long start = System.nanoTime();
+		DispatchResult result = dispatcher.dispatch("exports", "op-export", parameters, ExecutionContext.withTimeout(50, TimeUnit.MILLISECONDS));
+
+		Assert.assertSame(DispatchResult.Status.TIMEOUT, result.getStatus());
+		Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+		Assert.assertTrue(opExport.remainingMillis.get() <= 50);
+
+		// the context is only visible while the operation executes
+		Assert.assertSame(ExecutionContext.NONE, ExecutionContext.current());
+
+		// the asynchronous dispatch maps the cancellation to the same status
+		result = dispatcher.dispatchAsync("exports", "op-export", parameters, ExecutionContext.withTimeout(50, TimeUnit.MILLISECONDS))
+				.toCompletableFuture().get(5, TimeUnit.SECONDS);
+		Assert.assertSame(DispatchResult.Status.TIMEOUT, result.getStatus());
+
+		// a call that completes in time
+		parameters.put("steps", "1");
+		result = dispatcher.dispatch("exports", "op-export", parameters, ExecutionContext.withTimeout(5, TimeUnit.SECONDS));
+		Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, result.getStatus());
+		Assert.assertNotNull(result.getValue());
+	}
+
+	@Test
+	public void testBulkheadWaitIsBoundedByDeadline() throws Exception {
+
+		Bulkhead bulkhead = new Bulkhead(1, 1, 10, TimeUnit.SECONDS);
+		opExport.setConcurrencyLimiter(bulkhead);
+		Assert.assertTrue(bulkhead.acquire());
+		try {
+			long start = System.nanoTime();
+			DispatchResult result = dispatcher.dispatch("exports", "op-export", parameters, ExecutionContext.withTimeout(50, TimeUnit.MILLISECONDS));
+			Assert.assertSame(DispatchResult.Status.REJECTED, result.getStatus());
+			Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+		} finally {
+			bulkhead.releaseUnused();
+		}
+	}
+
+	@Test
+	public void testAsyncCallExpiredWhileAcquiring() throws Exception {
+
+		AtomicInteger unusedReleases = new AtomicInteger();
+		opExport.setConcurrencyLimiter(new ConcurrencyLimiter() {
+
+			@Override
+			public boolean acquire() {
+				return tryAcquire();
+			}
+
+			@Override
+			public boolean tryAcquire() {
+				// a slow limiter, the deadline passes before the permit is granted
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException exc) {
+					Thread.currentThread().interrupt();
+				}
+				return true;
+			}
+
+			@Override
+			public void release(long latencyNanos, boolean valid) {
+				Assert.fail("The call was executed");
+			}
+
+			@Override
+			public void releaseUnused() {
+				unusedReleases.incrementAndGet();
+			}
+		});
+
+		DispatchResult result = dispatcher.dispatchAsync("exports", "op-export", parameters, ExecutionContext.withTimeout(50, TimeUnit.MILLISECONDS))
+				.toCompletableFuture().get(5, TimeUnit.SECONDS);
+		Assert.assertSame(DispatchResult.Status.TIMEOUT, result.getStatus());
+		Assert.assertEquals(0, opExport.executions.get());
+		Assert.assertEquals(1, unusedReleases.get());
+	}
+
+	/**
+	 * Operation exporting a number of steps of 10 ms, checking its deadline before each step.
+	 */
+	static class OpExport extends ServiceOperation {
+
+		final AtomicInteger executions = new AtomicInteger();
+		final AtomicLong remainingMillis = new AtomicLong();
+
+		public OpExport() {
+			super("op-export");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+
+			executions.incrementAndGet();
+			ExecutionContext context = ExecutionContext.current();
+			remainingMillis.set(context.getRemaining(TimeUnit.MILLISECONDS));
+
+			int steps = Integer.parseInt(String.valueOf(parameters.getOrDefault("steps", "1")));
+			for (int i = 0; i < steps; i++) {
+				context.checkDeadline();
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException exc) {
+					Thread.currentThread().interrupt();
+					return Optional.empty();
+				}
+			}
+			return Optional.of(new ObjectWrapper<>("exported " + steps));
+		}
+	}
+}
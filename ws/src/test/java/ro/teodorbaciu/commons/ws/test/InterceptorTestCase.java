@@ -0,0 +1,197 @@
+package ro.teodorbaciu.commons.ws.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.ws.AsyncServiceOperation;
+import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.ExecutionResult;
+import ro.teodorbaciu.commons.ws.InterceptorChain;
+import ro.teodorbaciu.commons.ws.OperationInterceptor;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
+
+/**
+ * Tests the interceptors of the dispatcher and of the modules.
+ */
+public class InterceptorTestCase {
+
+	private ServiceDispatcher dispatcher;
+	private ServiceModule module;
+	private List<String> listEvents;
+	private Map<String, Object> parameters;
+
+	@Before
+	public void setUp() {
+
+		listEvents = new ArrayList<>();
+		module = new ServiceModule("accounts");
+		module.addOperation(new ServiceOperation("op-balance") {
+			@Override
+			public Optional<BaseResult> execute(Map<String, Object> parameters) {
+				listEvents.add("operation");
+				return Optional.of(new ObjectWrapper<>("100"));
+			}
+		});
+
+		dispatcher = new ServiceDispatcher("interceptors");
+		dispatcher.addModule(module);
+		parameters = new HashMap<>();
+	}
+
+	@Test
+	public void testOrder() throws Exception {
+
+		dispatcher.addInterceptor(new RecordingInterceptor("dispatcher-1"));
+		module.addInterceptor(new RecordingInterceptor("module"));
+		dispatcher.addInterceptor(new RecordingInterceptor("dispatcher-2"));
+
+		dispatcher.dispatch("accounts", "op-balance", parameters);
+		Assert.assertEquals("[dispatcher-1, dispatcher-2, module, operation, module done, dispatcher-2 done, dispatcher-1 done]", 
+				listEvents.toString());
+
+		// the same chain with compiled routes and asynchronous dispatch
+		dispatcher.compileRoutes();
+		listEvents.clear();
+		dispatcher.dispatchAsync("accounts", "op-balance", parameters).toCompletableFuture().get();
+		Assert.assertEquals("[dispatcher-1, dispatcher-2, module, operation, module done, dispatcher-2 done, dispatcher-1 done]", 
+				listEvents.toString());
+
+		// a removed module no longer has the dispatcher interceptors
+		dispatcher.removeModule("accounts");
+		listEvents.clear();
+		module.executeOperation("op-balance", parameters);
+		Assert.assertEquals("[module, operation, module done]", listEvents.toString());
+	}
+
+	@Test
+	public void testShortCircuit() {
+
+		OperationInterceptor authorization = (module, operation, parameters, next) -> 
+				"secret".equals(parameters.get("token")) ? next.proceed(module, operation, parameters) : Optional.empty();
+		dispatcher.addInterceptor(authorization);
+
+		DispatchResult result = dispatcher.dispatch("accounts", "op-balance", parameters);
+		Assert.assertSame(ExecutionResult.Status.INVALID, result.getResult().getStatus());
+		Assert.assertTrue(listEvents.isEmpty());
+
+		parameters.put("token", "secret");
+		result = dispatcher.dispatch("accounts", "op-balance", parameters);
+		Assert.assertSame(ExecutionResult.Status.VALID, result.getResult().getStatus());
+
+		Assert.assertTrue(dispatcher.removeInterceptor(authorization));
+		Assert.assertTrue(dispatcher.getInterceptors().isEmpty());
+		parameters.remove("token");
+		Assert.assertSame(ExecutionResult.Status.VALID, dispatcher.dispatch("accounts", "op-balance", parameters).getResult().getStatus());
+	}
+
+	@Test
+	public void testInterceptorsOfAsyncOperation() throws Exception {
+
+		CompletableFuture<Optional<BaseResult>> pendingResult = new CompletableFuture<>();
+		module.addOperation(new AsyncServiceOperation("op-transfer") {
+			@Override
+			public CompletionStage<Optional<BaseResult>> executeAsync(Map<String, Object> parameters) {
+				listEvents.add("operation");
+				return pendingResult;
+			}
+		});
+
+		// an interceptor that only implements intercept would block the calling thread
+		OperationInterceptor blocking = (module, operation, parameters, next) -> next.proceed(module, operation, parameters);
+		dispatcher.addInterceptor(blocking);
+		try {
+			dispatcher.dispatchAsync("accounts", "op-transfer", parameters).toCompletableFuture().get(10, TimeUnit.SECONDS);
+			Assert.fail("The interceptor without interceptAsync was accepted");
+		} catch (ExecutionException exc) {
+			Assert.assertTrue(String.valueOf(exc.getCause()), exc.getCause() instanceof UnsupportedOperationException);
+		}
+		Assert.assertTrue(listEvents.isEmpty());
+		dispatcher.removeInterceptor(blocking);
+
+		// the asynchronous interceptor sees the result and the time of the operation once it completes
+		TimingInterceptor timing = new TimingInterceptor();
+		dispatcher.addInterceptor(timing);
+		CompletableFuture<DispatchResult> result = dispatcher.dispatchAsync("accounts", "op-transfer", parameters).toCompletableFuture();
+		Assert.assertFalse(result.isDone());
+		Assert.assertNull(timing.result);
+
+		Thread.sleep(100);
+		ObjectWrapper<String> value = new ObjectWrapper<>("done");
+		pendingResult.complete(Optional.of(value));
+		Assert.assertSame(value, result.get(10, TimeUnit.SECONDS).getValue());
+		Assert.assertSame(value, timing.result.get());
+		Assert.assertTrue("Timed " + timing.nanos, TimeUnit.NANOSECONDS.toMillis(timing.nanos) >= 100);
+
+		// the synchronous operations go through the same interceptor
+		Assert.assertSame(ExecutionResult.Status.VALID, 
+				dispatcher.dispatchAsync("accounts", "op-balance", parameters).toCompletableFuture().get().getResult().getStatus());
+		Assert.assertTrue(timing.result.isPresent());
+	}
+
+	/**
+	 * Measures the executions, including the asynchronous ones.
+	 */
+	private static class TimingInterceptor implements OperationInterceptor {
+
+		volatile Optional<BaseResult> result;
+		volatile long nanos;
+
+		@Override
+		public Optional<BaseResult> intercept(ServiceModule module, ServiceOperation operation, Map<String, Object> parameters, 
+				InterceptorChain next) {
+
+			long start = System.nanoTime();
+			result = next.proceed(module, operation, parameters);
+			nanos = System.nanoTime() - start;
+			return result;
+		}
+
+		@Override
+		public CompletionStage<Optional<BaseResult>> interceptAsync(ServiceModule module, ServiceOperation operation, 
+				Map<String, Object> parameters, InterceptorChain next) {
+
+			long start = System.nanoTime();
+			return next.proceedAsync(module, operation, parameters).whenComplete((value, exc) -> {
+				nanos = System.nanoTime() - start;
+				result = value;
+			});
+		}
+	}
+
+	/**
+	 * Records the calls before and after proceeding.
+	 */
+	private class RecordingInterceptor implements OperationInterceptor {
+
+		private final String name;
+
+		RecordingInterceptor(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Optional<BaseResult> intercept(ServiceModule module, ServiceOperation operation, Map<String, Object> parameters, 
+				InterceptorChain next) {
+
+			listEvents.add(name);
+			Optional<BaseResult> result = next.proceed(module, operation, parameters);
+			listEvents.add(name + " done");
+			return result;
+		}
+	}
+}
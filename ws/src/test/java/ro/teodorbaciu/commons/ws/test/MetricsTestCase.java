@@ -0,0 +1,168 @@
+package ro.teodorbaciu.commons.ws.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.LatencyHistogram;
+import ro.teodorbaciu.commons.ws.OperationMetrics;
+import ro.teodorbaciu.commons.ws.OperationParameter;
+import ro.teodorbaciu.commons.ws.OperationStatistics;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
+
+/**
+ * Tests the call counts and the latencies recorded by the dispatcher and the operations.
+ */
+public class MetricsTestCase {
+
+	private ServiceDispatcher dispatcher;
+	private OpGetOrder opGetOrder;
+
+	@Before
+	public void setUp() {
+
+		opGetOrder = new OpGetOrder();
+		ServiceModule module = new ServiceModule("orders");
+		module.addOperation(opGetOrder);
+
+		dispatcher = new ServiceDispatcher("metrics");
+		dispatcher.addModule(module);
+	}
+
+	@Test
+	public void testHistogramPrecision() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.snapshot().getValueAtPercentile(99));
+
+		for (long micros = 1; micros <= 1000; micros++) {
+			histogram.record(micros * 1000);
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		Assert.assertEquals(1000, snapshot.getCount());
+		Assert.assertEquals(500_500, snapshot.getMean(), 0.001);
+		Assert.assertEquals(1_000_000, snapshot.getMax());
+		Assert.assertEquals(500_000, snapshot.getValueAtPercentile(50), 500_000 / 16);
+		Assert.assertEquals(990_000, snapshot.getValueAtPercentile(99), 990_000 / 16);
+		Assert.assertEquals(1_000_000, snapshot.getValueAtPercentile(100));
+		Assert.assertEquals(1000, snapshot.getValueAtPercentile(0), 1000 / 16);
+	}
+
+	@Test
+	public void testHistogramConcurrentRecords() throws Exception {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			long latency = (i + 1) * 1000;
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 10_000; j++) {
+					histogram.record(latency);
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// the counts recorded by all the threads are added up
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		Assert.assertEquals(40_000, snapshot.getCount());
+		Assert.assertEquals(2500, snapshot.getMean(), 0.001);
+		Assert.assertEquals(4000, snapshot.getMax());
+		Assert.assertEquals(1000, snapshot.getValueAtPercentile(25), 1000 / 16);
+	}
+
+	@Test
+	public void testOperationMetrics() {
+
+		Assert.assertFalse(new OpGetOrder().getMetrics().isPresent());
+
+		dispatcher.dispatch("orders", "op-get-order", parameters("1"));
+		dispatcher.dispatch("orders", "op-get-order", parameters("2"));
+		dispatcher.dispatch("orders", "op-get-order", parameters(null));
+		try {
+			dispatcher.dispatch("orders", "op-get-order", parameters("fail"));
+			Assert.fail("The exception of the operation should be propagated");
+		} catch (IllegalStateException exc) {
+			// expected
+		}
+
+		OperationMetrics metrics = opGetOrder.getMetrics().get();
+		Assert.assertEquals(4, metrics.getCallCount());
+		Assert.assertEquals(1, metrics.getInvalidCount());
+		Assert.assertEquals(1, metrics.getFailureCount());
+		Assert.assertEquals(4, metrics.getLatencies().getCount());
+
+		dispatcher.dispatch("inexistent", "op-get-order", parameters("1"));
+		dispatcher.dispatch(" ", "op-get-order", parameters("1"));
+		Assert.assertEquals(3, dispatcher.getDispatchCount(DispatchResult.Status.DISPATCH_SUCCESS));
+		Assert.assertEquals(1, dispatcher.getDispatchCount(DispatchResult.Status.MODULE_NOT_FOUND));
+		Assert.assertEquals(1, dispatcher.getDispatchCount(DispatchResult.Status.MODULE_NAME_BLANK));
+
+		List<OperationStatistics> listStatistics = dispatcher.getOperationStatistics();
+		Assert.assertEquals(1, listStatistics.size());
+		Assert.assertEquals("orders", listStatistics.get(0).getModuleName());
+		Assert.assertEquals(4, listStatistics.get(0).getCallCount());
+	}
+
+	@Test
+	public void testMBean() throws Exception {
+
+		dispatcher.dispatch("orders", "op-get-order", parameters("1"));
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = dispatcher.registerMBean();
+		try {
+			CompositeData[] statistics = (CompositeData[]) server.getAttribute(objectName, "OperationStatistics");
+			Assert.assertEquals(1, statistics.length);
+			Assert.assertEquals("op-get-order", statistics[0].get("operationName"));
+			Assert.assertEquals(1L, statistics[0].get("callCount"));
+			Assert.assertNotNull(server.getAttribute(objectName, "DispatchCounts"));
+		} finally {
+			dispatcher.unregisterMBean();
+		}
+		Assert.assertFalse(server.isRegistered(objectName));
+	}
+
+	private static Map<String, Object> parameters(String id) {
+
+		Map<String, Object> parameters = new HashMap<>();
+		parameters.put("id", id);
+		return parameters;
+	}
+
+	@OperationParameter(name = "id", mandatory = true)
+	static class OpGetOrder extends ServiceOperation {
+
+		public OpGetOrder() {
+			super("op-get-order");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+
+			if ("fail".equals(parameters.get("id"))) {
+				throw new IllegalStateException("Order service unavailable");
+			}
+			return Optional.of(new ObjectWrapper<>("order " + parameters.get("id")));
+		}
+	}
+}
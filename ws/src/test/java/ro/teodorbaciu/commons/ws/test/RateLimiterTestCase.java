@@ -0,0 +1,135 @@
+package ro.teodorbaciu.commons.ws.test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.ExecutionResult;
+import ro.teodorbaciu.commons.ws.RateLimiter;
+import ro.teodorbaciu.commons.ws.ServiceDispatcher;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
+
+/**
+ * Tests the rate limits applied to modules and operations.
+ */
+public class RateLimiterTestCase {
+
+	private static final String CALLER_PARAMETER = "api-key";
+
+	private ServiceDispatcher dispatcher;
+	private ServiceModule module;
+	private ServiceOperation opSearch;
+
+	@Before
+	public void setUp() {
+
+		opSearch = new ServiceOperation("op-search") {
+			@Override
+			public Optional<BaseResult> execute(Map<String, Object> parameters) {
+				return Optional.of(new ObjectWrapper<>("results"));
+			}
+		};
+		module = new ServiceModule("search");
+		module.addOperation(opSearch);
+
+		dispatcher = new ServiceDispatcher("rates");
+		dispatcher.addModule(module);
+	}
+
+	@Test
+	public void testBurstAndRefill() throws Exception {
+
+		RateLimiter rateLimiter = new RateLimiter(5, 2);
+		opSearch.setRateLimiter(rateLimiter);
+
+		Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, dispatcher.dispatch("search", "op-search", caller(null)).getStatus());
+		Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, dispatcher.dispatch("search", "op-search", caller(null)).getStatus());
+
+		DispatchResult limited = dispatcher.dispatch("search", "op-search", caller(null));
+		Assert.assertSame(DispatchResult.Status.RATE_LIMITED, limited.getStatus());
+		Assert.assertSame(ExecutionResult.Status.RATE_LIMITED, limited.getResult().getStatus());
+		Assert.assertEquals(1, rateLimiter.getRejectedCount());
+
+		// a token is refilled every 200 ms
+		Thread.sleep(250);
+		Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, dispatcher.dispatch("search", "op-search", caller(null)).getStatus());
+
+		// with compiled routes
+		dispatcher.compileRoutes();
+		// the limiter can be replaced at runtime
+		opSearch.setRateLimiter(new RateLimiter(0.001, 1));
+		Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, dispatcher.dispatch("search", "op-search", caller(null)).getStatus());
+		Assert.assertSame(DispatchResult.Status.RATE_LIMITED, dispatcher.dispatch("search", "op-search", caller(null)).getStatus());
+		Assert.assertSame(DispatchResult.Status.RATE_LIMITED, 
+				dispatcher.dispatchAsync("search", "op-search", caller(null)).toCompletableFuture().get().getStatus());
+
+		opSearch.setRateLimiter(null);
+		Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, dispatcher.dispatch("search", "op-search", caller(null)).getStatus());
+		Assert.assertEquals(3, dispatcher.getDispatchCount(DispatchResult.Status.RATE_LIMITED));
+	}
+
+	@Test
+	public void testCallers() {
+
+		module.setRateLimiter(new RateLimiter(0.001, 1, CALLER_PARAMETER, 16));
+
+		Assert.assertSame(ExecutionResult.Status.VALID, module.executeOperation("op-search", caller("alice")).getStatus());
+		Assert.assertSame(ExecutionResult.Status.RATE_LIMITED, module.executeOperation("op-search", caller("alice")).getStatus());
+
+		// the other callers have their own buckets, the anonymous calls share one
+		Assert.assertSame(ExecutionResult.Status.VALID, module.executeOperation("op-search", caller("bob")).getStatus());
+		Assert.assertSame(ExecutionResult.Status.VALID, module.executeOperation("op-search", caller(null)).getStatus());
+		Assert.assertSame(ExecutionResult.Status.RATE_LIMITED, module.executeOperation("op-search", caller(null)).getStatus());
+	}
+
+	@Test
+	public void testBoundedCallerTable() {
+
+		RateLimiter rateLimiter = new RateLimiter(0.001, 1, CALLER_PARAMETER, 64);
+
+		// every caller is admitted once, active callers are evicted when the table is full
+		for (int i = 0; i < 100_000; i++) {
+			Assert.assertTrue(rateLimiter.tryAcquire(caller("caller-" + i)));
+		}
+		Assert.assertTrue(rateLimiter.getEvictionCount() >= 100_000 - 64);
+
+		// a recent caller is still tracked
+		Assert.assertFalse(rateLimiter.tryAcquire(caller("caller-99999")));
+	}
+
+	@Test
+	public void testCollidingCallers() throws Exception {
+
+		// "Aa" and "BB" have the same hash code, so "BB" is stored in the slot after "Aa"
+		Assert.assertEquals("Aa".hashCode(), "BB".hashCode());
+		RateLimiter rateLimiter = new RateLimiter(2, 1, CALLER_PARAMETER, 16);
+
+		Assert.assertTrue(rateLimiter.tryAcquire(caller("Aa")));
+		Thread.sleep(250);
+		Assert.assertTrue(rateLimiter.tryAcquire(caller("BB")));
+
+		// "Aa" is idle again, the slot it holds must not give "BB" a new bucket
+		Thread.sleep(350);
+		Assert.assertFalse(rateLimiter.tryAcquire(caller("BB")));
+		Assert.assertTrue(rateLimiter.tryAcquire(caller("Aa")));
+		Assert.assertFalse(rateLimiter.tryAcquire(caller("Aa")));
+		Assert.assertEquals(0, rateLimiter.getEvictionCount());
+	}
+
+	private static Map<String, Object> caller(String apiKey) {
+
+		Map<String, Object> parameters = new HashMap<>();
+		if (apiKey != null) {
+			parameters.put(CALLER_PARAMETER, apiKey);
+		}
+		return parameters;
+	}
+}
@@ -1,8 +1,19 @@
 package ro.teodorbaciu.commons.ws.test;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -11,12 +22,19 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ro.teodorbaciu.commons.ws.AsyncServiceOperation;
+import ro.teodorbaciu.commons.ws.BatchCall;
 import ro.teodorbaciu.commons.ws.ServiceDispatcher;
 import ro.teodorbaciu.commons.ws.ServiceModule;
 import ro.teodorbaciu.commons.ws.ServiceOperation;
 import ro.teodorbaciu.commons.ws.DispatchResult;
+import ro.teodorbaciu.commons.ws.ExecutionResult;
+import ro.teodorbaciu.commons.ws.ExecutionContext;
+import ro.teodorbaciu.commons.ws.IdempotentOperation;
 import ro.teodorbaciu.commons.ws.OperationParameter;
 import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.batch.BatchProtocol;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
 
 public class ServiceDispatcherTestCase {
 
@@ -114,6 +132,385 @@ public class ServiceDispatcherTestCase {
 		Assert.assertSame(DispatchResult.Status.MODULE_NAME_BLANK, dispatchResult.getStatus());
 	}
 	
+	@Test
+	public void testDispatchWithCompiledRoutes() {
+
+		dispatcher.addModule(wsModuleUsers);
+		dispatcher.compileRoutes();
+		Assert.assertTrue(dispatcher.isRoutesCompiled());
+
+		DispatchResult dispatchResult = dispatcher.dispatch(SERVICE_MODULE_USERS, "op-add-user", new HashMap<>());
+		Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, dispatchResult.getStatus());
+		Assert.assertSame(ExecutionResult.Status.INVALID, dispatchResult.getResult().getStatus());
+
+		// misses still report the precise status
+		dispatchResult = dispatcher.dispatch(SERVICE_MODULE_USERS, "op-inexistent", new HashMap<>());
+		Assert.assertSame(ExecutionResult.Status.OPERATION_NOT_FOUND, dispatchResult.getResult().getStatus());
+
+		dispatchResult = dispatcher.dispatch(SERVICE_MODULE_USERS, "  ", new HashMap<>());
+		Assert.assertSame(ExecutionResult.Status.OPERATION_NAME_BLANK, dispatchResult.getResult().getStatus());
+
+		dispatchResult = dispatcher.dispatch(SERVICE_MODULE_PRODUCTS, "op-add-user", new HashMap<>());
+		Assert.assertSame(DispatchResult.Status.MODULE_NOT_FOUND, dispatchResult.getStatus());
+
+		dispatchResult = dispatcher.dispatch(null, "op-add-user", new HashMap<>());
+		Assert.assertSame(DispatchResult.Status.MODULE_NAME_BLANK, dispatchResult.getStatus());
+
+		// modules added after compiling are routed as well
+		dispatcher.addModule(wsModuleProducts);
+		Assert.assertTrue(dispatcher.isRoutesCompiled());
+		wsModuleProducts.addOperation(new ServiceOperation("op-list-products") {
+
+			@Override
+			public Optional<BaseResult> execute(Map<String, Object> parameters) {
+				return Optional.empty();
+			}
+		});
+
+		// operation added after compiling is served by the dynamic lookup
+		dispatchResult = dispatcher.dispatch(SERVICE_MODULE_PRODUCTS, "op-list-products", new HashMap<>());
+		Assert.assertSame(ExecutionResult.Status.INVALID, dispatchResult.getResult().getStatus());
+
+		dispatcher.compileRoutes();
+		dispatchResult = dispatcher.dispatch(SERVICE_MODULE_PRODUCTS, "op-list-products", new HashMap<>());
+		Assert.assertSame(ExecutionResult.Status.INVALID, dispatchResult.getResult().getStatus());
+
+		dispatcher.removeModule(SERVICE_MODULE_USERS);
+		dispatchResult = dispatcher.dispatch(SERVICE_MODULE_USERS, "op-add-user", new HashMap<>());
+		Assert.assertSame(DispatchResult.Status.MODULE_NOT_FOUND, dispatchResult.getStatus());
+
+		dispatcher.discardCompiledRoutes();
+		Assert.assertFalse(dispatcher.isRoutesCompiled());
+	}
+
+	@Test
+	public void testDispatchAsync() throws Exception {
+
+		CompletableFuture<Optional<BaseResult>> pendingResult = new CompletableFuture<>();
+		wsModuleProducts.addOperation(new AsyncServiceOperation("op-find-product") {
+
+			@Override
+			public CompletionStage<Optional<BaseResult>> executeAsync(Map<String, Object> parameters) {
+				return pendingResult;
+			}
+		});
+		dispatcher.addModule(wsModuleProducts);
+		dispatcher.addModule(wsModuleUsers);
+
+		// the dispatch returns before the operation completes
+		CompletableFuture<DispatchResult> futureResult = dispatcher
+				.dispatchAsync(SERVICE_MODULE_PRODUCTS, "op-find-product", new HashMap<>()).toCompletableFuture();
+		Assert.assertFalse(futureResult.isDone());
+
+		BaseResult product = new ObjectWrapper<>("product");
+		pendingResult.complete(Optional.of(product));
+		DispatchResult dispatchResult = futureResult.get(10, TimeUnit.SECONDS);
+		Assert.assertSame(DispatchResult.Status.DISPATCH_SUCCESS, dispatchResult.getStatus());
+		Assert.assertSame(product, dispatchResult.getResult().getValue());
+
+		// synchronous operations are adapted
+		dispatchResult = dispatcher.dispatchAsync(SERVICE_MODULE_USERS, "op-add-user", new HashMap<>())
+				.toCompletableFuture().get(10, TimeUnit.SECONDS);
+		Assert.assertSame(ExecutionResult.Status.INVALID, dispatchResult.getResult().getStatus());
+
+		dispatchResult = dispatcher.dispatchAsync("inexistent-module", "op-add-user", new HashMap<>())
+				.toCompletableFuture().get(10, TimeUnit.SECONDS);
+		Assert.assertSame(DispatchResult.Status.MODULE_NOT_FOUND, dispatchResult.getStatus());
+
+		// the routed path and the synchronous dispatch of an asynchronous operation
+		dispatcher.compileRoutes();
+		dispatchResult = dispatcher.dispatchAsync(SERVICE_MODULE_PRODUCTS, "op-find-product", new HashMap<>())
+				.toCompletableFuture().get(10, TimeUnit.SECONDS);
+		Assert.assertSame(product, dispatchResult.getValue());
+		Assert.assertSame(product, dispatcher.dispatch(SERVICE_MODULE_PRODUCTS, "op-find-product", new HashMap<>()).getValue());
+	}
+
+	@Test
+	public void testDispatchBatch() {
+
+		CountDownLatch bothRunning = new CountDownLatch(2);
+		wsModuleProducts.addOperation(new ServiceOperation("op-get-product") {
+
+			@Override
+			public Optional<BaseResult> execute(Map<String, Object> parameters) {
+
+				// completes only if the independent calls run in parallel
+				bothRunning.countDown();
+				try {
+					Assert.assertTrue(bothRunning.await(10, TimeUnit.SECONDS));
+				} catch (InterruptedException exc) {
+					throw new IllegalStateException(exc);
+				}
+				return Optional.of(new ObjectWrapper<>(parameters.get("id")));
+			}
+		});
+		dispatcher.addModule(wsModuleProducts);
+		dispatcher.addModule(wsModuleUsers);
+
+		// the request parameters as sent by the client
+		Map<String, Object> requestParameters = new HashMap<>();
+		requestParameters.put(BatchProtocol.PARAM_BATCH_SIZE, "4");
+		addCallParameters(requestParameters, 0, SERVICE_MODULE_PRODUCTS, "op-get-product", true);
+		requestParameters.put(BatchProtocol.operationParameterName(0, "id"), "1");
+		addCallParameters(requestParameters, 1, SERVICE_MODULE_USERS, "op-add-user", false);
+		addCallParameters(requestParameters, 2, SERVICE_MODULE_PRODUCTS, "op-get-product", true);
+		requestParameters.put(BatchProtocol.operationParameterName(2, "id"), "2");
+		addCallParameters(requestParameters, 3, "inexistent-module", "op-add-user", false);
+
+		List<BatchCall> calls = BatchCall.fromRequestParameters(requestParameters);
+		Assert.assertEquals(4, calls.size());
+		Assert.assertEquals("1", calls.get(0).getParameters().get("id"));
+		Assert.assertFalse(calls.get(1).isIndependent());
+
+		List<DispatchResult> results = dispatcher.dispatchBatch(calls);
+		Assert.assertEquals("1", ((ObjectWrapper<?>) results.get(0).getValue()).getObject());
+		Assert.assertSame(ExecutionResult.Status.INVALID, results.get(1).getResult().getStatus());
+		Assert.assertEquals("2", ((ObjectWrapper<?>) results.get(2).getValue()).getObject());
+		Assert.assertSame(DispatchResult.Status.MODULE_NOT_FOUND, results.get(3).getStatus());
+
+		// the encoded results are decoded by the client in the same order
+		List<BatchProtocol.Part> parts = BatchProtocol.decodeResponse(BatchProtocol.encodeResponse(Arrays.asList(
+				new BatchProtocol.Part(200, "{\"id\":1}"), new BatchProtocol.Part(412, ""), new BatchProtocol.Part(200, "\n2 3\n"))));
+		Assert.assertEquals(3, parts.size());
+		Assert.assertEquals("{\"id\":1}", parts.get(0).getContent());
+		Assert.assertEquals(412, parts.get(1).getStatusCode());
+		Assert.assertEquals("\n2 3\n", parts.get(2).getContent());
+	}
+
+	@Test
+	public void testCoalescedCallOutlivesDeadlineOfFirstCall() throws Exception {
+
+		OpGetStock opGetStock = new OpGetStock();
+		wsModuleProducts.addOperation(opGetStock);
+		dispatcher.addModule(wsModuleProducts);
+
+		Map<String, Object> slowParameters = new HashMap<>();
+		slowParameters.put("id", "slow");
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+
+			// the first call stops at its deadline, after the operation ran
+			Future<DispatchResult> firstResult = executor.submit(() -> dispatcher.dispatch(SERVICE_MODULE_PRODUCTS, "op-get-stock", 
+					new HashMap<>(slowParameters), ExecutionContext.withTimeout(100, TimeUnit.MILLISECONDS)));
+			Assert.assertTrue(opGetStock.started.await(10, TimeUnit.SECONDS));
+
+			Future<DispatchResult> waitingResult = executor.submit(() -> dispatcher.dispatch(SERVICE_MODULE_PRODUCTS, "op-get-stock", 
+					new HashMap<>(slowParameters)));
+			CompletableFuture<DispatchResult> waitingAsyncResult = dispatcher.dispatchAsync(SERVICE_MODULE_PRODUCTS, "op-get-stock", 
+					new HashMap<>(slowParameters), ExecutionContext.withTimeout(10, TimeUnit.SECONDS)).toCompletableFuture();
+
+			Thread.sleep(200);
+			opGetStock.release.countDown();
+			Assert.assertSame(DispatchResult.Status.TIMEOUT, firstResult.get(10, TimeUnit.SECONDS).getStatus());
+
+			// the waiting calls do not inherit the deadline of the first call, they execute again
+			Assert.assertNotNull(waitingResult.get(10, TimeUnit.SECONDS).getValue());
+			Assert.assertNotNull(waitingAsyncResult.get(10, TimeUnit.SECONDS).getValue());
+			Assert.assertTrue(opGetStock.executions.get() >= 2);
+
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testBatchSizeLimits() {
+
+		for (String batchSize : new String[] { "-1", String.valueOf(BatchCall.DEFAULT_MAX_CALLS + 1), "100000000", "many", null }) {
+			Map<String, Object> requestParameters = new HashMap<>();
+			requestParameters.put(BatchProtocol.PARAM_BATCH_SIZE, batchSize);
+			try {
+				BatchCall.fromRequestParameters(requestParameters);
+				Assert.fail("Accepted the batch size " + batchSize);
+			} catch (IllegalArgumentException exc) {
+				// expected
+			}
+		}
+
+		Map<String, Object> requestParameters = new HashMap<>();
+		requestParameters.put(BatchProtocol.PARAM_BATCH_SIZE, "2");
+		Assert.assertEquals(2, BatchCall.fromRequestParameters(requestParameters, 2).size());
+		try {
+			BatchCall.fromRequestParameters(requestParameters, 1);
+			Assert.fail("Accepted more calls than the maximum");
+		} catch (IllegalArgumentException exc) {
+			// expected
+		}
+	}
+
+	private void addCallParameters(Map<String, Object> requestParameters, int callIndex, String moduleName, 
+			String operationName, boolean independent) {
+
+		requestParameters.put(BatchProtocol.callParameterName(callIndex, BatchProtocol.CALL_PARAM_MODULE), moduleName);
+		requestParameters.put(BatchProtocol.callParameterName(callIndex, BatchProtocol.CALL_PARAM_OPERATION), operationName);
+		requestParameters.put(BatchProtocol.callParameterName(callIndex, BatchProtocol.CALL_PARAM_INDEPENDENT), 
+				String.valueOf(independent));
+	}
+
+	@Test
+	public void testOverriddenFindModule() throws Exception {
+
+		ServiceDispatcher aliasingDispatcher = new ServiceDispatcher("aliasing") {
+			@Override
+			protected Optional<ServiceModule> findModule(String moduleName) {
+				return super.findModule("products".equals(moduleName) ? SERVICE_MODULE_PRODUCTS : moduleName);
+			}
+		};
+		wsModuleProducts.addOperation(new OpGetStock());
+		aliasingDispatcher.addModule(wsModuleProducts);
+
+		Map<String, Object> parameters = new HashMap<>();
+		parameters.put("id", "other");
+		Assert.assertNotNull(aliasingDispatcher.dispatch("products", "op-get-stock", parameters).getValue());
+
+		// the compiled routes do not bypass the overridden lookup
+		aliasingDispatcher.compileRoutes();
+		Assert.assertNotNull(aliasingDispatcher.dispatch("products", "op-get-stock", parameters).getValue());
+		Assert.assertNotNull(aliasingDispatcher.dispatchAsync("products", "op-get-stock", parameters).toCompletableFuture().get().getValue());
+		Assert.assertSame(DispatchResult.Status.MODULE_NOT_FOUND, aliasingDispatcher.dispatch("inexistent", "op-get-stock", parameters).getStatus());
+	}
+
+	@Test
+	public void testOverriddenExecuteOperation() throws Exception {
+
+		AtomicInteger auditedCalls = new AtomicInteger();
+		ServiceModule auditedModule = new ServiceModule("audited") {
+			@Override
+			public ExecutionResult executeOperation(String operationName, Map<String, Object> parameters) {
+				auditedCalls.incrementAndGet();
+				return super.executeOperation(operationName, parameters);
+			}
+
+			@Override
+			public CompletionStage<ExecutionResult> executeOperationAsync(String operationName, Map<String, Object> parameters) {
+				auditedCalls.incrementAndGet();
+				return super.executeOperationAsync(operationName, parameters);
+			}
+		};
+		auditedModule.addOperation(new OpGetStock());
+		dispatcher.addModule(auditedModule);
+		wsModuleProducts.addOperation(new OpGetStock());
+		dispatcher.addModule(wsModuleProducts);
+
+		Map<String, Object> parameters = new HashMap<>();
+		parameters.put("id", "other");
+
+		// the compiled routes do not bypass the overridden execution
+		dispatcher.compileRoutes();
+		Assert.assertNotNull(dispatcher.dispatch("audited", "op-get-stock", parameters).getValue());
+		Assert.assertNotNull(dispatcher.dispatchAsync("audited", "op-get-stock", parameters).toCompletableFuture().get().getValue());
+		Assert.assertEquals(2, auditedCalls.get());
+
+		// the other modules are still routed
+		Assert.assertNotNull(dispatcher.dispatch(SERVICE_MODULE_PRODUCTS, "op-get-stock", parameters).getValue());
+		Assert.assertEquals(2, auditedCalls.get());
+	}
+
+	@Test
+	public void testCoalesceIdenticalCalls() throws Exception {
+
+		OpGetStock opGetStock = new OpGetStock();
+		wsModuleProducts.addOperation(opGetStock);
+		dispatcher.addModule(wsModuleProducts);
+
+		Map<String, Object> slowParameters = new HashMap<>();
+		slowParameters.put("id", "slow");
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+
+			// the first call blocks inside the operation
+			Future<DispatchResult> firstResult = executor.submit(() -> dispatcher.dispatch(SERVICE_MODULE_PRODUCTS, "op-get-stock", slowParameters));
+			Assert.assertTrue(opGetStock.started.await(10, TimeUnit.SECONDS));
+
+			// identical calls wait for the first one
+			List<CompletableFuture<DispatchResult>> coalescedResults = Arrays.asList(
+					dispatcher.dispatchAsync(SERVICE_MODULE_PRODUCTS, "op-get-stock", new HashMap<>(slowParameters)).toCompletableFuture(),
+					dispatcher.dispatchAsync(SERVICE_MODULE_PRODUCTS, "op-get-stock", new HashMap<>(slowParameters)).toCompletableFuture());
+			for (CompletableFuture<DispatchResult> coalescedResult : coalescedResults) {
+				Assert.assertFalse(coalescedResult.isDone());
+			}
+
+			// a call with other parameters is executed
+			Map<String, Object> otherParameters = new HashMap<>();
+			otherParameters.put("id", "other");
+			Assert.assertNotNull(dispatcher.dispatch(SERVICE_MODULE_PRODUCTS, "op-get-stock", otherParameters).getValue());
+			Assert.assertEquals(2, opGetStock.executions.get());
+
+			// identical calls with a deadline wait for the same execution, each within its own deadline
+			Future<DispatchResult> timedResult = executor.submit(() -> dispatcher.dispatch(SERVICE_MODULE_PRODUCTS, "op-get-stock", 
+					new HashMap<>(slowParameters), ExecutionContext.withTimeout(10, TimeUnit.SECONDS)));
+			Assert.assertSame(DispatchResult.Status.TIMEOUT, dispatcher.dispatch(SERVICE_MODULE_PRODUCTS, "op-get-stock", 
+					new HashMap<>(slowParameters), ExecutionContext.withTimeout(100, TimeUnit.MILLISECONDS)).getStatus());
+			Assert.assertSame(DispatchResult.Status.TIMEOUT, dispatcher.dispatchAsync(SERVICE_MODULE_PRODUCTS, "op-get-stock", 
+					new HashMap<>(slowParameters), ExecutionContext.withTimeout(100, TimeUnit.MILLISECONDS)).toCompletableFuture()
+					.get(10, TimeUnit.SECONDS).getStatus());
+			Assert.assertFalse(firstResult.isDone());
+			Assert.assertEquals(2, opGetStock.executions.get());
+
+			opGetStock.release.countDown();
+			BaseResult value = firstResult.get(10, TimeUnit.SECONDS).getValue();
+			Assert.assertSame(value, timedResult.get(10, TimeUnit.SECONDS).getValue());
+			for (CompletableFuture<DispatchResult> coalescedResult : coalescedResults) {
+				Assert.assertSame(value, coalescedResult.get(10, TimeUnit.SECONDS).getValue());
+			}
+			Assert.assertEquals(2, opGetStock.executions.get());
+
+			// once completed, the next call executes again
+			dispatcher.dispatch(SERVICE_MODULE_PRODUCTS, "op-get-stock", slowParameters);
+			Assert.assertEquals(3, opGetStock.executions.get());
+
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testDispatchDuringModuleHotSwap() throws Exception {
+
+		dispatcher.addModule(wsModuleProducts);
+
+		int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		AtomicBoolean running = new AtomicBoolean(true);
+		CountDownLatch started = new CountDownLatch(threads);
+
+		try {
+
+			Future<?>[] futures = new Future<?>[threads];
+			for (int i = 0; i < threads; i++) {
+				futures[i] = executor.submit(() -> {
+					started.countDown();
+					while (running.get()) {
+						DispatchResult result = dispatcher.dispatch(SERVICE_MODULE_USERS, "op-add-user", new HashMap<>());
+						Assert.assertTrue(result.getStatus() == DispatchResult.Status.DISPATCH_SUCCESS
+								|| result.getStatus() == DispatchResult.Status.MODULE_NOT_FOUND);
+					}
+					return null;
+				});
+			}
+
+			// swap the users module in and out while the dispatching threads are running
+			started.await();
+			for (int i = 0; i < 1000; i++) {
+				dispatcher.addModule(wsModuleUsers);
+				Assert.assertSame(wsModuleUsers, dispatcher.removeModule(SERVICE_MODULE_USERS).get());
+			}
+
+			running.set(false);
+			for (Future<?> future : futures) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+
+		} finally {
+			running.set(false);
+			executor.shutdownNow();
+		}
+
+		Assert.assertEquals(1, dispatcher.getModules().size());
+	}
+
 	/**
 	 * Webservice module for simulating user operations.
 	 *
@@ -145,6 +542,38 @@ public class ServiceDispatcherTestCase {
 		}
 	}
 
+	/**
+	 * Idempotent operation that blocks until released when called with the "slow" id.
+	 */
+	@OperationParameter(name = "id", mandatory = true)
+	@IdempotentOperation
+	static class OpGetStock extends ServiceOperation {
+
+		final AtomicInteger executions = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		public OpGetStock() {
+			super("op-get-stock");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+
+			executions.incrementAndGet();
+			if ("slow".equals(parameters.get("id"))) {
+				started.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException exc) {
+					Thread.currentThread().interrupt();
+				}
+				ExecutionContext.current().checkDeadline();
+			}
+			return Optional.of(new ObjectWrapper<>(10));
+		}
+	}
+
 	/**
 	 * WebserviceModule for simulating product operations.
 	 *
@@ -1,17 +1,294 @@
 package ro.teodorbaciu.commons.ws.test;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Test;
+
+import ro.teodorbaciu.commons.ws.ExecutionResult;
+import ro.teodorbaciu.commons.ws.OperationCache;
+import ro.teodorbaciu.commons.ws.OperationMetadata;
+import ro.teodorbaciu.commons.ws.OperationParameter;
+import ro.teodorbaciu.commons.ws.OperationResultCache;
+import ro.teodorbaciu.commons.ws.ParameterDefinition;
+import ro.teodorbaciu.commons.ws.ParsedParameters;
+import ro.teodorbaciu.commons.ws.ServiceModule;
+import ro.teodorbaciu.commons.ws.ServiceOperation;
+import ro.teodorbaciu.commons.ws.TypedServiceOperation;
+import ro.teodorbaciu.commons.ws.transfer.beans.BaseResult;
+import ro.teodorbaciu.commons.ws.transfer.beans.ObjectWrapper;
 
 public class ServiceModuleTestCase {
 
+	private static final String OP_GET_PRODUCT = "op-get-product";
+
+	private ServiceModule module;
+	private OpGetProduct opGetProduct;
+
 	@Before
 	public void setUp() {
 		
+		module = new ServiceModule("ws-module-products");
+		opGetProduct = new OpGetProduct();
+		module.addOperation(opGetProduct);
 	}
 	
 	@After
 	public void tearDown() {
 		
+		module = null;
+		opGetProduct = null;
+	}
+
+	@Test
+	public void testCachedOperation() {
+
+		ExecutionResult first = module.executeOperation(OP_GET_PRODUCT, parameters("1", "a"));
+		ExecutionResult second = module.executeOperation(OP_GET_PRODUCT, parameters("1", "b"));
+		Assert.assertEquals(1, opGetProduct.executions.get());
+
+		// the undeclared parameter does not take part in the key
+		Assert.assertSame(first.getValue(), second.getValue());
+
+		module.executeOperation(OP_GET_PRODUCT, parameters("2", "a"));
+		Assert.assertEquals(2, opGetProduct.executions.get());
+
+		OperationResultCache cache = opGetProduct.getResultCache().get();
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(2, cache.getMissCount());
+
+		// invalid results are not cached
+		module.executeOperation(OP_GET_PRODUCT, parameters(null, "a"));
+		module.executeOperation(OP_GET_PRODUCT, parameters(null, "a"));
+		Assert.assertEquals(4, opGetProduct.executions.get());
+
+		cache.invalidateAll();
+		module.executeOperation(OP_GET_PRODUCT, parameters("1", "a"));
+		Assert.assertEquals(5, opGetProduct.executions.get());
+	}
+
+	@Test
+	public void testOperationWithoutCache() {
+
+		ServiceOperation operation = new ServiceOperation("op-uncached") {
+			@Override
+			public Optional<BaseResult> execute(Map<String, Object> parameters) {
+				return Optional.empty();
+			}
+		};
+		module.addOperation(operation);
+		Assert.assertFalse(operation.getResultCache().isPresent());
+	}
+
+	@Test
+	public void testCacheExpiration() throws Exception {
+
+		OperationResultCache cache = new OperationResultCache(Arrays.asList("id"), 50, 10);
+		Object key = cache.createKey(parameters("1", null));
+		cache.put(key, new ObjectWrapper<>("1"));
+		Assert.assertNotNull(cache.get(key));
+
+		Thread.sleep(100);
+		Assert.assertNull(cache.get(key));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testCacheEviction() {
+
+		OperationResultCache cache = new OperationResultCache(Arrays.asList("id"), 60_000, 2);
+		Object key1 = cache.createKey(parameters("1", null));
+		Object key2 = cache.createKey(parameters("2", null));
+		Object key3 = cache.createKey(parameters("3", null));
+
+		cache.put(key1, new ObjectWrapper<>("1"));
+		cache.put(key2, new ObjectWrapper<>("2"));
+		cache.get(key1);// key2 becomes the least recently used
+		cache.put(key3, new ObjectWrapper<>("3"));
+
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(1, cache.getEvictionCount());
+		Assert.assertNotNull(cache.get(key1));
+		Assert.assertNull(cache.get(key2));
+		Assert.assertNotNull(cache.get(key3));
+	}
+
+	@Test
+	public void testParameterValidation() {
+
+		OpAddProduct opAddProduct = new OpAddProduct();
+		module.addOperation(opAddProduct);
+
+		ParameterDefinition quantity = opAddProduct.getParameterDefinitions().get(1);
+		Assert.assertEquals("quantity", quantity.getName());
+		Assert.assertTrue(quantity.isInteger());
+
+		// valid parameters, the numbers are parsed before the execution
+		ExecutionResult result = module.executeOperation("op-add-product", productParameters("bike", "-12", "1.5e2"));
+		Assert.assertSame(ExecutionResult.Status.VALID, result.getStatus());
+		Assert.assertEquals("bike -12 150.0", ((ObjectWrapper<?>) result.getValue()).getObject());
+
+		// the optional price can be missing
+		result = module.executeOperation("op-add-product", productParameters("bike", "7", null));
+		Assert.assertEquals("bike 7 0.0", ((ObjectWrapper<?>) result.getValue()).getObject());
+
+		// numbers received as objects
+		Map<String, Object> parameters = productParameters("bike", null, null);
+		parameters.put("quantity", 3);
+		parameters.put("price", 2.5f);
+		result = module.executeOperation("op-add-product", parameters);
+		Assert.assertEquals("bike 3 2.5", ((ObjectWrapper<?>) result.getValue()).getObject());
+		Assert.assertEquals(3, opAddProduct.executions.get());
+
+		// invalid parameters never reach the operation
+		String[][] invalidParameters = { 
+				{ null, "1", "1" }, { "", "1", "1" }, { "bike", null, "1" }, { "bike", "1.5", "1" }, { "bike", "12a", "1" }, 
+				{ "bike", "-", "1" }, { "bike", "99999999999999999999", "1" }, { "bike", "1", "." }, { "bike", "1", "1e" }, 
+				{ "bike", "1", "1.2.3" }, { "bike", "1", "abc" } };
+		for (String[] invalid : invalidParameters) {
+			result = module.executeOperation("op-add-product", productParameters(invalid[0], invalid[1], invalid[2]));
+			Assert.assertSame(ExecutionResult.Status.INVALID, result.getStatus());
+		}
+		Assert.assertEquals(3, opAddProduct.executions.get());
+
+		// the extreme values are parsed
+		result = module.executeOperation("op-add-product", productParameters("bike", String.valueOf(Long.MIN_VALUE), "-.5"));
+		Assert.assertEquals("bike " + Long.MIN_VALUE + " -0.5", ((ObjectWrapper<?>) result.getValue()).getObject());
+	}
+
+	@Test
+	public void testTypedOperation() {
+
+		OpUpdateStock opUpdateStock = new OpUpdateStock();
+		module.addOperation(opUpdateStock);
+
+		ExecutionResult result = module.executeOperation("op-update-stock", productParameters("bike", "5", "2.5"));
+		Assert.assertEquals("bike 5 2.5", ((ObjectWrapper<?>) result.getValue()).getObject());
+
+		result = module.executeOperation("op-update-stock", productParameters("bike", "5.5", "2.5"));
+		Assert.assertSame(ExecutionResult.Status.INVALID, result.getStatus());
+
+		// called directly, the operation validates its parameters itself
+		Assert.assertEquals("car 1 0.0", ((ObjectWrapper<?>) new OpUpdateStock().execute(productParameters("car", "1", null)).get()).getObject());
+		Assert.assertFalse(new OpUpdateStock().execute(productParameters(null, "1", null)).isPresent());
+	}
+
+	@Test
+	public void testGeneratedMetadata() {
+
+		OperationMetadata metadata = null;
+		for ( OperationMetadata candidate:ServiceLoader.load(OperationMetadata.class) ) {
+			if ( candidate.getOperationClass() == OpAddProduct.class ) {
+				metadata = candidate;
+			}
+		}
+		Assert.assertNotNull(metadata);
+
+		// the operation uses the generated definitions, which match the annotations
+		OpAddProduct opAddProduct = new OpAddProduct();
+		Assert.assertSame(metadata.getParameterDefinitions().get(0), opAddProduct.getParameterDefinitions().get(0));
+
+		OperationParameter[] annotations = OpAddProduct.class.getAnnotationsByType(OperationParameter.class);
+		Assert.assertEquals(annotations.length, metadata.getParameterDefinitions().size());
+		for ( int i = 0; i < annotations.length; i++ ) {
+			ParameterDefinition definition = metadata.getParameterDefinitions().get(i);
+			Assert.assertEquals(annotations[i].name(), definition.getName());
+			Assert.assertEquals(annotations[i].mandatory(), definition.isMandatory());
+			Assert.assertEquals(annotations[i].integer(), definition.isInteger());
+			Assert.assertEquals(annotations[i].floatingPoint(), definition.isFloatingPoint());
+		}
+	}
+
+	private static Map<String, Object> productParameters(String name, String quantity, String price) {
+
+		Map<String, Object> parameters = new HashMap<>();
+		parameters.put("name", name);
+		parameters.put("quantity", quantity);
+		parameters.put("price", price);
+		return parameters;
+	}
+
+	private static Map<String, Object> parameters(String id, String trackingId) {
+
+		Map<String, Object> parameters = new HashMap<>();
+		parameters.put("id", id);
+		parameters.put("tracking-id", trackingId);
+		return parameters;
+	}
+
+	@OperationParameter(name = "name", mandatory = true)
+	@OperationParameter(name = "quantity", mandatory = true, integer = true)
+	@OperationParameter(name = "price", mandatory = false, floatingPoint = true)
+	static class OpAddProduct extends ServiceOperation {
+
+		final AtomicInteger executions = new AtomicInteger();
+
+		public OpAddProduct() {
+			super("op-add-product");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+			throw new UnsupportedOperationException("The parsed parameters should be used");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters, ParsedParameters parsedParameters) {
+
+			executions.incrementAndGet();
+			return Optional.of(new ObjectWrapper<>(parsedParameters.get("name") + " " + parsedParameters.getLong("quantity") 
+					+ " " + parsedParameters.getDouble("price")));
+		}
+	}
+
+	@OperationParameter(name = "name", mandatory = true)
+	@OperationParameter(name = "quantity", mandatory = true, integer = true)
+	@OperationParameter(name = "price", mandatory = false, floatingPoint = true)
+	static class OpUpdateStock extends TypedServiceOperation {
+
+		static final int NAME = 0;
+		static final int QUANTITY = 1;
+		static final int PRICE = 2;
+
+		public OpUpdateStock() {
+			super("op-update-stock");
+		}
+
+		@Override
+		public Optional<BaseResult> execute(ParsedParameters parameters) {
+
+			Assert.assertEquals(QUANTITY, parameters.indexOf("quantity"));
+			return Optional.of(new ObjectWrapper<>(parameters.getString(NAME) + " " + parameters.getInt(QUANTITY) 
+					+ " " + parameters.getDouble(PRICE)));
+		}
+	}
+
+	@OperationParameter(name = "id", mandatory = false)
+	@OperationCache(ttlSeconds = 60, maxEntries = 100)
+	static class OpGetProduct extends ServiceOperation {
+
+		final AtomicInteger executions = new AtomicInteger();
+
+		public OpGetProduct() {
+			super(OP_GET_PRODUCT);
+		}
+
+		@Override
+		public Optional<BaseResult> execute(Map<String, Object> parameters) {
+
+			executions.incrementAndGet();
+			Object id = parameters.get("id");
+			if (id == null) {
+				return Optional.empty();
+			}
+			return Optional.of(new ObjectWrapper<>(id));
+		}
 	}
 }